@@ -0,0 +1,96 @@
+package bench;
+
+import pl0.PL0_RD;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+import tree.DeclNode;
+import tree.StaticChecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * class CheckBenchmark - measures the time to statically check a program
+ * with long expressions, of 10000 terms by default. Coercing each operand
+ * of such an expression should take time independent of the size of the
+ * operand, so that the check time grows linearly with the number of terms.
+ * As checking rewrites the tree, each run parses the program afresh, and
+ * the time to parse it alone is subtracted. The checker recurses once per
+ * term, so it runs on a thread with a large stack.
+ * Usage: java bench.CheckBenchmark [terms [statements]]
+ */
+public class CheckBenchmark {
+
+    /**
+     * Stack size of the thread running the benchmark
+     */
+    private static final long STACK_SIZE = 1L << 30;
+
+    public static void main(String[] args) throws InterruptedException {
+        Thread thread = new Thread(null, () -> {
+            try {
+                run(args);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "check", STACK_SIZE);
+        thread.start();
+        thread.join();
+    }
+
+    private static void run(String[] args) throws IOException {
+        int terms = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        File file = Harness.writeProgram("check", program(terms, statements));
+        System.out.printf("%s: %d statements of %d terms%n", file.getName(),
+                statements, terms);
+        double parse = Harness.nanosPerRun(3, 10, () -> compile(file, false));
+        double both = Harness.nanosPerRun(3, 10, () -> compile(file, true));
+        System.out.printf("%-10s%12.1f ms%n", "parse", parse / 1e6);
+        System.out.printf("%-10s%12.1f ms%n", "check", (both - parse) / 1e6);
+    }
+
+    private static void compile(File file, boolean check) {
+        try {
+            MappedSource source = MappedSource.map(file, file.getPath());
+            Errors errors = new ErrorHandler(Harness.NULL_OUTPUT, source,
+                    false);
+            CompilerContext context = new CompilerContext(errors, source);
+            DeclNode.ProcedureNode tree = new PL0_RD().parse(context);
+            if (check) {
+                new StaticChecker(context).visitProgramNode(tree);
+            }
+            if (errors.hadErrors()) {
+                throw new IllegalStateException("generated program has errors");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generate a program assigning expressions of the given number of
+     * terms, with operators of both precedences and a subrange variable
+     * that is widened wherever it is used
+     */
+    static String program(int terms, int statements) {
+        StringBuilder text = new StringBuilder(
+                "type S = [0..100];\nvar x: int; s: S;\nbegin\n  s := 1;\n");
+        for (int i = 0; i < statements; i++) {
+            text.append("  x := s");
+            for (int term = 1; term < terms; term++) {
+                text.append(term % 2 == 0 ? " + " : " - ")
+                        .append(term % 3 == 0 ? "x * 2" : "s");
+                if (term % 10 == 0) {
+                    text.append("\n      ");
+                }
+            }
+            text.append(";\n");
+        }
+        text.append("  write x\nend\n");
+        return text.toString();
+    }
+}
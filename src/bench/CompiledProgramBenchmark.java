@@ -0,0 +1,130 @@
+package bench;
+
+import interpreter.Interpreter;
+import pl0.CompiledProgram;
+import tree.DeclNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * class CompiledProgramBenchmark - compares the latency of running a
+ * program through the whole pipeline of parsing, static checking and
+ * execution each time with compiling it once into a CompiledProgram and
+ * executing that repeatedly. The amortised latency per run of the
+ * compiled program includes its share of the compilation time, so it
+ * falls towards the execution time as the number of runs grows. Also
+ * reports the throughput of executing a compiled program from several
+ * threads at once.
+ * Usage: java bench.CompiledProgramBenchmark [file.pl0 ...]
+ */
+public class CompiledProgramBenchmark {
+
+    /**
+     * Numbers of runs for which the amortised latency is reported
+     */
+    private static final int[] RUNS = {1, 10, 100, 1000};
+
+    /**
+     * Short program typical of a service run against many inputs
+     */
+    private static final String SERVICE =
+            "var n: int; f: int;\n" +
+            "procedure fact() =\n" +
+            "  begin\n" +
+            "    if n = 0 then f := 1\n" +
+            "    else begin n := n - 1; call fact(); n := n + 1; f := f * n end\n" +
+            "  end;\n" +
+            "begin n := 10; call fact(); write f end\n";
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        List<File> programs = Harness.programs(args);
+        if (args.length == 0) {
+            programs.add(Harness.writeProgram("service", SERVICE));
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-32s%12s%12s", "program (us/run)", "pipeline",
+                "compile");
+        for (int runs : RUNS) {
+            System.out.printf("%12s", "x" + runs);
+        }
+        System.out.printf("%16s%n", threads + " threads");
+        for (File program : programs) {
+            CompiledProgram compiled;
+            try {
+                compiled = CompiledProgram.compile(program);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (!compiled.execute(Harness.noInput(), Harness.NULL_OUTPUT)) {
+                continue;
+            }
+            double pipeline = Harness.nanosPerRun(20, 200, () -> {
+                try {
+                    DeclNode.ProcedureNode tree = Harness.compile(program);
+                    new Interpreter(Harness.errors(false),
+                            Harness.noInput(), Harness.NULL_OUTPUT)
+                            .executeCode(tree);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            double compile = Harness.nanosPerRun(20, 200, () -> {
+                try {
+                    CompiledProgram.compile(program);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            double execute = Harness.nanosPerRun(200, 2000, () ->
+                    compiled.execute(Harness.noInput(), Harness.NULL_OUTPUT));
+            System.out.printf("%-32s%12.1f%12.1f", program.getName(),
+                    pipeline / 1000, compile / 1000);
+            for (int runs : RUNS) {
+                System.out.printf("%12.1f",
+                        (compile + runs * execute) / runs / 1000);
+            }
+            System.out.printf("%16.1f%n",
+                    concurrentNanos(compiled, threads) / 1000);
+        }
+    }
+
+    /**
+     * @return the time per run of executing the program repeatedly from
+     * several threads at once
+     */
+    private static double concurrentNanos(CompiledProgram program,
+                                          int threads)
+            throws InterruptedException {
+        final int runsPerThread = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < runsPerThread; i++) {
+                        program.execute(Harness.noInput(),
+                                Harness.NULL_OUTPUT);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            return (double) (System.nanoTime() - start)
+                    / (threads * runsPerThread);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
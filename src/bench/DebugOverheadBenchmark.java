@@ -0,0 +1,67 @@
+package bench;
+
+import interpreter.Interpreter;
+import source.Errors;
+import tree.DeclNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * class DebugOverheadBenchmark - compares the execution time of the tree
+ * interpreter with debugging turned off, when it does no debug bookkeeping,
+ * against the same program traced as with -d, with the trace discarded.
+ * Usage: java bench.DebugOverheadBenchmark [file.pl0 ...]
+ */
+public class DebugOverheadBenchmark {
+
+    /**
+     * Loop exercising assignments, expressions and variable accesses
+     */
+    private static final String WHILE_LOOP =
+            "var x: int; i: int;\n" +
+            "begin\n" +
+            "  i := 1; x := 0;\n" +
+            "  while i < 100000 do\n" +
+            "    begin x := x + i*i; i := i + 1 end;\n" +
+            "  write x\n" +
+            "end\n";
+
+    public static void main(String[] args) throws IOException {
+        List<File> programs = Harness.programs(args);
+        if (args.length == 0) {
+            programs.clear();
+            programs.add(Harness.writeProgram("while-loop", WHILE_LOOP));
+            programs.add(new File(Harness.TEST_FOLDER, "test-basei-nested-procs.pl0"));
+            programs.add(new File(Harness.TEST_FOLDER, "test-multi1-rotate3.pl0"));
+        }
+        System.out.printf("%-32s%14s%14s%10s%n", "program (us/run)", "no debug",
+                "trace", "ratio");
+        for (File program : programs) {
+            DeclNode.ProcedureNode tree = Harness.compile(program);
+            if (tree == null) {
+                continue;
+            }
+            double plain = time(tree, false);
+            double traced = time(tree, true);
+            System.out.printf("%-32s%14.1f%14.1f%9.2fx%n", program.getName(),
+                    plain / 1000, traced / 1000, traced / plain);
+        }
+    }
+
+    /**
+     * Time the execution of a program, scaling the number of runs so that
+     * each measurement takes a similar time.
+     *
+     * @param debug whether to trace execution as with -d
+     */
+    private static double time(DeclNode.ProcedureNode tree, boolean debug) {
+        Errors errors = Harness.errors(debug);
+        Runnable run = () -> new Interpreter(errors, Harness.noInput(),
+                Harness.NULL_OUTPUT).executeCode(tree);
+        double estimate = Harness.nanosPerRun(1, 1, run);
+        int runs = (int) Math.max(5, Math.min(100000, 5e8 / estimate));
+        return Harness.nanosPerRun(runs, runs, run);
+    }
+}
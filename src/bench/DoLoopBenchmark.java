@@ -0,0 +1,84 @@
+package bench;
+
+import tree.DeclNode;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * class DoLoopBenchmark - measures the cost per iteration of a do loop as
+ * the number of its branches grows, for each of the execution engines.
+ * In each generated loop the branch executed on every iteration but the
+ * last is the last branch, so every guard is evaluated on each iteration.
+ * A final GCD style loop, whose three guards are mutually exclusive, shows
+ * the effect of the interpreters trying the most frequently true guard
+ * first.
+ * Usage: java bench.DoLoopBenchmark [maxBranches]
+ */
+public class DoLoopBenchmark {
+
+    /**
+     * Number of iterations of each loop
+     */
+    private static final int ITERATIONS = 100000;
+
+    public static void main(String[] args) throws IOException {
+        int maxBranches = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        System.out.printf("%-16s", "loop (ns/it)");
+        for (String name : EngineBenchmark.ENGINES.keySet()) {
+            System.out.printf("%12s", name);
+        }
+        System.out.println();
+        for (int branches = 2; branches <= maxBranches; branches *= 2) {
+            run(branches + " branches", program(branches));
+        }
+        run("gcd 3 branches", GCD);
+    }
+
+    private static void run(String name, String program) throws IOException {
+        File file = Harness.writeProgram("do", program);
+        DeclNode.ProcedureNode tree = Harness.compile(file);
+        if (tree == null) {
+            System.out.println(name + ": compile failed");
+            return;
+        }
+        System.out.printf("%-16s", name);
+        for (EngineBenchmark.EngineFactory factory :
+                EngineBenchmark.ENGINES.values()) {
+            System.out.printf("%12.1f",
+                    EngineBenchmark.time(factory, tree) / ITERATIONS);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Generate a loop with the given number of branches: an exit branch,
+     * branches whose guards are never true and the branch that counts
+     */
+    static String program(int branches) {
+        StringBuilder text = new StringBuilder("var i: int; n: int;\n")
+                .append("begin\n")
+                .append("  i := 0; n := ").append(ITERATIONS).append(";\n")
+                .append("  do i = n then write i exit\n");
+        for (int b = 2; b < branches; b++) {
+            text.append("  [] i = -").append(b).append(" then i := 0\n");
+        }
+        text.append("  [] i < n then i := i + 1\n")
+                .append("  od\n")
+                .append("end\n");
+        return text.toString();
+    }
+
+    /**
+     * Subtracting GCD loop in which the last guard is nearly always true
+     */
+    private static final String GCD =
+            "var x: int; y: int;\n" +
+            "begin\n" +
+            "  x := " + (ITERATIONS + 1) + "; y := 1;\n" +
+            "  do x < y then y := y - x\n" +
+            "  [] x = y then write x exit\n" +
+            "  [] y < x then x := x - y\n" +
+            "  od\n" +
+            "end\n";
+}
@@ -0,0 +1,136 @@
+package bench;
+
+import interpreter.ClosureInterpreter;
+import interpreter.Engine;
+import interpreter.Interpreter;
+import source.Errors;
+import tree.DeclNode;
+import vm.JvmMachine;
+import vm.RegisterMachine;
+import vm.StackMachine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * class EngineBenchmark - compares the execution time of the execution
+ * engines on the test programs that run to completion, plus a long
+ * running version of the while loop in test-basec-while1.pl0 and a
+ * program dominated by recursive procedure calls.
+ * Usage: java bench.EngineBenchmark [file.pl0 ...]
+ */
+public class EngineBenchmark {
+
+    /**
+     * Constructs an engine for a single run of a program
+     */
+    interface EngineFactory {
+        Engine create(Errors errors, InputStream in, PrintStream out);
+    }
+
+    /**
+     * The engines to compare; the first is the baseline
+     */
+    static final Map<String, EngineFactory> ENGINES =
+            new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("tree", Interpreter::new);
+        ENGINES.put("closure", ClosureInterpreter::new);
+        ENGINES.put("stack", StackMachine::new);
+        ENGINES.put("register", RegisterMachine::new);
+        ENGINES.put("jvm", JvmMachine::new);
+    }
+
+    /**
+     * Long running version of test-basec-while1.pl0
+     */
+    private static final String WHILE_LOOP =
+            "var x: int; i: int;\n" +
+            "begin\n" +
+            "  i := 1; x := 0;\n" +
+            "  while i < 1000000 do\n" +
+            "    begin x := x + i*i; i := i + 1 end;\n" +
+            "  write x\n" +
+            "end\n";
+
+    /**
+     * Repeated recursive descent to a depth of 500 calls
+     */
+    private static final String RECURSION =
+            "var n: int; total: int; i: int;\n" +
+            "procedure down() =\n" +
+            "  begin\n" +
+            "    if n = 0 then total := total + 1\n" +
+            "    else begin n := n - 1; call down(); n := n + 1 end\n" +
+            "  end;\n" +
+            "begin\n" +
+            "  i := 0; total := 0; n := 500;\n" +
+            "  while i < 1000 do begin call down(); i := i + 1 end;\n" +
+            "  write total\n" +
+            "end\n";
+
+    public static void main(String[] args) throws IOException {
+        List<File> programs = Harness.programs(args);
+        if (args.length == 0) {
+            programs.add(Harness.writeProgram("while-loop", WHILE_LOOP));
+            programs.add(Harness.writeProgram("recursion", RECURSION));
+        }
+        System.out.printf("%-32s", "program (us/run)");
+        for (String name : ENGINES.keySet()) {
+            System.out.printf("%12s", name);
+        }
+        System.out.printf("%12s%n", "speedup");
+        for (File program : programs) {
+            DeclNode.ProcedureNode tree = Harness.compile(program);
+            if (tree == null || !runs(tree)) {
+                continue;
+            }
+            System.out.printf("%-32s", program.getName());
+            double baseline = 0;
+            double best = Double.MAX_VALUE;
+            for (EngineFactory factory : ENGINES.values()) {
+                double nanos = time(factory, tree);
+                if (baseline == 0) {
+                    baseline = nanos;
+                }
+                best = Math.min(best, nanos);
+                System.out.printf("%12.1f", nanos / 1000);
+            }
+            System.out.printf("%11.2fx%n", baseline / best);
+        }
+    }
+
+    /**
+     * @return true iff the program runs to completion without input
+     */
+    private static boolean runs(DeclNode.ProcedureNode tree) {
+        try {
+            execute(ENGINES.values().iterator().next(), tree);
+            return true;
+        } catch (Error e) {
+            return false;
+        }
+    }
+
+    /**
+     * Time the execution of a program with one of the engines, scaling
+     * the number of runs so that each measurement takes a similar time.
+     */
+    static double time(EngineFactory factory, DeclNode.ProcedureNode tree) {
+        double estimate = Harness.nanosPerRun(1, 1, () -> execute(factory, tree));
+        int runs = (int) Math.max(5, Math.min(100000, 5e8 / estimate));
+        return Harness.nanosPerRun(runs, runs, () -> execute(factory, tree));
+    }
+
+    private static void execute(EngineFactory factory,
+                                DeclNode.ProcedureNode tree) {
+        factory.create(Harness.errors(false), Harness.noInput(),
+                Harness.NULL_OUTPUT).executeCode(tree);
+    }
+}
@@ -0,0 +1,155 @@
+package bench;
+
+import pl0.PL0_RD;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import source.Source;
+import syms.CompilerContext;
+import tree.DeclNode;
+import tree.StaticChecker;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * class Harness - support for the benchmarks: compiling programs outside of
+ * the normal Runner pipeline and timing repeated runs of a piece of code.
+ * The benchmarks are plain main programs so that they can be run without
+ * any additional libraries, e.g.
+ * java -cp bin:java-cup-11b.jar bench.EngineBenchmark
+ */
+public class Harness {
+
+    /**
+     * Folder containing the test programs
+     */
+    static final String TEST_FOLDER = "test-pgm";
+
+    /**
+     * Output stream that discards everything written to it
+     */
+    static final PrintStream NULL_OUTPUT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    /**
+     * @return an input stream with no input
+     */
+    static InputStream noInput() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    /**
+     * @param debug whether debugging messages are traced
+     * @return a new error handler, which discards its messages, for a run of
+     * a benchmarked program
+     */
+    static Errors errors(boolean debug) {
+        return new ErrorHandler(NULL_OUTPUT, null, debug);
+    }
+
+    /**
+     * Parse and statically check a program.
+     *
+     * @param file the PL0 source file
+     * @return the checked abstract syntax tree or null if it had errors
+     */
+    static DeclNode.ProcedureNode compile(File file) throws IOException {
+        Source source = MappedSource.map(file,
+                file.getCanonicalPath());
+        Errors errors = new ErrorHandler(NULL_OUTPUT, source, false);
+        CompilerContext context = new CompilerContext(errors, source);
+        DeclNode.ProcedureNode tree = new PL0_RD().parse(context);
+        if (tree == null || errors.hadErrors()) {
+            return null;
+        }
+        new StaticChecker(context).visitProgramNode(tree);
+        return errors.hadErrors() ? null : tree;
+    }
+
+    /**
+     * Write a generated program to a temporary file
+     */
+    static File writeProgram(String name, String text) throws IOException {
+        File directory = Files.createTempDirectory("pl0-bench").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, name + ".pl0");
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes());
+        return file;
+    }
+
+    /**
+     * @return the programs named on the command line, or else all of the
+     * test programs
+     */
+    static List<File> programs(String[] args) {
+        List<File> files = new ArrayList<>();
+        if (args.length > 0) {
+            for (String arg : args) {
+                files.add(new File(arg));
+            }
+            return files;
+        }
+        File[] tests = new File(TEST_FOLDER)
+                .listFiles(f -> f.isFile() && f.getName().endsWith(".pl0"));
+        if (tests != null) {
+            Arrays.sort(tests);
+            files.addAll(Arrays.asList(tests));
+        }
+        return files;
+    }
+
+    /**
+     * Time a piece of code after first running it to warm up the JIT.
+     *
+     * @param warmups number of untimed runs
+     * @param runs    number of timed runs
+     * @param body    code to time
+     * @return average time per run in nanoseconds
+     */
+    static double nanosPerRun(int warmups, int runs, Runnable body) {
+        for (int i = 0; i < warmups; i++) {
+            body.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            body.run();
+        }
+        return (double) (System.nanoTime() - start) / runs;
+    }
+
+    /**
+     * Measure the memory allocated by a piece of code on the current
+     * thread, after first running it to warm up the JIT.
+     *
+     * @param body code to measure
+     * @return number of bytes allocated by one run
+     */
+    static long bytesAllocated(Runnable body) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        body.run();
+        long before = threads.getThreadAllocatedBytes(thread);
+        body.run();
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+}
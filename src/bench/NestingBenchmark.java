@@ -0,0 +1,72 @@
+package bench;
+
+import interpreter.ClosureInterpreter;
+import interpreter.Interpreter;
+import tree.DeclNode;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * class NestingBenchmark - measures the cost of accessing a main program
+ * variable from a procedure nested at increasing depths, for the engines
+ * that address frames through interpreter.RuntimeStack. The generated
+ * program for depth d nests procedures p1 to pd and runs a loop in pd
+ * that reads and writes the main program's variable x on each iteration.
+ * With display addressing the time per iteration should stay flat as the
+ * depth grows.
+ * Usage: java bench.NestingBenchmark [maxDepth]
+ */
+public class NestingBenchmark {
+
+    /**
+     * Number of loop iterations in the innermost procedure
+     */
+    private static final int ITERATIONS = 100000;
+
+    public static void main(String[] args) throws IOException {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        System.out.printf("%-8s%16s%16s%n", "depth", "tree (ns/it)",
+                "closure (ns/it)");
+        for (int depth = 1; depth <= maxDepth; depth *= 2) {
+            File file = Harness.writeProgram("nest" + depth, program(depth));
+            DeclNode.ProcedureNode tree = Harness.compile(file);
+            if (tree == null) {
+                System.out.println("depth " + depth + ": compile failed");
+                return;
+            }
+            double treeNanos = Harness.nanosPerRun(3, 10, () ->
+                    new Interpreter(Harness.errors(false),
+                            Harness.noInput(), Harness.NULL_OUTPUT)
+                            .executeCode(tree));
+            double closureNanos = Harness.nanosPerRun(20, 100, () ->
+                    new ClosureInterpreter(Harness.errors(false),
+                            Harness.noInput(), Harness.NULL_OUTPUT)
+                            .executeCode(tree));
+            System.out.printf("%-8d%16.1f%16.1f%n", depth,
+                    treeNanos / ITERATIONS, closureNanos / ITERATIONS);
+        }
+    }
+
+    /**
+     * Generate a program with procedures nested to the given depth
+     */
+    static String program(int depth) {
+        StringBuilder text = new StringBuilder("var x: int;\n");
+        for (int level = 1; level <= depth; level++) {
+            text.append("procedure p").append(level).append("() =\n");
+        }
+        text.append("  var i: int;\n")
+                .append("  begin\n")
+                .append("    i := 0;\n")
+                .append("    while i < ").append(ITERATIONS).append(" do\n")
+                .append("      begin x := x + 1; i := i + 1 end\n")
+                .append("  end;\n");
+        for (int level = depth - 1; level >= 1; level--) {
+            text.append("  begin call p").append(level + 1)
+                    .append("() end;\n");
+        }
+        text.append("begin x := 0; call p1(); write x end\n");
+        return text.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import parse.ParallelScanner;
+import parse.TokenBuffer;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * class ParallelScannerBenchmark - measures how scanning a large generated
+ * program into a token buffer with ParallelScanner scales with the number
+ * of threads, from one up to the number of available processors.
+ * Usage: java bench.ParallelScannerBenchmark [procedures [maxThreads]]
+ */
+public class ParallelScannerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        File file = Harness.writeProgram("scan",
+                ScannerBenchmark.program(procedures));
+        System.out.printf("%s: %.1f MB%n", file.getName(),
+                file.length() / 1e6);
+        System.out.printf("%-10s%12s%14s%10s%n", "threads", "ms",
+                "Mtokens/s", "speedup");
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            int[] tokens = new int[1];
+            double nanos = Harness.nanosPerRun(5, 10,
+                    () -> tokens[0] = scan(file, pool).size());
+            pool.shutdown();
+            if (threads == 1) {
+                single = nanos;
+            }
+            System.out.printf("%-10d%12.1f%14.1f%10.2f%n", threads,
+                    nanos / 1e6, tokens[0] / nanos * 1e3, single / nanos);
+        }
+    }
+
+    private static TokenBuffer scan(File file, ForkJoinPool pool) {
+        try {
+            MappedSource source = MappedSource.map(file, file.getPath());
+            Errors errors = new ErrorHandler(Harness.NULL_OUTPUT, source,
+                    false);
+            return ParallelScanner.scan(new CompilerContext(errors, source),
+                    pool);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import parse.ParallelScanner;
+import parse.Parser;
+import parse.TokenBuffer;
+import parse.TokenStream;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * class ParserAllocationBenchmark - measures the memory allocated by the
+ * parser alone, per token, for a large generated program whose tokens have
+ * already been scanned into a buffer, along with the time to parse it.
+ * What remains once the parse rules allocate nothing of their own is the
+ * tree, its locations, and the symbol table.
+ * Usage: java bench.ParserAllocationBenchmark [procedures]
+ */
+public class ParserAllocationBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File file = Harness.writeProgram("parse",
+                ScannerBenchmark.program(procedures));
+        MappedSource source = MappedSource.map(file, file.getPath());
+        Errors errors = new ErrorHandler(Harness.NULL_OUTPUT, source, false);
+        CompilerContext context = new CompilerContext(errors, source);
+        TokenBuffer tokens = ParallelScanner.scan(context,
+                ForkJoinPool.commonPool());
+        System.out.printf("%s: %.1f MB, %d tokens%n", file.getName(),
+                file.length() / 1e6, tokens.size());
+        Runnable parse = () -> {
+            new Parser(new TokenStream(tokens, context), context).parseMain();
+            if (errors.hadErrors()) {
+                throw new IllegalStateException("generated program has errors");
+            }
+        };
+        double nanos = Harness.nanosPerRun(5, 10, parse);
+        long bytes = Harness.bytesAllocated(parse);
+        System.out.printf("%-10s%12s%12s%n", "", "ms", "B/token");
+        System.out.printf("%-10s%12.1f%12.1f%n", "parse", nanos / 1e6,
+                (double) bytes / tokens.size());
+    }
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import parse.LexicalToken;
+import parse.Parser;
+import parse.PipelinedScanner;
+import parse.Scanner;
+import parse.TokenStream;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * class PipelineBenchmark - compares the time to parse a large generated
+ * program with the scanner called by the parser and with the scanner
+ * running on a thread of its own, pipelined with the parser, against the
+ * time to scan it alone. With two or more processors the pipelined time
+ * should approach the greater of the scanning and parsing times rather
+ * than their sum.
+ * Usage: java bench.PipelineBenchmark [procedures]
+ */
+public class PipelineBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File file = Harness.writeProgram("parse",
+                ScannerBenchmark.program(procedures));
+        System.out.printf("%s: %.1f MB, %d processors%n", file.getName(),
+                file.length() / 1e6,
+                Runtime.getRuntime().availableProcessors());
+        double scan = Harness.nanosPerRun(5, 10,
+                () -> ScannerBenchmark.scan(map(file)));
+        double sequential = Harness.nanosPerRun(5, 10,
+                () -> parse(file, false));
+        double pipelined = Harness.nanosPerRun(5, 10,
+                () -> parse(file, true));
+        System.out.printf("%-24s%10.1f ms%n", "scan", scan / 1e6);
+        System.out.printf("%-24s%10.1f ms%n", "scan and parse", sequential / 1e6);
+        System.out.printf("%-24s%10.1f ms%n", "  of which parse",
+                (sequential - scan) / 1e6);
+        System.out.printf("%-24s%10.1f ms%n", "pipelined", pipelined / 1e6);
+    }
+
+    private static void parse(File file, boolean pipelined) {
+        MappedSource source = map(file);
+        Errors errors = new ErrorHandler(Harness.NULL_OUTPUT, source, false);
+        CompilerContext context = new CompilerContext(errors, source);
+        Iterator<LexicalToken> lex = pipelined
+                ? PipelinedScanner.start(context) : new Scanner(context);
+        new Parser(new TokenStream(lex, context), context).parseMain();
+        if (errors.hadErrors()) {
+            throw new IllegalStateException("generated program has errors");
+        }
+    }
+
+    private static MappedSource map(File file) {
+        try {
+            return MappedSource.map(file, file.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
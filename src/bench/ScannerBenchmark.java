@@ -0,0 +1,116 @@
+package bench;
+
+import parse.Scanner;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import source.Source;
+import syms.CompilerContext;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * class ScannerBenchmark - measures the throughput of the scanner, in
+ * tokens per second, on a large generated program, both for a source file
+ * that is memory-mapped and scanned in place and for one read as
+ * characters through a stream, as standard input is. The memory allocated
+ * per token is also reported.
+ * Usage: java bench.ScannerBenchmark [procedures]
+ */
+public class ScannerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File file = Harness.writeProgram("scan", program(procedures));
+        long tokens = scan(MappedSource.map(file, file.getPath()));
+        System.out.printf("%s: %d bytes, %d tokens%n", file.getName(),
+                file.length(), tokens);
+        System.out.printf("%-10s%14s%12s%12s%n", "source", "Mtokens/s",
+                "MB/s", "B/token");
+        report("mapped", file, tokens, () -> scan(map(file)));
+        report("stream", file, tokens, () -> scan(stream(file)));
+    }
+
+    private static void report(String name, File file, long tokens,
+                               Runnable body) {
+        double seconds = Harness.nanosPerRun(5, 10, body) / 1e9;
+        long bytes = Harness.bytesAllocated(body);
+        System.out.printf("%-10s%14.1f%12.1f%12.1f%n", name,
+                tokens / seconds / 1e6, file.length() / seconds / 1e6,
+                (double) bytes / tokens);
+    }
+
+    /**
+     * Scan the whole of a source
+     *
+     * @return the number of tokens, not counting the end of file
+     */
+    static long scan(Source source) {
+        Errors errors = new ErrorHandler(Harness.NULL_OUTPUT, source, false);
+        Scanner scanner = new Scanner(new CompilerContext(errors, source));
+        long tokens = 0;
+        while (scanner.hasNext()) {
+            scanner.next();
+            tokens++;
+        }
+        return tokens;
+    }
+
+    private static Source map(File file) {
+        try {
+            return MappedSource.map(file, file.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Source stream(File file) {
+        try {
+            return new Source(new FileInputStream(file), file.getPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generate a valid program with the given number of procedures, with a
+     * comment on each procedure
+     */
+    static String program(int procedures) {
+        StringBuilder text = new StringBuilder("const limit = 1000;\n")
+                .append("type small = [0..limit];\n")
+                .append("var total: int; flag: boolean;\n");
+        for (int p = 0; p < procedures; p++) {
+            text.append("// procedure ").append(p).append(" sums a sequence\n")
+                    .append("procedure sum").append(p).append("() =\n")
+                    .append("  var i: small; acc").append(p).append(": int;\n")
+                    .append("  begin\n")
+                    .append("    i := 0; acc").append(p).append(" := ")
+                    .append(p).append(";\n")
+                    .append("    while i < limit do\n")
+                    .append("      begin\n")
+                    .append("        acc").append(p).append(" := (acc")
+                    .append(p).append(" + i * 3 - 7) / 2;\n")
+                    .append("        if i != ").append(p % 97)
+                    .append(" then i := i + 1 else i := i + 2\n")
+                    .append("      end;\n")
+                    .append("    do acc").append(p).append(" <= 0 then skip exit\n")
+                    .append("    [] acc").append(p).append(" > 0 then acc")
+                    .append(p).append(" := acc").append(p).append(" - 1\n")
+                    .append("    od;\n")
+                    .append("    total := total + acc").append(p).append("\n")
+                    .append("  end;\n");
+        }
+        text.append("begin\n")
+                .append("  total := 0;\n");
+        for (int p = 0; p < procedures; p++) {
+            text.append("  call sum").append(p).append("();\n");
+        }
+        text.append("  write total\n")
+                .append("end\n");
+        return text.toString();
+    }
+}
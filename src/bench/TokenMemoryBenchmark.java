@@ -0,0 +1,118 @@
+package bench;
+
+import parse.LexicalToken;
+import parse.ParallelScanner;
+import parse.Parser;
+import parse.Scanner;
+import parse.TokenBuffer;
+import parse.TokenStream;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * class TokenMemoryBenchmark - compares the memory taken by the tokens of a
+ * large generated program when held as token objects, one with its own
+ * location per token, and when packed into the parallel arrays of a
+ * TokenBuffer. Reported are the bytes per token retained by all the tokens
+ * of the program, and the bytes per token allocated while parsing it from
+ * a Scanner and from a TokenBuffer.
+ * Usage: java bench.TokenMemoryBenchmark [procedures]
+ */
+public class TokenMemoryBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int procedures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File file = Harness.writeProgram("tokens",
+                ScannerBenchmark.program(procedures));
+        int tokens = scanBuffer(file).size();
+        System.out.printf("%s: %.1f MB, %d tokens%n", file.getName(),
+                file.length() / 1e6, tokens);
+        System.out.printf("%-14s%16s%16s%n", "tokens", "retained B/token",
+                "parse B/token");
+        report("objects", tokens, () -> scanObjects(file),
+                () -> parse(file, false));
+        report("packed", tokens, () -> scanBuffer(file),
+                () -> parse(file, true));
+    }
+
+    private static void report(String name, int tokens, Scan scan,
+                               Runnable parse) {
+        /* Warm up, so that only the tokens are left in the difference */
+        parse.run();
+        long before = usedAfterGc();
+        Object retained = scan.run();
+        long after = usedAfterGc();
+        if (retained == null) {
+            throw new IllegalStateException("tokens collected");
+        }
+        long allocated = Harness.bytesAllocated(parse);
+        System.out.printf("%-14s%16.1f%16.1f%n", name,
+                (double) (after - before) / tokens,
+                (double) allocated / tokens);
+    }
+
+    private interface Scan {
+        Object run();
+    }
+
+    /**
+     * @return the tokens of a program as a list of token objects
+     */
+    private static List<LexicalToken> scanObjects(File file) {
+        Scanner scanner = new Scanner(context(file));
+        List<LexicalToken> tokens = new ArrayList<>();
+        LexicalToken token;
+        do {
+            token = scanner.next();
+            tokens.add(token);
+        } while (scanner.hasNext());
+        tokens.add(token);
+        return tokens;
+    }
+
+    /**
+     * @return the tokens of a program packed into a buffer
+     */
+    private static TokenBuffer scanBuffer(File file) {
+        return ParallelScanner.scan(context(file), ForkJoinPool.commonPool());
+    }
+
+    private static void parse(File file, boolean packed) {
+        CompilerContext context = context(file);
+        TokenStream tokens = packed
+                ? new TokenStream(scanBuffer(file), context)
+                : new TokenStream(new Scanner(context), context);
+        new Parser(tokens, context).parseMain();
+        if (context.getErrors().hadErrors()) {
+            throw new IllegalStateException("generated program has errors");
+        }
+    }
+
+    private static CompilerContext context(File file) {
+        try {
+            MappedSource source = MappedSource.map(file, file.getPath());
+            Errors errors = new ErrorHandler(Harness.NULL_OUTPUT, source,
+                    false);
+            return new CompilerContext(errors, source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,97 @@
+package image;
+
+/**
+ * class ImageFormat - constants of the binary form of a checked program,
+ * as written by ImageWriter and read back by ImageReader, and stored in
+ * .pl0c program image files and in the compile cache.
+ * <p>
+ * An image is a sequence of big-endian ints:
+ * <pre>
+ *   MAGIC VERSION CHECKSUM
+ *   constant pool: string count, then for each string its length and
+ *     UTF-8 bytes
+ *   location side table: location count, then for each location its line
+ *     and column, used only to report errors
+ *   type count, then for each type its kind and fields
+ *   procedure count, then for each procedure its name, location,
+ *     index of its parent (-1 for the main program), level of its local
+ *     scope, variable space and variables, each a name, location,
+ *     reference type and offset
+ *   code length, then the code of each procedure in procedure order
+ * </pre>
+ * The checksum is the CRC-32 of the rest of the image, so that an image
+ * that has been damaged is rejected before anything is built from it.
+ * Strings, locations and types are referred to by their index in their
+ * table, with -1 for none, so each distinct location is built only once.
+ * Types refer only to types before them.
+ * The code of a procedure is the location of its block, the indices of the
+ * procedures declared in it, and then its body. Statements and expressions
+ * are flattened in pre-order: an opcode followed by the operands of the
+ * node and then its children.
+ */
+final class ImageFormat {
+
+    /**
+     * First int of every image, "PL0C"
+     */
+    static final int MAGIC = 0x504C3043;
+    /**
+     * Version of the format, incremented whenever it changes
+     */
+    static final int VERSION = 2;
+    /**
+     * Size of the header of an image: its magic number, version and checksum
+     */
+    static final int HEADER_SIZE = 4 * 3;
+
+    /* Kinds of types */
+    static final int TYPE_INT = 0;
+    static final int TYPE_BOOLEAN = 1;
+    static final int TYPE_ERROR = 2;
+    /** name, base type, lower bound, upper bound */
+    static final int TYPE_SUBRANGE = 3;
+    /** base type */
+    static final int TYPE_REFERENCE = 4;
+
+    /* Statement opcodes, each followed by the location of the statement */
+    static final int STATEMENT_ERROR = 0;
+    /** statement count, statements */
+    static final int STATEMENT_LIST = 1;
+    /** pair count, left values, then expressions */
+    static final int STATEMENT_ASSIGNMENT = 2;
+    /** left value */
+    static final int STATEMENT_READ = 3;
+    /** expression */
+    static final int STATEMENT_WRITE = 4;
+    /** procedure index */
+    static final int STATEMENT_CALL = 5;
+    /** condition, then statement, else statement */
+    static final int STATEMENT_IF = 6;
+    /** condition, loop statement */
+    static final int STATEMENT_WHILE = 7;
+    static final int STATEMENT_SKIP = 8;
+    /** branch count, then for each branch its location, exit flag,
+     * condition and statement */
+    static final int STATEMENT_DO = 9;
+
+    /* Expression opcodes */
+    /** location */
+    static final int EXP_ERROR = 0;
+    /** location, type, value */
+    static final int EXP_CONST = 1;
+    /** location, variable index in procedure order */
+    static final int EXP_VARIABLE = 2;
+    /** location, operator, type, left, right */
+    static final int EXP_BINARY = 3;
+    /** location, operator, type, argument */
+    static final int EXP_UNARY = 4;
+    /** left value */
+    static final int EXP_DEREFERENCE = 5;
+    /** subrange type, expression */
+    static final int EXP_NARROW_SUBRANGE = 6;
+    /** expression */
+    static final int EXP_WIDEN_SUBRANGE = 7;
+
+    private ImageFormat() {
+    }
+}
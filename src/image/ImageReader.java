@@ -0,0 +1,537 @@
+package image;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.ErrorHandler;
+import source.Errors;
+import syms.CompilerContext;
+import syms.Scope;
+import syms.SymEntry;
+import syms.Type;
+import tree.ConstExp;
+import tree.DeclNode;
+import tree.ExpNode;
+import tree.Operator;
+import tree.StatementNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static image.ImageFormat.*;
+
+/**
+ * class ImageReader - rebuilds a statically checked program from the
+ * binary form written by ImageWriter. The program is rebuilt within a new
+ * compilation, using its predefined types, so that it can be executed by
+ * any of the engines exactly as if it had just been parsed and checked.
+ * <p>
+ * An image is only read if its checksum matches, and the references of
+ * the program are checked as it is rebuilt, so that no image, however
+ * damaged or contrived, can address a variable outside the frame of its
+ * procedure or a frame that is not on the static chain of the code using
+ * it. Such an image is reported as malformed instead.
+ */
+public final class ImageReader {
+
+    private static final Operator[] OPERATORS = Operator.values();
+
+    private static final Comparator<SymEntry> BY_NAME =
+            Comparator.comparing(SymEntry::getIdent);
+
+    /**
+     * Compilation the program is rebuilt in
+     */
+    private final CompilerContext context;
+    private final Errors errors;
+    /**
+     * Image being read, positioned at the next int to read
+     */
+    private final ByteBuffer image;
+
+    /* Tables of the image */
+    private String[] strings;
+    private Location[] locations;
+    private Type[] types;
+    private SymEntry.ProcedureEntry[] procedures;
+    private SymEntry.VarEntry[] variables;
+    /**
+     * Index of the parent of each procedure, -1 for the main program
+     */
+    private int[] parents;
+    /**
+     * Index of the procedure declaring each variable
+     */
+    private int[] owners;
+    /**
+     * Index of the procedure whose code is being read
+     */
+    private int current;
+
+    private ImageReader(ByteBuffer image, CompilerContext context) {
+        this.image = image;
+        this.context = context;
+        this.errors = context.getErrors();
+    }
+
+    /**
+     * Read a program written by ImageWriter
+     *
+     * @param image   the image, from its current position
+     * @param context the compilation to rebuild the program in
+     * @return the main program
+     * @throws IOException if the image is not of the current version of the
+     *                     format, is damaged or is malformed
+     */
+    public static DeclNode.ProcedureNode read(ByteBuffer image,
+                                              CompilerContext context)
+            throws IOException {
+        ImageReader reader = new ImageReader(image, context);
+        if (image.remaining() < 8 || image.getInt() != MAGIC) {
+            throw new IOException("Not a program image");
+        }
+        int version = image.getInt();
+        if (version != VERSION) {
+            throw new IOException("Program image version " + version
+                    + " is not the supported version " + VERSION);
+        }
+        if (image.remaining() < 4) {
+            throw new IOException("Program image has no checksum");
+        }
+        int checksum = image.getInt();
+        if (checksum != checksum(image)) {
+            throw new IOException("Program image checksum mismatch");
+        }
+        try {
+            return reader.readProgram();
+        } catch (RuntimeException | StackOverflowError e) {
+            /* An index out of range, a type of the wrong kind, the image
+             * ending early, or code nested too deeply to rebuild */
+            throw new IOException("Malformed program image", e);
+        }
+    }
+
+    /**
+     * Load a program from an image file. The file is memory-mapped rather
+     * than read into the heap, and only the program is built from it.
+     *
+     * @param file    the image file
+     * @param context the compilation to rebuild the program in
+     * @return the main program
+     * @throws IOException if the file cannot be read or is not a valid image
+     */
+    public static DeclNode.ProcedureNode load(File file,
+                                              CompilerContext context)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()), context);
+        }
+    }
+
+    /**
+     * @return the CRC-32 of the remainder of an image, leaving its position
+     * unchanged
+     */
+    private static int checksum(ByteBuffer image) {
+        CRC32 crc = new CRC32();
+        crc.update(image.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private DeclNode.ProcedureNode readProgram() throws IOException {
+        readStrings();
+        readLocations();
+        readTypes();
+        readProcedures();
+        int length = count(4);
+        int end = image.position() + 4 * length;
+        StatementNode.BlockNode[] blocks =
+                new StatementNode.BlockNode[procedures.length];
+        int[][] declared = new int[procedures.length][];
+        /* Each procedure but the main program is declared exactly once,
+         * in the block of its parent */
+        boolean[] isDeclared = new boolean[procedures.length];
+        for (int p = 0; p < procedures.length; p++) {
+            current = p;
+            Location loc = location();
+            declared[p] = new int[count(4)];
+            for (int i = 0; i < declared[p].length; i++) {
+                int d = image.getInt();
+                if (d <= 0 || d >= procedures.length || parents[d] != p
+                        || isDeclared[d]) {
+                    throw new IOException("Malformed declaration of procedure "
+                            + d + " in " + procedures[p].getIdent());
+                }
+                isDeclared[d] = true;
+                declared[p][i] = d;
+            }
+            blocks[p] = new StatementNode.BlockNode(loc,
+                    new DeclNode.DeclListNode(), statement(),
+                    procedures[p].getLocalScope());
+            procedures[p].setBlock(blocks[p]);
+        }
+        if (image.position() != end) {
+            throw new IOException("Program image code length mismatch");
+        }
+        for (int p = 1; p < procedures.length; p++) {
+            if (!isDeclared[p]) {
+                throw new IOException("Procedure " + procedures[p].getIdent()
+                        + " is not declared");
+            }
+        }
+        /* Procedures are declared once all their blocks exist */
+        for (int p = 0; p < procedures.length; p++) {
+            for (int d : declared[p]) {
+                blocks[p].getProcedures().addDeclaration(
+                        new DeclNode.ProcedureNode(procedures[d], blocks[d]));
+            }
+        }
+        return new DeclNode.ProcedureNode(procedures[0], blocks[0]);
+    }
+
+    /* Tables */
+
+    private void readStrings() throws IOException {
+        strings = new String[count(4)];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int length = count(1);
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            image.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void readLocations() throws IOException {
+        locations = new Location[count(8)];
+        for (int i = 0; i < locations.length; i++) {
+            int line = image.getInt();
+            locations[i] = new Location(line, image.getInt());
+        }
+    }
+
+    private void readTypes() throws IOException {
+        types = new Type[count(4)];
+        for (int i = 0; i < types.length; i++) {
+            int kind = image.getInt();
+            Type type;
+            switch (kind) {
+                case TYPE_INT:
+                    type = context.getIntegerType();
+                    break;
+                case TYPE_BOOLEAN:
+                    type = context.getBooleanType();
+                    break;
+                case TYPE_ERROR:
+                    type = Type.ERROR_TYPE;
+                    break;
+                case TYPE_SUBRANGE: {
+                    String name = string();
+                    Type base = type();
+                    int lower = image.getInt();
+                    int upper = image.getInt();
+                    type = new Type.SubrangeType(
+                            new ConstExp.NumberNode(ErrorHandler.NO_LOCATION,
+                                    base, lower),
+                            new ConstExp.NumberNode(ErrorHandler.NO_LOCATION,
+                                    base, upper)).resolveType(errors);
+                    if (name != null) {
+                        type.setName(name);
+                    }
+                    break;
+                }
+                case TYPE_REFERENCE:
+                    type = new Type.ReferenceType(type()).resolveType(errors);
+                    break;
+                default:
+                    throw new IOException("Unknown type kind " + kind);
+            }
+            types[i] = type;
+        }
+    }
+
+    /**
+     * Read the procedure table and build the scopes of the procedures.
+     * Each scope is built directly from an array of its entries, sorted
+     * by name, with its variables already allocated, rather than by adding
+     * and resolving its entries one by one.
+     */
+    private void readProcedures() throws IOException {
+        /* A name, location, parent, level, variable space and count */
+        procedures = new SymEntry.ProcedureEntry[count(4 * 6)];
+        parents = new int[procedures.length];
+        int[] levels = new int[procedures.length];
+        int[] variableSpaces = new int[procedures.length];
+        /* Number of entries in the scope of each procedure */
+        int[] sizes = new int[procedures.length];
+        int[] firstVariables = new int[procedures.length + 1];
+        List<SymEntry.VarEntry> allVariables = new ArrayList<>();
+        for (int p = 0; p < procedures.length; p++) {
+            String name = string();
+            procedures[p] = new SymEntry.ProcedureEntry(name, location());
+            parents[p] = image.getInt();
+            levels[p] = image.getInt();
+            variableSpaces[p] = image.getInt();
+            if (p == 0 ? parents[p] != -1 : parents[p] < 0 || parents[p] >= p) {
+                throw new IOException("Procedure " + name
+                        + " does not follow its parent");
+            }
+            if (p > 0) {
+                sizes[parents[p]]++;
+            }
+            firstVariables[p] = allVariables.size();
+            /* The variables fill the frame of the procedure exactly */
+            int space = 0;
+            for (int v = count(4 * 4); v > 0; v--) {
+                String ident = string();
+                Location loc = location();
+                Type.ReferenceType type = (Type.ReferenceType) type();
+                int offset = image.getInt();
+                int size = type.getBaseType().getSpace();
+                if (offset < 0 || offset > variableSpaces[p] - size) {
+                    throw new IOException("Variable " + ident
+                            + " lies outside the frame of " + name);
+                }
+                space += size;
+                allVariables.add(new SymEntry.VarEntry(ident, loc, type,
+                        offset));
+            }
+            if (space != variableSpaces[p]) {
+                throw new IOException("Variable space of " + name
+                        + " does not match its variables");
+            }
+        }
+        firstVariables[procedures.length] = allVariables.size();
+        variables = allVariables.toArray(new SymEntry.VarEntry[0]);
+        owners = new int[variables.length];
+        for (int p = 0; p < procedures.length; p++) {
+            Arrays.fill(owners, firstVariables[p], firstVariables[p + 1], p);
+        }
+        /* The entries of each scope are its variables and the procedures
+         * declared in it */
+        SymEntry[][] entries = new SymEntry[procedures.length][];
+        for (int p = 0; p < procedures.length; p++) {
+            int count = firstVariables[p + 1] - firstVariables[p];
+            entries[p] = new SymEntry[count + sizes[p]];
+            System.arraycopy(variables, firstVariables[p], entries[p], 0,
+                    count);
+            sizes[p] = count;
+        }
+        for (int p = 1; p < procedures.length; p++) {
+            entries[parents[p]][sizes[parents[p]]++] = procedures[p];
+        }
+        /* The main program is the only entry of an otherwise empty
+         * predefined scope, as no predefined entry is needed to run it */
+        SymEntry.ProcedureEntry predefined = new SymEntry.ProcedureEntry(
+                "<predefined>", ErrorHandler.NO_LOCATION, null);
+        Scope predefinedScope = new Scope(context, null, 0, predefined,
+                new SymEntry[]{procedures[0]}, 0);
+        for (int p = 0; p < procedures.length; p++) {
+            Scope parent = p == 0 ? predefinedScope
+                    : procedures[parents[p]].getLocalScope();
+            if (levels[p] != parent.getLevel() + 1) {
+                throw new IOException("Malformed level of procedure "
+                        + procedures[p].getIdent());
+            }
+            Arrays.sort(entries[p], BY_NAME);
+            for (int i = 1; i < entries[p].length; i++) {
+                if (entries[p][i - 1].getIdent().equals(
+                        entries[p][i].getIdent())) {
+                    throw new IOException("Duplicate entry "
+                            + entries[p][i].getIdent());
+                }
+            }
+            new Scope(context, parent, levels[p], procedures[p], entries[p],
+                    variableSpaces[p]);
+        }
+    }
+
+    /**
+     * Read the number of elements of a table or list, and check that the
+     * rest of the image can hold them, before anything is allocated for them
+     *
+     * @param minSize the least number of bytes each element is encoded in
+     * @return the number of elements
+     * @throws IOException if the number is negative, or too many elements
+     *                     to fit in the rest of the image
+     */
+    private int count(int minSize) throws IOException {
+        int count = image.getInt();
+        if (count < 0 || count > image.remaining() / minSize) {
+            throw new IOException("Malformed count " + count
+                    + " in program image");
+        }
+        return count;
+    }
+
+    private String string() {
+        int index = image.getInt();
+        return index < 0 ? null : strings[index];
+    }
+
+    private Location location() {
+        int index = image.getInt();
+        return index < 0 ? null : locations[index];
+    }
+
+    private Type type() {
+        return types[image.getInt()];
+    }
+
+    /**
+     * @return whether the entries declared in a procedure are in scope in
+     * the procedure whose code is being read, i.e. whether it is on the
+     * static chain of the current procedure
+     */
+    private boolean inScope(int procedure) {
+        for (int p = current; p >= 0; p = parents[p]) {
+            if (p == procedure) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Code */
+
+    private StatementNode statement() throws IOException {
+        int opcode = image.getInt();
+        Location loc = location();
+        switch (opcode) {
+            case STATEMENT_ERROR:
+                return new StatementNode.ErrorNode(loc);
+            case STATEMENT_LIST: {
+                List<StatementNode> statements = new ArrayList<>();
+                for (int n = count(4 * 2); n > 0; n--) {
+                    statements.add(statement());
+                }
+                return new StatementNode.ListNode(loc, statements);
+            }
+            case STATEMENT_ASSIGNMENT: {
+                /* Each pair is at least two expressions */
+                int n = count(4 * 2 * 2);
+                List<ExpNode> left = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    left.add(expression());
+                }
+                List<ExpNode> right = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    right.add(expression());
+                }
+                return new StatementNode.AssignmentNode(loc, left, right);
+            }
+            case STATEMENT_READ:
+                return new StatementNode.ReadNode(loc, expression());
+            case STATEMENT_WRITE:
+                return new StatementNode.WriteNode(loc, expression());
+            case STATEMENT_CALL: {
+                int callee = image.getInt();
+                /* The main program cannot be called */
+                if (callee <= 0 || callee >= procedures.length
+                        || !inScope(parents[callee])) {
+                    throw new IOException("Call of procedure " + callee
+                            + " out of scope");
+                }
+                SymEntry.ProcedureEntry entry = procedures[callee];
+                StatementNode.CallNode call =
+                        new StatementNode.CallNode(loc, entry.getIdent());
+                call.setEntry(entry);
+                return call;
+            }
+            case STATEMENT_IF: {
+                ExpNode condition = expression();
+                StatementNode thenStmt = statement();
+                return new StatementNode.IfNode(loc, condition, thenStmt,
+                        statement());
+            }
+            case STATEMENT_WHILE: {
+                ExpNode condition = expression();
+                return new StatementNode.WhileNode(loc, condition,
+                        statement());
+            }
+            case STATEMENT_SKIP:
+                return new StatementNode.SkipNode(loc);
+            case STATEMENT_DO: {
+                List<StatementNode.DoBranchNode> branches = new ArrayList<>();
+                /* A location, exit flag, condition and statement */
+                for (int n = count(4 * 6); n > 0; n--) {
+                    Location branchLoc = location();
+                    boolean exit = image.getInt() != 0;
+                    ExpNode condition = expression();
+                    branches.add(new StatementNode.DoBranchNode(branchLoc,
+                            condition, statement(), exit));
+                }
+                return new StatementNode.DoNode(loc, branches);
+            }
+            default:
+                throw new IOException("Unknown statement opcode " + opcode);
+        }
+    }
+
+    private ExpNode expression() throws IOException {
+        int opcode = image.getInt();
+        switch (opcode) {
+            case EXP_ERROR:
+                return new ExpNode.ErrorNode(location());
+            case EXP_CONST: {
+                Location loc = location();
+                Type type = type();
+                return new ExpNode.ConstNode(loc, type, image.getInt());
+            }
+            case EXP_VARIABLE: {
+                Location loc = location();
+                int variable = image.getInt();
+                if (variable < 0 || variable >= variables.length
+                        || !inScope(owners[variable])) {
+                    throw new IOException("Variable " + variable
+                            + " out of scope");
+                }
+                return new ExpNode.VariableNode(loc, variables[variable]);
+            }
+            case EXP_BINARY: {
+                Location loc = location();
+                Operator op = OPERATORS[image.getInt()];
+                Type type = type();
+                ExpNode left = expression();
+                ExpNode node = new ExpNode.BinaryNode(loc, op, left,
+                        expression());
+                node.setType(type);
+                return node;
+            }
+            case EXP_UNARY: {
+                Location loc = location();
+                Operator op = OPERATORS[image.getInt()];
+                Type type = type();
+                ExpNode node = new ExpNode.UnaryNode(loc, op, expression());
+                node.setType(type);
+                return node;
+            }
+            case EXP_DEREFERENCE: {
+                ExpNode leftValue = expression();
+                if (!(leftValue.getType() instanceof Type.ReferenceType)) {
+                    throw new IOException("Dereference of a value");
+                }
+                return new ExpNode.DereferenceNode(leftValue);
+            }
+            case EXP_NARROW_SUBRANGE: {
+                Type.SubrangeType type = (Type.SubrangeType) type();
+                return new ExpNode.NarrowSubrangeNode(type, expression());
+            }
+            case EXP_WIDEN_SUBRANGE:
+                return new ExpNode.WidenSubrangeNode(expression());
+            default:
+                throw new IOException("Unknown expression opcode " + opcode);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package image;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import syms.CompilerContext;
+import syms.SymEntry;
+import syms.Type;
+import tree.DeclNode;
+import tree.ExpNode;
+import tree.ExpTransform;
+import tree.StatementNode;
+import tree.StatementVisitor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static image.ImageFormat.*;
+
+/**
+ * class ImageWriter - writes a statically checked program in the compact
+ * binary form described by ImageFormat, from which ImageReader rebuilds
+ * the program without parsing or checking it again.
+ * Only a program without errors can be written.
+ */
+public final class ImageWriter implements StatementVisitor, ExpTransform<Void> {
+
+    /**
+     * Predefined types of the compilation of the program
+     */
+    private final CompilerContext context;
+
+    /* Tables of the image and the index of each element in its table */
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<Location> locations = new ArrayList<>();
+    private final Map<Long, Integer> locationIndex = new HashMap<>();
+    private final Map<Type, Integer> typeIndex = new IdentityHashMap<>();
+    private final List<SymEntry.ProcedureEntry> procedures = new ArrayList<>();
+    private final Map<SymEntry.ProcedureEntry, Integer> procedureIndex =
+            new IdentityHashMap<>();
+    private final Map<SymEntry.VarEntry, Integer> variableIndex =
+            new IdentityHashMap<>();
+
+    /**
+     * Encoded types, procedures and code
+     */
+    private final Words types = new Words();
+    private final Words procedureTable = new Words();
+    private final Words code = new Words();
+
+    private ImageWriter(CompilerContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Write a program in binary form
+     *
+     * @param program the main program, which must have been statically
+     *                checked without errors
+     * @return the image of the program
+     * @throws IllegalArgumentException if the program contains a node that
+     *                                  is only present before checking
+     */
+    public static byte[] write(DeclNode.ProcedureNode program) {
+        ImageWriter writer = new ImageWriter(
+                program.getProcEntry().getLocalScope().getContext());
+        writer.addProcedure(program, -1);
+        for (SymEntry.ProcedureEntry procedure : writer.procedures) {
+            writer.writeBlock(procedure.getBlock());
+        }
+        return writer.toBytes();
+    }
+
+    /* Tables */
+
+    /**
+     * Add a procedure and those declared within it to the procedure
+     * table, in pre-order so that a procedure follows its parent
+     */
+    private void addProcedure(DeclNode.ProcedureNode node, int parent) {
+        SymEntry.ProcedureEntry entry = node.getProcEntry();
+        int index = procedures.size();
+        procedures.add(entry);
+        procedureIndex.put(entry, index);
+        List<SymEntry.VarEntry> variables = new ArrayList<>();
+        for (SymEntry local : entry.getLocalScope().getEntries()) {
+            if (local instanceof SymEntry.VarEntry) {
+                variables.add((SymEntry.VarEntry) local);
+            }
+        }
+        procedureTable.add(string(entry.getIdent()));
+        procedureTable.add(location(entry.getLocation()));
+        procedureTable.add(parent);
+        procedureTable.add(entry.getLocalScope().getLevel());
+        procedureTable.add(entry.getLocalScope().getVariableSpace());
+        procedureTable.add(variables.size());
+        for (SymEntry.VarEntry variable : variables) {
+            variableIndex.put(variable, variableIndex.size());
+            procedureTable.add(string(variable.getIdent()));
+            procedureTable.add(location(variable.getLocation()));
+            procedureTable.add(type(variable.getType()));
+            procedureTable.add(variable.getOffset());
+        }
+        for (DeclNode declaration :
+                node.getBlock().getProcedures().getDeclarations()) {
+            addProcedure((DeclNode.ProcedureNode) declaration, index);
+        }
+    }
+
+    private int string(String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.add(s);
+            stringIndex.put(s, index);
+        }
+        return index;
+    }
+
+    private int location(Location loc) {
+        if (loc == null) {
+            return -1;
+        }
+        long key = ((long) loc.getLine() << 32) | (loc.getColumn() & 0xffffffffL);
+        Integer index = locationIndex.get(key);
+        if (index == null) {
+            index = locations.size();
+            locations.add(loc);
+            locationIndex.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the index of a type, adding it and the types it refers to
+     * to the type table if it is not already there
+     */
+    private int type(Type type) {
+        Integer index = typeIndex.get(type);
+        if (index != null) {
+            return index;
+        }
+        if (type == context.getIntegerType()) {
+            types.add(TYPE_INT);
+        } else if (type == context.getBooleanType()) {
+            types.add(TYPE_BOOLEAN);
+        } else if (type == Type.ERROR_TYPE) {
+            types.add(TYPE_ERROR);
+        } else if (type instanceof Type.SubrangeType) {
+            Type.SubrangeType subrange = (Type.SubrangeType) type;
+            int base = type(subrange.getBaseType());
+            /* An unnamed subrange is known by its bounds */
+            String name = type.getName().equals(type.toString())
+                    ? null : type.getName();
+            types.add(TYPE_SUBRANGE);
+            types.add(string(name));
+            types.add(base);
+            types.add(subrange.getLower());
+            types.add(subrange.getUpper());
+        } else if (type instanceof Type.ReferenceType) {
+            int base = type(((Type.ReferenceType) type).getBaseType());
+            types.add(TYPE_REFERENCE);
+            types.add(base);
+        } else {
+            throw new IllegalArgumentException("Cannot write type " + type);
+        }
+        index = typeIndex.size();
+        typeIndex.put(type, index);
+        return index;
+    }
+
+    /* Code */
+
+    private void writeBlock(StatementNode.BlockNode block) {
+        List<DeclNode> declarations = block.getProcedures().getDeclarations();
+        code.add(location(block.getLocation()));
+        code.add(declarations.size());
+        for (DeclNode declaration : declarations) {
+            code.add(procedureIndex.get(
+                    ((DeclNode.ProcedureNode) declaration).getProcEntry()));
+        }
+        block.getBody().accept(this);
+    }
+
+    private void statement(int opcode, StatementNode node) {
+        code.add(opcode);
+        code.add(location(node.getLocation()));
+    }
+
+    @Override
+    public void visitBlockNode(StatementNode.BlockNode node) {
+        throw new IllegalArgumentException("Nested block in a statement");
+    }
+
+    @Override
+    public void visitStatementErrorNode(StatementNode.ErrorNode node) {
+        statement(STATEMENT_ERROR, node);
+    }
+
+    @Override
+    public void visitStatementListNode(StatementNode.ListNode node) {
+        statement(STATEMENT_LIST, node);
+        code.add(node.getStatements().size());
+        for (StatementNode s : node.getStatements()) {
+            s.accept(this);
+        }
+    }
+
+    @Override
+    public void visitAssignmentNode(StatementNode.AssignmentNode node) {
+        statement(STATEMENT_ASSIGNMENT, node);
+        code.add(node.size());
+        for (int i = 0; i < node.size(); i++) {
+            node.left(i).accept(this);
+        }
+        for (int i = 0; i < node.size(); i++) {
+            node.right(i).accept(this);
+        }
+    }
+
+    @Override
+    public void visitReadNode(StatementNode.ReadNode node) {
+        statement(STATEMENT_READ, node);
+        node.getLValue().accept(this);
+    }
+
+    @Override
+    public void visitWriteNode(StatementNode.WriteNode node) {
+        statement(STATEMENT_WRITE, node);
+        node.getExp().accept(this);
+    }
+
+    @Override
+    public void visitCallNode(StatementNode.CallNode node) {
+        Integer procedure = procedureIndex.get(node.getEntry());
+        if (procedure == null) {
+            throw new IllegalArgumentException("Unresolved call of "
+                    + node.getId());
+        }
+        statement(STATEMENT_CALL, node);
+        code.add(procedure);
+    }
+
+    @Override
+    public void visitIfNode(StatementNode.IfNode node) {
+        statement(STATEMENT_IF, node);
+        node.getCondition().accept(this);
+        node.getThenStmt().accept(this);
+        node.getElseStmt().accept(this);
+    }
+
+    @Override
+    public void visitWhileNode(StatementNode.WhileNode node) {
+        statement(STATEMENT_WHILE, node);
+        node.getCondition().accept(this);
+        node.getLoopStmt().accept(this);
+    }
+
+    @Override
+    public void visitSkipNode(StatementNode.SkipNode node) {
+        statement(STATEMENT_SKIP, node);
+    }
+
+    @Override
+    public void visitDoNode(StatementNode.DoNode node) {
+        statement(STATEMENT_DO, node);
+        code.add(node.branches().size());
+        for (StatementNode.DoBranchNode branch : node.branches()) {
+            branch.accept(this);
+        }
+    }
+
+    @Override
+    public void visitDoBranchNode(StatementNode.DoBranchNode node) {
+        code.add(location(node.getLocation()));
+        code.add(node.exit() ? 1 : 0);
+        node.condition().accept(this);
+        node.statements().accept(this);
+    }
+
+    private void expression(int opcode, ExpNode node) {
+        code.add(opcode);
+        code.add(location(node.getLocation()));
+    }
+
+    @Override
+    public Void visitErrorExpNode(ExpNode.ErrorNode node) {
+        expression(EXP_ERROR, node);
+        return null;
+    }
+
+    @Override
+    public Void visitConstNode(ExpNode.ConstNode node) {
+        expression(EXP_CONST, node);
+        code.add(type(node.getType()));
+        code.add(node.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifierNode(ExpNode.IdentifierNode node) {
+        throw new IllegalArgumentException("Unresolved identifier "
+                + node.getId());
+    }
+
+    @Override
+    public Void visitVariableNode(ExpNode.VariableNode node) {
+        Integer variable = variableIndex.get(node.getVariable());
+        if (variable == null) {
+            throw new IllegalArgumentException("Undeclared variable "
+                    + node.getVariable().getIdent());
+        }
+        expression(EXP_VARIABLE, node);
+        code.add(variable);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryNode(ExpNode.BinaryNode node) {
+        expression(EXP_BINARY, node);
+        code.add(node.getOp().ordinal());
+        code.add(type(node.getType()));
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryNode(ExpNode.UnaryNode node) {
+        expression(EXP_UNARY, node);
+        code.add(node.getOp().ordinal());
+        code.add(type(node.getType()));
+        node.getArg().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitDereferenceNode(ExpNode.DereferenceNode node) {
+        code.add(EXP_DEREFERENCE);
+        node.getLeftValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
+        code.add(EXP_NARROW_SUBRANGE);
+        code.add(type(node.getSubrangeType()));
+        node.getExp().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
+        code.add(EXP_WIDEN_SUBRANGE);
+        node.getExp().accept(this);
+        return null;
+    }
+
+    /* Output */
+
+    private byte[] toBytes() {
+        byte[][] encoded = new byte[strings.size()][];
+        int size = HEADER_SIZE;
+        size += 4;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[i].length;
+        }
+        size += 4 + 8 * locations.size();
+        size += 4 + 4 * types.size;
+        size += 4 + 4 * procedureTable.size;
+        size += 4 + 4 * code.size;
+        ByteBuffer image = ByteBuffer.allocate(size);
+        /* The checksum is filled in once the rest is written */
+        image.putInt(MAGIC).putInt(VERSION).putInt(0);
+        image.putInt(encoded.length);
+        for (byte[] s : encoded) {
+            image.putInt(s.length).put(s);
+        }
+        image.putInt(locations.size());
+        for (Location loc : locations) {
+            image.putInt(loc.getLine()).putInt(loc.getColumn());
+        }
+        image.putInt(typeIndex.size());
+        types.putTo(image);
+        image.putInt(procedures.size());
+        procedureTable.putTo(image);
+        image.putInt(code.size);
+        code.putTo(image);
+        CRC32 checksum = new CRC32();
+        checksum.update(image.array(), HEADER_SIZE, size - HEADER_SIZE);
+        image.putInt(HEADER_SIZE - 4, (int) checksum.getValue());
+        return image.array();
+    }
+
+    /**
+     * Growable sequence of ints
+     */
+    private static final class Words {
+        private int[] words = new int[64];
+        private int size = 0;
+
+        void add(int word) {
+            if (size == words.length) {
+                words = Arrays.copyOf(words, 2 * size);
+            }
+            words[size++] = word;
+        }
+
+        void putTo(ByteBuffer buffer) {
+            buffer.asIntBuffer().put(words, 0, size);
+            buffer.position(buffer.position() + 4 * size);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package image;
+
+import syms.CompilerContext;
+import tree.DeclNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * class ProgramCache - an on-disk cache of statically checked programs,
+ * so that running an unchanged program again does not parse and check it.
+ * <p>
+ * Each entry is the image of a program, as written by ImageWriter, in a
+ * file of the cache directory named by a SHA-256 hash of the compiler
+ * version and the contents of the source. An entry is therefore never
+ * stale: a changed source, or a different compiler, has a different key.
+ * The last modified time of an entry is updated whenever it is used, and
+ * when the entries exceed the size limit of the cache the least recently
+ * used are deleted. Entries are written to a temporary file and renamed,
+ * so several processes may share a cache directory.
+ */
+public final class ProgramCache {
+
+    /**
+     * Version of the compiler, part of the key of every entry. It must be
+     * changed whenever a change to the compiler changes the program that
+     * is built from a source, or the form in which it is written.
+     */
+    public static final String COMPILER_VERSION = "pl0-rd/" + ImageFormat.VERSION;
+
+    /**
+     * Suffix of the file of an entry
+     */
+    static final String SUFFIX = ".pl0c";
+
+    /**
+     * Directory holding the entries
+     */
+    private final File directory;
+    /**
+     * Maximum total size of the entries in bytes
+     */
+    private final long capacity;
+
+    /**
+     * @param directory directory of the cache, created if it does not exist
+     * @param capacity  maximum total size of the entries in bytes
+     */
+    public ProgramCache(File directory, long capacity) {
+        this.directory = directory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param source contents of a source file
+     * @return the key of the entry for the source
+     */
+    public static String key(byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(COMPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(source);
+            StringBuilder key = new StringBuilder(2 * hash.length);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform is required to support SHA-256 */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the file of the entry with the given key
+     */
+    public File entry(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    /**
+     * Load the program of an entry, marking it as the most recently used.
+     * An entry that cannot be read, e.g. one left by another version of
+     * the compiler or one that has been damaged, is deleted and treated
+     * as missing, so that the program is compiled and stored afresh.
+     *
+     * @param key     key of the entry
+     * @param context compilation to rebuild the program in
+     * @return the program, or null if there is no usable entry
+     */
+    public DeclNode.ProcedureNode load(String key, CompilerContext context) {
+        File file = entry(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DeclNode.ProcedureNode program = ImageReader.load(file, context);
+            file.setLastModified(System.currentTimeMillis());
+            return program;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store a program, then evict the least recently used entries until
+     * the cache is within its size limit.
+     *
+     * @param key     key of the entry
+     * @param program the program, statically checked without errors
+     * @throws IOException if the entry cannot be written
+     */
+    public void store(String key, DeclNode.ProcedureNode program)
+            throws IOException {
+        byte[] image = ImageWriter.write(program);
+        Files.createDirectories(directory.toPath());
+        File temporary = File.createTempFile(key, ".tmp", directory);
+        try {
+            Files.write(temporary.toPath(), image);
+            try {
+                Files.move(temporary.toPath(), entry(key).toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), entry(key).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temporary.delete();
+        }
+        evict();
+    }
+
+    /**
+     * Delete the least recently used entries while the total size of the
+     * entries exceeds the capacity
+     */
+    public void evict() {
+        File[] entries = directory.listFiles((dir, name) ->
+                name.endsWith(SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long size = 0;
+        for (int i = 0; i < entries.length; i++) {
+            size += entries[i].length();
+        }
+        if (size <= capacity) {
+            return;
+        }
+        /* Least recently used first */
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.length && size > capacity; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package interpreter;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.Errors;
+import syms.SymEntry;
+import syms.Type;
+import tree.*;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execute the abstract syntax tree by first compiling it to a tree of
+ * closures. Each statement and expression is visited exactly once, before
+ * execution starts, and turned into a pre-bound executable object, so that
+ * at run time there is no visitor double dispatch, no switch on the operator
+ * and no repeated access of the fields of the tree nodes.
+ * The output and runtime errors are the same as for Interpreter.
+ */
+public class ClosureInterpreter implements Engine, StatementVisitor,
+        ExpTransform<ClosureInterpreter.IntCode> {
+
+    /**
+     * Compiled form of a statement.
+     */
+    interface Code {
+        void exec(RuntimeStack stack);
+    }
+
+    /**
+     * Compiled form of an expression with an integer (or boolean) value.
+     */
+    interface IntCode {
+        int eval(RuntimeStack stack);
+    }
+
+    /**
+     * Compiled form of a procedure. The body is filled in after the
+     * procedure has been compiled, which allows for recursive calls.
+     */
+    private static class ProcedureCode {
+        final SymEntry.ProcedureEntry entry;
+        Code body;
+
+        ProcedureCode(SymEntry.ProcedureEntry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Program input
+     */
+    private final IntReader in;
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Program output
+     */
+    private final OutputSink output;
+
+    /**
+     * Compiled procedures, each procedure is compiled once only
+     */
+    private final Map<SymEntry.ProcedureEntry, ProcedureCode> procedures =
+            new HashMap<>();
+
+    /**
+     * Result of compiling the most recently visited statement
+     */
+    private Code compiled;
+
+    /**
+     * Construct a new closure interpreter
+     *
+     * @param errors      Error message handler
+     * @param inputStream Program input stream
+     * @param outStream   Program output stream
+     */
+    public ClosureInterpreter(Errors errors, InputStream inputStream,
+                              PrintStream outStream) {
+        this(errors, new IntReader(inputStream), outStream);
+    }
+
+    /**
+     * Construct a new closure interpreter
+     *
+     * @param errors    Error message handler
+     * @param in        Program input
+     * @param outStream Program output stream
+     */
+    public ClosureInterpreter(Errors errors, IntReader in, PrintStream outStream) {
+        this.errors = errors;
+        this.in = in;
+        this.output = new OutputSink(outStream, errors);
+        in.flushBeforeWaiting(output);
+    }
+
+    /**
+     * Compile and then execute the main procedure
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public void executeCode(DeclNode.ProcedureNode node) {
+        SymEntry.ProcedureEntry procEntry = node.getProcEntry();
+        ProcedureCode main = compileProcedure(procEntry);
+        /* Setup the main frame and execute main procedure code body */
+        try {
+            main.body.exec(new RuntimeStack(procEntry));
+        } finally {
+            output.flush();
+        }
+    }
+
+    /* Compilation */
+
+    /**
+     * Compile the block of a procedure unless it has already been compiled.
+     */
+    private ProcedureCode compileProcedure(SymEntry.ProcedureEntry entry) {
+        ProcedureCode proc = procedures.get(entry);
+        if (proc == null) {
+            /* Register before compiling the body so recursive calls find it */
+            proc = new ProcedureCode(entry);
+            procedures.put(entry, proc);
+            proc.body = compile(entry.getBlock());
+        }
+        return proc;
+    }
+
+    /**
+     * Compile a statement
+     */
+    private Code compile(StatementNode node) {
+        node.accept(this);
+        return compiled;
+    }
+
+    /**
+     * Compile an expression
+     */
+    private IntCode compile(ExpNode node) {
+        return node.accept(this);
+    }
+
+    /* Statement Compilation */
+
+    /**
+     * Compile code for a block statement
+     */
+    public void visitBlockNode(StatementNode.BlockNode node) {
+        compiled = compile(node.getBody());
+    }
+
+    /**
+     * Compile code for an error statement
+     */
+    public void visitStatementErrorNode(StatementNode.ErrorNode node) {
+        Location loc = node.getLocation();
+        compiled = stack -> errors.fatal(
+                "PL0 Internal error: interpreting Statement Error Node", loc);
+    }
+
+    /**
+     * Compile code for a statement list - executes each statement sequentially
+     */
+    public void visitStatementListNode(StatementNode.ListNode node) {
+        List<StatementNode> statements = node.getStatements();
+        if (statements.size() == 1) {
+            compiled = compile(statements.get(0));
+            return;
+        }
+        Code[] code = new Code[statements.size()];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = compile(statements.get(i));
+        }
+        compiled = stack -> {
+            for (Code statement : code) {
+                statement.exec(stack);
+            }
+        };
+    }
+
+    /**
+     * Compile code for an assignment statement. All the expressions are
+     * evaluated before any of the variables are assigned.
+     */
+    public void visitAssignmentNode(StatementNode.AssignmentNode node) {
+        int length = node.size();
+        if (length == 1) {
+            IntCode right = compile(node.right(0));
+            SymEntry.VarEntry left = lValue(node.left(0));
+            int level = left.getLevel();
+            int offset = left.getOffset();
+            compiled = stack -> stack.assign(level, offset, right.eval(stack));
+            return;
+        }
+        IntCode[] rights = new IntCode[length];
+        int[] levels = new int[length];
+        int[] offsets = new int[length];
+        for (int i = 0; i < length; i++) {
+            rights[i] = compile(node.right(i));
+            SymEntry.VarEntry left = lValue(node.left(i));
+            levels[i] = left.getLevel();
+            offsets[i] = left.getOffset();
+        }
+        compiled = stack -> {
+            int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = rights[i].eval(stack);
+            }
+            for (int i = 0; i < length; i++) {
+                stack.assign(levels[i], offsets[i], values[i]);
+            }
+        };
+    }
+
+    /**
+     * Compile code for a read statement - read an int from stdin
+     */
+    public void visitReadNode(StatementNode.ReadNode node) {
+        Location loc = node.getLocation();
+        SymEntry.VarEntry lValue = lValue(node.getLValue());
+        int level = lValue.getLevel();
+        int offset = lValue.getOffset();
+        compiled = stack -> {
+            int result = 0;
+            try {
+                result = in.read();
+            } catch (NumberFormatException e) {
+                runtime("invalid value read - must be an integer", loc, stack);
+            }
+            stack.assign(level, offset, result);
+        };
+    }
+
+    /**
+     * Compile code for a write statement
+     */
+    public void visitWriteNode(StatementNode.WriteNode node) {
+        IntCode exp = compile(node.getExp());
+        compiled = stack -> output.writeLine(exp.eval(stack));
+    }
+
+    /**
+     * Compile code for a call statement
+     */
+    public void visitCallNode(StatementNode.CallNode node) {
+        ProcedureCode proc = compileProcedure(node.getEntry());
+        SymEntry.ProcedureEntry entry = proc.entry;
+        compiled = stack -> {
+            stack.enterFrame(entry);
+            proc.body.exec(stack);
+            stack.exitFrame();
+        };
+    }
+
+    /**
+     * Compile code for an if statement
+     */
+    public void visitIfNode(StatementNode.IfNode node) {
+        IntCode condition = compile(node.getCondition());
+        Code thenStmt = compile(node.getThenStmt());
+        Code elseStmt = compile(node.getElseStmt());
+        int trueValue = Type.TRUE_VALUE;
+        compiled = stack -> {
+            if (condition.eval(stack) == trueValue) {
+                thenStmt.exec(stack);
+            } else {
+                elseStmt.exec(stack);
+            }
+        };
+    }
+
+    /**
+     * Compile code for a while statement
+     */
+    public void visitWhileNode(StatementNode.WhileNode node) {
+        IntCode condition = compile(node.getCondition());
+        Code loopStmt = compile(node.getLoopStmt());
+        int trueValue = Type.TRUE_VALUE;
+        compiled = stack -> {
+            while (condition.eval(stack) == trueValue) {
+                loopStmt.exec(stack);
+            }
+        };
+    }
+
+    @Override
+    public void visitSkipNode(StatementNode.SkipNode skipNode) {
+        compiled = stack -> {
+            // Nothing to do...
+        };
+    }
+
+    /**
+     * Compile code for a do statement. The guards and branches are compiled
+     * into arrays, and the guards are tried in the order given by a
+     * GuardOrder until one is true.
+     */
+    @Override
+    public void visitDoNode(StatementNode.DoNode doNode) {
+        List<StatementNode.DoBranchNode> branches = doNode.branches();
+        int size = branches.size();
+        IntCode[] guards = new IntCode[size];
+        Code[] bodies = new Code[size];
+        boolean[] exits = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            guards[i] = compile(branches.get(i).condition());
+            bodies[i] = compile(branches.get(i));
+            exits[i] = branches.get(i).exit();
+        }
+        GuardOrder order = new GuardOrder(doNode.conditions());
+        Location loc = doNode.getLocation();
+        int trueValue = Type.TRUE_VALUE;
+        compiled = stack -> {
+            boolean first = true;
+            int branch;
+            do {
+                branch = -1;
+                for (int guard : order.order(first)) {
+                    if (guards[guard].eval(stack) == trueValue) {
+                        branch = guard;
+                        break;
+                    }
+                }
+                if (branch < 0) {
+                    runtime("No branch of do loop has a true guard", loc,
+                            stack);
+                }
+                order.hit(branch);
+                first = false;
+                bodies[branch].exec(stack);
+            } while (!exits[branch]);
+        };
+    }
+
+    /**
+     * Compile the statements of a do branch; its guard is compiled as part
+     * of the do statement
+     */
+    @Override
+    public void visitDoBranchNode(StatementNode.DoBranchNode doBranchNode) {
+        compiled = compile(doBranchNode.statements());
+    }
+
+    /* Expression Compilation */
+
+    /**
+     * Compile an error node - fails if it is ever evaluated
+     */
+    public IntCode visitErrorExpNode(ExpNode.ErrorNode node) {
+        Location loc = node.getLocation();
+        return stack -> {
+            errors.fatal("PL0 Internal error: attempt to evaluate ErrorExpNode",
+                    loc);
+            return -1; // Never reached
+        };
+    }
+
+    /**
+     * Compile a constant - resolves to the constant's value
+     */
+    public IntCode visitConstNode(ExpNode.ConstNode node) {
+        int value = node.getValue();
+        return stack -> value;
+    }
+
+    /**
+     * Compile an identifier node - fails if it is ever evaluated
+     */
+    public IntCode visitIdentifierNode(ExpNode.IdentifierNode node) {
+        Location loc = node.getLocation();
+        return stack -> {
+            errors.fatal("PL0 Internal error: attempt to evaluate IdentifierNode",
+                    loc);
+            return -1; // Never reached
+        };
+    }
+
+    /**
+     * A variable only has an integer value when dereferenced, which is
+     * compiled by visitDereferenceNode.
+     */
+    public IntCode visitVariableNode(ExpNode.VariableNode node) {
+        Location loc = node.getLocation();
+        return stack -> {
+            errors.fatal("PL0 Internal error: attempt to evaluate address of "
+                    + node.getVariable().getIdent(), loc);
+            return -1; // Never reached
+        };
+    }
+
+    /**
+     * Compile a binary operator expression into a closure specialised
+     * for the operator
+     **/
+    public IntCode visitBinaryNode(ExpNode.BinaryNode node) {
+        IntCode left = compile(node.getLeft());
+        IntCode right = compile(node.getRight());
+        int trueValue = Type.TRUE_VALUE;
+        int falseValue = Type.FALSE_VALUE;
+        switch (node.getOp()) {
+            /* Mathematical operations */
+            case ADD_OP:
+                return stack -> left.eval(stack) + right.eval(stack);
+            case SUB_OP:
+                return stack -> left.eval(stack) - right.eval(stack);
+            case MUL_OP:
+                return stack -> left.eval(stack) * right.eval(stack);
+            case DIV_OP:
+                Location rightLoc = node.getRight().getLocation();
+                return stack -> {
+                    int dividend = left.eval(stack);
+                    int divisor = right.eval(stack);
+                    /* Error when division by zero occurs */
+                    if (divisor == 0) {
+                        runtime("Division by zero", rightLoc, stack);
+                    }
+                    return dividend / divisor;
+                };
+            /* Logical operations - resulting in 1 for true and 0 for false */
+            case EQUALS_OP:
+                return stack -> left.eval(stack) == right.eval(stack)
+                        ? trueValue : falseValue;
+            case NEQUALS_OP:
+                return stack -> left.eval(stack) != right.eval(stack)
+                        ? trueValue : falseValue;
+            case GREATER_OP:
+                return stack -> left.eval(stack) > right.eval(stack)
+                        ? trueValue : falseValue;
+            case LESS_OP:
+                return stack -> left.eval(stack) < right.eval(stack)
+                        ? trueValue : falseValue;
+            case LEQUALS_OP:
+                return stack -> left.eval(stack) <= right.eval(stack)
+                        ? trueValue : falseValue;
+            case GEQUALS_OP:
+                return stack -> left.eval(stack) >= right.eval(stack)
+                        ? trueValue : falseValue;
+            case INVALID_OP:
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+                return null; // Never reached
+        }
+    }
+
+    /**
+     * Compile a unary operator expression
+     **/
+    public IntCode visitUnaryNode(ExpNode.UnaryNode node) {
+        IntCode arg = compile(node.getArg());
+        //noinspection SwitchStatementWithTooFewBranches
+        switch (node.getOp()) {
+            case NEG_OP:
+                return stack -> -arg.eval(stack);
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+                return null; // Never reached
+        }
+    }
+
+    /**
+     * Compile a dereference of a variable into a load from its
+     * (level, offset) address
+     */
+    public IntCode visitDereferenceNode(ExpNode.DereferenceNode node) {
+        Location loc = node.getLocation();
+        SymEntry.VarEntry variable = lValue(node.getLeftValue());
+        int level = variable.getLevel();
+        int offset = variable.getOffset();
+        return stack -> {
+            if (!stack.isAssigned(level, offset)) {
+                runtime("variable accessed before assignment", loc, stack);
+            }
+            return stack.lookup(level, offset);
+        };
+    }
+
+    /**
+     * Compile a narrow subrange - performs the subrange bounds check
+     */
+    public IntCode visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
+        IntCode exp = compile(node.getExp());
+        Type.SubrangeType subrange = node.getSubrangeType();
+        Type baseType = subrange.getBaseType();
+        Location loc = node.getLocation();
+        return stack -> {
+            int value = exp.eval(stack);
+            /* Perform a subrange bounds check for the value */
+            if (!subrange.containsElement(baseType, value)) {
+                runtime("bounds check failed at line " + loc.getLine() + ": "
+                        + value + " not in " + subrange, loc, stack);
+            }
+            return value;
+        };
+    }
+
+    /**
+     * Compile a widen subrange - nothing to do at run time
+     */
+    public IntCode visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
+        return compile(node.getExp());
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Resolve the variable referred to by a left value
+     */
+    private SymEntry.VarEntry lValue(ExpNode node) {
+        if (!(node instanceof ExpNode.VariableNode)) {
+            errors.fatal("PL0 Internal error: variable expected",
+                    node.getLocation());
+        }
+        return ((ExpNode.VariableNode) node).getVariable();
+    }
+
+    /**
+     * Signal a runtime error has occurred at a given location
+     */
+    private void runtime(String m, Location loc, RuntimeStack stack) {
+        String error = m + System.lineSeparator() + stack.toString();
+        output.flush();
+        errors.fatal(error, loc);
+    }
+}
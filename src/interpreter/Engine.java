@@ -0,0 +1,18 @@
+package interpreter;
+
+import tree.DeclNode;
+
+/**
+ * interface Engine - executes a statically checked abstract syntax tree.
+ * Implemented by each of the alternative ways of running a program, all of
+ * which must produce the same output and runtime errors.
+ */
+public interface Engine {
+
+    /**
+     * Execute the main procedure
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    void executeCode(DeclNode.ProcedureNode node);
+}
@@ -0,0 +1,242 @@
+package interpreter;
+
+import source.Errors;
+import syms.SymEntry;
+import syms.Type;
+import tree.DeclNode;
+import tree.StatementNode;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Execute the abstract syntax tree without using Java recursion for
+ * statements. Statements still to be executed are kept on an explicit work
+ * stack, along with a marker for the return from each active procedure
+ * call, so executing a PL0 call does not grow the Java stack. The depth of
+ * recursion is instead bounded by a budget for the heap memory used by the
+ * work stack and the runtime stack.
+ * Expressions are evaluated as by Interpreter, as their depth of nesting
+ * is bounded by the program text.
+ */
+public class ExplicitStackInterpreter extends Interpreter {
+
+    /**
+     * Default budget in bytes for the work and runtime stacks
+     */
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * Approximate size in bytes of an entry on the work stack
+     */
+    private static final int WORK_ENTRY_SIZE = 12;
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Budget in bytes for the work and runtime stacks
+     */
+    private final long budget;
+
+    /**
+     * Statements still to be executed, with null marking the return from
+     * a procedure call
+     */
+    private StatementNode[] work = new StatementNode[64];
+
+    /**
+     * Progress through the execution of each statement on the work stack,
+     * e.g. the index of the next statement of a statement list
+     */
+    private int[] progress = new int[work.length];
+
+    /**
+     * Number of entries on the work stack
+     */
+    private int workSize;
+
+    /**
+     * Progress of the statement being executed
+     */
+    private int current;
+
+    /**
+     * Number of active procedures, including the main program
+     */
+    private int depth;
+
+    /**
+     * Maximum number of active procedures reached
+     */
+    private int maxDepth;
+
+    /**
+     * Construct a new interpreter
+     *
+     * @param errors      Error message handler
+     * @param in          Program input
+     * @param outStream   Program output stream
+     * @param budget      bytes of heap available to the work and runtime stacks
+     */
+    public ExplicitStackInterpreter(Errors errors, IntReader in,
+                                    PrintStream outStream, long budget) {
+        super(errors, in, outStream);
+        this.errors = errors;
+        this.budget = budget;
+    }
+
+    /**
+     * Execute the main procedure
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    @Override
+    public void executeCode(DeclNode.ProcedureNode node) {
+        SymEntry.ProcedureEntry procEntry = node.getProcEntry();
+        /* Setup the main frame */
+        stack = new RuntimeStack(procEntry);
+        depth = 1;
+        maxDepth = 1;
+        workSize = 0;
+        push(procEntry.getBlock(), 0);
+        /* Execute statements until the work stack is empty */
+        try {
+            while (workSize > 0) {
+                workSize--;
+                StatementNode statement = work[workSize];
+                work[workSize] = null;
+                if (statement == null) {
+                    /* Return to the parent frame */
+                    stack.exitFrame();
+                    depth--;
+                } else {
+                    current = progress[workSize];
+                    statement.accept(this);
+                }
+            }
+        } finally {
+            output.flush();
+        }
+    }
+
+    /**
+     * @return the maximum depth of procedure calls reached, counting the
+     * main program as depth 1
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /* Statement Execution
+     * Each statement either executes completely or pushes what remains of
+     * its execution onto the work stack. */
+
+    /**
+     * Execute code for a block statement
+     */
+    @Override
+    public void visitBlockNode(StatementNode.BlockNode node) {
+        push(node.getBody(), 0);
+    }
+
+    /**
+     * Execute the next statement of a statement list
+     */
+    @Override
+    public void visitStatementListNode(StatementNode.ListNode node) {
+        List<StatementNode> statements = node.getStatements();
+        if (current < statements.size()) {
+            push(node, current + 1);
+            push(statements.get(current), 0);
+        }
+    }
+
+    /**
+     * Execute code for a call statement
+     */
+    @Override
+    public void visitCallNode(StatementNode.CallNode node) {
+        long used = (long) workSize * WORK_ENTRY_SIZE
+                + (long) stack.size() * Integer.BYTES + stack.size() / 8;
+        if (used > budget) {
+            output.flush();
+            errors.fatal("stack budget of " + budget
+                    + " bytes exhausted at call depth " + depth,
+                    node.getLocation());
+        }
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+        /* Decent to the executing procedures frame */
+        stack.enterFrame(node.getEntry());
+        /* Return after executing the procedure's code block */
+        push(null, 0);
+        push(node.getEntry().getBlock(), 0);
+    }
+
+    /**
+     * Execute code for an if statement
+     */
+    @Override
+    public void visitIfNode(StatementNode.IfNode node) {
+        if (node.getCondition().evaluate(this) == Type.TRUE_VALUE) {
+            push(node.getThenStmt(), 0);
+        } else {
+            push(node.getElseStmt(), 0);
+        }
+    }
+
+    /**
+     * Execute code for a while statement, one iteration at a time
+     */
+    @Override
+    public void visitWhileNode(StatementNode.WhileNode node) {
+        if (node.getCondition().evaluate(this) == Type.TRUE_VALUE) {
+            push(node, 0);
+            push(node.getLoopStmt(), 0);
+        }
+    }
+
+    /**
+     * Execute one iteration of a do statement
+     */
+    @Override
+    public void visitDoNode(StatementNode.DoNode node) {
+        DoLoop loop = doLoop(node);
+        StatementNode.DoBranchNode branch =
+                loop.branches[selectBranch(node, loop, current == 0)];
+        if (!branch.exit()) {
+            push(node, 1);
+        }
+        push(branch, 0);
+    }
+
+    /**
+     * Execute the statements of a do branch
+     */
+    @Override
+    public void visitDoBranchNode(StatementNode.DoBranchNode node) {
+        push(node.statements(), 0);
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Push a statement onto the work stack
+     *
+     * @param statement to execute, or null for a return
+     * @param position  progress through the execution of the statement
+     */
+    private void push(StatementNode statement, int position) {
+        if (workSize == work.length) {
+            work = Arrays.copyOf(work, 2 * work.length);
+            progress = Arrays.copyOf(progress, work.length);
+        }
+        work[workSize] = statement;
+        progress[workSize] = position;
+        workSize++;
+    }
+}
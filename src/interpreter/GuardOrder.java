@@ -0,0 +1,222 @@
+package interpreter;
+
+import syms.SymEntry;
+import tree.ExpNode;
+
+import java.util.List;
+
+/**
+ * class GuardOrder - the order in which the guards of a do statement are
+ * tried. The branch executed on each iteration is that of the first true
+ * guard in textual order, so in general the guards must be tried in
+ * textual order. However if at most one of the guards can be true, and
+ * trying a guard cannot fail, any order gives the same result, and trying
+ * the guards that are most often true first saves evaluating the others.
+ * <p>
+ * The guards are recognised as mutually exclusive if they all compare the
+ * same two operands, each a constant or a variable, with relations that
+ * cannot hold together, e.g. x &lt; y, x = y and y &lt; x. Evaluating such
+ * a guard can only fail by accessing an unassigned variable, which fails
+ * at the location of the variable in the first guard tried. So the first
+ * iteration of each execution of a do statement tries the guards in
+ * textual order, and only once a guard has been evaluated, and hence its
+ * operands are known to be assigned, are the guards tried in order of
+ * their frequency of being true.
+ */
+final class GuardOrder {
+
+    /* Outcomes of comparing two values, as a bitmask */
+    private static final int LESS = 1;
+    private static final int EQUAL = 2;
+    private static final int GREATER = 4;
+
+    /**
+     * Guards in textual order
+     */
+    private final int[] textual;
+
+    /**
+     * Guards in the order in which to try them after the first iteration
+     */
+    private final int[] order;
+
+    /**
+     * Position of each guard within order
+     */
+    private final int[] position;
+
+    /**
+     * Number of times each guard has been the true guard
+     */
+    private final int[] hits;
+
+    /**
+     * Whether the order may adapt to the frequency of each guard being true
+     */
+    private final boolean adaptive;
+
+    /**
+     * @param conditions of the guards of a statically checked do statement
+     */
+    GuardOrder(List<ExpNode> conditions) {
+        int size = conditions.size();
+        textual = new int[size];
+        order = new int[size];
+        position = new int[size];
+        hits = new int[size];
+        for (int i = 0; i < size; i++) {
+            textual[i] = i;
+            order[i] = i;
+            position[i] = i;
+        }
+        adaptive = exclusive(conditions);
+    }
+
+    /**
+     * @param first whether this is the first iteration of an execution of
+     *              the do statement
+     * @return the guards in the order in which to try them
+     */
+    int[] order(boolean first) {
+        return first || !adaptive ? textual : order;
+    }
+
+    /**
+     * Record that a guard was true, moving it one place earlier in the
+     * order if it is now true more often than the guard before it
+     */
+    void hit(int guard) {
+        if (!adaptive) {
+            return;
+        }
+        if (++hits[guard] == Integer.MAX_VALUE) {
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] >>= 1;
+            }
+        }
+        int p = position[guard];
+        if (p > 0 && hits[guard] > hits[order[p - 1]]) {
+            int previous = order[p - 1];
+            order[p - 1] = guard;
+            order[p] = previous;
+            position[guard] = p - 1;
+            position[previous] = p;
+        }
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * @return true iff at most one of the conditions can be true at a time
+     * and each can only fail by accessing an unassigned variable
+     */
+    private static boolean exclusive(List<ExpNode> conditions) {
+        if (conditions.size() < 2) {
+            return false;
+        }
+        ExpNode.BinaryNode first = comparison(conditions.get(0));
+        if (first == null) {
+            return false;
+        }
+        ExpNode left = operand(first.getLeft());
+        ExpNode right = operand(first.getRight());
+        if (left == null || right == null) {
+            return false;
+        }
+        int outcomes = 0;
+        for (ExpNode condition : conditions) {
+            ExpNode.BinaryNode comparison = comparison(condition);
+            if (comparison == null) {
+                return false;
+            }
+            int holds = outcomes(comparison);
+            ExpNode l = operand(comparison.getLeft());
+            ExpNode r = operand(comparison.getRight());
+            if (sameOperand(l, right) && sameOperand(r, left)) {
+                /* Operands reversed, e.g. y < x rather than x > y */
+                holds = (holds & EQUAL) | ((holds & LESS) << 2)
+                        | ((holds & GREATER) >> 2);
+            } else if (!sameOperand(l, left) || !sameOperand(r, right)) {
+                return false;
+            }
+            if ((outcomes & holds) != 0) {
+                return false;
+            }
+            outcomes |= holds;
+        }
+        return true;
+    }
+
+    /**
+     * @return the condition if it is a comparison, otherwise null
+     */
+    private static ExpNode.BinaryNode comparison(ExpNode condition) {
+        if (!(condition instanceof ExpNode.BinaryNode)) {
+            return null;
+        }
+        ExpNode.BinaryNode comparison = (ExpNode.BinaryNode) condition;
+        return outcomes(comparison) == 0 ? null : comparison;
+    }
+
+    /**
+     * @return the outcomes of comparing the operands for which the
+     * comparison holds, or 0 if it is not a comparison
+     */
+    private static int outcomes(ExpNode.BinaryNode comparison) {
+        switch (comparison.getOp()) {
+            case LESS_OP:
+                return LESS;
+            case EQUALS_OP:
+                return EQUAL;
+            case GREATER_OP:
+                return GREATER;
+            case LEQUALS_OP:
+                return LESS | EQUAL;
+            case GEQUALS_OP:
+                return GREATER | EQUAL;
+            case NEQUALS_OP:
+                return LESS | GREATER;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the operand without any widening, if it is a constant or the
+     * value of a variable, otherwise null
+     */
+    private static ExpNode operand(ExpNode operand) {
+        while (operand instanceof ExpNode.WidenSubrangeNode) {
+            operand = ((ExpNode.WidenSubrangeNode) operand).getExp();
+        }
+        if (operand instanceof ExpNode.ConstNode) {
+            return operand;
+        }
+        if (operand instanceof ExpNode.DereferenceNode &&
+                ((ExpNode.DereferenceNode) operand).getLeftValue()
+                        instanceof ExpNode.VariableNode) {
+            return operand;
+        }
+        return null;
+    }
+
+    /**
+     * @return true iff both operands are the same constant or variable
+     */
+    private static boolean sameOperand(ExpNode a, ExpNode b) {
+        if (a instanceof ExpNode.ConstNode && b instanceof ExpNode.ConstNode) {
+            return ((ExpNode.ConstNode) a).getValue()
+                    == ((ExpNode.ConstNode) b).getValue();
+        }
+        if (a instanceof ExpNode.DereferenceNode
+                && b instanceof ExpNode.DereferenceNode) {
+            return variable(a) == variable(b);
+        }
+        return false;
+    }
+
+    private static SymEntry.VarEntry variable(ExpNode dereference) {
+        return ((ExpNode.VariableNode) ((ExpNode.DereferenceNode) dereference)
+                .getLeftValue()).getVariable();
+    }
+}
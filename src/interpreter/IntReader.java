@@ -0,0 +1,259 @@
+package interpreter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * IntReader supplies the values read by a running program. Values are
+ * parsed directly from the bytes of the input held in a large buffer,
+ * which is either refilled from a channel or, for input from a file,
+ * a memory-mapped window of the file. Once the buffer has grown to its
+ * full size, reading a value does not allocate.
+ * <p>
+ * By default each value is a line of the input, consisting of an optional
+ * sign and decimal digits and terminated by a line feed, a carriage return,
+ * a carriage return followed by a line feed, or the end of the input, as
+ * for BufferedReader.readLine and Integer.parseInt. Alternatively the
+ * values may be separated by any white space.
+ */
+public final class IntReader implements Closeable {
+
+    /**
+     * Initial and maximum sizes of the buffer refilled from a channel
+     */
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Maximum size of a mapped window of a file
+     */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /**
+     * End of input marker returned by nextByte
+     */
+    private static final int EOF = -1;
+
+    /**
+     * Whether values are separated by white space rather than lines
+     */
+    private final boolean whitespaceSeparated;
+
+    /**
+     * Channel the buffer is refilled from, or null for a mapped file
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * Mapped file, or null when reading from a channel
+     */
+    private final FileChannel file;
+
+    /**
+     * Size of the mapped file, and the position in the file of the end
+     * of the current window
+     */
+    private final long fileSize;
+    private long mapped;
+
+    /**
+     * Bytes of the input not yet read
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Whether a line feed is to be skipped, as the last line was
+     * terminated by a carriage return
+     */
+    private boolean skipLineFeed;
+
+    /**
+     * Output to flush before waiting for more input, or null
+     */
+    private Flushable prompt;
+
+    /**
+     * Construct a reader of one value per line from a stream
+     *
+     * @param stream to read from
+     */
+    public IntReader(InputStream stream) {
+        this(stream, false);
+    }
+
+    /**
+     * Construct a reader from a stream
+     *
+     * @param stream              to read from
+     * @param whitespaceSeparated whether values are separated by white space
+     *                            rather than one per line
+     */
+    public IntReader(InputStream stream, boolean whitespaceSeparated) {
+        this.whitespaceSeparated = whitespaceSeparated;
+        this.channel = Channels.newChannel(stream);
+        this.file = null;
+        this.fileSize = 0;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Construct a reader that memory-maps a file
+     *
+     * @param input               file to read from
+     * @param whitespaceSeparated whether values are separated by white space
+     *                            rather than one per line
+     * @throws IOException if the file cannot be opened
+     */
+    public IntReader(File input, boolean whitespaceSeparated)
+            throws IOException {
+        this.whitespaceSeparated = whitespaceSeparated;
+        this.channel = null;
+        this.file = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+        this.fileSize = file.size();
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Flush the given output before waiting for more input, so that the
+     * output of an interactive program appears before its next read
+     */
+    public void flushBeforeWaiting(Flushable output) {
+        this.prompt = output;
+    }
+
+    /**
+     * Read the next value
+     *
+     * @return the value read
+     * @throws NumberFormatException if there is no further value, or the
+     *                               next value is not a valid integer
+     */
+    public int read() {
+        int b = nextByte();
+        if (whitespaceSeparated) {
+            while (isWhitespace(b)) {
+                b = nextByte();
+            }
+        } else if (skipLineFeed) {
+            skipLineFeed = false;
+            if (b == '\n') {
+                b = nextByte();
+            }
+        }
+        if (b == EOF) {
+            throw new NumberFormatException("no further input");
+        }
+        boolean negative = false;
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            b = nextByte();
+        }
+        /* Accumulate the negated value, as its range is larger */
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        int digits = 0;
+        boolean valid = true;
+        for (; !isTerminator(b); b = nextByte()) {
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10
+                    || result * 10 < limit + digit) {
+                valid = false;
+            } else {
+                result = result * 10 - digit;
+                digits++;
+            }
+        }
+        if (!whitespaceSeparated) {
+            skipLineFeed = b == '\r';
+        }
+        if (!valid || digits == 0) {
+            throw new NumberFormatException("invalid value");
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Close the mapped file, if any. A stream read from is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * @return true iff the byte ends a value
+     */
+    private boolean isTerminator(int b) {
+        if (b == EOF) {
+            return true;
+        }
+        return whitespaceSeparated ? isWhitespace(b) : b == '\n' || b == '\r';
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t'
+                || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * @return the next byte of the input, or EOF at the end of the input
+     */
+    private int nextByte() {
+        if (!buffer.hasRemaining() && !refill()) {
+            return EOF;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Refill the buffer with further input
+     *
+     * @return false at the end of the input
+     */
+    private boolean refill() {
+        try {
+            if (file != null) {
+                if (mapped >= fileSize) {
+                    return false;
+                }
+                long length = Math.min(fileSize - mapped, MAP_WINDOW);
+                buffer = file.map(FileChannel.MapMode.READ_ONLY, mapped,
+                        length);
+                mapped += length;
+                return true;
+            }
+            if (prompt != null) {
+                prompt.flush();
+            }
+            if (buffer.capacity() < BUFFER_SIZE) {
+                /* Grow the buffer as more input is read, so that a run
+                 * with little input needs only a small buffer */
+                buffer = ByteBuffer.allocate(Math.max(INITIAL_BUFFER_SIZE,
+                        2 * buffer.capacity()));
+            } else {
+                buffer.clear();
+            }
+            int count;
+            do {
+                count = channel.read(buffer);
+            } while (count == 0);
+            buffer.flip();
+            return count > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package interpreter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * class IntReaderTest - JUnit test of parsing the values read by a program
+ * from a stream or a mapped file.
+ */
+public class IntReaderTest extends TestCase {
+
+    public IntReaderTest(String testName) {
+        super(testName);
+    }
+
+    private static IntReader reader(String input, boolean whitespace) {
+        return new IntReader(new ByteArrayInputStream(input.getBytes()),
+                whitespace);
+    }
+
+    public void testLines() {
+        IntReader in = reader("1\n-2\r\n+3\r4\n2147483647\n-2147483648", false);
+        assertEquals(1, in.read());
+        assertEquals(-2, in.read());
+        assertEquals(3, in.read());
+        assertEquals(4, in.read());
+        assertEquals(Integer.MAX_VALUE, in.read());
+        assertEquals(Integer.MIN_VALUE, in.read());
+        assertInvalid(in);
+    }
+
+    public void testInvalidLines() {
+        String[] lines = {"", " 1", "1 ", "2147483648", "-2147483649", "+",
+                "-", "1a", "1 2"};
+        for (String line : lines) {
+            IntReader in = reader(line + "\n5\n", false);
+            assertInvalid(in);
+            /* The rest of the invalid line is skipped */
+            assertEquals(5, in.read());
+        }
+    }
+
+    public void testWhitespaceSeparated() {
+        IntReader in = reader("  1 -2\n\n\t+3\r\n 4", true);
+        assertEquals(1, in.read());
+        assertEquals(-2, in.read());
+        assertEquals(3, in.read());
+        assertEquals(4, in.read());
+        assertInvalid(in);
+    }
+
+    public void testMappedFile() throws IOException {
+        File file = File.createTempFile("input", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "10\n20 30\n".getBytes());
+        try (IntReader in = new IntReader(file, false)) {
+            assertEquals(10, in.read());
+            assertInvalid(in);
+        }
+        try (IntReader in = new IntReader(file, true)) {
+            assertEquals(10, in.read());
+            assertEquals(20, in.read());
+            assertEquals(30, in.read());
+            assertInvalid(in);
+        }
+    }
+
+    private static void assertInvalid(IntReader in) {
+        try {
+            in.read();
+            fail("expected an invalid value");
+        } catch (NumberFormatException e) {
+            /* expected */
+        }
+    }
+}
@@ -6,24 +6,24 @@ import source.Errors;
 import syms.SymEntry;
 import syms.Type;
 import tree.*;
-import interpreter.Value.*;
 
-import java.io.BufferedReader;
 import java.io.PrintStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
- * Execute the abstract syntax tree directly
+ * Execute the abstract syntax tree directly.
+ * Expressions are evaluated to primitive int values, and variables are
+ * addressed directly from their symbol table entries, so that evaluating
+ * an expression does not allocate.
  */
-public class Interpreter implements StatementVisitor, ExpTransform<Value> {
+public class Interpreter implements Engine, StatementVisitor, ExpEvaluator {
 
     /**
-     * Buffered input of stdin
+     * Program input
      */
-    private final BufferedReader in;
+    private final IntReader in;
 
     /**
      * Errors are reported through the error handler.
@@ -31,20 +31,27 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     private final Errors errors;
 
     /**
-     * Debug messages are reported through the visitor debugger.
+     * Debug messages are reported through the visitor debugger, which is
+     * null if debugging is turned off so that no debug bookkeeping is done.
      */
     private final VisitorDebugger debug;
 
     /**
-     * Program output stream
+     * Program output
      */
-    private final PrintStream outStream;
+    final OutputSink output;
 
     /**
      * Runtime stack containing values of variables for each
      * procedure's stack frame
      **/
-    private Frame currentFrame;
+    RuntimeStack stack;
+
+    /**
+     * Do statements prepared for execution
+     */
+    private final Map<StatementNode.DoNode, DoLoop> doLoops =
+            new IdentityHashMap<>();
 
     /**
      * Construct a new interpreter
@@ -55,10 +62,23 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
      */
     public Interpreter(Errors errors, InputStream inputStream,
                        PrintStream outStream) {
+        this(errors, new IntReader(inputStream), outStream);
+    }
+
+    /**
+     * Construct a new interpreter
+     *
+     * @param errors    Error message handler
+     * @param in        Program input
+     * @param outStream Program output stream
+     */
+    public Interpreter(Errors errors, IntReader in, PrintStream outStream) {
         this.errors = errors;
-        this.debug = new VisitorDebugger("executing", errors);
-        this.in = new BufferedReader(new InputStreamReader(inputStream));
-        this.outStream = outStream;
+        this.debug = errors.isDebugging()
+                ? new VisitorDebugger("executing", errors) : null;
+        this.in = in;
+        this.output = new OutputSink(outStream, errors);
+        in.flushBeforeWaiting(output);
     }
 
     /**
@@ -70,9 +90,13 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
         beginExec("Program");
         SymEntry.ProcedureEntry procEntry = node.getProcEntry();
         /* Setup the main frame */
-        currentFrame = new Frame(null, null, procEntry);
+        stack = new RuntimeStack(procEntry);
         /* Execute main procedure code body */
-        visitBlockNode(procEntry.getBlock());
+        try {
+            visitBlockNode(procEntry.getBlock());
+        } finally {
+            output.flush();
+        }
         endExec("Program");
     }
 
@@ -111,14 +135,13 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
      * Lookup the closest frame with the same static level as the variable
      * and assign the value to the variables offset within that frame.
      *
-     * @param lValue  The address of the variable to assign the value to.
-     * @param value The value to assign.
+     * @param lValue The variable to assign the value to.
+     * @param value  The value to assign.
      */
-    private void assignValue(Value lValue, Value value) {
-        /* Resolve the frame containing the variable node */
-        Frame frame = currentFrame.lookupFrame(lValue.getAddressLevel());
+    private void assignValue(ExpNode lValue, int value) {
+        SymEntry.VarEntry entry = lValue(lValue);
         /* Assign the variables value to the offset in the frame */
-        frame.assign(lValue.getAddressOffset(), value);
+        stack.assign(entry.getLevel(), entry.getOffset(), value);
     }
 
     /**
@@ -127,15 +150,19 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     public void visitAssignmentNode(StatementNode.AssignmentNode node) {
         beginExec("Assignment");
         int length = node.size();
-        List<Value> queue = new ArrayList<>();
-        /* Evaluate the code to be assigned */
-        for (int i = 0; i < length; i++) {
-            queue.add(node.right(i).evaluate(this));
-        }
-        /* Assign the value to the variables offset */
-        for (int i = 0; i < length; i++) {
-            Value left = node.left(i).evaluate(this);
-            assignValue(left, queue.get(i));
+        if (length == 1) {
+            int value = node.right(0).evaluate(this);
+            assignValue(node.left(0), value);
+        } else {
+            int[] values = new int[length];
+            /* Evaluate the code to be assigned */
+            for (int i = 0; i < length; i++) {
+                values[i] = node.right(i).evaluate(this);
+            }
+            /* Assign the value to the variables offset */
+            for (int i = 0; i < length; i++) {
+                assignValue(node.left(i), values[i]);
+            }
         }
         endExec("Assignment");
     }
@@ -146,16 +173,15 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     public void visitReadNode(StatementNode.ReadNode node) {
         beginExec("Read");
         /* Read next int from standard input */
-        IntegerValue result = null;
+        int result = 0;
         try {
-            result = new IntegerValue(Integer.parseInt(in.readLine()));
-        } catch (Exception e) {
+            result = in.read();
+        } catch (NumberFormatException e) {
             runtime("invalid value read - must be an integer",
-                    node.getLocation(), currentFrame);
+                    node.getLocation());
             // Never reached
         }
-        Value lValue = node.getLValue().evaluate(this);
-        assignValue(lValue,result);
+        assignValue(node.getLValue(), result);
         endExec("Read");
     }
 
@@ -165,9 +191,9 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     public void visitWriteNode(StatementNode.WriteNode node) {
         beginExec("Write");
         /* Evaluate the write expression */
-        int result = node.getExp().evaluate(this).getInteger();
-        /* Print the result to the outStream */
-        outStream.println(result);
+        int result = node.getExp().evaluate(this);
+        /* Write the result to the program output */
+        output.writeLine(result);
         endExec("Write");
     }
 
@@ -177,11 +203,11 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     public void visitCallNode(StatementNode.CallNode node) {
         beginExec("Call");
         /* Decent to the executing procedures frame */
-        currentFrame = currentFrame.enterFrame(node.getEntry());
+        stack.enterFrame(node.getEntry());
         /* Resolve the code block to call and execute the block */
         node.getEntry().getBlock().accept(this);
         /* Return to the parent frame */
-        currentFrame = currentFrame.exitFrame();
+        stack.exitFrame();
         endExec("Call");
     }
 
@@ -192,7 +218,7 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     public void visitIfNode(StatementNode.IfNode node) {
         beginExec("If");
         ExpNode condition = node.getCondition();
-        if (condition.evaluate(this).getInteger() == Type.TRUE_VALUE) {
+        if (condition.evaluate(this) == Type.TRUE_VALUE) {
             /* Execute then statement if condition evaluates to true */
             node.getThenStmt().accept(this);
         } else {
@@ -209,7 +235,7 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
         beginExec("While");
         /* Execute loop statement while the condition is true */
         ExpNode condition = node.getCondition();
-        while (condition.evaluate(this).getInteger() == Type.TRUE_VALUE) {
+        while (condition.evaluate(this) == Type.TRUE_VALUE) {
             node.getLoopStmt().accept(this);
         }
         endExec("While");
@@ -222,18 +248,31 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
         endExec("Skip");
     }
 
+    /**
+     * Execute code for a do statement - repeatedly execute the branch of
+     * the first true guard until a branch that exits is executed
+     */
     @Override
     public void visitDoNode(StatementNode.DoNode doNode) {
         beginExec("Do");
-        System.out.println("EXEC doNode");
-        // No branch of do loop has a true guard
+        DoLoop loop = doLoop(doNode);
+        boolean first = true;
+        StatementNode.DoBranchNode branch;
+        do {
+            branch = loop.branches[selectBranch(doNode, loop, first)];
+            first = false;
+            branch.accept(this);
+        } while (!branch.exit());
         endExec("Do");
     }
 
+    /**
+     * Execute the statements of a do branch once its guard is true
+     */
     @Override
     public void visitDoBranchNode(StatementNode.DoBranchNode doBranchNode) {
         beginExec("Do Node");
-        System.out.println("EXEC doBranchNode");
+        doBranchNode.statements().accept(this);
         endExec("Do Node");
     }
 
@@ -243,19 +282,19 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     /**
      * Expression evaluation for an error node - should never be reached
      */
-    public ErrorValue visitErrorExpNode(ExpNode.ErrorNode node) {
+    public int visitErrorExpNode(ExpNode.ErrorNode node) {
         /* Error when error node is evaluated */
         errors.fatal("PL0 Internal error: attempt to evaluate ErrorExpNode",
                 node.getLocation());
-        return null; // Never reached
+        return -1; // Never reached
     }
 
     /**
      * Expression evaluation for a constant - resolve to the constant's value
      */
-    public IntegerValue visitConstNode(ExpNode.ConstNode node) {
+    public int visitConstNode(ExpNode.ConstNode node) {
         beginExec("ConstNode");
-        IntegerValue result = new IntegerValue(node.getValue());
+        int result = node.getValue();
         endExec("ConstNode");
         return result;
     }
@@ -263,36 +302,36 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     /**
      * Expression evaluation for an identifier node - should never be reached
      */
-    public Value visitIdentifierNode(ExpNode.IdentifierNode node) {
+    public int visitIdentifierNode(ExpNode.IdentifierNode node) {
         /* Error when identifier node is evaluated, identifier nodes should
          * be eliminated by the semantic syntax process
          */
         errors.fatal("PL0 Internal error: attempt to evaluate IdentifierNode",
                 node.getLocation());
-        return null; // Never reached
+        return -1; // Never reached
     }
 
     /**
-     * Expression evaluation for a variable - resolve variable from the frame
+     * Expression evaluation for a variable - should never be reached, as a
+     * variable only has an integer value when dereferenced, which is
+     * handled by visitDereferenceNode, and assignments resolve the variable
+     * being assigned directly.
      */
-    public Value visitVariableNode(ExpNode.VariableNode node) {
-        beginExec("Variable");
-        SymEntry.VarEntry entry = node.getVariable();
-        /* Construct the variable's address from its static level and offset */
-        Value lValue = new AddressValue(entry.getLevel(), entry.getOffset());
-        endExec("Variable");
-        return lValue;
+    public int visitVariableNode(ExpNode.VariableNode node) {
+        errors.fatal("PL0 Internal error: attempt to evaluate address of "
+                + node.getVariable().getIdent(), node.getLocation());
+        return -1; // Never reached
     }
 
     /**
      * Expression evaluation for a binary operator expression
      **/
-    public Value visitBinaryNode(ExpNode.BinaryNode node) {
+    public int visitBinaryNode(ExpNode.BinaryNode node) {
         beginExec("Binary");
         int result = -1;
         /* Evaluate the left and right sides of the operator expression */
-        int left = node.getLeft().evaluate(this).getInteger();
-        int right = node.getRight().evaluate(this).getInteger();
+        int left = node.getLeft().evaluate(this);
+        int right = node.getRight().evaluate(this);
         /* Perform the operation on the left and right side of the expression */
         switch (node.getOp()) {
             /* Mathematical operations */
@@ -308,8 +347,7 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
             case DIV_OP:
                 /* Error when division by zero occurs */
                 if (right == 0) {
-                    runtime("Division by zero", node.getRight().getLocation(),
-                            currentFrame);
+                    runtime("Division by zero", node.getRight().getLocation());
                 }
                 result = left / right;
                 break;
@@ -338,16 +376,16 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
                         node.getLocation());
         }
         endExec("Binary");
-        return new IntegerValue(result);
+        return result;
     }
 
     /**
      * Expression evaluation for a unary operator expression
      **/
-    public Value visitUnaryNode(ExpNode.UnaryNode node) {
+    public int visitUnaryNode(ExpNode.UnaryNode node) {
         beginExec("Unary");
         /* Handle unary operators */
-        int result = node.getArg().evaluate(this).getInteger();
+        int result = node.getArg().evaluate(this);
         //noinspection SwitchStatementWithTooFewBranches
         switch (node.getOp()) {
             case NEG_OP:
@@ -359,24 +397,24 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
                         node.getLocation());
         }
         endExec("Unary");
-        return new IntegerValue(result);
+        return result;
     }
 
     /**
-     * Expression evaluation for dereference - evaluate subexpression
+     * Expression evaluation for dereference - a single load of the
+     * dereferenced variable's value from its frame
      */
-    public Value visitDereferenceNode(ExpNode.DereferenceNode node) {
+    public int visitDereferenceNode(ExpNode.DereferenceNode node) {
         beginExec("Dereference");
-        Value lValue = node.getLeftValue().evaluate(this);
-        /* Resolve the frame containing the variable node */
-        Frame frame = currentFrame.lookupFrame(lValue.getAddressLevel());
-        /* Retrieve the variables value from the frame */
-        Value result = frame.lookup(lValue.getAddressOffset());
-        if (result == null) {
-            runtime("variable accessed before assignment", node.getLocation(),
-                    currentFrame);
-            return null; // Never reached
+        SymEntry.VarEntry entry = lValue(node.getLeftValue());
+        int level = entry.getLevel();
+        int offset = entry.getOffset();
+        if (!stack.isAssigned(level, offset)) {
+            runtime("variable accessed before assignment", node.getLocation());
+            return -1; // Never reached
         }
+        /* Retrieve the variables value from the frame */
+        int result = stack.lookup(level, offset);
         endExec("Dereference");
         return result;
     }
@@ -384,16 +422,16 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     /**
      * Expression evaluation for narrow subrange - perform subrange bound check
      */
-    public Value visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
+    public int visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
         beginExec("NarrowSubrange");
-        Value val = node.getExp().evaluate(this);
+        int val = node.getExp().evaluate(this);
         Type.SubrangeType subrange = node.getSubrangeType();
 
         /* Perform a subrange bounds check for the value */
-        if (!subrange.containsElement(subrange.getBaseType(), val.getInteger())) {
+        if (!subrange.containsElement(subrange.getBaseType(), val)) {
             runtime("bounds check failed at line "
                     + node.getLocation().getLine() + ": " + val + " not in "
-                    + subrange, node.getLocation(), currentFrame);
+                    + subrange, node.getLocation());
         }
         endExec("NarrowSubrange");
         return val;
@@ -402,20 +440,83 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
     /**
      * Expression evaluation for widen subrange - evaluate subexpression
      */
-    public Value visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
+    public int visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
         beginExec("WidenSubrange");
-        Value result = node.getExp().evaluate(this);
+        int result = node.getExp().evaluate(this);
         endExec("WidenSubrange");
         return result;
     }
 
     /* Supporting Methods */
 
+    /**
+     * The guards and branches of a do statement, in arrays so that they
+     * can be iterated over without allocation
+     */
+    static final class DoLoop {
+        final ExpNode[] guards;
+        final StatementNode.DoBranchNode[] branches;
+        final GuardOrder order;
+
+        DoLoop(StatementNode.DoNode node) {
+            guards = node.conditions().toArray(new ExpNode[0]);
+            branches = node.branches()
+                    .toArray(new StatementNode.DoBranchNode[0]);
+            order = new GuardOrder(node.conditions());
+        }
+    }
+
+    /**
+     * @return the do statement prepared for execution
+     */
+    DoLoop doLoop(StatementNode.DoNode node) {
+        DoLoop loop = doLoops.get(node);
+        if (loop == null) {
+            loop = new DoLoop(node);
+            doLoops.put(node, loop);
+        }
+        return loop;
+    }
+
+    /**
+     * Evaluate the guards of a do statement until one is true.
+     *
+     * @param first whether this is the first iteration of the execution of
+     *              the do statement
+     * @return the index of the branch of the true guard
+     */
+    int selectBranch(StatementNode.DoNode node, DoLoop loop, boolean first) {
+        for (int guard : loop.order.order(first)) {
+            if (loop.guards[guard].evaluate(this) == Type.TRUE_VALUE) {
+                loop.order.hit(guard);
+                return guard;
+            }
+        }
+        runtime("No branch of do loop has a true guard", node.getLocation());
+        return -1; // Never reached
+    }
+
+    /**
+     * Resolve the variable an l-value refers to. After static checking
+     * every l-value is a variable node.
+     */
+    private SymEntry.VarEntry lValue(ExpNode node) {
+        if (!(node instanceof ExpNode.VariableNode)) {
+            errors.fatal("PL0 Internal error: variable expected",
+                    node.getLocation());
+        }
+        beginExec("Variable");
+        SymEntry.VarEntry entry = ((ExpNode.VariableNode) node).getVariable();
+        endExec("Variable");
+        return entry;
+    }
+
     /**
      * Signal a runtime error has occurred at a given location
      */
-    private void runtime(String m, Location loc, Frame frame) {
-        String error = m + System.lineSeparator() + frame.toString();
+    private void runtime(String m, Location loc) {
+        String error = m + System.lineSeparator() + stack.toString();
+        output.flush();
         errors.fatal(error, loc);
     }
 
@@ -423,13 +524,17 @@ public class Interpreter implements StatementVisitor, ExpTransform<Value> {
      * Push current node onto debug rule stack and increase debug level
      */
     private void beginExec(String node) {
-        debug.beginDebug(node);
+        if (debug != null) {
+            debug.beginDebug(node);
+        }
     }
 
     /**
      * Pop current node from debug rule stack and decrease debug level
      */
     private void endExec(String node) {
-        debug.endDebug(node);
+        if (debug != null) {
+            debug.endDebug(node);
+        }
     }
 }
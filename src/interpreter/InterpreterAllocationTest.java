@@ -0,0 +1,117 @@
+package interpreter;
+
+import junit.framework.TestCase;
+import pl0.PL0_RD;
+import source.ErrorHandler;
+import source.Errors;
+import source.Source;
+import syms.CompilerContext;
+import tree.DeclNode;
+import tree.StaticChecker;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+/**
+ * class InterpreterAllocationTest - JUnit test that executing a loop with
+ * the tree interpreter does not allocate on the heap per iteration.
+ */
+public class InterpreterAllocationTest extends TestCase {
+
+    private static final PrintStream NULL_OUTPUT =
+            new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            });
+
+    private com.sun.management.ThreadMXBean threads;
+
+    public InterpreterAllocationTest(String testName) {
+        super(testName);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        threads = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+    }
+
+    /*
+     * The bytes allocated by running the loop for many more iterations
+     * must not grow with the number of iterations.
+     */
+    public void testLoopDoesNotAllocate() throws IOException {
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        DeclNode.ProcedureNode shortLoop = compile(loop(1000));
+        DeclNode.ProcedureNode longLoop = compile(loop(101000));
+        /* Warm up so that the allocations measured are those of the
+         * compiled interpreter */
+        for (int i = 0; i < 5; i++) {
+            allocatedBytes(longLoop);
+        }
+        /* Allow for allocations by the JIT compiler while measuring */
+        long extra = Long.MAX_VALUE;
+        for (int i = 0; i < 10 && extra >= 100000; i++) {
+            extra = Math.min(extra,
+                    allocatedBytes(longLoop) - allocatedBytes(shortLoop));
+        }
+        assertTrue("allocated " + extra + " bytes in 100000 iterations",
+                extra < 100000);
+    }
+
+    /**
+     * A loop of the given number of iterations over a main program variable
+     * and a variable of an enclosing procedure, with a bounds check.
+     */
+    private static String loop(int iterations) {
+        return "type S = [0.." + iterations + "];\n" +
+                "var x: int;\n" +
+                "procedure p() =\n" +
+                "  var i: S;\n" +
+                "  procedure q() =\n" +
+                "    begin\n" +
+                "      i := 0;\n" +
+                "      while i < " + iterations + " do\n" +
+                "        begin x := -(x + i * 2) / 3; i := i + 1 end\n" +
+                "    end;\n" +
+                "  begin call q() end;\n" +
+                "begin x := 0; call p(); write x end\n";
+    }
+
+    private long allocatedBytes(DeclNode.ProcedureNode program) {
+        long threadId = Thread.currentThread().getId();
+        Interpreter interpreter = new Interpreter(
+                new ErrorHandler(NULL_OUTPUT, null, false),
+                new ByteArrayInputStream(new byte[0]), NULL_OUTPUT);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        interpreter.executeCode(program);
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static DeclNode.ProcedureNode compile(String program)
+            throws IOException {
+        /* The error handler rereads the source from its file */
+        File file = File.createTempFile("loop", ".pl0");
+        file.deleteOnExit();
+        Files.write(file.toPath(), program.getBytes());
+        Source source = new Source(new FileInputStream(file),
+                file.getCanonicalPath());
+        Errors errors = new ErrorHandler(NULL_OUTPUT, source, false);
+        CompilerContext context = new CompilerContext(errors, source);
+        DeclNode.ProcedureNode tree = new PL0_RD().parse(context);
+        assertNotNull(tree);
+        new StaticChecker(context).visitProgramNode(tree);
+        assertFalse(errors.hadErrors());
+        return tree;
+    }
+}
@@ -0,0 +1,176 @@
+package interpreter;
+
+import source.Errors;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * OutputSink collects the values written by a running program. Each value
+ * is formatted directly into a reusable byte buffer, followed by a line
+ * separator, and the buffer is written to the output stream through a
+ * channel in large blocks. The buffer is written out only when it reaches
+ * its threshold, or when flush is called at the end of the program or
+ * before a runtime error is reported, so that the program's output stays
+ * in order with the messages written to the same stream by the compiler.
+ * The buffer starts small, so that a run with little output is cheap, and
+ * grows up to the threshold; once it has grown, writing a value does not
+ * allocate.
+ */
+public final class OutputSink implements Flushable {
+
+    /**
+     * Default number of bytes buffered before they are written out
+     */
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+
+    /**
+     * Line separator written after each value
+     */
+    private static final byte[] LINE_SEPARATOR =
+            System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Maximum length of a formatted value, e.g. -2147483648
+     */
+    private static final int MAX_DIGITS = 11;
+
+    /**
+     * Initial size of the buffer
+     */
+    private static final int INITIAL_SIZE = 256;
+
+    /**
+     * Stream the output is written to, flushed after each block
+     */
+    private final OutputStream stream;
+
+    /**
+     * Channel through which blocks are written to the stream
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Buffer holding the formatted values not yet written out
+     */
+    private byte[] bytes;
+    private ByteBuffer buffer;
+
+    /**
+     * Number of bytes buffered at which they are written out
+     */
+    private final int threshold;
+
+    /**
+     * Number of bytes buffered
+     */
+    private int length;
+
+    /**
+     * Construct an output sink with the default threshold
+     *
+     * @param stream to write the program output to
+     */
+    public OutputSink(OutputStream stream) {
+        this(stream, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Construct an output sink for a program run with an error handler.
+     * When debugging each value is written out immediately, so that it
+     * stays in order with the execution trace.
+     *
+     * @param stream to write the program output to
+     * @param errors error handler for the run
+     */
+    public OutputSink(OutputStream stream, Errors errors) {
+        this(stream, errors.isDebugging() ? 0 : DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Construct an output sink
+     *
+     * @param stream    to write the program output to
+     * @param threshold number of bytes buffered at which they are written
+     *                  out; 0 writes out each value as it is written
+     */
+    public OutputSink(OutputStream stream, int threshold) {
+        this.stream = stream;
+        this.channel = Channels.newChannel(stream);
+        this.threshold = threshold;
+        this.bytes = new byte[Math.min(INITIAL_SIZE,
+                threshold + MAX_DIGITS + LINE_SEPARATOR.length)];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Write a value followed by a line separator
+     */
+    public void writeLine(int value) {
+        if (length + MAX_DIGITS + LINE_SEPARATOR.length > bytes.length) {
+            grow();
+        }
+        int pos = length;
+        /* Format the negated magnitude so that MIN_VALUE needs no
+         * special case */
+        int v = value;
+        if (v < 0) {
+            bytes[pos++] = '-';
+        } else {
+            v = -v;
+        }
+        int digits = 1;
+        for (int rest = v; rest <= -10; rest /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            bytes[i] = (byte) ('0' - v % 10);
+            v /= 10;
+        }
+        pos = end;
+        for (byte b : LINE_SEPARATOR) {
+            bytes[pos++] = b;
+        }
+        length = pos;
+        if (length >= threshold) {
+            flush();
+        }
+    }
+
+    /**
+     * Double the size of the buffer, up to that needed for the threshold
+     */
+    private void grow() {
+        bytes = Arrays.copyOf(bytes, Math.min(2 * bytes.length,
+                threshold + MAX_DIGITS + LINE_SEPARATOR.length));
+        buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Write out any buffered output
+     */
+    public void flush() {
+        if (length == 0) {
+            return;
+        }
+        buffer.clear();
+        buffer.limit(length);
+        length = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            stream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
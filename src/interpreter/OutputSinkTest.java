@@ -0,0 +1,54 @@
+package interpreter;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * class OutputSinkTest - JUnit test of the formatting and buffering of
+ * program output.
+ */
+public class OutputSinkTest extends TestCase {
+
+    private static final String NL = System.lineSeparator();
+
+    public OutputSinkTest(String testName) {
+        super(testName);
+    }
+
+    public void testFormatsValues() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(bytes);
+        int[] values = {0, 7, -7, 10, -10, 1234567890,
+                Integer.MAX_VALUE, Integer.MIN_VALUE};
+        StringBuilder expected = new StringBuilder();
+        for (int value : values) {
+            sink.writeLine(value);
+            expected.append(value).append(NL);
+        }
+        sink.flush();
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+    public void testBuffersUntilFlushed() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(bytes);
+        sink.writeLine(42);
+        assertEquals(0, bytes.size());
+        sink.flush();
+        assertEquals("42" + NL, bytes.toString());
+    }
+
+    public void testWritesOutAtThreshold() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink sink = new OutputSink(bytes, 8);
+        sink.writeLine(123);
+        assertEquals(0, bytes.size());
+        sink.writeLine(456789);
+        assertEquals("123" + NL + "456789" + NL, bytes.toString());
+        sink.writeLine(1);
+        sink.flush();
+        assertEquals("123" + NL + "456789" + NL + "1" + NL,
+                bytes.toString());
+    }
+}
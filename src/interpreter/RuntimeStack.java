@@ -0,0 +1,231 @@
+package interpreter;
+
+import syms.SymEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RuntimeStack stores the frames of the active procedures contiguously in a
+ * single growable int array. Each frame consists of a header holding the
+ * saved display entry, dynamic link, static level and procedure of the
+ * frame, followed by the values of the procedure's variables indexed by
+ * their offsets. Frames are referred to by their frame pointer, the index
+ * of the start of the frame. Whether each variable has been assigned is
+ * tracked in a parallel bitset.
+ * <p>
+ * Rather than following static links, frames are addressed through a
+ * display: an array holding, for each static level, the frame pointer of
+ * the innermost frame at that level visible from the current procedure.
+ * On entry to a procedure at level n, the display entry for level n is
+ * saved in the new frame and replaced by the new frame, and it is restored
+ * on exit. Entries for levels above n are left as they are, as they are
+ * not accessible from the procedure, and any procedures it calls restore
+ * the entries they replace. Accessing a variable at any level is then
+ * a single array index, independent of the depth of nesting.
+ */
+class RuntimeStack {
+    /* Layout of a frame header */
+    private static final int SAVED_DISPLAY = 0;
+    private static final int DYNAMIC_LINK = 1;
+    private static final int LEVEL = 2;
+    private static final int PROCEDURE = 3;
+    private static final int HEADER = 4;
+
+    /**
+     * Link value used for the frame of the main program
+     */
+    private static final int NO_FRAME = -1;
+
+    /**
+     * Memory holding the frames
+     */
+    private int[] memory = new int[256];
+
+    /**
+     * Bitset of the memory locations holding assigned variables
+     */
+    private long[] assigned = new long[memory.length / 64];
+
+    /**
+     * Frame pointer of the innermost visible frame at each static level
+     */
+    private int[] display = new int[8];
+
+    /**
+     * Frame pointer of the current frame
+     */
+    private int fp;
+
+    /**
+     * Index of the first free memory location, the end of the current frame
+     */
+    private int top;
+
+    /**
+     * Procedures referred to by frames, numbered in order of first entry
+     */
+    private final List<SymEntry.ProcedureEntry> procedures = new ArrayList<>();
+    private final Map<SymEntry.ProcedureEntry, Integer> procedureNumbers =
+            new IdentityHashMap<>();
+
+    /**
+     * Construct a runtime stack containing the frame of the main program
+     *
+     * @param main proc entry of the main program
+     */
+    RuntimeStack(SymEntry.ProcedureEntry main) {
+        fp = NO_FRAME;
+        top = 0;
+        pushFrame(main);
+    }
+
+    /**
+     * Enter a new frame for a called procedure
+     */
+    void enterFrame(SymEntry.ProcedureEntry procedure) {
+        pushFrame(procedure);
+    }
+
+    /**
+     * Exit the current frame, returning to the caller's frame
+     */
+    void exitFrame() {
+        display[memory[fp + LEVEL]] = memory[fp + SAVED_DISPLAY];
+        top = fp;
+        fp = memory[fp + DYNAMIC_LINK];
+    }
+
+    /**
+     * Find the frame at a static level visible from the current frame
+     *
+     * @return frame pointer of the frame found
+     */
+    int lookupFrame(int level) {
+        return display[level];
+    }
+
+    /**
+     * @return true iff the variable at the given static level and offset
+     * has been assigned
+     */
+    boolean isAssigned(int level, int offset) {
+        int address = lookupFrame(level) + HEADER + offset;
+        return (assigned[address >>> 6] & (1L << address)) != 0;
+    }
+
+    /**
+     * Value of the variable at the given static level and offset.
+     * Only meaningful if the variable has been assigned.
+     */
+    int lookup(int level, int offset) {
+        return memory[lookupFrame(level) + HEADER + offset];
+    }
+
+    /**
+     * Assign a value to the variable at the given static level and offset
+     */
+    void assign(int level, int offset, int value) {
+        int address = lookupFrame(level) + HEADER + offset;
+        memory[address] = value;
+        assigned[address >>> 6] |= 1L << address;
+    }
+
+    /**
+     * @return the number of memory locations used by the frames,
+     * including their headers
+     */
+    int size() {
+        return top;
+    }
+
+    /**
+     * Dump contents of the current frame and the frames of its callers
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int frame = fp; frame != NO_FRAME;
+             frame = memory[frame + DYNAMIC_LINK]) {
+            SymEntry.ProcedureEntry procedure =
+                    procedures.get(memory[frame + PROCEDURE]);
+            result.append("PROC ").append(procedure.getIdent())
+                    .append(" : level ").append(memory[frame + LEVEL])
+                    .append(System.lineSeparator());
+
+            for (SymEntry entry : procedure.getLocalScope().getEntries()) {
+                if (!(entry instanceof SymEntry.VarEntry)) {
+                    continue;
+                }
+
+                SymEntry.VarEntry variable = (SymEntry.VarEntry) entry;
+                int address = frame + HEADER + variable.getOffset();
+
+                result.append("\t").append(variable.getIdent());
+
+                if ((assigned[address >>> 6] & (1L << address)) == 0) {
+                    result.append(" = unassigned").append(System.lineSeparator());
+                    continue;
+                }
+
+                result.append(" = ").append(memory[address]);
+                result.append(System.lineSeparator());
+            }
+        }
+        return result.toString();
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Push a new frame with all its variables unassigned
+     */
+    private void pushFrame(SymEntry.ProcedureEntry procedure) {
+        int level = procedure.getLocalScope().getLevel();
+        if (level >= display.length) {
+            display = Arrays.copyOf(display, 2 * level);
+        }
+        int newFp = top;
+        int end = newFp + HEADER
+                + procedure.getLocalScope().getVariableSpace();
+        if (end > memory.length) {
+            int size = Math.max(end, 2 * memory.length);
+            memory = Arrays.copyOf(memory, size);
+            assigned = Arrays.copyOf(assigned, (size + 63) / 64);
+        }
+        memory[newFp + SAVED_DISPLAY] = display[level];
+        memory[newFp + DYNAMIC_LINK] = fp;
+        memory[newFp + LEVEL] = level;
+        memory[newFp + PROCEDURE] = procedureNumber(procedure);
+        clearAssigned(newFp + HEADER, end);
+        display[level] = newFp;
+        fp = newFp;
+        top = end;
+    }
+
+    /**
+     * Mark the memory locations from start (inclusive) to end (exclusive)
+     * as unassigned
+     */
+    private void clearAssigned(int start, int end) {
+        for (int address = start; address < end; address++) {
+            assigned[address >>> 6] &= ~(1L << address);
+        }
+    }
+
+    /**
+     * Number of a procedure for the frame header
+     */
+    private int procedureNumber(SymEntry.ProcedureEntry procedure) {
+        Integer number = procedureNumbers.get(procedure);
+        if (number == null) {
+            number = procedures.size();
+            procedures.add(procedure);
+            procedureNumbers.put(procedure, number);
+        }
+        return number;
+    }
+}
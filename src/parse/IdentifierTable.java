@@ -0,0 +1,127 @@
+package parse;
+
+import java.util.Arrays;
+
+/**
+ * class IdentifierTable - the identifiers seen by a scanner, each numbered
+ * from 0 in the order in which they are first seen, and held as a single
+ * String that every occurrence of the identifier shares.
+ * An identifier is looked up from the characters the scanner has buffered,
+ * so a String is only created the first time an identifier is seen.
+ * The table is open addressed, keyed by the String hash code of the name.
+ */
+class IdentifierTable {
+
+    /**
+     * Number plus one of the identifier in each slot, 0 for an empty slot
+     */
+    private int[] slots = new int[256];
+    /**
+     * Names of the identifiers by number
+     */
+    private String[] names = new String[128];
+    /**
+     * Hash codes of the identifiers by number
+     */
+    private int[] hashes = new int[128];
+    /**
+     * Number of identifiers in the table
+     */
+    private int size = 0;
+
+    /**
+     * Look up an identifier, adding it if it is new.
+     *
+     * @param chars  buffer holding the identifier from its start
+     * @param length number of characters in the identifier
+     * @param hash   String hash code of the identifier
+     * @return the number of the identifier
+     */
+    int intern(char[] chars, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(slot, new String(chars, 0, length), hash);
+            }
+            if (hashes[id] == hash && matches(names[id], chars, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Look up an identifier, adding it if it is new.
+     *
+     * @return the number of the identifier
+     */
+    int intern(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(slot, name, hash);
+            }
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @return the name of the identifier with the given number
+     */
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return the number of distinct identifiers in the table
+     */
+    int size() {
+        return size;
+    }
+
+    private int add(int slot, String name, int hash) {
+        int id = size++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, 2 * id);
+            hashes = Arrays.copyOf(hashes, 2 * id);
+        }
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size > slots.length / 2) {
+            grow();
+        }
+        return id;
+    }
+
+    private static boolean matches(String name, char[] chars, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Double the number of slots, rehashing the identifiers
+     */
+    private void grow() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package parse;
 
-import source.ErrorHandler;
-import source.Errors;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
 /**
@@ -20,10 +18,6 @@ public class LexicalToken {
      * The location of the first char of the token in the input source
      */
     private final Location loc;
-    /**
-     * Error handler
-     */
-    private static final Errors errors = ErrorHandler.getErrorHandler();
 
 //****************** Constructors ********************
 
@@ -69,8 +63,7 @@ public class LexicalToken {
     @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
     @Override
     public boolean equals(Object o) {
-        errors.fatal("Use isMatch to compare token kind", loc);
-        return false;
+        throw new IllegalStateException("Use isMatch to compare token kind");
     }
 
     /**
@@ -85,14 +78,13 @@ public class LexicalToken {
 
     /* Virtual extract integer value of INTEGER token */
     public int getIntValue() {
-        errors.fatal("call on getIntValue on a Token", loc);
-        return 0;
+        throw new IllegalStateException("call on getIntValue on a Token");
     }
 
     /* Virtual extract name of IDENTIFIER token */
     public String getName() {
-        errors.fatal("Internal error: call on getName on a Token", loc);
-        return null;
+        throw new IllegalStateException(
+                "Internal error: call on getName on a Token");
     }
 
     /**
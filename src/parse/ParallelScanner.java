@@ -0,0 +1,170 @@
+package parse;
+
+import source.Errors;
+import source.Source;
+import syms.CompilerContext;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * class ParallelScanner - scans the whole of a source into a TokenBuffer,
+ * with the chunks of a large ASCII source scanned in parallel.
+ * <p>
+ * No token spans a newline, as a comment runs only to the end of its line,
+ * so a source can be cut into chunks at line boundaries and each chunk
+ * scanned on its own by a Scanner, with its lines counted from 0 and its
+ * own identifiers. The buffers of the chunks are then copied in order into
+ * one buffer, in parallel, with their lines rebased by the number of lines
+ * before the chunk and their identifiers renumbered. The lexical errors of
+ * each chunk are held with its tokens, so they are reported in the same
+ * order as when scanning sequentially.
+ * A source that is not ASCII is scanned sequentially.
+ */
+public class ParallelScanner {
+
+    /**
+     * Smallest chunk worth scanning as a separate task
+     */
+    static final int MIN_CHUNK = 1 << 16;
+    /**
+     * Number of chunks per thread, so that uneven chunks balance out
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelScanner() {
+    }
+
+    /**
+     * Scan a source into a token buffer ending with the end of file token.
+     * A pool with a single thread scans the source as one chunk.
+     *
+     * @param context compilation whose source is scanned
+     * @param pool    pool whose threads scan the chunks
+     * @return the tokens of the source
+     */
+    public static TokenBuffer scan(CompilerContext context, ForkJoinPool pool) {
+        Source source = context.getSource();
+        ByteBuffer ascii = source.asciiView();
+        if (ascii == null || pool.getParallelism() == 1) {
+            return new Scanner(context).scanAll(true);
+        }
+        int chunkSize = Math.max(MIN_CHUNK, ascii.limit()
+                / (CHUNKS_PER_THREAD * pool.getParallelism()));
+        return scan(ascii, chunkSize, context.getErrors(), pool);
+    }
+
+    /**
+     * Scan ASCII bytes cut into chunks of about chunkSize bytes
+     */
+    static TokenBuffer scan(ByteBuffer ascii, int chunkSize, Errors errors,
+                            ForkJoinPool pool) {
+        List<ByteBuffer> chunks = split(ascii, chunkSize);
+        if (chunks.size() == 1) {
+            return new Scanner(ascii, false, errors).scanAll(true);
+        }
+        TokenBuffer[] buffers = new TokenBuffer[chunks.size()];
+        int[] lines = new int[chunks.size()];
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (int i = 0; i < buffers.length; i++) {
+                    int chunk = i;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            Scanner scanner = new Scanner(chunks.get(chunk),
+                                    chunk > 0, errors);
+                            buffers[chunk] = scanner.scanAll(
+                                    chunk == buffers.length - 1);
+                            lines[chunk] = scanner.getLine();
+                        }
+                    });
+                }
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        return concatenate(buffers, lines, pool);
+    }
+
+    /**
+     * Cut bytes into chunks of at least chunkSize bytes, each but the last
+     * ending just after a newline
+     */
+    static List<ByteBuffer> split(ByteBuffer ascii, int chunkSize) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int length = ascii.limit();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + chunkSize);
+            while (end < length && ascii.get(end - 1) != '\n') {
+                end++;
+            }
+            ByteBuffer chunk = ascii.duplicate();
+            chunk.position(start).limit(end);
+            chunks.add(chunk.slice());
+            start = end;
+        }
+        if (chunks.isEmpty()) {
+            chunks.add(ascii);
+        }
+        return chunks;
+    }
+
+    /**
+     * Copy the buffers of the chunks into one buffer, the tokens of each
+     * chunk in parallel and then the errors in order
+     *
+     * @param lines the number of newlines in each chunk
+     */
+    private static TokenBuffer concatenate(TokenBuffer[] buffers, int[] lines,
+                                           ForkJoinPool pool) {
+        int count = buffers.length;
+        int[] starts = new int[count];
+        int[] firstLines = new int[count];
+        int[][] identifierIds = new int[count][];
+        IdentifierTable identifiers = new IdentifierTable();
+        int size = 0;
+        int line = 0;
+        for (int i = 0; i < count; i++) {
+            starts[i] = size;
+            firstLines[i] = line;
+            size += buffers[i].size();
+            line += lines[i];
+            IdentifierTable chunkIdentifiers = buffers[i].identifiers;
+            identifierIds[i] = new int[chunkIdentifiers.size()];
+            for (int id = 0; id < identifierIds[i].length; id++) {
+                identifierIds[i][id] =
+                        identifiers.intern(chunkIdentifiers.name(id));
+            }
+        }
+        TokenBuffer tokens = new TokenBuffer(size, identifiers);
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    int chunk = i;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            tokens.copy(buffers[chunk], starts[chunk],
+                                    firstLines[chunk], identifierIds[chunk]);
+                        }
+                    });
+                }
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+        tokens.setSize(size);
+        for (int i = 0; i < count; i++) {
+            tokens.copyErrors(buffers[i], starts[i]);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,139 @@
+package parse;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import junit.framework.TestCase;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * class ParallelScannerTest - JUnit test that scanning a source cut into
+ * chunks gives exactly the tokens, and the lexical errors in the same
+ * order, as scanning it sequentially.
+ */
+public class ParallelScannerTest extends TestCase {
+
+    private static final String ERRORS =
+            "const big = 2147483648; ok = 2147483647;\n" +
+            "var x: int;\n" +
+            "begin // 99999999999 in a comment\n" +
+            "  x := 99999999999 + 1;\n" +
+            "\n" +
+            "  x := 3 $ 4;\n" +
+            "  write 12345678901234\n" +
+            "end";
+
+    private ForkJoinPool pool;
+
+    public ParallelScannerTest(String testName) {
+        super(testName);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        pool = new ForkJoinPool(4);
+    }
+
+    protected void tearDown() throws Exception {
+        pool.shutdown();
+        super.tearDown();
+    }
+
+    public void testSplitAtLines() {
+        ByteBuffer bytes = ByteBuffer.wrap(ERRORS.getBytes());
+        List<ByteBuffer> chunks = ParallelScanner.split(bytes, 10);
+        assertTrue(chunks.size() > 1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            if (i < chunks.size() - 1) {
+                assertEquals('\n', chunk.get(chunk.limit() - 1));
+            }
+            while (chunk.hasRemaining()) {
+                text.append((char) chunk.get());
+            }
+        }
+        assertEquals(ERRORS, text.toString());
+        assertEquals(1, ParallelScanner.split(ByteBuffer.allocate(0), 10)
+                .size());
+    }
+
+    public void testErrorsInOrder() {
+        for (int chunkSize = 1; chunkSize < ERRORS.length(); chunkSize *= 2) {
+            String errors = assertSameAsSequential("errors",
+                    ERRORS.getBytes(), chunkSize);
+            assertEquals(errors, 4, errors.split("integer too large", -1)
+                    .length);
+        }
+    }
+
+    public void testTestPrograms() throws IOException {
+        File[] programs = new File("test-pgm").listFiles(
+                f -> f.getName().endsWith(".pl0"));
+        assertNotNull(programs);
+        for (File program : programs) {
+            byte[] bytes = Files.readAllBytes(program.toPath());
+            assertSameAsSequential(program.getName(), bytes, 16);
+        }
+    }
+
+    /**
+     * @return the error messages
+     */
+    private String assertSameAsSequential(String name, byte[] bytes,
+                                          int chunkSize) {
+        ByteArrayOutputStream expectedErrors = new ByteArrayOutputStream();
+        Iterator<LexicalToken> expected = new Scanner(context(bytes,
+                expectedErrors));
+        ByteArrayOutputStream actualErrors = new ByteArrayOutputStream();
+        Errors errors = context(bytes, actualErrors).getErrors();
+        Iterator<LexicalToken> actual = ParallelScanner.scan(
+                ByteBuffer.wrap(bytes), chunkSize, errors, pool)
+                .tokens(errors);
+        LexicalToken token;
+        do {
+            token = expected.next();
+            LexicalToken other = actual.next();
+            String where = name + " " + chunkSize + " " + token.getLocation();
+            assertEquals(where, token.toString(), other.toString());
+            assertEquals(where, token.getLocation().getLine(),
+                    other.getLocation().getLine());
+            assertEquals(where, token.getLocation().getColumn(),
+                    other.getLocation().getColumn());
+        } while (!token.isMatch(Token.EOF));
+        assertTrue(actual.next().isMatch(Token.EOF));
+        assertEquals(name, expectedErrors.toString(), actualErrors.toString());
+        return actualErrors.toString();
+    }
+
+    /**
+     * @return a compilation of a source whose messages, listed without the
+     * source, are written to messages as they are reported, rather than
+     * sorted by location
+     */
+    private static CompilerContext context(byte[] bytes,
+                                           ByteArrayOutputStream messages) {
+        MappedSource source = new MappedSource(ByteBuffer.wrap(bytes),
+                "test.pl0");
+        Errors errors = new ErrorHandler(new PrintStream(messages, true),
+                null, false) {
+            @Override
+            public void error(String m, Location loc) {
+                super.error(m, loc);
+                flush();
+            }
+        };
+        return new CompilerContext(errors, source);
+    }
+}
@@ -2,7 +2,7 @@ package parse;
 
 import java.util.*;
 
-import syms.Predefined;
+import syms.CompilerContext;
 import syms.Scope;
 import syms.SymEntry;
 import syms.SymbolTable;
@@ -13,7 +13,6 @@ import tree.ExpNode;
 import tree.Operator;
 import tree.StatementNode;
 
-import source.ErrorHandler;
 import source.Errors;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
@@ -79,7 +78,15 @@ public class Parser {
     /**
      * The object to report errors to
      */
-    private final Errors errors = ErrorHandler.getErrorHandler();
+    private final Errors errors;
+    /**
+     * The compilation being parsed
+     */
+    private final CompilerContext context;
+    /**
+     * The recovery sets formed during the parse
+     */
+    private final TokenSet.Unions unions = new TokenSet.Unions();
 
     //****************************** Constructor ****************************
 
@@ -88,10 +95,13 @@ public class Parser {
      *
      * @param tokens - stream of lexical tokens
      *               requires tokens != null;
+     * @param context - compilation being parsed
      */
-    public Parser(TokenStream tokens) {
+    public Parser(TokenStream tokens, CompilerContext context) {
         /* Set up an input token stream */
         this.tokens = tokens;
+        this.context = context;
+        this.errors = context.getErrors();
     }
 
     //***************************** Public Methods ****************************
@@ -103,50 +113,26 @@ public class Parser {
      * the parser failed to match a program.
      */
     public DeclNode.ProcedureNode parseMain() {
-        DeclNode.ProcedureNode program = parseProgram(new TokenSet(Token.EOF));
+        DeclNode.ProcedureNode program = parseProgram(TokenSet.of(Token.EOF));
         errors.flush();
         return program;
     }
 
-    /**
-     * Interface used to allow the parsers for non-terminals to
-     * be written in terms of lambda expressions.
-     */
-
-    interface ParseVoid {
-        void parseBody();
-    }
-
-    /**
-     * Parse the non-terminal named rule, that starts with expected, in a
-     * context with syntax error recovery tokens in recoverSet, using
-     * the recogniser parser. These versions are for when there is no
-     * result (node) to be returned by the particular parser,
-     * i.e. the result type of the parser is void.
-     *
-     * @param rule       - the name of the non-terminal being recognised
-     * @param expected   - the start set for the non-terminal
-     * @param recoverSet - the syntax error recovery set
-     * @param parser     - function that parses the non-terminal
-     */
-    private void parse(String rule, TokenSet expected, TokenSet recoverSet,
-                       ParseVoid parser) {
-        if (!tokens.beginRule(rule, expected, recoverSet)) {
-            return;
-        }
-        assert tokens.isIn(expected);
-        // Call the parser function that was passed as a parameter
-        parser.parseBody();
-        tokens.endRule(rule, recoverSet);
-    }
-
-    /**
-     * A version of the previous method with a single token start set.
+    /*
+     * Each parse method parses a non-terminal, named rule, that starts with
+     * a token in its start set, in a context with syntax error recovery
+     * tokens in recoverSet, in the form
+     *     if (!tokens.beginRule(rule, startSet, recoverSet)) {
+     *         return <error node>;
+     *     }
+     *     ... parse the non-terminal ...
+     *     tokens.endRule(rule, recoverSet);
+     * The bodies are written out in place, rather than passed as lambda
+     * expressions, and the recovery sets are unions of precomputed sets
+     * that are looked up in the unions table of the parser rather than
+     * allocated, so that successfully parsing a non-terminal allocates
+     * nothing but its tree.
      */
-    private void parse(String rule, Token expected, TokenSet recoverSet,
-                       ParseVoid parser) {
-        parse(rule, new TokenSet(expected), recoverSet, parser);
-    }
 
     /**
      * Interface for handling error node returns from the parser
@@ -157,18 +143,9 @@ public class Parser {
     }
 
     /**
-     * Interface used to allow the parsers for non-terminals to
-     * be written in terms of lambda expressions.
-     *
-     * @param <Node> type of the tree node returned by the parser
-     */
-    interface ParseNonTerminal<Node> {
-        Node parseBody();
-    }
-
-    /**
-     * Class ParserMethod provides generic methods for parsing a non-terminal
-     * and returning a result that is usually a tree node of the generic type Node.
+     * Class ParseMethod provides the error result for the parse methods
+     * for a non-terminal whose result is usually a tree node of the generic
+     * type Node.
      */
     class ParseMethod<Node> {
         /**
@@ -185,36 +162,11 @@ public class Parser {
         }
 
         /**
-         * Parse the non-terminal name rule, that starts with expected,
-         * in a context with syntax error recovery tokens in recoverSet,
-         * using the recogniser parser.
-         * These versions are for when there is a result of the generic
-         * type Node to be returned by the particular parser.
-         *
-         * @param rule       - the name of the non-terminal being recognised
-         * @param expected   - the start set for the non-terminal
-         * @param recoverSet - the syntax error recovery set
-         * @param parser     - function that parses the non-terminal
-         * @return the abstract syntax tree node for the construct parsed
+         * @return the node to return when the non-terminal matches nothing
+         * due to a syntax error
          */
-        private Node parse(String rule, TokenSet expected, TokenSet recoverSet,
-                           ParseNonTerminal<Node> parser) {
-            if (!tokens.beginRule(rule, expected, recoverSet)) {
-                return errorNode.errorReturn(tokens.getLocation());
-            }
-            assert tokens.isIn(expected);
-            // Call the parser function that was passed as a parameter
-            Node result = parser.parseBody();
-            tokens.endRule(rule, recoverSet);
-            return result;
-        }
-
-        /**
-         * Version of the previous when the start contains just one token
-         */
-        private Node parse(String rule, Token expected, TokenSet recoverSet,
-                           ParseNonTerminal<Node> parser) {
-            return parse(rule, new TokenSet(expected), recoverSet, parser);
+        Node errorReturn() {
+            return errorNode.errorReturn(tokens.getLocation());
         }
     }
 
@@ -282,19 +234,20 @@ public class Parser {
      * Rule: ConditionList -> Condition { COMMA Condition }
      */
     private List<ExpNode> parseConditionList(TokenSet recoverSet) {
-        return expList.parse("Condition List", CONDITION_START_SET, recoverSet,
-                () -> {
-                    TokenSet conditionListRecoverSet = recoverSet.union(Token.COMMA);
-                    List<ExpNode> conditions = new ArrayList<>();
-                    ExpNode cond = parseCondition(conditionListRecoverSet);
-                    conditions.add(cond);
-                    while (tokens.isMatch(Token.COMMA)) {
-                        tokens.match(Token.COMMA);
-                        cond = parseCondition(conditionListRecoverSet);
-                        conditions.add(cond);
-                    }
-                    return conditions;
-                });
+        if (!tokens.beginRule("Condition List", CONDITION_START_SET, recoverSet)) {
+            return expList.errorReturn();
+        }
+        TokenSet conditionListRecoverSet = unions.union(recoverSet, Token.COMMA);
+        List<ExpNode> conditions = new ArrayList<>();
+        ExpNode cond = parseCondition(conditionListRecoverSet);
+        conditions.add(cond);
+        while (tokens.isMatch(Token.COMMA)) {
+            tokens.match(Token.COMMA);
+            cond = parseCondition(conditionListRecoverSet);
+            conditions.add(cond);
+        }
+        tokens.endRule("Condition List", recoverSet);
+        return conditions;
     }
 
     /**
@@ -309,19 +262,20 @@ public class Parser {
      * Rule: RelCondition -> Exp [ RelOp Exp ]
      */
     private ExpNode parseRelCondition(TokenSet recoverSet) {
-        return exp.parse("RelCondition", REL_CONDITION_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in REL_CONDITION_START_SET */
-                    ExpNode cond = parseExp(recoverSet.union(REL_OPS_SET));
-                    if (tokens.isIn(REL_OPS_SET)) {
-                        Location loc = tokens.getLocation();
-                        Operator operatorCode =
-                                parseRelOp(recoverSet.union(EXP_START_SET));
-                        ExpNode right = parseExp(recoverSet);
-                        cond = new ExpNode.BinaryNode(loc, operatorCode, cond, right);
-                    }
-                    return cond;
-                });
+        if (!tokens.beginRule("RelCondition", REL_CONDITION_START_SET, recoverSet)) {
+            return exp.errorReturn();
+        }
+        /* The current token is in REL_CONDITION_START_SET */
+        ExpNode cond = parseExp(unions.union(recoverSet, REL_OPS_SET));
+        if (tokens.isIn(REL_OPS_SET)) {
+            Location loc = tokens.getLocation();
+            Operator operatorCode =
+                    parseRelOp(unions.union(recoverSet, EXP_START_SET));
+            ExpNode right = parseExp(recoverSet);
+            cond = new ExpNode.BinaryNode(loc, operatorCode, cond, right);
+        }
+        tokens.endRule("RelCondition", recoverSet);
+        return cond;
     }
 
     /**
@@ -335,168 +289,174 @@ public class Parser {
      * Rule: RelOp -> EQUALS | NEQUALS | LESS | GREATER | LEQUALS | GEQUALS
      */
     private Operator parseRelOp(TokenSet recoverSet) {
-        return op.parse("RelOp", REL_OPS_SET, recoverSet,
-                () -> {
-                    /* The current token is in REL_OPS_SET.
-                     * Rather than using a cascaded if-the-else, as indicated in the
-                     * recursive descent parsing notes, it is simpler to use a
-                     * switch statement when all the branches have a start set that
-                     * contains just one token. */
-                    Operator operatorCode = Operator.INVALID_OP;
-                    switch (tokens.getKind()) {
-                        case EQUALS:
-                            operatorCode = Operator.EQUALS_OP;
-                            tokens.match(Token.EQUALS); /* cannot fail */
-                            break;
-                        case NEQUALS:
-                            operatorCode = Operator.NEQUALS_OP;
-                            tokens.match(Token.NEQUALS); /* cannot fail */
-                            break;
-                        case LESS:
-                            operatorCode = Operator.LESS_OP;
-                            tokens.match(Token.LESS); /* cannot fail */
-                            break;
-                        case GREATER:
-                            operatorCode = Operator.GREATER_OP;
-                            tokens.match(Token.GREATER); /* cannot fail */
-                            break;
-                        case LEQUALS:
-                            operatorCode = Operator.LEQUALS_OP;
-                            tokens.match(Token.LEQUALS); /* cannot fail */
-                            break;
-                        case GEQUALS:
-                            operatorCode = Operator.GEQUALS_OP;
-                            tokens.match(Token.GEQUALS); /* cannot fail */
-                            break;
-                        default:
-                            fatal("parseRelOp");
-                    }
-                    return operatorCode;
-                });
+        if (!tokens.beginRule("RelOp", REL_OPS_SET, recoverSet)) {
+            return op.errorReturn();
+        }
+        /* The current token is in REL_OPS_SET.
+         * Rather than using a cascaded if-the-else, as indicated in the
+         * recursive descent parsing notes, it is simpler to use a
+         * switch statement when all the branches have a start set that
+         * contains just one token. */
+        Operator operatorCode = Operator.INVALID_OP;
+        switch (tokens.getKind()) {
+            case EQUALS:
+                operatorCode = Operator.EQUALS_OP;
+                tokens.match(Token.EQUALS); /* cannot fail */
+                break;
+            case NEQUALS:
+                operatorCode = Operator.NEQUALS_OP;
+                tokens.match(Token.NEQUALS); /* cannot fail */
+                break;
+            case LESS:
+                operatorCode = Operator.LESS_OP;
+                tokens.match(Token.LESS); /* cannot fail */
+                break;
+            case GREATER:
+                operatorCode = Operator.GREATER_OP;
+                tokens.match(Token.GREATER); /* cannot fail */
+                break;
+            case LEQUALS:
+                operatorCode = Operator.LEQUALS_OP;
+                tokens.match(Token.LEQUALS); /* cannot fail */
+                break;
+            case GEQUALS:
+                operatorCode = Operator.GEQUALS_OP;
+                tokens.match(Token.GEQUALS); /* cannot fail */
+                break;
+            default:
+                fatal("parseRelOp");
+        }
+        tokens.endRule("RelOp", recoverSet);
+        return operatorCode;
     }
 
     /**
      * Rule: Exp -> [ PLUS | MINUS ] Term { ( PLUS | MINUS ) Term }
      */
     private ExpNode parseExp(TokenSet recoverSet) {
-        return exp.parse("Expression", EXP_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in EXP_START_SET */
-                    boolean haveUnaryMinus = false;
-                    Location loc = tokens.getLocation();
-                    if (tokens.isMatch(Token.MINUS)) {
-                        haveUnaryMinus = true;
-                        tokens.match(Token.MINUS); /* cannot fail */
-                    } else if (tokens.isMatch(Token.PLUS)) {
-                        tokens.match(Token.PLUS); /* cannot fail */
-                    }
-                    ExpNode exp = parseTerm(recoverSet.union(EXP_OPS_SET));
-                    if (haveUnaryMinus) {
-                        exp = new ExpNode.UnaryNode(loc, Operator.NEG_OP, exp);
-                    }
-                    while (tokens.isIn(EXP_OPS_SET)) {
-                        Operator operatorCode = Operator.INVALID_OP;
-                        loc = tokens.getLocation();
-                        if (tokens.isMatch(Token.MINUS)) {
-                            operatorCode = Operator.SUB_OP;
-                            tokens.match(Token.MINUS); /* cannot fail */
-                        } else if (tokens.isMatch(Token.PLUS)) {
-                            operatorCode = Operator.ADD_OP;
-                            tokens.match(Token.PLUS); /* cannot fail */
-                        } else {
-                            fatal("parseExp");
-                        }
-                        ExpNode right = parseTerm(recoverSet.union(EXP_OPS_SET));
-                        exp = new ExpNode.BinaryNode(loc, operatorCode, exp, right);
-                    }
-                    return exp;
-                });
+        if (!tokens.beginRule("Expression", EXP_START_SET, recoverSet)) {
+            return exp.errorReturn();
+        }
+        /* The current token is in EXP_START_SET */
+        boolean haveUnaryMinus = false;
+        Location loc = tokens.getLocation();
+        if (tokens.isMatch(Token.MINUS)) {
+            haveUnaryMinus = true;
+            tokens.match(Token.MINUS); /* cannot fail */
+        } else if (tokens.isMatch(Token.PLUS)) {
+            tokens.match(Token.PLUS); /* cannot fail */
+        }
+        ExpNode exp = parseTerm(unions.union(recoverSet, EXP_OPS_SET));
+        if (haveUnaryMinus) {
+            exp = new ExpNode.UnaryNode(loc, Operator.NEG_OP, exp);
+        }
+        while (tokens.isIn(EXP_OPS_SET)) {
+            Operator operatorCode = Operator.INVALID_OP;
+            loc = tokens.getLocation();
+            if (tokens.isMatch(Token.MINUS)) {
+                operatorCode = Operator.SUB_OP;
+                tokens.match(Token.MINUS); /* cannot fail */
+            } else if (tokens.isMatch(Token.PLUS)) {
+                operatorCode = Operator.ADD_OP;
+                tokens.match(Token.PLUS); /* cannot fail */
+            } else {
+                fatal("parseExp");
+            }
+            ExpNode right = parseTerm(unions.union(recoverSet, EXP_OPS_SET));
+            exp = new ExpNode.BinaryNode(loc, operatorCode, exp, right);
+        }
+        tokens.endRule("Expression", recoverSet);
+        return exp;
     }
 
     /**
      * Rule: Term  -> Factor { ( TIMES | DIVIDE ) Factor }
      */
     private ExpNode parseTerm(TokenSet recoverSet) {
-        return exp.parse("Term", TERM_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in TERM_START_SET */
-                    ExpNode term = parseFactor(recoverSet.union(TERM_OPS_SET));
-                    while (tokens.isIn(TERM_OPS_SET)) {
-                        Operator operatorCode = Operator.INVALID_OP;
-                        Location loc = tokens.getLocation();
-                        if (tokens.isMatch(Token.TIMES)) {
-                            operatorCode = Operator.MUL_OP;
-                            tokens.match(Token.TIMES); /* cannot fail */
-                        } else if (tokens.isMatch(Token.DIVIDE)) {
-                            operatorCode = Operator.DIV_OP;
-                            tokens.match(Token.DIVIDE); /* cannot fail */
-                        } else {
-                            fatal("parseTerm");
-                        }
-                        ExpNode right = parseFactor(recoverSet.union(TERM_OPS_SET));
-                        term = new ExpNode.BinaryNode(loc, operatorCode, term, right);
-                    }
-                    return term;
-                });
+        if (!tokens.beginRule("Term", TERM_START_SET, recoverSet)) {
+            return exp.errorReturn();
+        }
+        /* The current token is in TERM_START_SET */
+        ExpNode term = parseFactor(unions.union(recoverSet, TERM_OPS_SET));
+        while (tokens.isIn(TERM_OPS_SET)) {
+            Operator operatorCode = Operator.INVALID_OP;
+            Location loc = tokens.getLocation();
+            if (tokens.isMatch(Token.TIMES)) {
+                operatorCode = Operator.MUL_OP;
+                tokens.match(Token.TIMES); /* cannot fail */
+            } else if (tokens.isMatch(Token.DIVIDE)) {
+                operatorCode = Operator.DIV_OP;
+                tokens.match(Token.DIVIDE); /* cannot fail */
+            } else {
+                fatal("parseTerm");
+            }
+            ExpNode right = parseFactor(unions.union(recoverSet, TERM_OPS_SET));
+            term = new ExpNode.BinaryNode(loc, operatorCode, term, right);
+        }
+        tokens.endRule("Term", recoverSet);
+        return term;
     }
 
     /**
      * Rule: Factor -> LPAREN Condition RPAREN | NUMBER | LValue
      */
     private ExpNode parseFactor(TokenSet recoverSet) {
-        return exp.parse("Factor", FACTOR_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in FACTOR_START_SET */
-                    ExpNode result = null;
-                    if (tokens.isMatch(Token.IDENTIFIER)) {
-                        result = parseLValue(recoverSet);
-                    } else if (tokens.isMatch(Token.NUMBER)) {
-                        result = new ExpNode.ConstNode(tokens.getLocation(),
-                                Predefined.INTEGER_TYPE, tokens.getIntValue());
-                        tokens.match(Token.NUMBER); /* cannot fail */
-                    } else if (tokens.isMatch(Token.LPAREN)) {
-                        tokens.match(Token.LPAREN); /* cannot fail */
-                        result = parseCondition(recoverSet.union(Token.RPAREN));
-                        tokens.match(Token.RPAREN, recoverSet);
-                    } else {
-                        fatal("parseFactor");
-                    }
-                    return result;
-                });
+        if (!tokens.beginRule("Factor", FACTOR_START_SET, recoverSet)) {
+            return exp.errorReturn();
+        }
+        /* The current token is in FACTOR_START_SET */
+        ExpNode result = null;
+        if (tokens.isMatch(Token.IDENTIFIER)) {
+            result = parseLValue(recoverSet);
+        } else if (tokens.isMatch(Token.NUMBER)) {
+            result = new ExpNode.ConstNode(tokens.getLocation(),
+                    context.getIntegerType(), tokens.getIntValue());
+            tokens.match(Token.NUMBER); /* cannot fail */
+        } else if (tokens.isMatch(Token.LPAREN)) {
+            tokens.match(Token.LPAREN); /* cannot fail */
+            result = parseCondition(unions.union(recoverSet, Token.RPAREN));
+            tokens.match(Token.RPAREN, recoverSet);
+        } else {
+            fatal("parseFactor");
+        }
+        tokens.endRule("Factor", recoverSet);
+        return result;
     }
 
     /**
      * Rule: LValueList -> LValue { COMMA LValue }
      */
     private List<ExpNode> parseLValueList(TokenSet recoverSet) {
-        return expList.parse("LValue List", LVALUE_START_SET, recoverSet,
-                () -> {
-                    TokenSet lValueRecoverSet = recoverSet.union(Token.COMMA);
-                    List<ExpNode> lValues = new ArrayList<>();
-                    ExpNode lValue = parseLValue(lValueRecoverSet);
-                    lValues.add(lValue);
-                    while (tokens.isMatch(Token.COMMA)) {
-                        tokens.match(Token.COMMA);
-                        lValue = parseLValue(lValueRecoverSet);
-                        lValues.add(lValue);
-                    }
-                    return lValues;
-                });
+        if (!tokens.beginRule("LValue List", LVALUE_START_SET, recoverSet)) {
+            return expList.errorReturn();
+        }
+        TokenSet lValueRecoverSet = unions.union(recoverSet, Token.COMMA);
+        List<ExpNode> lValues = new ArrayList<>();
+        ExpNode lValue = parseLValue(lValueRecoverSet);
+        lValues.add(lValue);
+        while (tokens.isMatch(Token.COMMA)) {
+            tokens.match(Token.COMMA);
+            lValue = parseLValue(lValueRecoverSet);
+            lValues.add(lValue);
+        }
+        tokens.endRule("LValue List", recoverSet);
+        return lValues;
     }
 
     /**
      * Rule: LValue -> IDENTIFIER
      */
     private ExpNode parseLValue(TokenSet recoverSet) {
-        return exp.parse("LValue", LVALUE_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in LVALUE_START_SET */
-                    ExpNode result =
-                            new ExpNode.IdentifierNode(tokens.getLocation(),
-                                    tokens.getName());
-                    tokens.match(Token.IDENTIFIER); /* cannot fail */
-                    return result;
-                });
+        if (!tokens.beginRule("LValue", LVALUE_START_SET, recoverSet)) {
+            return exp.errorReturn();
+        }
+        /* The current token is in LVALUE_START_SET */
+        ExpNode result =
+                new ExpNode.IdentifierNode(tokens.getLocation(),
+                        tokens.getName());
+        tokens.match(Token.IDENTIFIER); /* cannot fail */
+        tokens.endRule("LValue", recoverSet);
+        return result;
     }
 
     /**
@@ -520,36 +480,39 @@ public class Parser {
      * Rule: CompoundStatement -> BEGIN StatementList END
      */
     private StatementNode parseCompoundStatement(TokenSet recoverSet) {
-        return stmt.parse("Compound Statement", Token.KW_BEGIN, recoverSet,
-                () -> {
-                    /* The current token is KW_BEGIN */
-                    tokens.match(Token.KW_BEGIN);
-                    StatementNode result =
-                            parseStatementList(recoverSet.union(Token.KW_END));
-                    tokens.match(Token.KW_END, recoverSet);
-                    return result;
-                });
+        if (!tokens.beginRule("Compound Statement", Token.KW_BEGIN, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is KW_BEGIN */
+        tokens.match(Token.KW_BEGIN);
+        StatementNode result =
+                parseStatementList(unions.union(recoverSet, Token.KW_END));
+        tokens.match(Token.KW_END, recoverSet);
+        tokens.endRule("Compound Statement", recoverSet);
+        return result;
     }
 
     /**
      * Rule: StatementList -> Statement { SEMICOLON Statement }
      */
     private StatementNode parseStatementList(TokenSet recoverSet) {
-        return stmt.parse("Statement List", STATEMENT_START_SET, recoverSet,
-                () -> {
-                    // The current token is in STATEMENT_START_SET
-                    Location loc = tokens.getLocation();
-                    // Initialize result to an empty list of statements
-                    List<StatementNode> stmts = new LinkedList<>();
-                    StatementNode s = parseStatement(recoverSet.union(Token.SEMICOLON));
-                    stmts.add(s);
-                    while (tokens.isMatch(Token.SEMICOLON)) {
-                        tokens.match(Token.SEMICOLON);
-                        s = parseStatement(recoverSet.union(Token.SEMICOLON));
-                        stmts.add(s);
-                    }
-                    return new StatementNode.ListNode(loc, stmts);
-                });
+        if (!tokens.beginRule("Statement List", STATEMENT_START_SET, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        // The current token is in STATEMENT_START_SET
+        Location loc = tokens.getLocation();
+        // Initialize result to an empty list of statements
+        List<StatementNode> stmts = new LinkedList<>();
+        StatementNode s = parseStatement(
+                unions.union(recoverSet, Token.SEMICOLON));
+        stmts.add(s);
+        while (tokens.isMatch(Token.SEMICOLON)) {
+            tokens.match(Token.SEMICOLON);
+            s = parseStatement(unions.union(recoverSet, Token.SEMICOLON));
+            stmts.add(s);
+        }
+        tokens.endRule("Statement List", recoverSet);
+        return new StatementNode.ListNode(loc, stmts);
     }
 
     /**
@@ -558,49 +521,68 @@ public class Parser {
      * | CompoundStatement | SkipStatement | DoStatement
      */
     private StatementNode parseStatement(TokenSet recoverSet) {
-        return stmt.parse("Statement", STATEMENT_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in STATEMENT_START_SET.
-                     * Instead of using a cascaded if-the-else, as indicated in
-                     * the recursive descent parsing notes, a simpler approach
-                     * of using a switch statement can be used because the
-                     * start set of every alternative contains just one token. */
-                    switch (tokens.getKind()) {
-                        case KW_DO:
-                            return parseDoStatement(recoverSet);
-                        case KW_SKIP:
-                            return parseSkipStatement(recoverSet);
-                        case IDENTIFIER:
-                            return parseAssignment(recoverSet);
-                        case KW_WHILE:
-                            return parseWhileStatement(recoverSet);
-                        case KW_IF:
-                            return parseIfStatement(recoverSet);
-                        case KW_READ:
-                            return parseReadStatement(recoverSet);
-                        case KW_WRITE:
-                            return parseWriteStatement(recoverSet);
-                        case KW_CALL:
-                            return parseCallStatement(recoverSet);
-                        case KW_BEGIN:
-                            return parseCompoundStatement(recoverSet);
-                        default:
-                            fatal("parseStatement");
-                            // To keep the Java compiler happy - can't reach here
-                            return new StatementNode.ErrorNode(tokens.getLocation());
-                    }
-                });
+        if (!tokens.beginRule("Statement", STATEMENT_START_SET, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is in STATEMENT_START_SET.
+         * Instead of using a cascaded if-the-else, as indicated in
+         * the recursive descent parsing notes, a simpler approach
+         * of using a switch statement can be used because the
+         * start set of every alternative contains just one token. */
+        StatementNode result;
+        switch (tokens.getKind()) {
+            case KW_DO:
+                result = parseDoStatement(recoverSet);
+                break;
+            case KW_SKIP:
+                result = parseSkipStatement(recoverSet);
+                break;
+            case IDENTIFIER:
+                result = parseAssignment(recoverSet);
+                break;
+            case KW_WHILE:
+                result = parseWhileStatement(recoverSet);
+                break;
+            case KW_IF:
+                result = parseIfStatement(recoverSet);
+                break;
+            case KW_READ:
+                result = parseReadStatement(recoverSet);
+                break;
+            case KW_WRITE:
+                result = parseWriteStatement(recoverSet);
+                break;
+            case KW_CALL:
+                result = parseCallStatement(recoverSet);
+                break;
+            case KW_BEGIN:
+                result = parseCompoundStatement(recoverSet);
+                break;
+            default:
+                fatal("parseStatement");
+                // To keep the Java compiler happy - can't reach here
+                result = new StatementNode.ErrorNode(tokens.getLocation());
+        }
+        tokens.endRule("Statement", recoverSet);
+        return result;
     }
 
     private StatementNode parseSkipStatement(TokenSet recoverSet) {
-        return stmt.parse("Skip", Token.KW_SKIP, recoverSet,
-                () -> {
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.KW_SKIP);
-                    return new StatementNode.SkipNode(loc);
-                });
+        if (!tokens.beginRule("Skip", Token.KW_SKIP, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        Location loc = tokens.getLocation();
+        tokens.match(Token.KW_SKIP);
+        tokens.endRule("Skip", recoverSet);
+        return new StatementNode.SkipNode(loc);
     }
 
+    /**
+     * Set of tokens to recover at after the left side of an Assignment.
+     */
+    private final static TokenSet ASSIGN_RECOVER_SET =
+            new TokenSet(Token.ASSIGN, Token.EQUALS);
+
     private final ParseMethod<StatementNode.AssignmentNode> assign =
             new ParseMethod<>(
                     (Location loc) -> new StatementNode.AssignmentNode(loc,
@@ -610,116 +592,135 @@ public class Parser {
      * Rule: Assignment -> LValueList ASSIGN ConditionList
      */
     private StatementNode.AssignmentNode parseAssignment(TokenSet recoverSet) {
-        return assign.parse("MDAssignment", LVALUE_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in LVALUE_START_SET.
-                     * Non-standard recovery set includes EQUALS because a
-                     * common syntax error is to use EQUALS instead of ASSIGN.
-                     */
-                    List<ExpNode> left = parseLValueList(
-                            recoverSet.union(Token.ASSIGN, Token.EQUALS));
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.ASSIGN, CONDITION_START_SET);
-                    List<ExpNode> right = parseConditionList(recoverSet);
-
-                    if (left.size() != right.size()) {
-                        errors.error("number of variables does not match "
-                                        + "number of expressions in assignment", loc);
-                        return new StatementNode.AssignmentNode(loc,
-                                new ExpNode.ErrorNode(loc), new ExpNode.ErrorNode(loc));
-                    }
-
-                    return new StatementNode.AssignmentNode(loc, left, right);
-                });
+        if (!tokens.beginRule("MDAssignment", LVALUE_START_SET, recoverSet)) {
+            return assign.errorReturn();
+        }
+        /* The current token is in LVALUE_START_SET.
+         * Non-standard recovery set includes EQUALS because a
+         * common syntax error is to use EQUALS instead of ASSIGN.
+         */
+        List<ExpNode> left = parseLValueList(
+                unions.union(recoverSet, ASSIGN_RECOVER_SET));
+        Location loc = tokens.getLocation();
+        tokens.match(Token.ASSIGN, CONDITION_START_SET);
+        List<ExpNode> right = parseConditionList(recoverSet);
+
+        StatementNode.AssignmentNode result;
+        if (left.size() != right.size()) {
+            errors.error("number of variables does not match "
+                            + "number of expressions in assignment", loc);
+            result = new StatementNode.AssignmentNode(loc,
+                    new ExpNode.ErrorNode(loc), new ExpNode.ErrorNode(loc));
+        } else {
+            result = new StatementNode.AssignmentNode(loc, left, right);
+        }
+        tokens.endRule("MDAssignment", recoverSet);
+        return result;
     }
 
     /**
      * Rule: WhileStatement -> KW_WHILE Condition KW_DO Statement
      */
     private StatementNode parseWhileStatement(TokenSet recoverSet) {
-        return stmt.parse("While Statement", Token.KW_WHILE, recoverSet,
-                () -> {
-                    /* The current token is KW_WHILE */
-                    tokens.match(Token.KW_WHILE); /* cannot fail */
-                    Location loc = tokens.getLocation();
-                    ExpNode cond = parseCondition(recoverSet.union(Token.KW_DO));
-                    tokens.match(Token.KW_DO, STATEMENT_START_SET);
-                    StatementNode statement = parseStatement(recoverSet);
-                    return new StatementNode.WhileNode(loc, cond, statement);
-                });
+        if (!tokens.beginRule("While Statement", Token.KW_WHILE, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is KW_WHILE */
+        tokens.match(Token.KW_WHILE); /* cannot fail */
+        Location loc = tokens.getLocation();
+        ExpNode cond = parseCondition(unions.union(recoverSet, Token.KW_DO));
+        tokens.match(Token.KW_DO, STATEMENT_START_SET);
+        StatementNode statement = parseStatement(recoverSet);
+        tokens.endRule("While Statement", recoverSet);
+        return new StatementNode.WhileNode(loc, cond, statement);
     }
 
     /**
      * Rule: IfStatement -> KW_IF Condition KW_THEN Statement KW_ELSE Statement
      */
     private StatementNode parseIfStatement(TokenSet recoverSet) {
-        return stmt.parse("If Statement", Token.KW_IF, recoverSet,
-                () -> {
-                    /* The current token is KW_IF */
-                    tokens.match(Token.KW_IF); /* cannot fail */
-                    Location loc = tokens.getLocation();
-                    ExpNode cond = parseCondition(recoverSet.union(Token.KW_THEN));
-                    tokens.match(Token.KW_THEN, STATEMENT_START_SET);
-                    StatementNode thenClause =
-                            parseStatement(recoverSet.union(Token.KW_ELSE));
-                    tokens.match(Token.KW_ELSE, STATEMENT_START_SET);
-                    StatementNode elseClause = parseStatement(recoverSet);
-                    return new StatementNode.IfNode(loc, cond, thenClause, elseClause);
-                });
+        if (!tokens.beginRule("If Statement", Token.KW_IF, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is KW_IF */
+        tokens.match(Token.KW_IF); /* cannot fail */
+        Location loc = tokens.getLocation();
+        ExpNode cond = parseCondition(unions.union(recoverSet, Token.KW_THEN));
+        tokens.match(Token.KW_THEN, STATEMENT_START_SET);
+        StatementNode thenClause =
+                parseStatement(unions.union(recoverSet, Token.KW_ELSE));
+        tokens.match(Token.KW_ELSE, STATEMENT_START_SET);
+        StatementNode elseClause = parseStatement(recoverSet);
+        tokens.endRule("If Statement", recoverSet);
+        return new StatementNode.IfNode(loc, cond, thenClause, elseClause);
     }
 
     /**
      * Rule: ReadStatement -> KW_READ LValue
      */
     private StatementNode parseReadStatement(TokenSet recoverSet) {
-        return stmt.parse("Read Statement", Token.KW_READ, recoverSet,
-                () -> {
-                    /* The current token is KW_READ */
-                    tokens.match(Token.KW_READ); /* cannot fail */
-                    Location loc = tokens.getLocation();
-                    ExpNode lVal = parseLValue(recoverSet);
-                    return new StatementNode.ReadNode(loc, lVal);
-                });
+        if (!tokens.beginRule("Read Statement", Token.KW_READ, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is KW_READ */
+        tokens.match(Token.KW_READ); /* cannot fail */
+        Location loc = tokens.getLocation();
+        ExpNode lVal = parseLValue(recoverSet);
+        tokens.endRule("Read Statement", recoverSet);
+        return new StatementNode.ReadNode(loc, lVal);
     }
 
     /**
      * Rule: WriteStatement -> KW_WRITE Exp
      */
     private StatementNode parseWriteStatement(TokenSet recoverSet) {
-        return stmt.parse("Write Statement", Token.KW_WRITE, recoverSet,
-                () -> {
-                    /* The current token is KW_WRITE */
-                    tokens.match(Token.KW_WRITE); /* cannot fail */
-                    Location loc = tokens.getLocation();
-                    ExpNode exp = parseExp(recoverSet);
-                    return new StatementNode.WriteNode(loc, exp);
-                });
+        if (!tokens.beginRule("Write Statement", Token.KW_WRITE, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is KW_WRITE */
+        tokens.match(Token.KW_WRITE); /* cannot fail */
+        Location loc = tokens.getLocation();
+        ExpNode exp = parseExp(recoverSet);
+        tokens.endRule("Write Statement", recoverSet);
+        return new StatementNode.WriteNode(loc, exp);
     }
 
     /**
      * Rule: CallStatement -> KW_CALL IDENTIFIER LPAREN RPAREN
      */
     private StatementNode parseCallStatement(TokenSet recoverSet) {
-        return stmt.parse("Call Statement", Token.KW_CALL, recoverSet,
-                () -> {
-                    /* The current token is KW_CALL */
-                    tokens.match(Token.KW_CALL); /* cannot fail */
-                    Location loc = tokens.getLocation();
-                    String procId;
-                    if (tokens.isMatch(Token.IDENTIFIER)) {
-                        procId = tokens.getName();
-                    } else {
-                        procId = "<no_id>";
-                    }
-                    tokens.match(Token.IDENTIFIER, Token.LPAREN);
-                    tokens.match(Token.LPAREN, Token.RPAREN);
-                    // Empty actual parameter list currently
-                    tokens.match(Token.RPAREN, recoverSet);
-                    return new StatementNode.CallNode(loc, procId
-                    );
-                });
+        if (!tokens.beginRule("Call Statement", Token.KW_CALL, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        /* The current token is KW_CALL */
+        tokens.match(Token.KW_CALL); /* cannot fail */
+        Location loc = tokens.getLocation();
+        String procId;
+        if (tokens.isMatch(Token.IDENTIFIER)) {
+            procId = tokens.getName();
+        } else {
+            procId = "<no_id>";
+        }
+        tokens.match(Token.IDENTIFIER, Token.LPAREN);
+        tokens.match(Token.LPAREN, Token.RPAREN);
+        // Empty actual parameter list currently
+        tokens.match(Token.RPAREN, recoverSet);
+        tokens.endRule("Call Statement", recoverSet);
+        return new StatementNode.CallNode(loc, procId
+        );
     }
 
+    /**
+     * Set of tokens that may end the statements of a DoBranch.
+     */
+    private final static TokenSet DO_BRANCH_END_SET =
+            new TokenSet(Token.KW_EXIT, Token.SEPARATOR);
+    /**
+     * Set of tokens that may follow a DoBranch.
+     */
+    private final static TokenSet DO_BRANCH_FOLLOW_SET =
+            new TokenSet(Token.SEPARATOR, Token.KW_OD);
+
     private final ParseMethod<StatementNode.DoBranchNode> doStmt = new ParseMethod<>(
             (Location loc) -> new StatementNode.DoBranchNode(loc,
                     new ExpNode.ErrorNode(loc), new StatementNode.ErrorNode(loc), false));
@@ -728,43 +729,45 @@ public class Parser {
             (Location loc) -> new ArrayList<>());
 
     private StatementNode.DoBranchNode parseDoBranch(TokenSet recoverSet) {
-        return doStmt.parse("Do Branch", CONDITION_START_SET, recoverSet,
-                () -> {
-                    Location loc = tokens.getLocation();
-                    // Parse condition
-                    ExpNode cond = parseCondition(recoverSet.union(Token.KW_THEN));
-                    tokens.match(Token.KW_THEN, STATEMENT_START_SET);
-                    // Parse statement list
-                    StatementNode statements = parseStatementList(
-                            recoverSet.union(Token.KW_EXIT, Token.SEPARATOR));
-                    // Check for exit keyword
-                    boolean exit = false;
-                    if (tokens.isMatch(Token.KW_EXIT)) {
-                        tokens.match(Token.KW_EXIT);
-                        exit = true;
-                    }
-                    return new StatementNode.DoBranchNode(loc, cond, statements, exit);
-                });
+        if (!tokens.beginRule("Do Branch", CONDITION_START_SET, recoverSet)) {
+            return doStmt.errorReturn();
+        }
+        Location loc = tokens.getLocation();
+        // Parse condition
+        ExpNode cond = parseCondition(unions.union(recoverSet, Token.KW_THEN));
+        tokens.match(Token.KW_THEN, STATEMENT_START_SET);
+        // Parse statement list
+        StatementNode statements = parseStatementList(
+                unions.union(recoverSet, DO_BRANCH_END_SET));
+        // Check for exit keyword
+        boolean exit = false;
+        if (tokens.isMatch(Token.KW_EXIT)) {
+            tokens.match(Token.KW_EXIT);
+            exit = true;
+        }
+        tokens.endRule("Do Branch", recoverSet);
+        return new StatementNode.DoBranchNode(loc, cond, statements, exit);
     }
 
     private StatementNode parseDoStatement(TokenSet recoverSet) {
-        return stmt.parse("Do Statement", Token.KW_DO, recoverSet,
-                () -> {
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.KW_DO);
-                    List<StatementNode.DoBranchNode> branches = new ArrayList<>();
-                    TokenSet doBranchRecoverSet = recoverSet.union(
-                            Token.SEPARATOR, Token.KW_OD);
-                    StatementNode.DoBranchNode branch = parseDoBranch(doBranchRecoverSet);
-                    branches.add(branch);
-                    while (tokens.isMatch(Token.SEPARATOR)) {
-                        tokens.match(Token.SEPARATOR);
-                        branch = parseDoBranch(doBranchRecoverSet);
-                        branches.add(branch);
-                    }
-                    tokens.match(Token.KW_OD, recoverSet);
-                    return new StatementNode.DoNode(loc, branches);
-                });
+        if (!tokens.beginRule("Do Statement", Token.KW_DO, recoverSet)) {
+            return stmt.errorReturn();
+        }
+        Location loc = tokens.getLocation();
+        tokens.match(Token.KW_DO);
+        List<StatementNode.DoBranchNode> branches = new ArrayList<>();
+        TokenSet doBranchRecoverSet =
+                unions.union(recoverSet, DO_BRANCH_FOLLOW_SET);
+        StatementNode.DoBranchNode branch = parseDoBranch(doBranchRecoverSet);
+        branches.add(branch);
+        while (tokens.isMatch(Token.SEPARATOR)) {
+            tokens.match(Token.SEPARATOR);
+            branch = parseDoBranch(doBranchRecoverSet);
+            branches.add(branch);
+        }
+        tokens.match(Token.KW_OD, recoverSet);
+        tokens.endRule("Do Statement", recoverSet);
+        return new StatementNode.DoNode(loc, branches);
     }
 
     /**
@@ -778,6 +781,12 @@ public class Parser {
      */
     private final static TokenSet BLOCK_START_SET =
             DECLARATION_START_SET.union(Token.KW_BEGIN);
+    /**
+     * Set of tokens to recover at after a ProcedureHead: the EQUALS that
+     * should follow it, or the start of the Block if EQUALS is missing.
+     */
+    private final static TokenSet PROCEDURE_HEAD_RECOVER_SET =
+            BLOCK_START_SET.union(Token.EQUALS);
     /**
      * Set of tokens that may start a Constant.
      */
@@ -804,32 +813,33 @@ public class Parser {
      * RULE: Program -> Block ENDOFFILE
      */
     private DeclNode.ProcedureNode parseProgram(TokenSet recoverSet) {
-        return proc.parse("Program", BLOCK_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in BLOCK_START_SET.
-                     * Set up a symbol table.
-                     * The initial value includes the predefined scope.
-                     */
-                    SymbolTable symbolTable = new SymbolTable();
-                    currentScope = symbolTable.getPredefinedScope();
-                    SymEntry.ProcedureEntry proc =
-                            currentScope.addProcedure("<main>", tokens.getLocation());
-                    if (proc == null) {
-                        errors.fatal("Could not add main program to symbol table",
-                                tokens.getLocation());
-                        return null; // Unreachable but keep Java compiler happy
-                    }
-                    // Add a new symbol table scope for the main program
-                    currentScope = currentScope.newScope(proc);
-                    StatementNode.BlockNode block = parseBlock(recoverSet);
-                    // Exit the scope for the main program
-                    currentScope = currentScope.getParent();
-                    /* We can't use match for ENDOFFILE
-                     * because there is nothing following end of file
-                     * but the implicit call on endRule only allows an ENDOFFILE
-                     * to follow the main program. */
-                    return new DeclNode.ProcedureNode(proc, block);
-                });
+        if (!tokens.beginRule("Program", BLOCK_START_SET, recoverSet)) {
+            return proc.errorReturn();
+        }
+        /* The current token is in BLOCK_START_SET.
+         * Set up a symbol table.
+         * The initial value includes the predefined scope.
+         */
+        SymbolTable symbolTable = new SymbolTable(context);
+        currentScope = symbolTable.getPredefinedScope();
+        SymEntry.ProcedureEntry proc =
+                currentScope.addProcedure("<main>", tokens.getLocation());
+        if (proc == null) {
+            errors.fatal("Could not add main program to symbol table",
+                    tokens.getLocation());
+            return null; // Unreachable but keep Java compiler happy
+        }
+        // Add a new symbol table scope for the main program
+        currentScope = currentScope.newScope(proc);
+        StatementNode.BlockNode block = parseBlock(recoverSet);
+        // Exit the scope for the main program
+        currentScope = currentScope.getParent();
+        /* We can't use match for ENDOFFILE
+         * because there is nothing following end of file
+         * but the implicit call on endRule only allows an ENDOFFILE
+         * to follow the main program. */
+        tokens.endRule("Program", recoverSet);
+        return new DeclNode.ProcedureNode(proc, block);
     }
 
     /**
@@ -846,18 +856,19 @@ public class Parser {
      * RULE: Block -> { Declaration } CompoundStatement
      */
     private StatementNode.BlockNode parseBlock(TokenSet recoverSet) {
-        return block.parse("Block", BLOCK_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in BLOCK_START_SET */
-                    DeclNode.DeclListNode procedures = new DeclNode.DeclListNode();
-                    while (tokens.isIn(DECLARATION_START_SET)) {
-                        procedures = parseDeclaration(procedures,
-                                recoverSet.union(BLOCK_START_SET));
-                    }
-                    StatementNode statements = parseCompoundStatement(recoverSet);
-                    return new StatementNode.BlockNode(statements.getLocation(),
-                            procedures, statements, currentScope);
-                });
+        if (!tokens.beginRule("Block", BLOCK_START_SET, recoverSet)) {
+            return block.errorReturn();
+        }
+        /* The current token is in BLOCK_START_SET */
+        DeclNode.DeclListNode procedures = new DeclNode.DeclListNode();
+        while (tokens.isIn(DECLARATION_START_SET)) {
+            procedures = parseDeclaration(procedures,
+                    unions.union(recoverSet, BLOCK_START_SET));
+        }
+        StatementNode statements = parseCompoundStatement(recoverSet);
+        tokens.endRule("Block", recoverSet);
+        return new StatementNode.BlockNode(statements.getLocation(),
+                procedures, statements, currentScope);
     }
 
     /**
@@ -872,58 +883,61 @@ public class Parser {
      */
     private DeclNode.DeclListNode parseDeclaration(
             DeclNode.DeclListNode procedures, TokenSet recoverSet) {
-        return declList.parse("Declaration", DECLARATION_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in DECLARATION_START_SET */
-                    if (tokens.isMatch(Token.KW_CONST)) {
-                        parseConstDefList(recoverSet);
-                    } else if (tokens.isMatch(Token.KW_TYPE)) {
-                        parseTypeDefList(recoverSet);
-                    } else if (tokens.isMatch(Token.KW_VAR)) {
-                        parseVarDeclList(recoverSet);
-                    } else if (tokens.isMatch(Token.KW_PROCEDURE)) {
-                        DeclNode.ProcedureNode proc = parseProcedureDef(recoverSet);
-                        procedures.addDeclaration(proc);
-                    } else { // cannot get here
-                        fatal("parseDeclaration");
-                    }
-                    return procedures;
-                });
+        if (!tokens.beginRule("Declaration", DECLARATION_START_SET, recoverSet)) {
+            return declList.errorReturn();
+        }
+        /* The current token is in DECLARATION_START_SET */
+        if (tokens.isMatch(Token.KW_CONST)) {
+            parseConstDefList(recoverSet);
+        } else if (tokens.isMatch(Token.KW_TYPE)) {
+            parseTypeDefList(recoverSet);
+        } else if (tokens.isMatch(Token.KW_VAR)) {
+            parseVarDeclList(recoverSet);
+        } else if (tokens.isMatch(Token.KW_PROCEDURE)) {
+            DeclNode.ProcedureNode proc = parseProcedureDef(recoverSet);
+            procedures.addDeclaration(proc);
+        } else { // cannot get here
+            fatal("parseDeclaration");
+        }
+        tokens.endRule("Declaration", recoverSet);
+        return procedures;
     }
 
     /**
      * Rule: ConstDefList -> KW_CONST ConstDef { ConstDef }
      */
     private void parseConstDefList(TokenSet recoverSet) {
-        parse("Constant Definition List", Token.KW_CONST, recoverSet,
-                () -> {
-                    /* The current token is KW_CONST */
-                    tokens.match(Token.KW_CONST); // cannot fail
-                    do {
-                        parseConstDef(recoverSet.union(Token.IDENTIFIER));
-                    } while (tokens.isMatch(Token.IDENTIFIER));
-                });
+        if (!tokens.beginRule("Constant Definition List", Token.KW_CONST, recoverSet)) {
+            return;
+        }
+        /* The current token is KW_CONST */
+        tokens.match(Token.KW_CONST); // cannot fail
+        do {
+            parseConstDef(unions.union(recoverSet, Token.IDENTIFIER));
+        } while (tokens.isMatch(Token.IDENTIFIER));
+        tokens.endRule("Constant Definition List", recoverSet);
     }
 
     /**
      * Rule: ConstDef -> IDENTIFIER EQUALS Constant SEMICOLON
      */
     private void parseConstDef(TokenSet recoverSet) {
-        parse("Constant Definition", Token.IDENTIFIER, recoverSet,
-                () -> {
-                    /* The current token is IDENTIFIER */
-                    String name = tokens.getName();
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.IDENTIFIER);    /* cannot fail */
-                    tokens.match(Token.EQUALS, CONSTANT_START_SET);
-                    ConstExp tree =
-                            parseConstant(recoverSet.union(Token.SEMICOLON));
-                    if (currentScope.addConstant(name, loc, tree) == null) {
-                        errors.error("Constant identifier " + name +
-                                " already declared in this scope", loc);
-                    }
-                    tokens.match(Token.SEMICOLON, recoverSet);
-                });
+        if (!tokens.beginRule("Constant Definition", Token.IDENTIFIER, recoverSet)) {
+            return;
+        }
+        /* The current token is IDENTIFIER */
+        String name = tokens.getName();
+        Location loc = tokens.getLocation();
+        tokens.match(Token.IDENTIFIER);    /* cannot fail */
+        tokens.match(Token.EQUALS, CONSTANT_START_SET);
+        ConstExp tree =
+                parseConstant(unions.union(recoverSet, Token.SEMICOLON));
+        if (currentScope.addConstant(name, loc, tree) == null) {
+            errors.error("Constant identifier " + name +
+                    " already declared in this scope", loc);
+        }
+        tokens.match(Token.SEMICOLON, recoverSet);
+        tokens.endRule("Constant Definition", recoverSet);
     }
 
     /**
@@ -937,64 +951,67 @@ public class Parser {
      * Rule: Constant -> NUMBER | IDENTIFIER | MINUS Constant
      */
     private ConstExp parseConstant(TokenSet recoverSet) {
-        return constExp.parse("Constant", CONSTANT_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in CONSTANT_START_SET */
-                    ConstExp tree = null;
-                    if (tokens.isMatch(Token.NUMBER)) {
-                        tree = new ConstExp.NumberNode(tokens.getLocation(),
-                                Predefined.INTEGER_TYPE,
-                                tokens.getIntValue());
-                        tokens.match(Token.NUMBER); /* cannot fail */
-                    } else if (tokens.isMatch(Token.IDENTIFIER)) {
-                        tree = new ConstExp.ConstIdNode(tokens.getLocation(),
-                                tokens.getName(), currentScope);
-                        tokens.match(Token.IDENTIFIER); /* cannot fail */
-                    } else if (tokens.isMatch(Token.MINUS)) {
-                        Location loc = tokens.getLocation();
-                        tokens.match(Token.MINUS); /* cannot fail */
-                        tree = parseConstant(recoverSet);
-                        tree = new ConstExp.NegateNode(loc, tree);
-                    } else {
-                        fatal("parseConstant");
-                        // unreachable
-                    }
-                    return tree;
-                });
+        if (!tokens.beginRule("Constant", CONSTANT_START_SET, recoverSet)) {
+            return constExp.errorReturn();
+        }
+        /* The current token is in CONSTANT_START_SET */
+        ConstExp tree = null;
+        if (tokens.isMatch(Token.NUMBER)) {
+            tree = new ConstExp.NumberNode(tokens.getLocation(),
+                    context.getIntegerType(),
+                    tokens.getIntValue());
+            tokens.match(Token.NUMBER); /* cannot fail */
+        } else if (tokens.isMatch(Token.IDENTIFIER)) {
+            tree = new ConstExp.ConstIdNode(tokens.getLocation(),
+                    tokens.getName(), currentScope);
+            tokens.match(Token.IDENTIFIER); /* cannot fail */
+        } else if (tokens.isMatch(Token.MINUS)) {
+            Location loc = tokens.getLocation();
+            tokens.match(Token.MINUS); /* cannot fail */
+            tree = parseConstant(recoverSet);
+            tree = new ConstExp.NegateNode(loc, tree, context);
+        } else {
+            fatal("parseConstant");
+            // unreachable
+        }
+        tokens.endRule("Constant", recoverSet);
+        return tree;
     }
 
     /**
      * Rule: TypeDefList -> KW_TYPE TypeDef { TypeDef }
      */
     private void parseTypeDefList(TokenSet recoverSet) {
-        parse("Type Definition List", Token.KW_TYPE, recoverSet,
-                () -> {
-                    /* The current token is KW_TYPE */
-                    tokens.match(Token.KW_TYPE);  // cannot fail
-                    do {
-                        parseTypeDef(recoverSet.union(Token.IDENTIFIER));
-                    } while (tokens.isMatch(Token.IDENTIFIER));
-                });
+        if (!tokens.beginRule("Type Definition List", Token.KW_TYPE, recoverSet)) {
+            return;
+        }
+        /* The current token is KW_TYPE */
+        tokens.match(Token.KW_TYPE);  // cannot fail
+        do {
+            parseTypeDef(unions.union(recoverSet, Token.IDENTIFIER));
+        } while (tokens.isMatch(Token.IDENTIFIER));
+        tokens.endRule("Type Definition List", recoverSet);
     }
 
     /**
      * Rule: TypeDef -> IDENTIFIER EQUALS Type SEMICOLON
      */
     private void parseTypeDef(TokenSet recoverSet) {
-        parse("Type Definition", Token.IDENTIFIER, recoverSet,
-                () -> {
-                    /* The current token is IDENTIFIER */
-                    String name = tokens.getName();
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.IDENTIFIER);        /* cannot fail */
-                    tokens.match(Token.EQUALS, TYPE_START_SET);
-                    Type type = parseType(recoverSet.union(Token.SEMICOLON));
-                    if (currentScope.addType(name, loc, type) == null) {
-                        errors.error("Type identifier " + name +
-                                " already declared in this scope", loc);
-                    }
-                    tokens.match(Token.SEMICOLON, recoverSet);
-                });
+        if (!tokens.beginRule("Type Definition", Token.IDENTIFIER, recoverSet)) {
+            return;
+        }
+        /* The current token is IDENTIFIER */
+        String name = tokens.getName();
+        Location loc = tokens.getLocation();
+        tokens.match(Token.IDENTIFIER);        /* cannot fail */
+        tokens.match(Token.EQUALS, TYPE_START_SET);
+        Type type = parseType(unions.union(recoverSet, Token.SEMICOLON));
+        if (currentScope.addType(name, loc, type) == null) {
+            errors.error("Type identifier " + name +
+                    " already declared in this scope", loc);
+        }
+        tokens.match(Token.SEMICOLON, recoverSet);
+        tokens.endRule("Type Definition", recoverSet);
     }
 
     /**
@@ -1007,113 +1024,120 @@ public class Parser {
      * Rule: Type -> TypeIdentifier | SubrangeType
      */
     private Type parseType(TokenSet recoverSet) {
-        return type.parse("Type", TYPE_START_SET, recoverSet,
-                () -> {
-                    /* The current token is in TYPE_START_SET */
-                    Type type = null;
-                    if (tokens.isMatch(Token.IDENTIFIER)) {
-                        type = parseTypeIdentifier(recoverSet);
-                    } else if (tokens.isMatch(Token.LBRACKET)) {
-                        type = parseSubrangeType(recoverSet);
-                    } else {
-                        fatal("parseType");
-                    }
-                    return type;
-                });
+        if (!tokens.beginRule("Type", TYPE_START_SET, recoverSet)) {
+            return type.errorReturn();
+        }
+        /* The current token is in TYPE_START_SET */
+        Type type = null;
+        if (tokens.isMatch(Token.IDENTIFIER)) {
+            type = parseTypeIdentifier(recoverSet);
+        } else if (tokens.isMatch(Token.LBRACKET)) {
+            type = parseSubrangeType(recoverSet);
+        } else {
+            fatal("parseType");
+        }
+        tokens.endRule("Type", recoverSet);
+        return type;
     }
 
     /**
      * Rule: SubrangeType -> LBRACKET Constant RANGE Constant RBRACKET
      */
     private Type parseSubrangeType(TokenSet recoverSet) {
-        return type.parse("Subrange Type", Token.LBRACKET, recoverSet,
-                () -> {
-                    /* The current token is LBRACKET */
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.LBRACKET); /* cannot fail */
-                    ConstExp lower = parseConstant(recoverSet.union(Token.RANGE));
-                    tokens.match(Token.RANGE, CONSTANT_START_SET);
-                    ConstExp upper = parseConstant(recoverSet.union(Token.RBRACKET));
-                    tokens.match(Token.RBRACKET, recoverSet);
-                    return new Type.SubrangeType(loc, lower, upper);
-                });
+        if (!tokens.beginRule("Subrange Type", Token.LBRACKET, recoverSet)) {
+            return type.errorReturn();
+        }
+        /* The current token is LBRACKET */
+        Location loc = tokens.getLocation();
+        tokens.match(Token.LBRACKET); /* cannot fail */
+        ConstExp lower = parseConstant(unions.union(recoverSet, Token.RANGE));
+        tokens.match(Token.RANGE, CONSTANT_START_SET);
+        ConstExp upper = parseConstant(unions.union(recoverSet, Token.RBRACKET));
+        tokens.match(Token.RBRACKET, recoverSet);
+        tokens.endRule("Subrange Type", recoverSet);
+        return new Type.SubrangeType(loc, lower, upper);
     }
 
     /**
      * Rule: TypeIdentifier -> IDENTIFIER
      */
     private Type parseTypeIdentifier(TokenSet recoverSet) {
-        return type.parse("Type Identifier", Token.IDENTIFIER, recoverSet,
-                () -> {
-                    /* The current token is IDENTIFIER */
-                    String name = tokens.getName();
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.IDENTIFIER);    /* cannot fail */
-                    return new Type.IdRefType(loc, name, currentScope);
-                });
+        if (!tokens.beginRule("Type Identifier", Token.IDENTIFIER, recoverSet)) {
+            return type.errorReturn();
+        }
+        /* The current token is IDENTIFIER */
+        String name = tokens.getName();
+        Location loc = tokens.getLocation();
+        tokens.match(Token.IDENTIFIER);    /* cannot fail */
+        tokens.endRule("Type Identifier", recoverSet);
+        return new Type.IdRefType(loc, name, currentScope);
     }
 
     /**
      * Rule: VarDeclList -> KW_VAR VarDecl { VarDecl }
      */
     private void parseVarDeclList(TokenSet recoverSet) {
-        parse("Variable Declaration List", Token.KW_VAR, recoverSet,
-                () -> {
-                    /* The current token is KW_VAR */
-                    tokens.match(Token.KW_VAR); /* cannot fail */
-                    do {
-                        parseVarDecl(recoverSet.union(Token.IDENTIFIER));
-                    } while (tokens.isMatch(Token.IDENTIFIER));
-                });
+        if (!tokens.beginRule("Variable Declaration List", Token.KW_VAR, recoverSet)) {
+            return;
+        }
+        /* The current token is KW_VAR */
+        tokens.match(Token.KW_VAR); /* cannot fail */
+        do {
+            parseVarDecl(unions.union(recoverSet, Token.IDENTIFIER));
+        } while (tokens.isMatch(Token.IDENTIFIER));
+        tokens.endRule("Variable Declaration List", recoverSet);
     }
 
     /**
      * Rule: VarDecl -> IDENTIFIER COLON TypeIdentifier SEMICOLON
      */
     private void parseVarDecl(TokenSet recoverSet) {
-        parse("Variable Declaration", Token.IDENTIFIER, recoverSet,
-                () -> {
-                    /* The current token is IDENTIFIER */
-                    String name = tokens.getName();
-                    Location loc = tokens.getLocation();
-                    tokens.match(Token.IDENTIFIER);     /* cannot fail */
-                    tokens.match(Token.COLON, TYPE_START_SET);
-                    Type type = parseTypeIdentifier(recoverSet.union(Token.SEMICOLON));
-                    // The type of a variable must be a reference type
-                    if (currentScope.addVariable(name, loc,
-                            new Type.ReferenceType(type)) == null) {
-                        errors.error("Variable identifier " + name +
-                                " already declared in this scope", loc);
-                    }
-                    tokens.match(Token.SEMICOLON, recoverSet);
-                });
+        if (!tokens.beginRule("Variable Declaration", Token.IDENTIFIER, recoverSet)) {
+            return;
+        }
+        /* The current token is IDENTIFIER */
+        String name = tokens.getName();
+        Location loc = tokens.getLocation();
+        tokens.match(Token.IDENTIFIER);     /* cannot fail */
+        tokens.match(Token.COLON, TYPE_START_SET);
+        Type type = parseTypeIdentifier(
+                unions.union(recoverSet, Token.SEMICOLON));
+        // The type of a variable must be a reference type
+        if (currentScope.addVariable(name, loc,
+                new Type.ReferenceType(type)) == null) {
+            errors.error("Variable identifier " + name +
+                    " already declared in this scope", loc);
+        }
+        tokens.match(Token.SEMICOLON, recoverSet);
+        tokens.endRule("Variable Declaration", recoverSet);
     }
 
     /**
      * Rule: ProcedureDef -> ProcedureHead EQUALS Block SEMICOLON
      */
     private DeclNode.ProcedureNode parseProcedureDef(TokenSet recoverSet) {
-        return proc.parse("Procedure Definition", Token.KW_PROCEDURE, recoverSet,
-                () -> {
-                    /* The current token is KW_PROCEDURE
-                     * A common syntax error is to forget the EQUALS, hence the
-                     * recovery set contains tokens that can follow the EQUALS,
-                     * i.e. start a Block.
-                     * In general the recovery set can include tokens appearing
-                     * later in the production than immediately following tokens.
-                     */
-                    SymEntry.ProcedureEntry procEntry = parseProcedureHead(
-                            recoverSet.union(Token.EQUALS).union(BLOCK_START_SET));
-                    // Add a new scope for the procedure
-                    currentScope = currentScope.newScope(procEntry);
-                    tokens.match(Token.EQUALS, BLOCK_START_SET);
-                    StatementNode.BlockNode block =
-                            parseBlock(recoverSet.union(Token.SEMICOLON));
-                    // Exit the scope for the procedure
-                    currentScope = currentScope.getParent();
-                    tokens.match(Token.SEMICOLON, recoverSet);
-                    return new DeclNode.ProcedureNode(procEntry, block);
-                });
+        if (!tokens.beginRule("Procedure Definition", Token.KW_PROCEDURE, recoverSet)) {
+            return proc.errorReturn();
+        }
+        /* The current token is KW_PROCEDURE
+         * A common syntax error is to forget the EQUALS, hence the
+         * recovery set contains tokens that can follow the EQUALS,
+         * i.e. start a Block.
+         * In general the recovery set can include tokens appearing
+         * later in the production than immediately following tokens.
+         */
+        SymEntry.ProcedureEntry procEntry = parseProcedureHead(
+                unions.union(recoverSet, PROCEDURE_HEAD_RECOVER_SET));
+        // Add a new scope for the procedure
+        currentScope = currentScope.newScope(procEntry);
+        tokens.match(Token.EQUALS, BLOCK_START_SET);
+        StatementNode.BlockNode block =
+                parseBlock(unions.union(recoverSet, Token.SEMICOLON));
+        // Exit the scope for the procedure
+        currentScope = currentScope.getParent();
+        tokens.match(Token.SEMICOLON, recoverSet);
+        tokens.endRule("Procedure Definition", recoverSet);
+        return new DeclNode.ProcedureNode(procEntry, block);
     }
 
     /**
@@ -1126,36 +1150,37 @@ public class Parser {
      * Rule: ProcedureHead -> KW_PROCEDURE IDENTIFIER LPAREN RPAREN
      */
     private SymEntry.ProcedureEntry parseProcedureHead(TokenSet recoverSet) {
-        return procEntry.parse("Procedure Header", Token.KW_PROCEDURE, recoverSet,
-                () -> {
-                    /* The current token is KW_PROCEDURE */
-                    SymEntry.ProcedureEntry procEntry;
-                    tokens.match(Token.KW_PROCEDURE);
-                    if (tokens.isMatch(Token.IDENTIFIER)) {
-                        procEntry = currentScope.addProcedure(tokens.getName(),
-                                tokens.getLocation());
-                        if (procEntry == null) {
-                            errors.error("Procedure identifier " + tokens.getName() +
-                                            " already declared in this scope",
-                                    tokens.getLocation());
-                            // Construct a dummy entry but do not add to scope
-                            procEntry = new SymEntry.ProcedureEntry(tokens.getName(),
-                                    tokens.getLocation());
-                            procEntry.setScope(currentScope);
-
-                        }
-                    } else {
-                        // Construct a dummy procedure entry but do not add to scope
-                        procEntry = new SymEntry.ProcedureEntry("<undefined>",
-                                tokens.getLocation());
-                        procEntry.setScope(currentScope);
-                    }
-                    tokens.match(Token.IDENTIFIER, Token.LPAREN);
-                    tokens.match(Token.LPAREN, Token.RPAREN);
-                    // Empty formal parameter list currently
-                    tokens.match(Token.RPAREN, recoverSet);
-                    return procEntry;
-                });
+        if (!tokens.beginRule("Procedure Header", Token.KW_PROCEDURE, recoverSet)) {
+            return procEntry.errorReturn();
+        }
+        /* The current token is KW_PROCEDURE */
+        SymEntry.ProcedureEntry procEntry;
+        tokens.match(Token.KW_PROCEDURE);
+        if (tokens.isMatch(Token.IDENTIFIER)) {
+            procEntry = currentScope.addProcedure(tokens.getName(),
+                    tokens.getLocation());
+            if (procEntry == null) {
+                errors.error("Procedure identifier " + tokens.getName() +
+                                " already declared in this scope",
+                        tokens.getLocation());
+                // Construct a dummy entry but do not add to scope
+                procEntry = new SymEntry.ProcedureEntry(tokens.getName(),
+                        tokens.getLocation());
+                procEntry.setScope(currentScope);
+
+            }
+        } else {
+            // Construct a dummy procedure entry but do not add to scope
+            procEntry = new SymEntry.ProcedureEntry("<undefined>",
+                    tokens.getLocation());
+            procEntry.setScope(currentScope);
+        }
+        tokens.match(Token.IDENTIFIER, Token.LPAREN);
+        tokens.match(Token.LPAREN, Token.RPAREN);
+        // Empty formal parameter list currently
+        tokens.match(Token.RPAREN, recoverSet);
+        tokens.endRule("Procedure Header", recoverSet);
+        return procEntry;
     }
     //******************* Private convenience Methods ************************
 
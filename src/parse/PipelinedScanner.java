@@ -0,0 +1,327 @@
+package parse;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.Errors;
+import syms.CompilerContext;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * class PipelinedScanner - runs a Scanner on a thread of its own, so that
+ * scanning overlaps with parsing. The scanner thread publishes each token
+ * into a bounded single-producer/single-consumer ring buffer, from which
+ * the parser's thread takes them without locking: each side only writes
+ * its own index into the ring, and reads the other's, with the slots
+ * between them owned by one side or the other.
+ * <p>
+ * The scanner reports its errors to a recorder of its own rather than to
+ * the error handler of the compilation, and the errors found while
+ * scanning a token travel with it through the ring. They are reported
+ * when the parser takes the token, which is just when a scanner called
+ * by the parser would have reported them, so error recovery, and the
+ * order of errors and debugging messages, are the same as without the
+ * pipeline.
+ */
+public class PipelinedScanner implements Iterator<LexicalToken> {
+
+    /**
+     * Default number of slots in the ring
+     */
+    static final int CAPACITY = 1 << 12;
+
+    /**
+     * Slots of the ring: a token and any errors found while scanning it.
+     * A null token ends the ring after the scanner failed.
+     */
+    private final LexicalToken[] tokens;
+    private final DeferredError[] tokenErrors;
+    private final int mask;
+    /**
+     * Index of the next slot to be written, written only by the scanner
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Index of the next slot to be read, written only by the parser
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Set by the parser if it stops before the end of file
+     */
+    private volatile boolean closed = false;
+
+    /* Fields of the parser's thread */
+    private final Errors errors;
+    private long knownTail = 0;
+    private LexicalToken eof = null;
+
+    /**
+     * Field of the scanner's thread: the head last read
+     */
+    private long knownHead = 0;
+
+    private PipelinedScanner(int capacity, Errors errors) {
+        assert Integer.bitCount(capacity) == 1;
+        tokens = new LexicalToken[capacity];
+        tokenErrors = new DeferredError[capacity];
+        mask = capacity - 1;
+        this.errors = errors;
+    }
+
+    /**
+     * Start scanning the source of a compilation on a thread of its own.
+     *
+     * @param context compilation whose source is scanned
+     * @return the tokens, to be consumed by a single thread
+     */
+    public static PipelinedScanner start(CompilerContext context) {
+        return start(context, CAPACITY);
+    }
+
+    static PipelinedScanner start(CompilerContext context, int capacity) {
+        PipelinedScanner pipeline = new PipelinedScanner(capacity,
+                context.getErrors());
+        Recorder recorder = new Recorder();
+        Thread thread = new Thread(() -> pipeline.produce(
+                new CompilerContext(recorder, context.getSource()), recorder),
+                "pl0-scanner");
+        thread.setDaemon(true);
+        thread.start();
+        return pipeline;
+    }
+
+    /**
+     * Stop the scanner thread if it is still running, e.g. because the
+     * parser stopped before the end of file
+     */
+    public void close() {
+        closed = true;
+    }
+
+    //************************* Scanner thread ***************************
+
+    /**
+     * Scan every token into the ring
+     */
+    private void produce(CompilerContext context, Recorder recorder) {
+        try {
+            Scanner scanner = new Scanner(context);
+            LexicalToken token;
+            do {
+                token = scanner.next();
+                if (!publish(token, recorder.take())) {
+                    return;
+                }
+            } while (!token.isMatch(Token.EOF));
+        } catch (RuntimeException | Error failure) {
+            /* A fatal error has been recorded, or the scanner failed */
+            if (!(failure instanceof Recorder.Stopped)) {
+                recorder.record(new DeferredError(null, null, false, failure));
+            }
+            publish(null, recorder.take());
+        }
+    }
+
+    /**
+     * Wait for a free slot and write a token into it
+     *
+     * @return false if the parser has closed the pipeline
+     */
+    private boolean publish(LexicalToken token, DeferredError deferred) {
+        long index = tail.get();
+        for (int attempt = 0; index - knownHead == tokens.length; attempt++) {
+            if (closed) {
+                return false;
+            }
+            backOff(attempt);
+            knownHead = head.get();
+        }
+        int slot = (int) index & mask;
+        tokens[slot] = token;
+        tokenErrors[slot] = deferred;
+        /* Release the slot to the parser */
+        tail.lazySet(index + 1);
+        return true;
+    }
+
+    //************************* Parser thread ****************************
+
+    /**
+     * Returns true unless the end of file has been taken.
+     */
+    @Override
+    public boolean hasNext() {
+        return eof == null;
+    }
+
+    /**
+     * Take the next token from the ring, first reporting any errors found
+     * while scanning it. Once the end of file is reached it is repeated.
+     */
+    @Override
+    public LexicalToken next() {
+        if (eof != null) {
+            return eof;
+        }
+        long index = head.get();
+        for (int attempt = 0; index == knownTail; attempt++) {
+            backOff(attempt);
+            knownTail = tail.get();
+        }
+        int slot = (int) index & mask;
+        LexicalToken token = tokens[slot];
+        DeferredError deferred = tokenErrors[slot];
+        tokens[slot] = null;
+        tokenErrors[slot] = null;
+        /* Release the slot to the scanner */
+        head.lazySet(index + 1);
+        for (; deferred != null; deferred = deferred.next) {
+            deferred.report(errors);
+        }
+        assert token != null : "a failure of the scanner is rethrown";
+        if (token.isMatch(Token.EOF)) {
+            eof = token;
+        }
+        return token;
+    }
+
+    /**
+     * Wait for the other thread, spinning briefly before yielding and
+     * then sleeping, as on a single processor the other thread cannot
+     * make progress while this one spins
+     */
+    private static void backOff(int attempt) {
+        if (attempt < 32) {
+            Thread.onSpinWait();
+        } else if (attempt < 64) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(10_000);
+        }
+    }
+
+    /**
+     * An error found by the scanner, to be reported by the parser's thread,
+     * or a failure of the scanner to be rethrown there
+     */
+    private static class DeferredError {
+        private final String message;
+        private final Location loc;
+        private final boolean fatal;
+        private final Throwable failure;
+        private DeferredError next = null;
+
+        DeferredError(String message, Location loc, boolean fatal,
+                      Throwable failure) {
+            this.message = message;
+            this.loc = loc;
+            this.fatal = fatal;
+            this.failure = failure;
+        }
+
+        void report(Errors errors) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (fatal) {
+                /* Does not return */
+                errors.fatal(message, loc);
+            } else {
+                errors.error(message, loc);
+            }
+        }
+    }
+
+    /**
+     * Error handler of the scanner thread, which records the errors found
+     * while scanning each token. The scanner reports nothing else.
+     */
+    private static class Recorder implements Errors {
+        /**
+         * Thrown to stop the scanner after a fatal error
+         */
+        private static class Stopped extends Error {
+            private static final long serialVersionUID = 1L;
+        }
+
+        private DeferredError first = null;
+        private DeferredError last = null;
+
+        /**
+         * @return the errors recorded since the last call, else null
+         */
+        DeferredError take() {
+            DeferredError errors = first;
+            first = last = null;
+            return errors;
+        }
+
+        void record(DeferredError error) {
+            if (first == null) {
+                first = error;
+            } else {
+                last.next = error;
+            }
+            last = error;
+        }
+
+        @Override
+        public void error(String m, Location loc) {
+            record(new DeferredError(m, loc, false, null));
+        }
+
+        @Override
+        public void fatal(String m, Location loc) {
+            record(new DeferredError(m, loc, true, null));
+            /* Stop the scanner, as the error handler would */
+            throw new Stopped();
+        }
+
+        @Override
+        public void checkAssert(boolean condition, String m, Location loc) {
+            if (!condition) {
+                fatal("Assertion failed! " + m, loc);
+            }
+        }
+
+        @Override
+        public boolean hadErrors() {
+            return first != null;
+        }
+
+        @Override
+        public boolean isDebugging() {
+            return false;
+        }
+
+        @Override
+        public void debugPrint(String msg) {
+        }
+
+        @Override
+        public void debugMessage(String msg) {
+        }
+
+        @Override
+        public void incDebug() {
+        }
+
+        @Override
+        public void decDebug() {
+        }
+
+        @Override
+        public void errorSummary() {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void println(String msg) {
+        }
+    }
+}
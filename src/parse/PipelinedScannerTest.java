@@ -0,0 +1,118 @@
+package parse;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import junit.framework.TestCase;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * class PipelinedScannerTest - JUnit test that the tokens taken from a
+ * scanner running on its own thread, and the lexical errors reported as
+ * they are taken, are exactly those of a scanner called directly.
+ */
+public class PipelinedScannerTest extends TestCase {
+
+    private static final String ERRORS =
+            "const big = 2147483648; ok = 2147483647;\n" +
+            "var x: int;\n" +
+            "begin // 99999999999 in a comment\n" +
+            "  x := 99999999999 + 1;\n" +
+            "  x := 3 $ 4;\n" +
+            "  write 12345678901234\n" +
+            "end";
+
+    public PipelinedScannerTest(String testName) {
+        super(testName);
+    }
+
+    public void testErrorsInOrder() {
+        /* A ring of one slot makes each thread wait for the other */
+        for (int capacity = 1; capacity <= 64; capacity *= 4) {
+            String errors = assertSameAsDirect("errors", ERRORS.getBytes(),
+                    capacity);
+            assertEquals(errors, 4, errors.split("integer too large", -1)
+                    .length);
+        }
+    }
+
+    public void testTestPrograms() throws IOException {
+        File[] programs = new File("test-pgm").listFiles(
+                f -> f.getName().endsWith(".pl0"));
+        assertNotNull(programs);
+        for (File program : programs) {
+            byte[] bytes = Files.readAllBytes(program.toPath());
+            assertSameAsDirect(program.getName(), bytes, 2);
+        }
+    }
+
+    public void testCloseBeforeEnd() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("x := ").append(i).append(";\n");
+        }
+        PipelinedScanner pipeline = PipelinedScanner.start(
+                context(text.toString().getBytes(),
+                        new ByteArrayOutputStream()), 4);
+        assertTrue(pipeline.next().isMatch(Token.IDENTIFIER));
+        pipeline.close();
+    }
+
+    /**
+     * @return the error messages
+     */
+    private String assertSameAsDirect(String name, byte[] bytes,
+                                      int capacity) {
+        ByteArrayOutputStream expectedErrors = new ByteArrayOutputStream();
+        Iterator<LexicalToken> expected = new Scanner(context(bytes,
+                expectedErrors));
+        ByteArrayOutputStream actualErrors = new ByteArrayOutputStream();
+        Iterator<LexicalToken> actual = PipelinedScanner.start(
+                context(bytes, actualErrors), capacity);
+        LexicalToken token;
+        do {
+            token = expected.next();
+            LexicalToken other = actual.next();
+            String where = name + " " + capacity + " " + token.getLocation();
+            assertEquals(where, token.toString(), other.toString());
+            assertEquals(where, token.getLocation().getLine(),
+                    other.getLocation().getLine());
+            assertEquals(where, token.getLocation().getColumn(),
+                    other.getLocation().getColumn());
+            /* Each error is reported as its token is taken */
+            assertEquals(where, expectedErrors.toString(),
+                    actualErrors.toString());
+        } while (!token.isMatch(Token.EOF));
+        assertFalse(actual.hasNext());
+        assertTrue(actual.next().isMatch(Token.EOF));
+        return actualErrors.toString();
+    }
+
+    /**
+     * @return a compilation of a source whose messages, listed without the
+     * source, are written to messages as they are reported
+     */
+    private static CompilerContext context(byte[] bytes,
+                                           ByteArrayOutputStream messages) {
+        MappedSource source = new MappedSource(ByteBuffer.wrap(bytes),
+                "test.pl0");
+        Errors errors = new ErrorHandler(new PrintStream(messages, true),
+                null, false) {
+            @Override
+            public void error(String m, Location loc) {
+                super.error(m, loc);
+                flush();
+            }
+        };
+        return new CompilerContext(errors, source);
+    }
+}
@@ -3,11 +3,12 @@ package parse;
 import source.ErrorHandler;
 import source.Errors;
 import source.Source;
+import syms.CompilerContext;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * class Scanner - hand coded lexical analyzer for PL0
@@ -16,11 +17,23 @@ import java.util.HashMap;
  * Returns one token on each call to getNextToken()
  */
 public class Scanner implements java.util.Iterator<LexicalToken> {
-    private final static Map<String, Token> keywords;
+    /**
+     * Keywords indexed by their perfect hash, null for an unused slot.
+     * The hash is computed from the first two characters and the length of
+     * a word; the static initializer checks that no two keywords collide.
+     */
+    private final static Token[] keywords = new Token[32];
+    /**
+     * Characters of the keyword in each slot of keywords
+     */
+    private final static char[][] keywordChars = new char[32][];
+    /**
+     * Lengths of the shortest and longest keywords
+     */
+    private final static int MIN_KEYWORD = 2, MAX_KEYWORD = 9;
 
     /* Static initializer */
     static {
-        keywords = new HashMap<>();
         addKeyword(Token.KW_BEGIN);
         addKeyword(Token.KW_EXIT);
         addKeyword(Token.KW_CALL);
@@ -40,6 +53,21 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
         addKeyword(Token.KW_WRITE);
     }
 
+    /* Classes of ASCII characters; other characters are classified by
+     * the Character methods as before */
+    private static final byte OTHER = 0, LETTER = 1, DIGIT = 2;
+    private static final byte[] charClass = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            charClass[c] = LETTER;
+            charClass[Character.toUpperCase(c)] = LETTER;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            charClass[c] = DIGIT;
+        }
+    }
+
     /**
      * Size of the lookahead buffer
      */
@@ -47,23 +75,62 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
 
     //*************** Instance Variables *****************
     private Source source; /* The source handler used by this lexer */
+    private final ByteBuffer ascii; /* ASCII bytes of source in memory, else null */
+    private int asciiPos = 0; /* Position of the next byte in ascii */
+    private final int asciiLimit; /* Number of bytes in ascii */
     private final char[] charBuffer = new char[BUFFER_SIZE];
     private int nextCh; /* The one character of look-ahead */
     private int bufferPos = 0; /* Position in charBuffer */
     private int bufferLength = 0; /* Number of characters in buffer */
     private int currentLine = 0; /* Number of newlines encountered */
     private int currentColumn = 0; /* Character position in current line */
-    private static final Errors errors = ErrorHandler.getErrorHandler(); /* Error handler */
+    private int tokenLine, tokenColumn; /* Position of the current token */
+    private int tokenValue; /* Value of a number, number of an identifier */
+    private char[] word = new char[64]; /* Characters of an identifier */
+    private final IdentifierTable identifiers = new IdentifierTable();
+    private final Errors errors; /* Error handler of the compilation */
+    private TokenBuffer buffer; /* Buffer being filled by scanAll, else null */
 
     //****************** Constructors ********************
 
     /**
      * Basic constructor
      *
+     * @param context compilation whose source program is to be scanned
+     */
+    public Scanner(CompilerContext context) {
+        source = context.getSource();
+        ascii = source.asciiView();
+        asciiLimit = ascii == null ? 0 : ascii.limit();
+        errors = context.getErrors();
+        nextCh = getNextChar();
+    }
+
+    /**
+     * Constructor for a source on its own, reporting errors to
+     * standard output
+     *
      * @param src input source program stream
      */
     public Scanner(Source src) {
-        source = src;
+        this(new CompilerContext(new ErrorHandler(System.out, src, false),
+                src));
+    }
+
+    /**
+     * Constructor for a chunk of the bytes of an ASCII source, as scanned
+     * by ParallelScanner, with lines counted from 0 for the chunk
+     *
+     * @param chunk     the bytes of the chunk
+     * @param lineStart whether the chunk starts just after a newline, so
+     *                  that its columns are counted as after one
+     * @param errors    error handler of the compilation
+     */
+    Scanner(ByteBuffer chunk, boolean lineStart, Errors errors) {
+        ascii = chunk;
+        asciiLimit = chunk.limit();
+        this.errors = errors;
+        currentColumn = lineStart ? -1 : 0;
         nextCh = getNextChar();
     }
 
@@ -91,7 +158,55 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
      * in which case an EOF token is returned
      */
     public LexicalToken next() {
-        Location currentLocation;
+        Token kind = scan();
+        Location loc = new Location(tokenLine, tokenColumn);
+        switch (kind) {
+            case IDENTIFIER:
+                return new IdentifierToken(kind, loc,
+                        identifiers.name(tokenValue));
+            case NUMBER:
+                return new NumberToken(kind, loc, tokenValue);
+            default:
+                return new LexicalToken(kind, loc);
+        }
+    }
+
+    /**
+     * Scan the rest of the source into a token buffer that shares the
+     * identifiers of this scanner. Lexical errors are recorded in the
+     * buffer rather than reported.
+     *
+     * @param eof whether to end the buffer with the end of file token
+     * @return the buffer
+     */
+    TokenBuffer scanAll(boolean eof) {
+        TokenBuffer tokens = new TokenBuffer(asciiLimit / 4 + 16, identifiers);
+        buffer = tokens;
+        Token kind;
+        while ((kind = scan()) != Token.EOF) {
+            tokens.add(kind, tokenLine, tokenColumn, tokenValue);
+        }
+        if (eof) {
+            tokens.add(kind, tokenLine, tokenColumn, tokenValue);
+        }
+        buffer = null;
+        return tokens;
+    }
+
+    /**
+     * @return the number of newlines scanned so far
+     */
+    int getLine() {
+        return currentLine;
+    }
+
+    /**
+     * Scan the next token without allocating, leaving its position in
+     * tokenLine and tokenColumn and any value in tokenValue.
+     *
+     * @return the kind of the token
+     */
+    private Token scan() {
         char ch;
         /* Use a loop to allow multiple whitespace elements to be skipped.
          * When a token is matched it is returned,
@@ -100,20 +215,22 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
          * white space.
          */
         do {
-            currentLocation = new Location(currentLine, currentColumn);
+            /* The location is only created once a token is found */
+            tokenLine = currentLine;
+            tokenColumn = currentColumn;
             // Check if we've hit end of file
             if (nextCh == -1) {
-                return new LexicalToken(Token.EOF, currentLocation);
+                return Token.EOF;
             }
             ch = (char) nextCh;
             nextCh = getNextChar();
             /* If ch is a letter, read an identifier or keyword */
-            if (Character.isLetter(ch)) {
-                return getIdentifierToken(ch, currentLocation);
+            if (isLetter(ch)) {
+                return scanIdentifier(ch);
             }
             /* if ch is a digit, read a number */
-            if (Character.isDigit(ch)) {
-                return getNumberToken(ch, currentLocation);
+            if (isDigit(ch)) {
+                return scanNumber(ch);
             }
             switch (ch) {
                 // Skip over whitespace
@@ -139,76 +256,76 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
                         break;
                     } else {
                         /* We have a divide sign */
-                        return new LexicalToken(Token.DIVIDE, currentLocation);
+                        return Token.DIVIDE;
                     }
                 case '+':
-                    return new LexicalToken(Token.PLUS, currentLocation);
+                    return Token.PLUS;
                 case '-':
-                    return new LexicalToken(Token.MINUS, currentLocation);
+                    return Token.MINUS;
                 case '*':
-                    return new LexicalToken(Token.TIMES, currentLocation);
+                    return Token.TIMES;
                 case '(':
-                    return new LexicalToken(Token.LPAREN, currentLocation);
+                    return Token.LPAREN;
                 case ')':
-                    return new LexicalToken(Token.RPAREN, currentLocation);
+                    return Token.RPAREN;
                 case ';':
-                    return new LexicalToken(Token.SEMICOLON, currentLocation);
+                    return Token.SEMICOLON;
                 case ':':
                     if (nextCh == '=') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.ASSIGN, currentLocation);
+                        return Token.ASSIGN;
                     }
-                    return new LexicalToken(Token.COLON, currentLocation);
+                    return Token.COLON;
                 case ',':
-                    return new LexicalToken(Token.COMMA, currentLocation);
+                    return Token.COMMA;
                 case '.':
                     if (nextCh == '.') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.RANGE, currentLocation);
+                        return Token.RANGE;
                     }
-                    return new LexicalToken(Token.ILLEGAL, currentLocation);
+                    return Token.ILLEGAL;
                 case '=':
-                    return new LexicalToken(Token.EQUALS, currentLocation);
+                    return Token.EQUALS;
                 case '!':
                     if (nextCh == '=') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.NEQUALS, currentLocation);
+                        return Token.NEQUALS;
                     }
-                    return new LexicalToken(Token.LOG_NOT, currentLocation);
+                    return Token.LOG_NOT;
                 case '<':
                     if (nextCh == '=') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.LEQUALS, currentLocation);
+                        return Token.LEQUALS;
                     }
-                    return new LexicalToken(Token.LESS, currentLocation);
+                    return Token.LESS;
                 case '>':
                     if (nextCh == '=') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.GEQUALS, currentLocation);
+                        return Token.GEQUALS;
                     }
-                    return new LexicalToken(Token.GREATER, currentLocation);
+                    return Token.GREATER;
                 case '&':
                     if (nextCh == '&') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.LOG_AND, currentLocation);
+                        return Token.LOG_AND;
                     }
-                    return new LexicalToken(Token.ILLEGAL, currentLocation);
+                    return Token.ILLEGAL;
                 case '|':
                     if (nextCh == '|') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.LOG_OR, currentLocation);
+                        return Token.LOG_OR;
                     }
-                    return new LexicalToken(Token.ILLEGAL, currentLocation);
+                    return Token.ILLEGAL;
                 case '[':
                     if (nextCh == ']') {
                         nextCh = getNextChar();
-                        return new LexicalToken(Token.SEPARATOR, currentLocation);
+                        return Token.SEPARATOR;
                     }
-                    return new LexicalToken(Token.LBRACKET, currentLocation);
+                    return Token.LBRACKET;
                 case ']':
-                    return new LexicalToken(Token.RBRACKET, currentLocation);
+                    return Token.RBRACKET;
                 default:
-                    return new LexicalToken(Token.ILLEGAL, currentLocation);
+                    return Token.ILLEGAL;
             }
         } while (true);
     }
@@ -221,49 +338,133 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
     }
 
     /**
-     * read an identifier (or keyword) starting from the given character ch,
-     * and return the resulting token
+     * read an identifier (or keyword) starting from the given character ch.
+     * The characters are gathered in a reusable buffer, so that a String is
+     * only created for an identifier that has not been seen before.
+     *
+     * @return the kind of the token, with the number of an identifier in
+     * tokenValue
      */
-    private LexicalToken getIdentifierToken(char ch, Location currentLocation) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(ch);
-        while (nextCh != -1 && Character.isLetterOrDigit((char) nextCh)) {
-            buf.append((char) nextCh);
+    private Token scanIdentifier(char ch) {
+        char[] chars = word;
+        chars[0] = ch;
+        int length = 1;
+        int hash = ch;
+        while (nextCh != -1 && isLetterOrDigit(nextCh)) {
+            if (length == chars.length) {
+                chars = word = Arrays.copyOf(chars, 2 * length);
+            }
+            chars[length++] = (char) nextCh;
+            hash = 31 * hash + nextCh;
             nextCh = getNextChar();
         }
-        String word = buf.toString(); // .toLowerCase(); // Case insensitive
-        if (keywords.containsKey(word)) {
-            return new LexicalToken(keywords.get(word), currentLocation);
-        } else {
-            return new IdentifierToken(Token.IDENTIFIER, currentLocation, word);
+        Token keyword = keyword(chars, length);
+        if (keyword != null) {
+            return keyword;
         }
+        tokenValue = identifiers.intern(chars, length, hash);
+        return Token.IDENTIFIER;
     }
 
     /**
-     * read a number starting from the given character ch and return the
-     * resulting token
+     * read a number starting from the given character ch, leaving its value
+     * in tokenValue. The value is accumulated digit by digit; a number too
+     * large for an int is reported once all its digits are read.
      */
-    private LexicalToken getNumberToken(char ch, Location currentLocation) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(ch);
-        while (nextCh != -1 && Character.isDigit((char) nextCh)) {
-            buf.append((char) nextCh);
+    private Token scanNumber(char ch) {
+        int value = digitValue(ch);
+        boolean tooLarge = false;
+        int digit;
+        while (nextCh != -1 && (digit = digitValue(nextCh)) >= 0) {
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                tooLarge = true;
+            } else {
+                value = 10 * value + digit;
+            }
             nextCh = getNextChar();
         }
-        int value = 0x80808080; // Nonsense value
-        try {
-            value = Integer.parseInt(buf.toString());
-        } catch (NumberFormatException e) {
-            /* Can only happen if the number is too big */
-            errors.error("integer too large", currentLocation);
+        if (tooLarge) {
+            lexicalError("integer too large");
+            value = 0x80808080; // Nonsense value
         }
-        return new NumberToken(Token.NUMBER, currentLocation, value);
+        tokenValue = value;
+        return Token.NUMBER;
+    }
+
+    /**
+     * Report an error at the current token, or record it in the buffer
+     * being filled
+     */
+    private void lexicalError(String message) {
+        if (buffer != null) {
+            buffer.addError(message);
+        } else {
+            errors.error(message, new Location(tokenLine, tokenColumn));
+        }
+    }
+
+    /**
+     * @return the keyword spelt by the first length characters of chars,
+     * or null if they are not a keyword
+     */
+    private static Token keyword(char[] chars, int length) {
+        if (length < MIN_KEYWORD || length > MAX_KEYWORD) {
+            return null;
+        }
+        int slot = keywordHash(chars[0], chars[1], length);
+        char[] spelling = keywordChars[slot];
+        if (spelling == null || spelling.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (spelling[i] != chars[i]) {
+                return null;
+            }
+        }
+        return keywords[slot];
+    }
+
+    /**
+     * Perfect hash of the keywords, found by searching for multipliers
+     * that separate them
+     */
+    private static int keywordHash(char first, char second, int length) {
+        return (9 * first + 17 * second + length) & 31;
+    }
+
+    private static boolean isLetter(int ch) {
+        return ch < 128 ? charClass[ch] == LETTER : Character.isLetter((char) ch);
+    }
+
+    private static boolean isDigit(int ch) {
+        return ch < 128 ? charClass[ch] == DIGIT : Character.isDigit((char) ch);
+    }
+
+    private static boolean isLetterOrDigit(int ch) {
+        return ch < 128 ? charClass[ch] != OTHER
+                : Character.isLetterOrDigit((char) ch);
+    }
+
+    /**
+     * @return the value of a decimal digit, or -1 if ch is not a digit
+     */
+    private static int digitValue(int ch) {
+        return ch < 128 ? (charClass[ch] == DIGIT ? ch - '0' : -1)
+                : Character.digit((char) ch, 10);
     }
 
     /* Fetch the next character from the input stream and return it, updating
      * the current position.
      */
     private int getNextChar() {
+        if (ascii != null) {
+            /* Read the bytes in place */
+            if (asciiPos == asciiLimit) {
+                return -1;
+            }
+            currentColumn++;
+            return ascii.get(asciiPos++);
+        }
         if (bufferPos == bufferLength) {
             bufferPos = 0;
             try {
@@ -285,8 +486,13 @@ public class Scanner implements java.util.Iterator<LexicalToken> {
      * Add a keyword to the keyword look up table
      */
     private static void addKeyword(Token keyword) {
-        if (keywords.put(keyword.toString(), keyword) != null) {
-            errors.fatal("duplicate keyword in scanner", ErrorHandler.NO_LOCATION);
+        char[] spelling = keyword.toString().toCharArray();
+        int slot = keywordHash(spelling[0], spelling[1], spelling.length);
+        if (keywords[slot] != null) {
+            throw new IllegalStateException("keyword hash collision in scanner");
         }
+        assert MIN_KEYWORD <= spelling.length && spelling.length <= MAX_KEYWORD;
+        keywords[slot] = keyword;
+        keywordChars[slot] = spelling;
     }
 }
@@ -1,6 +1,14 @@
 package parse;
 
 import junit.framework.TestCase;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import syms.CompilerContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
 
 /**
  * class ScannerTest - JUnit test code for scanner
@@ -72,4 +80,67 @@ public class ScannerTest extends TestCase {
             assertEquals(expected, next.getIntValue());
         }
     }
+
+    public void testAllKeywords() {
+        Scanner scanner = scanner("begin call const do else end exit if od "
+                + "procedure read skip then type var while write");
+        for (Token expected : Token.values()) {
+            if (expected.name().startsWith("KW_")) {
+                assertEquals(expected, scanner.next().getKind());
+            }
+        }
+        assertEquals(Token.EOF, scanner.next().getKind());
+    }
+
+    public void testNearKeywords() {
+        Scanner scanner = scanner("b beg begins od0 DO Begin whilst "
+                + "procedures tp ty");
+        LexicalToken next;
+        while (!(next = scanner.next()).isMatch(Token.EOF)) {
+            assertEquals(next.toString(), Token.IDENTIFIER, next.getKind());
+        }
+    }
+
+    public void testIdentifiersAreShared() {
+        Scanner scanner = scanner("abc x abc\nabc");
+        String first = scanner.next().getName();
+        assertEquals("x", scanner.next().getName());
+        LexicalToken second = scanner.next();
+        LexicalToken third = scanner.next();
+        assertSame(first, second.getName());
+        assertSame(first, third.getName());
+        assertEquals(1, third.getLocation().getLine());
+        assertEquals(0, third.getLocation().getColumn());
+    }
+
+    public void testNumberLimits() {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        Scanner scanner = scanner("2147483647 2147483648 0000000000012 "
+                + "99999999999999999999", messages);
+        assertEquals(Integer.MAX_VALUE, scanner.next().getIntValue());
+        assertEquals(0x80808080, scanner.next().getIntValue());
+        assertEquals(12, scanner.next().getIntValue());
+        assertEquals(0x80808080, scanner.next().getIntValue());
+        errors.flush();
+        assertEquals(2, messages.toString().split("integer too large", -1)
+                .length - 1);
+    }
+
+    /**
+     * Error handler of the last scanner created
+     */
+    private Errors errors;
+
+    private Scanner scanner(String text) {
+        return scanner(text, new ByteArrayOutputStream());
+    }
+
+    private Scanner scanner(String text, ByteArrayOutputStream messages) {
+        MappedSource source = new MappedSource(
+                ByteBuffer.wrap(text.getBytes()), "test.pl0");
+        /* Messages are listed without their source, which is not a file */
+        errors = new ErrorHandler(new PrintStream(messages, true), null,
+                false);
+        return new Scanner(new CompilerContext(errors, source));
+    }
 }
@@ -0,0 +1,222 @@
+package parse;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.Errors;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * class TokenBuffer - a sequence of tokens held in parallel primitive
+ * arrays rather than as token objects: the kind of each token, its line
+ * and column packed into a long, and an int value, which is the value of a
+ * number or the number of an identifier in the identifiers of the buffer.
+ * <p>
+ * The lexical errors found while scanning are held with the buffer, each
+ * with the index of the token being scanned when it was found, so that
+ * they can be reported as the tokens are consumed, just as if the tokens
+ * were being scanned one at a time.
+ */
+public class TokenBuffer {
+
+    private static final Token[] KINDS = Token.values();
+
+    private byte[] kinds;
+    private long[] positions;
+    private int[] values;
+    private int size = 0;
+    /**
+     * Names of the identifiers in the buffer
+     */
+    final IdentifierTable identifiers;
+
+    /* Lexical errors, in the order they were found */
+    private int[] errorTokens = new int[4];
+    private String[] errorMessages = new String[4];
+    private int errorCount = 0;
+
+    TokenBuffer(int capacity, IdentifierTable identifiers) {
+        kinds = new byte[capacity];
+        positions = new long[capacity];
+        values = new int[capacity];
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * @return the number of tokens in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    Token getKind(int index) {
+        return KINDS[kinds[index]];
+    }
+
+    int getLine(int index) {
+        return (int) (positions[index] >>> 32);
+    }
+
+    int getColumn(int index) {
+        return (int) positions[index];
+    }
+
+    int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return the name of the identifier at an index
+     */
+    String getName(int index) {
+        assert getKind(index) == Token.IDENTIFIER;
+        return identifiers.name(values[index]);
+    }
+
+    /**
+     * @return a new location for the token at an index
+     */
+    Location getLocation(int index) {
+        return new Location(getLine(index), getColumn(index));
+    }
+
+    /**
+     * Append a token
+     *
+     * @param value value of a number, number of an identifier, else 0
+     */
+    void add(Token kind, int line, int column, int value) {
+        if (size == kinds.length) {
+            int capacity = Math.max(16, 2 * size);
+            kinds = Arrays.copyOf(kinds, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        positions[size] = position(line, column);
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Record a lexical error found while scanning the next token to be added
+     */
+    void addError(String message) {
+        addError(size, message);
+    }
+
+    private void addError(int token, String message) {
+        if (errorCount == errorTokens.length) {
+            errorTokens = Arrays.copyOf(errorTokens, 2 * errorCount);
+            errorMessages = Arrays.copyOf(errorMessages, 2 * errorCount);
+        }
+        errorTokens[errorCount] = token;
+        errorMessages[errorCount] = message;
+        errorCount++;
+    }
+
+    /**
+     * Copy the tokens and errors of another buffer, whose lines start at
+     * line firstLine of this one, into this buffer starting at index start.
+     * The identifiers of the other buffer are renumbered by identifierIds.
+     * Distinct ranges of a buffer may be filled concurrently.
+     */
+    void copy(TokenBuffer from, int start, int firstLine,
+              int[] identifierIds) {
+        System.arraycopy(from.kinds, 0, kinds, start, from.size);
+        long lineOffset = (long) firstLine << 32;
+        byte identifier = (byte) Token.IDENTIFIER.ordinal();
+        for (int i = 0; i < from.size; i++) {
+            positions[start + i] = from.positions[i] + lineOffset;
+            values[start + i] = from.kinds[i] == identifier
+                    ? identifierIds[from.values[i]] : from.values[i];
+        }
+    }
+
+    /**
+     * Append the errors of another buffer whose tokens were copied into
+     * this buffer starting at index start
+     */
+    void copyErrors(TokenBuffer from, int start) {
+        for (int i = 0; i < from.errorCount; i++) {
+            addError(start + from.errorTokens[i], from.errorMessages[i]);
+        }
+    }
+
+    /**
+     * Set the number of tokens, once they have been copied in
+     */
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    private static long position(int line, int column) {
+        return (long) line << 32 | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return a token object for the token at an index
+     */
+    LexicalToken getToken(int index) {
+        Token kind = getKind(index);
+        Location loc = getLocation(index);
+        switch (kind) {
+            case IDENTIFIER:
+                return new IdentifierToken(kind, loc,
+                        identifiers.name(values[index]));
+            case NUMBER:
+                return new NumberToken(kind, loc, values[index]);
+            default:
+                return new LexicalToken(kind, loc);
+        }
+    }
+
+    /**
+     * @return the token at an index as its token object would be shown
+     */
+    String toString(int index) {
+        return getToken(index).toString();
+    }
+
+    /**
+     * Report the lexical errors found while scanning the token at an index
+     *
+     * @param nextError index of the first error not yet reported
+     * @return index of the first error still not reported
+     */
+    int reportErrors(int index, int nextError, Errors errors) {
+        while (nextError < errorCount && errorTokens[nextError] == index) {
+            errors.error(errorMessages[nextError], getLocation(index));
+            nextError++;
+        }
+        return nextError;
+    }
+
+    /**
+     * The tokens of a buffer that ends with the end of file token, one at a
+     * time as for a Scanner. Any lexical error is reported to errors as its
+     * token is reached, and the end of file token is repeated once reached.
+     */
+    public Iterator<LexicalToken> tokens(Errors errors) {
+        assert size > 0 && getKind(size - 1) == Token.EOF;
+        return new Iterator<LexicalToken>() {
+            private int next = 0;
+            private int nextError = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size - 1;
+            }
+
+            @Override
+            public LexicalToken next() {
+                nextError = reportErrors(next, nextError, errors);
+                LexicalToken token = getToken(next);
+                if (next < size - 1) {
+                    next++;
+                }
+                return token;
+            }
+        };
+    }
+}
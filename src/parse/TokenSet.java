@@ -1,62 +1,165 @@
 package parse;
 
-import java.util.EnumSet;
-
 /**
  * class TokenSet - Provides operations on sets of Tokens
  * Provide operations to construct, union and test membership
  * of set of Tokens.
+ * <p>
+ * A set is immutable and held as a bit mask with a bit for each token.
+ * The unions formed as the parser descends are looked up in the Unions
+ * table of the parser, so that each recovery set is only allocated the
+ * first time it is formed in a compilation. The grammar bounds the number
+ * of distinct recovery sets, so the table stays small.
  */
 public class TokenSet {
 
-    private final EnumSet<Token> set;
+    private static final Token[] TOKENS = Token.values();
+    static {
+        /* Otherwise tokens would share bits, and recovery would be wrong */
+        if (TOKENS.length > Long.SIZE) {
+            throw new IllegalStateException(TOKENS.length
+                    + " tokens do not fit in the bit mask of a TokenSet");
+        }
+    }
+
+    /**
+     * The sets of a single token, indexed by ordinal
+     */
+    private static final TokenSet[] SINGLETONS = new TokenSet[TOKENS.length];
+    static {
+        for (Token token : TOKENS) {
+            SINGLETONS[token.ordinal()] = new TokenSet(bit(token));
+        }
+    }
+
+    private final long bits;
 
     /**
      * Construct a new TokenSet from a list of tokens
      */
     public TokenSet(Token first, Token... rest) {
-        set = EnumSet.of(first, rest);
+        long bits = bit(first);
+        for (Token token : rest) {
+            bits |= bit(token);
+        }
+        this.bits = bits;
+    }
+
+    private TokenSet(long bits) {
+        this.bits = bits;
     }
 
     /**
-     * Construct a new TokenSet from an existing one
+     * Return the set containing just one token
      */
-    private TokenSet(TokenSet elems) {
-        set = EnumSet.copyOf(elems.set);
+    static TokenSet of(Token token) {
+        return SINGLETONS[token.ordinal()];
     }
 
     /**
-     * Construct a new TokenSet from the union of this and the other
+     * Return the union of this and the other
      */
     TokenSet union(TokenSet other) {
-        TokenSet result = new TokenSet(other);
-        result.set.addAll(set);
-        return result;
+        long union = bits | other.bits;
+        return union == bits ? this
+                : union == other.bits ? other : new TokenSet(union);
     }
 
     /**
-     * Construct a new TokenSet from this plus one more Token
+     * Return this plus one more Token
      */
     TokenSet union(Token other) {
-        TokenSet result = new TokenSet(other);
-        result.set.addAll(set);
-        return result;
+        long union = bits | bit(other);
+        return union == bits ? this : new TokenSet(union);
     }
 
     /**
-     * Construct a new TokenSet from this plus a list of Tokens
+     * Return this plus a list of Tokens
      */
     TokenSet union(Token first, Token... rest) {
-        TokenSet result = new TokenSet(first, rest);
-        result.set.addAll(set);
-        return result;
+        return union(new TokenSet(first, rest));
     }
 
     /**
      * Return whether a token is contained in the set
      */
     boolean contains(Token token) {
-        return set.contains(token);
+        return (bits & bit(token)) != 0;
+    }
+
+    private static long bit(Token token) {
+        return 1L << token.ordinal();
+    }
+
+    /**
+     * class Unions - the unions of token sets formed during the parse of one
+     * compilation, so that forming the same union again finds the set
+     * formed before rather than allocating another. A table belongs to a
+     * single parser, and so is only used by one thread.
+     */
+    static final class Unions {
+
+        /**
+         * The unions formed so far, in an open addressed hash table
+         */
+        private TokenSet[] table = new TokenSet[64];
+        private int count = 0;
+
+        /**
+         * @return the union of two sets
+         */
+        TokenSet union(TokenSet set, TokenSet other) {
+            long union = set.bits | other.bits;
+            return union == set.bits ? set
+                    : union == other.bits ? other : lookup(union);
+        }
+
+        /**
+         * @return a set plus one more Token
+         */
+        TokenSet union(TokenSet set, Token other) {
+            long union = set.bits | bit(other);
+            return union == set.bits ? set : lookup(union);
+        }
+
+        /**
+         * @return the set with the given bits from the table, adding it if
+         * it is not there
+         */
+        private TokenSet lookup(long bits) {
+            int mask = table.length - 1;
+            int i = hash(bits) & mask;
+            for (; table[i] != null; i = (i + 1) & mask) {
+                if (table[i].bits == bits) {
+                    return table[i];
+                }
+            }
+            TokenSet set = new TokenSet(bits);
+            table[i] = set;
+            if (2 * ++count > table.length) {
+                grow();
+            }
+            return set;
+        }
+
+        private void grow() {
+            TokenSet[] old = table;
+            table = new TokenSet[2 * old.length];
+            int mask = table.length - 1;
+            for (TokenSet set : old) {
+                if (set != null) {
+                    int i = hash(set.bits) & mask;
+                    while (table[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = set;
+                }
+            }
+        }
+
+        private static int hash(long bits) {
+            return (int) ((bits * 0x9E3779B97F4A7C15L) >>> 32);
+        }
     }
 
     /**
@@ -66,9 +169,11 @@ public class TokenSet {
     public String toString() {
         StringBuilder m = new StringBuilder("{ ");
         String sep = "";
-        for (Token t : set) {
-            m.append(sep).append("'").append(t).append("'");
-            sep = ", ";
+        for (Token t : TOKENS) {
+            if (contains(t)) {
+                m.append(sep).append("'").append(t).append("'");
+                sep = ", ";
+            }
         }
         return m + " }";
     }
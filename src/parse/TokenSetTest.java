@@ -0,0 +1,74 @@
+package parse;
+
+import junit.framework.TestCase;
+
+/**
+ * class TokenSetTest - JUnit test code for the operations on token sets,
+ * and that a union already formed in a table of unions is found again
+ * rather than allocated.
+ */
+public class TokenSetTest extends TestCase {
+
+    public void testContains() {
+        TokenSet set = new TokenSet(Token.EOF, Token.KW_WRITE, Token.ILLEGAL);
+        for (Token token : Token.values()) {
+            assertEquals(token.toString(), token == Token.EOF ||
+                            token == Token.KW_WRITE || token == Token.ILLEGAL,
+                    set.contains(token));
+        }
+        assertTrue(TokenSet.of(Token.NUMBER).contains(Token.NUMBER));
+        assertFalse(TokenSet.of(Token.NUMBER).contains(Token.IDENTIFIER));
+    }
+
+    public void testUnion() {
+        TokenSet ops = new TokenSet(Token.PLUS, Token.MINUS);
+        TokenSet set = ops.union(Token.SEMICOLON).union(
+                new TokenSet(Token.KW_END, Token.PLUS));
+        for (Token token : Token.values()) {
+            assertEquals(token.toString(), token == Token.PLUS ||
+                            token == Token.MINUS || token == Token.SEMICOLON ||
+                            token == Token.KW_END,
+                    set.contains(token));
+        }
+        assertFalse(ops.contains(Token.SEMICOLON));
+    }
+
+    public void testUnionsAreShared() {
+        TokenSet.Unions unions = new TokenSet.Unions();
+        TokenSet recover = TokenSet.of(Token.EOF);
+        assertSame(recover, unions.union(recover, Token.EOF));
+        assertSame(recover, unions.union(recover, new TokenSet(Token.EOF)));
+        TokenSet ops = new TokenSet(Token.TIMES, Token.DIVIDE);
+        assertSame(ops, unions.union(TokenSet.of(Token.TIMES), ops));
+        TokenSet first = unions.union(recover, ops);
+        assertSame(first, unions.union(recover, ops));
+        assertSame(first, unions.union(ops, Token.EOF));
+        /* Enough unions to grow the table */
+        TokenSet[] formed = new TokenSet[Token.values().length];
+        for (Token token : Token.values()) {
+            formed[token.ordinal()] = unions.union(
+                    unions.union(first, token), Token.NUMBER);
+        }
+        for (Token token : Token.values()) {
+            assertSame(formed[token.ordinal()], unions.union(
+                    unions.union(first, Token.NUMBER), token));
+        }
+    }
+
+    public void testUnionsAreNotSharedBetweenTables() {
+        TokenSet ops = new TokenSet(Token.TIMES, Token.DIVIDE);
+        TokenSet first = new TokenSet.Unions().union(ops, Token.EOF);
+        TokenSet second = new TokenSet.Unions().union(ops, Token.EOF);
+        assertNotSame(first, second);
+        for (Token token : Token.values()) {
+            assertEquals(token.toString(), first.contains(token),
+                    second.contains(token));
+        }
+    }
+
+    public void testToString() {
+        assertEquals("{ 'End-of-file', '+', 'identifier' }",
+                new TokenSet(Token.IDENTIFIER, Token.PLUS, Token.EOF)
+                        .toString());
+    }
+}
@@ -1,22 +1,38 @@
 package parse;
 
+import java.util.Iterator;
 import java.util.Stack;
+import java.util.function.Supplier;
 
-import source.ErrorHandler;
 import source.Errors;
+import syms.CompilerContext;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
 public class TokenStream {
 
     //*************************** Instance Variables ************************
     /**
-     * The lexical analyzer
+     * The lexical analyzer, or another source of its tokens, unless the
+     * tokens are held in a buffer
      */
-    private final Scanner lex;
+    private final Iterator<LexicalToken> lex;
     /**
-     * The current token
+     * The current token when read from lex
      */
     private LexicalToken currentToken;
+    /**
+     * The tokens already scanned into a buffer, else null, and the index
+     * of the current token and the next lexical error in the buffer.
+     * No token objects are created from a buffer, and a location only
+     * when asked for.
+     */
+    private final TokenBuffer buffer;
+    private int index = 0;
+    private int nextError = 0;
+    /**
+     * The kind of the current token
+     */
+    private Token kind;
     /**
      * Track the non-terminal rule currently being parsed (for debugging)
      */
@@ -24,29 +40,56 @@ public class TokenStream {
     /**
      * The object to report errors to
      */
-    private final Errors errors = ErrorHandler.getErrorHandler();
+    private final Errors errors;
 
     /**
      * Construct a token stream for the lexical analyser
+     *
+     * @param lex     the lexical analyser, or any source of its tokens that
+     *                returns end of file tokens once the input is exhausted
+     * @param context compilation errors are reported to
      */
-    public TokenStream(Scanner lex) {
+    public TokenStream(Iterator<LexicalToken> lex, CompilerContext context) {
         this.lex = lex;
+        this.buffer = null;
+        this.errors = context.getErrors();
         ruleStack = new Stack<>();
         currentToken = lex.next();      /* Initialise with first token */
+        kind = currentToken.getKind();
+    }
+
+    /**
+     * Construct a token stream for tokens already scanned into a buffer,
+     * reporting the lexical errors held in the buffer as their tokens are
+     * reached
+     *
+     * @param buffer  the tokens, ending with the end of file token
+     * @param context compilation errors are reported to
+     */
+    public TokenStream(TokenBuffer buffer, CompilerContext context) {
+        assert buffer.size() > 0 &&
+                buffer.getKind(buffer.size() - 1) == Token.EOF;
+        this.lex = null;
+        this.buffer = buffer;
+        this.errors = context.getErrors();
+        ruleStack = new Stack<>();
+        nextError = buffer.reportErrors(index, nextError, errors);
+        kind = buffer.getKind(index);
     }
 
     /**
      * Get the kind of the current token
      */
     Token getKind() {
-        return currentToken.getKind();
+        return kind;
     }
 
     /**
      * Get the location of the current token
      */
     public Location getLocation() {
-        return currentToken.getLocation();
+        return buffer != null ? buffer.getLocation(index)
+                : currentToken.getLocation();
     }
 
     /**
@@ -54,8 +97,9 @@ public class TokenStream {
      * requires currentToken.kind == Token.IDENTIFIER
      */
     public String getName() {
-        assert currentToken.getKind() == Token.IDENTIFIER;
-        return currentToken.getName();
+        assert kind == Token.IDENTIFIER;
+        return buffer != null ? buffer.getName(index)
+                : currentToken.getName();
     }
 
     /**
@@ -63,8 +107,9 @@ public class TokenStream {
      * requires currentToken.kind == Token.NUMBER
      */
     int getIntValue() {
-        assert currentToken.getKind() == Token.NUMBER;
-        return currentToken.getIntValue();
+        assert kind == Token.NUMBER;
+        return buffer != null ? buffer.getValue(index)
+                : currentToken.getIntValue();
     }
 
     /**
@@ -73,7 +118,7 @@ public class TokenStream {
      * @param expected type of token expected to match current token
      */
     boolean isMatch(Token expected) {
-        return currentToken.isMatch(expected);
+        return kind == expected;
     }
 
     /**
@@ -82,7 +127,31 @@ public class TokenStream {
      * @param tokenTypes set of token types expected to be matched
      */
     boolean isIn(TokenSet tokenTypes) {
-        return currentToken.isIn(tokenTypes);
+        return tokenTypes.contains(kind);
+    }
+
+    /**
+     * Move on to the next token; the end of file token is never passed
+     */
+    private void advance() {
+        if (buffer != null) {
+            if (index < buffer.size() - 1) {
+                index++;
+                nextError = buffer.reportErrors(index, nextError, errors);
+                kind = buffer.getKind(index);
+            }
+        } else {
+            currentToken = lex.next();
+            kind = currentToken.getKind();
+        }
+    }
+
+    /**
+     * @return the current token as a string for messages
+     */
+    private String currentToString() {
+        return buffer != null ? buffer.toString(index)
+                : currentToken.toString();
     }
 
     /**
@@ -93,10 +162,16 @@ public class TokenStream {
      * @param expected - token expected next in the input stream.
      */
     public void match(Token expected) {
-        errors.checkAssert(currentToken.isMatch(expected),
-                "Match assertion failed on " + expected, getLocation());
-        debugMessage("Matched " + currentToken.toString());
-        currentToken = lex.next();
+        if (!isMatch(expected)) {
+            /* Only locate the token when the assertion fails */
+            errors.checkAssert(false,
+                    () -> "Match assertion failed on " + expected,
+                    getLocation());
+        }
+        if (errors.isDebugging()) {
+            errors.debugMessage("Matched " + currentToString());
+        }
+        advance();
     }
 
     /**
@@ -114,7 +189,7 @@ public class TokenStream {
      *                 requires follows is nonempty
      */
     public void match(Token expected, TokenSet follows) {
-        if (currentToken.isMatch(expected)) {
+        if (isMatch(expected)) {
             match(expected);
         } else {
             parseError("Parse error, expecting '" + expected + "'" + " in " +
@@ -123,15 +198,16 @@ public class TokenStream {
              * treat it as though the expected token was missing and
              * do no further error recovery.
              */
-            if (!currentToken.isIn(follows) &&
-                    !currentToken.isMatch(Token.EOF)) {
+            if (!isIn(follows) && !isMatch(Token.EOF)) {
                 // Skip the erroneous token
-                debugMessage("Skipping " + currentToken.toString());
-                currentToken = lex.next();
+                if (errors.isDebugging()) {
+                    errors.debugMessage("Skipping " + currentToString());
+                }
+                advance();
                 /* If after skipping, the (new) token is not the expected
                  * token we do no further error recovery (in match at least).
                  */
-                if (currentToken.isMatch(expected)) {
+                if (isMatch(expected)) {
                     /* If after skipping the erroneous token we find
                      * the expected token we match it
                      */
@@ -148,7 +224,7 @@ public class TokenStream {
      * @param follows  - single token that may follow
      */
     public void match(Token expected, Token follows) {
-        match(expected, new TokenSet(follows));
+        match(expected, TokenSet.of(follows));
     }
 
     /**
@@ -159,9 +235,11 @@ public class TokenStream {
      *             requires find.contains(Token.EOF);
      */
     private void skipTo(TokenSet find) {
-        while (!currentToken.isIn(find)) {
-            debugMessage("Skipping " + currentToken.toString());
-            currentToken = lex.next();
+        while (!isIn(find)) {
+            if (errors.isDebugging()) {
+                errors.debugMessage("Skipping " + currentToString());
+            }
+            advance();
         }
     }
 
@@ -183,12 +261,15 @@ public class TokenStream {
      */
     boolean beginRule(String rule, TokenSet expected,
                       TokenSet recoverSet) {
-        debugMessage("Begin parse " + rule + " recover on " + recoverSet);
-        if (!currentToken.isIn(expected)) {
-            parseError(currentToken + " cannot start " + rule);
+        if (errors.isDebugging()) {
+            errors.debugMessage("Begin parse " + rule + " recover on "
+                    + recoverSet);
+        }
+        if (!isIn(expected)) {
+            parseError(currentToString() + " cannot start " + rule);
             /* skipping cannot fail as recoverSet contains end-of-file */
             skipTo(recoverSet.union(expected));
-            if (!currentToken.isIn(expected)) {
+            if (!isIn(expected)) {
                 return false;
             }
         }
@@ -197,6 +278,13 @@ public class TokenStream {
         return true;
     }
 
+    /**
+     * Begin a parsing rule whose start set contains just one token.
+     */
+    boolean beginRule(String rule, Token expected, TokenSet recoverSet) {
+        return beginRule(rule, TokenSet.of(expected), recoverSet);
+    }
+
     /**
      * End a parsing rule.
      * Ensure that the current token is a member of the recovery set
@@ -209,18 +297,20 @@ public class TokenStream {
     void endRule(String rule, TokenSet recoverSet) {
         String popped = debugPop(); /* Decrease debugging level at end of rule */
         if (!popped.equals(rule)) {
-            debugMessage("<<<<< End rule " + rule +
+            debugMessage(() -> "<<<<< End rule " + rule +
                     " does not match start rule " + popped);
         }
         // If currentToken is not in the recovery set, give and error and
         // skip until a token in the recovery set is found.
-        if (!currentToken.isIn(recoverSet)) {
-            parseError(currentToken + " cannot follow " + rule + " in " +
+        if (!isIn(recoverSet)) {
+            parseError(currentToString() + " cannot follow " + rule + " in " +
                     ruleStack.peek());
             // Skipping cannot fail as recoverSet must contain end of file (EOF)
             skipTo(recoverSet);
         }
-        debugMessage("End parse " + rule);
+        if (errors.isDebugging()) {
+            errors.debugMessage("End parse " + rule);
+        }
     }
     //**************************** Support Methods ***************************
 
@@ -241,9 +331,11 @@ public class TokenStream {
     }
 
     /**
-     * Output debugging message if debug turned on
+     * Output debugging message if debug turned on, constructing it only
+     * if it is. Messages output for every token or rule are instead built
+     * under a test of isDebugging, so that no lambda is allocated for them.
      */
-    private void debugMessage(String msg) {
+    private void debugMessage(Supplier<String> msg) {
         errors.debugMessage(msg);
     }
 
@@ -252,6 +344,6 @@ public class TokenStream {
      */
     private void parseError(String msg) {
         errors.debugMessage(msg);
-        errors.error(msg, currentToken.getLocation());
+        errors.error(msg, getLocation());
     }
 }
@@ -0,0 +1,166 @@
+package pl0;
+
+import interpreter.IntReader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * class Batch - runs a compiled program once for each of a set of input
+ * files, in parallel on a fixed size pool of threads. The output of the
+ * run for input file f, including any runtime error, is written to the
+ * file f.out, and a summary of the status and time of each run is printed
+ * once all runs have finished. Each run has its own input, output and
+ * error handler, so an error in one run cannot affect another.
+ */
+class Batch {
+
+    /**
+     * Suffix of the file to which the output for an input file is written
+     */
+    static final String OUTPUT_SUFFIX = ".out";
+
+    /**
+     * Outcome of a single run
+     */
+    private static class Result {
+        final String status;
+        final long nanos;
+
+        Result(String status, long nanos) {
+            this.status = status;
+            this.nanos = nanos;
+        }
+    }
+
+    private final CompiledProgram program;
+    private final boolean whitespaceSeparated;
+
+    /**
+     * @param program             the program to run
+     * @param whitespaceSeparated whether input values are separated by
+     *                            white space rather than one per line
+     */
+    Batch(CompiledProgram program, boolean whitespaceSeparated) {
+        this.program = program;
+        this.whitespaceSeparated = whitespaceSeparated;
+    }
+
+    /**
+     * Find the input files named by a directory or manifest. The inputs in
+     * a directory are its files, other than previous outputs, in order of
+     * name. A manifest lists one input file per line, relative to the
+     * directory containing the manifest; blank lines are ignored.
+     *
+     * @param inputs directory or manifest file
+     * @return the input files
+     * @throws IOException if the manifest cannot be read
+     */
+    static List<File> inputFiles(File inputs) throws IOException {
+        List<File> files = new ArrayList<>();
+        if (inputs.isDirectory()) {
+            File[] entries = inputs.listFiles(f -> f.isFile()
+                    && !f.getName().endsWith(OUTPUT_SUFFIX));
+            if (entries != null) {
+                Arrays.sort(entries);
+                files.addAll(Arrays.asList(entries));
+            }
+            return files;
+        }
+        File base = inputs.getAbsoluteFile().getParentFile();
+        for (String line : Files.readAllLines(inputs.toPath())) {
+            String name = line.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            File file = new File(name);
+            files.add(file.isAbsolute() ? file : new File(base, name));
+        }
+        return files;
+    }
+
+    /**
+     * Run the program for each input file and print a summary
+     *
+     * @param inputs    the input files
+     * @param threads   number of runs to execute at the same time
+     * @param outStream stream to print the summary to
+     * @return true iff every run terminated without error
+     */
+    boolean run(List<File> inputs, int threads, PrintStream outStream) {
+        outStream.println("Running " + inputs.size() + " inputs on "
+                + threads + " threads");
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<>();
+        try {
+            for (File input : inputs) {
+                futures.add(pool.submit(() -> runOne(input)));
+            }
+            int failures = 0;
+            outStream.printf("%-40s %-16s %12s%n", "input", "status",
+                    "time (ms)");
+            for (int i = 0; i < inputs.size(); i++) {
+                Result result = result(futures.get(i));
+                if (!result.status.equals("terminated")) {
+                    failures++;
+                }
+                outStream.printf("%-40s %-16s %12.3f%n",
+                        inputs.get(i).getPath(), result.status,
+                        result.nanos / 1e6);
+            }
+            outStream.printf("%d runs, %d terminated, %d failed in %.3f ms%n",
+                    inputs.size(), inputs.size() - failures, failures,
+                    (System.nanoTime() - start) / 1e6);
+            return failures == 0;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Run the program for one input file, writing its output to a file
+     */
+    private Result runOne(File input) {
+        long start = System.nanoTime();
+        String status;
+        File output = new File(input.getPath() + OUTPUT_SUFFIX);
+        try (IntReader in = new IntReader(input, whitespaceSeparated);
+             OutputStream out = new BufferedOutputStream(
+                     new FileOutputStream(output))) {
+            status = program.execute(in, out) ? "terminated" : "runtime error";
+        } catch (IOException e) {
+            status = "I/O error";
+        }
+        return new Result(status, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the result of a run, or a failed result if the run threw an
+     * unexpected exception
+     */
+    private static Result result(Future<Result> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return new Result("failed: " + e.getCause(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result("interrupted", 0);
+        }
+    }
+}
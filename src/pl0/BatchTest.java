@@ -0,0 +1,119 @@
+package pl0;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * class BatchTest - JUnit test of running a program for a batch of input
+ * files in parallel.
+ */
+public class BatchTest extends TestCase {
+
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Writes twice the value read, failing with a bounds check on a
+     * negative value
+     */
+    private static final String DOUBLE =
+            "type N = [0..1000];\n" +
+            "var x: int; n: N;\n" +
+            "begin read x; n := x; write 2 * n end\n";
+
+    private File directory;
+
+    public BatchTest(String testName) {
+        super(testName);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("batch").toFile();
+        directory.deleteOnExit();
+    }
+
+    public void testRunsEachInput() throws IOException {
+        CompiledProgram program = CompiledProgram.compile(
+                write("double.pl0", DOUBLE));
+        File inputs = new File(directory, "inputs");
+        assertTrue(inputs.mkdir());
+        inputs.deleteOnExit();
+        List<File> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String name = String.format("inputs/in%02d", i);
+            expected.add(write(name, (i == 7 ? -i : i) + "\n"));
+        }
+        List<File> files = Batch.inputFiles(inputs);
+        assertEquals(expected, files);
+
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        boolean succeeded = new Batch(program, false)
+                .run(files, 4, new PrintStream(summary, true));
+        assertFalse(succeeded);
+        assertTrue(summary.toString(),
+                summary.toString().contains("20 runs, 19 terminated, 1 failed"));
+        for (int i = 0; i < 20; i++) {
+            File output = new File(files.get(i).getPath()
+                    + Batch.OUTPUT_SUFFIX);
+            output.deleteOnExit();
+            String text = new String(Files.readAllBytes(output.toPath()));
+            if (i == 7) {
+                assertTrue(text, text.contains("Fatal: bounds check failed"));
+            } else {
+                assertEquals(2 * i + NL, text);
+            }
+        }
+        /* Outputs of a previous batch are not inputs */
+        assertEquals(expected, Batch.inputFiles(inputs));
+    }
+
+    public void testSourceRemovedBeforeFailingRun() throws IOException {
+        File source = write("double.pl0", DOUBLE);
+        CompiledProgram program = CompiledProgram.compile(source);
+        assertTrue(source.delete());
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            files.add(write("in" + i, (i == 2 ? -1 : i) + "\n"));
+        }
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        boolean succeeded = new Batch(program, false)
+                .run(files, 2, new PrintStream(summary, true));
+        assertFalse(succeeded);
+        assertTrue(summary.toString(),
+                summary.toString().contains("4 runs, 3 terminated, 1 failed"));
+        for (int i = 0; i < 4; i++) {
+            File output = new File(files.get(i).getPath()
+                    + Batch.OUTPUT_SUFFIX);
+            output.deleteOnExit();
+            String text = new String(Files.readAllBytes(output.toPath()));
+            if (i == 2) {
+                assertTrue(text, text.contains("n := x;"));
+                assertTrue(text, text.contains("Fatal: bounds check failed"));
+            } else {
+                assertEquals(2 * i + NL, text);
+            }
+        }
+    }
+
+    public void testManifest() throws IOException {
+        File manifest = write("manifest", "a\n\n  b \n");
+        List<File> files = Batch.inputFiles(manifest);
+        assertEquals(2, files.size());
+        assertEquals(new File(directory, "a"), files.get(0));
+        assertEquals(new File(directory, "b"), files.get(1));
+    }
+
+    private File write(String name, String text) throws IOException {
+        File file = new File(directory, name);
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes());
+        return file;
+    }
+}
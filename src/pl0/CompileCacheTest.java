@@ -0,0 +1,167 @@
+package pl0;
+
+import image.ProgramCache;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * class CompileCacheTest - JUnit test that running a program with its
+ * checked form loaded from the compile cache gives exactly the output of
+ * compiling it, for every engine, and that the cache evicts its least
+ * recently used entries.
+ */
+public class CompileCacheTest extends TestCase {
+
+    /**
+     * Input given to every program
+     */
+    private static final String INPUT = "5\n-3\n12\n7\n";
+
+    private File directory;
+
+    public CompileCacheTest(String testName) {
+        super(testName);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("cache").toFile();
+    }
+
+    protected void tearDown() throws Exception {
+        File[] entries = directory.listFiles();
+        if (entries != null) {
+            for (File entry : entries) {
+                assertTrue(entry.delete());
+            }
+        }
+        assertTrue(directory.delete());
+        super.tearDown();
+    }
+
+    public void testCachedProgramsRunTheSame() {
+        for (File program : TestRunner.testPrograms()) {
+            for (String engine : new String[]{"-c", "-v", "-r", "-j", "-e", ""}) {
+                String expected = run(engine, program.getPath());
+                /* The first run stores the program and the second loads it */
+                for (int i = 0; i < 2; i++) {
+                    assertEquals(program + " " + engine + " " + i, expected,
+                            run(engine, "-k", directory.getPath(),
+                                    program.getPath()));
+                }
+            }
+        }
+    }
+
+    public void testCacheHitIsReportedWhenDebugging() {
+        File program = TestRunner.testPrograms().stream()
+                .filter(p -> p.getName().equals("test-base5-fact.pl0"))
+                .findFirst().orElseThrow(AssertionError::new);
+        String miss = run("-d", "-k", directory.getPath(), program.getPath());
+        assertTrue(miss, miss.contains("Compile cache miss"));
+        String hit = run("-d", "-k", directory.getPath(), program.getPath());
+        assertTrue(hit, hit.contains("Compile cache hit"));
+        assertFalse(hit, hit.contains("Compile cache miss"));
+        assertFalse(run("-k", directory.getPath(), program.getPath())
+                .contains("Compile cache"));
+    }
+
+    public void testProgramsWithErrorsAreNotCached() {
+        for (File program : TestRunner.testPrograms()) {
+            String output = run("-k", directory.getPath(), program.getPath());
+            boolean cached = entry(program).exists();
+            /* Only a program without compile errors is run */
+            assertEquals(program.getName(), output.contains("Running ..."),
+                    cached);
+        }
+    }
+
+    public void testCorruptEntryIsRecompiled() throws IOException {
+        File program = TestRunner.testPrograms().get(0);
+        String expected = run(program.getPath());
+        Files.write(entry(program).toPath(), new byte[]{'P', 'L', '0', 'C', 0, 0});
+        assertEquals(expected, run("-k", directory.getPath(),
+                program.getPath()));
+    }
+
+    public void testDamagedEntryIsRecompiled() throws IOException {
+        File program = TestRunner.testPrograms().stream()
+                .filter(p -> p.getName().equals("test-base3-bounds.pl0"))
+                .findFirst().orElseThrow(AssertionError::new);
+        String expected = run(program.getPath());
+        run("-k", directory.getPath(), program.getPath());
+        byte[] stored = Files.readAllBytes(entry(program).toPath());
+        for (int i = stored.length / 2; i < stored.length; i += 97) {
+            byte[] damaged = stored.clone();
+            damaged[i] ^= 0x10;
+            Files.write(entry(program).toPath(), damaged);
+            assertEquals("byte " + i, expected,
+                    run("-k", directory.getPath(), program.getPath()));
+            assertTrue(Arrays.equals(stored,
+                    Files.readAllBytes(entry(program).toPath())));
+        }
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        File[] programs = TestRunner.testPrograms().stream()
+                .filter(p -> p.getName().matches("test-base[5789]-.*"))
+                .sorted().toArray(File[]::new);
+        assertEquals(4, programs.length);
+        /* Fill the cache, with each entry used at a distinct time */
+        long size = 0;
+        long time = System.currentTimeMillis() - 100_000;
+        for (File program : programs) {
+            run("-k", directory.getPath(), program.getPath());
+            File entry = entry(program);
+            assertTrue(entry.setLastModified(time += 1000));
+            size += entry.length();
+        }
+        /* Use the first entry, making the second the least recently used */
+        assertTrue(entry(programs[0]).setLastModified(time + 1000));
+        ProgramCache cache = new ProgramCache(directory,
+                size - entry(programs[1]).length());
+        cache.evict();
+        assertTrue(entry(programs[0]).exists());
+        assertFalse(entry(programs[1]).exists());
+        assertTrue(entry(programs[2]).exists());
+        assertTrue(entry(programs[3]).exists());
+        /* A smaller cache keeps only the most recently used */
+        new ProgramCache(directory, entry(programs[0]).length()).evict();
+        assertEquals(Arrays.asList(entry(programs[0]).getName()),
+                Arrays.asList(directory.list()));
+    }
+
+    private File entry(File program) {
+        return new ProgramCache(directory, Long.MAX_VALUE)
+                .entry(ProgramCache.key(contents(program)));
+    }
+
+    private static byte[] contents(File program) {
+        try {
+            return Files.readAllBytes(program.toPath());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the output of running a command
+     */
+    private static String run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        args = Arrays.stream(args).filter(a -> !a.isEmpty())
+                .toArray(String[]::new);
+        int status = PL0_RD.runCommand(args, null,
+                new ByteArrayInputStream(INPUT.getBytes()),
+                new PrintStream(out, true), new PrintStream(err, true));
+        return out + "\n--- stderr\n" + err + "\n--- exit " + status;
+    }
+}
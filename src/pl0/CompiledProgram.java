@@ -0,0 +1,146 @@
+package pl0;
+
+import interpreter.IntReader;
+import source.ErrorHandler;
+import source.Errors;
+import source.MappedSource;
+import source.Source;
+import syms.CompilerContext;
+import tree.DeclNode;
+import tree.StaticChecker;
+import vm.RegisterCode;
+import vm.RegisterCompiler;
+import vm.RegisterMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+
+/**
+ * class CompiledProgram - a PL0 program that has been parsed, statically
+ * checked and compiled once, so that it can then be run many times.
+ * A compiled program is immutable: each run has its own machine, input,
+ * output and error handler, so runs keep no state between them and may
+ * be executed concurrently from several threads.
+ * <p>
+ * The program is compiled for the register machine. A runtime error is
+ * reported to the output of the run in the same form as by Runner. The
+ * program keeps a copy of its source, from which the offending line is
+ * listed, so its runs are unaffected by the source file being changed or
+ * removed after it was compiled.
+ */
+public final class CompiledProgram {
+
+    /**
+     * Source of the program, held in memory, used to list the line of a
+     * runtime error
+     */
+    private final Source source;
+
+    /**
+     * Code of the program
+     */
+    private final RegisterCode code;
+
+    private CompiledProgram(Source source, RegisterCode code) {
+        this.source = source;
+        this.code = code;
+    }
+
+    /**
+     * Parse, statically check and compile a program. Each compilation has
+     * its own context, so programs may be compiled concurrently.
+     *
+     * @param srcFile the PL0 source file
+     * @return the compiled program
+     * @throws IOException              if the source file cannot be read
+     * @throws IllegalArgumentException if the program has compile errors,
+     *                                  with the error listing as its message
+     */
+    public static CompiledProgram compile(File srcFile) throws IOException {
+        return compile(MappedSource.read(srcFile, srcFile.getCanonicalPath()));
+    }
+
+    /**
+     * Parse, statically check and compile a program given as text rather
+     * than read from its source file
+     *
+     * @param srcFile    the PL0 source file, used only to name the program
+     * @param sourceText the contents of the source file
+     * @return the compiled program
+     * @throws IOException              if the name of the file cannot be
+     *                                  resolved
+     * @throws IllegalArgumentException if the program has compile errors,
+     *                                  with the error listing as its message
+     */
+    public static CompiledProgram compile(File srcFile, byte[] sourceText)
+            throws IOException {
+        return compile(new MappedSource(ByteBuffer.wrap(sourceText),
+                srcFile.getCanonicalPath()));
+    }
+
+    private static CompiledProgram compile(Source source)
+            throws IOException {
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        PrintStream messageStream = new PrintStream(messages, true);
+        Errors errors = new ErrorHandler(messageStream, source, false);
+        CompilerContext context = new CompilerContext(errors, source);
+        try {
+            DeclNode.ProcedureNode tree = new PL0_RD().parse(context);
+            if (tree != null && !errors.hadErrors()) {
+                new StaticChecker(context).visitProgramNode(tree);
+            }
+            errors.flush();
+            if (tree == null || errors.hadErrors()) {
+                errors.errorSummary();
+                throw new IllegalArgumentException(messages.toString());
+            }
+            return new CompiledProgram(source,
+                    new RegisterCompiler(errors).compile(tree));
+        } catch (Error e) {
+            /* A fatal error has already been listed */
+            throw new IllegalArgumentException(messages.toString());
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Run the program
+     *
+     * @param input  the input to the program, one integer per line
+     * @param output the output of the program, followed by the listing of
+     *               any runtime error
+     * @return true iff the program terminated without a runtime error
+     */
+    public boolean execute(InputStream input, OutputStream output) {
+        return execute(new IntReader(input), output);
+    }
+
+    /**
+     * Run the program
+     *
+     * @param input  the input to the program
+     * @param output the output of the program, followed by the listing of
+     *               any runtime error
+     * @return true iff the program terminated without a runtime error
+     */
+    public boolean execute(IntReader input, OutputStream output) {
+        PrintStream outStream = new PrintStream(output, false);
+        ErrorHandler errors = new ErrorHandler(outStream, source, false);
+        RegisterMachine machine = new RegisterMachine(errors, input,
+                outStream, false);
+        try {
+            machine.run(code);
+            return true;
+        } catch (Error error) {
+            return false;
+        } finally {
+            outStream.flush();
+        }
+    }
+}
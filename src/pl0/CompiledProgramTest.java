@@ -0,0 +1,126 @@
+package pl0;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * class CompiledProgramTest - JUnit test of compiling a program once and
+ * running it repeatedly and concurrently.
+ */
+public class CompiledProgramTest extends TestCase {
+
+    private static final String NL = System.lineSeparator();
+
+    /**
+     * Sums the integers from 1 to the value read, and fails on a negative
+     * value by dividing by zero
+     */
+    private static final String SUM =
+            "var n: int; s: int;\n" +
+            "begin\n" +
+            "  read n; s := 0;\n" +
+            "  if n < 0 then s := 1 / 0 else s := 0;\n" +
+            "  while n > 0 do begin s := s + n; n := n - 1 end;\n" +
+            "  write s\n" +
+            "end\n";
+
+    public CompiledProgramTest(String testName) {
+        super(testName);
+    }
+
+    public void testRunsRepeatedly() throws IOException {
+        CompiledProgram program = CompiledProgram.compile(write(SUM));
+        for (int n = 0; n < 5; n++) {
+            assertEquals(n * (n + 1) / 2 + NL, run(program, n, true));
+        }
+    }
+
+    public void testReportsRuntimeError() throws IOException {
+        CompiledProgram program = CompiledProgram.compile(write(SUM));
+        String output = run(program, -1, false);
+        assertTrue(output, output.contains("Fatal: Division by zero"));
+        assertTrue(output, output.endsWith("1 error detected." + NL));
+        /* A failed run does not affect later runs */
+        assertEquals("6" + NL, run(program, 3, true));
+    }
+
+    public void testSourceRemovedAfterCompiling() throws IOException {
+        File file = write(SUM);
+        CompiledProgram program = CompiledProgram.compile(file);
+        assertTrue(file.delete());
+        String output = run(program, -1, false);
+        assertTrue(output, output.contains(
+                "if n < 0 then s := 1 / 0 else s := 0;"));
+        assertTrue(output, output.contains("Fatal: Division by zero"));
+    }
+
+    public void testSourceChangedAfterCompiling() throws IOException {
+        File file = write(SUM);
+        CompiledProgram program = CompiledProgram.compile(file);
+        Files.write(file.toPath(), "begin\n  write 1\nend\n".getBytes());
+        String output = run(program, -1, false);
+        assertTrue(output, output.contains(
+                "if n < 0 then s := 1 / 0 else s := 0;"));
+    }
+
+    public void testReportsCompileErrors() throws IOException {
+        try {
+            CompiledProgram.compile(write("begin x := 1 end\n"));
+            fail("expected compile errors");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("x"));
+        }
+    }
+
+    public void testRunsConcurrently() throws Exception {
+        CompiledProgram program = CompiledProgram.compile(write(SUM));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    for (int n = 0; n < 500; n++) {
+                        if (n % 50 == 49) {
+                            run(program, -n, false);
+                        } else if (!run(program, n, true).equals(
+                                n * (n + 1) / 2 + NL)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String run(CompiledProgram program, int input,
+                              boolean terminates) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean terminated = program.execute(
+                new ByteArrayInputStream((input + "\n").getBytes()), output);
+        assertEquals(terminates, terminated);
+        return output.toString();
+    }
+
+    private static File write(String program) throws IOException {
+        File file = File.createTempFile("compiled", ".pl0");
+        file.deleteOnExit();
+        Files.write(file.toPath(), program.getBytes());
+        return file;
+    }
+}
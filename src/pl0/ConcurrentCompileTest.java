@@ -0,0 +1,81 @@
+package pl0;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * class ConcurrentCompileTest - stress test that compiles the whole test-pgm
+ * corpus concurrently on all cores, with debugging messages turned on, and
+ * checks that each compilation gives the same listing as when the programs
+ * are compiled one at a time.
+ */
+public class ConcurrentCompileTest extends TestCase {
+
+    /**
+     * Number of times each thread compiles the whole corpus
+     */
+    private static final int ROUNDS = 5;
+
+    public ConcurrentCompileTest(String testName) {
+        super(testName);
+    }
+
+    public void testCompilesCorpusConcurrently() throws Exception {
+        List<File> programs = TestRunner.testPrograms();
+        assertFalse(programs.isEmpty());
+        Map<File, String> expected = new HashMap<>();
+        for (File program : programs) {
+            expected.put(program, compile(program));
+        }
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                results.add(pool.submit(() -> {
+                    /* Each thread starts at a different program so that
+                     * different programs are compiled at the same time */
+                    for (int i = 0; i < ROUNDS * programs.size(); i++) {
+                        File program = programs.get((first + i) % programs.size());
+                        String listing = compile(program);
+                        if (!listing.equals(expected.get(program))) {
+                            return program + ":\n" + listing;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<String> result : results) {
+                assertNull(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the listing of compiling a program with debugging messages,
+     * without running it
+     */
+    private static String compile(File program) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream outStream = new PrintStream(output, true);
+        Runner runner = new PL0_RD();
+        String srcFile = runner.parseArguments(new String[]{"-d", "-i",
+                program.getCanonicalPath()}, "test", outStream);
+        runner.run(new File(srcFile), outStream);
+        return output.toString();
+    }
+}
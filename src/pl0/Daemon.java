@@ -0,0 +1,274 @@
+package pl0;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * class Daemon - a long running compile server, so that compiling and
+ * running a small program does not pay for starting a JVM and loading
+ * the compiler each time. The daemon listens on a Unix domain socket for
+ * requests from DaemonClient, each of which is the command line of a run
+ * of PL0_RD, and runs each request on a pool with a thread per processor.
+ * A request may carry the text of its source file, which is then compiled
+ * in place of the file the daemon would otherwise read. The output
+ * streamed back to the client is exactly that of running PL0_RD with the
+ * same arguments, source and input.
+ * <p>
+ * For each request the daemon logs its latency, from being accepted to
+ * completion, and the depth of the queue of requests waiting for a thread
+ * when it was accepted.
+ * Usage: java pl0.Daemon [socket]
+ */
+public class Daemon {
+
+    /**
+     * Size of the buffers for the output streamed back to a client
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Address of the socket
+     */
+    private final UnixDomainSocketAddress address;
+    /**
+     * Socket that requests are accepted from
+     */
+    private final ServerSocketChannel server;
+    /**
+     * Threads that run the requests
+     */
+    private final ThreadPoolExecutor workers;
+    /**
+     * Stream to which each request is logged
+     */
+    private final PrintStream log;
+    /**
+     * Number of requests accepted
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Bind a daemon to a socket
+     *
+     * @param address address of the socket
+     * @param threads number of requests run at the same time
+     * @param log     stream to log requests to
+     * @throws IOException if the socket cannot be bound
+     */
+    public Daemon(UnixDomainSocketAddress address, int threads,
+                  PrintStream log) throws IOException {
+        this.address = address;
+        this.log = log;
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address);
+        workers = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
+    public static void main(String[] args) throws IOException {
+        UnixDomainSocketAddress address = args.length > 0
+                ? UnixDomainSocketAddress.of(args[0])
+                : DaemonChannel.address();
+        if (isRunning(address)) {
+            System.out.println("A daemon is already listening on "
+                    + address.getPath());
+            System.exit(1);
+        }
+        /* The socket file of a daemon that has stopped */
+        Files.deleteIfExists(address.getPath());
+        Daemon daemon = new Daemon(address,
+                Runtime.getRuntime().availableProcessors(), System.out);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        System.out.println("Listening on " + address.getPath() + " with "
+                + daemon.workers.getMaximumPoolSize() + " threads");
+        daemon.serve();
+    }
+
+    /**
+     * Accept requests until the daemon is closed
+     */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            long id = requests.incrementAndGet();
+            long accepted = System.nanoTime();
+            int queueDepth = workers.getQueue().size();
+            workers.execute(() -> handle(id, channel, accepted, queueDepth));
+        }
+    }
+
+    /**
+     * Stop accepting requests and close the socket. Requests that have
+     * been accepted are still completed.
+     */
+    public void close() {
+        try {
+            server.close();
+            Files.deleteIfExists(address.getPath());
+        } catch (IOException e) {
+            log.println("Unable to close the daemon socket: " + e);
+        }
+        workers.shutdown();
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * @return whether a daemon is accepting requests at the address
+     */
+    private static boolean isRunning(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Run a request and stream its output back to the client
+     */
+    private void handle(long id, SocketChannel channel, long accepted,
+                        int queueDepth) {
+        String command = "";
+        int status = -1;
+        try (SocketChannel c = channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    DaemonChannel.input(c)));
+            DataOutputStream frames = new DataOutputStream(
+                    new BufferedOutputStream(DaemonChannel.output(c)));
+            int version = in.readInt();
+            if (version != DaemonChannel.VERSION) {
+                status = reject(id, frames, "protocol version " + version
+                        + " is not the supported version "
+                        + DaemonChannel.VERSION);
+                return;
+            }
+            File directory = new File(in.readUTF());
+            int count = in.readInt();
+            if (count < 0 || count > DaemonChannel.MAX_ARGUMENTS) {
+                status = reject(id, frames, "argument count " + count
+                        + " is not between 0 and "
+                        + DaemonChannel.MAX_ARGUMENTS);
+                return;
+            }
+            String[] args = new String[count];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            command = String.join(" ", args);
+            int length = in.readInt();
+            if (length < DaemonChannel.NO_SOURCE_TEXT
+                    || length > DaemonChannel.MAX_SOURCE_TEXT) {
+                status = reject(id, frames, "source text length " + length
+                        + " is not between 0 and "
+                        + DaemonChannel.MAX_SOURCE_TEXT);
+                return;
+            }
+            byte[] sourceText = null;
+            if (length != DaemonChannel.NO_SOURCE_TEXT) {
+                sourceText = new byte[length];
+                in.readFully(sourceText);
+            }
+            PrintStream out = new PrintStream(new BufferedOutputStream(
+                    new FrameStream(frames, DaemonChannel.OUTPUT),
+                    BUFFER_SIZE), false);
+            PrintStream err = new PrintStream(new BufferedOutputStream(
+                    new FrameStream(frames, DaemonChannel.ERROR),
+                    BUFFER_SIZE), false);
+            try {
+                status = PL0_RD.runCommand(args, directory, sourceText, in,
+                        out, err);
+            } catch (Throwable t) {
+                /* As reported by the JVM for the command line */
+                err.print("Exception in thread \"main\" ");
+                t.printStackTrace(err);
+                status = 1;
+            }
+            out.flush();
+            err.flush();
+            synchronized (frames) {
+                frames.writeByte(DaemonChannel.EXIT);
+                frames.writeInt(status);
+                frames.flush();
+            }
+        } catch (IOException e) {
+            log.println(id + ": " + e);
+        } finally {
+            log.printf("%d: %s: exit %d in %.3f ms, queue depth %d%n", id,
+                    command, status, (System.nanoTime() - accepted) / 1e6,
+                    queueDepth);
+        }
+    }
+
+    /**
+     * Answer a malformed request with an error and a failing exit status,
+     * without running it
+     *
+     * @return the exit status sent
+     */
+    private int reject(long id, DataOutputStream frames, String problem)
+            throws IOException {
+        log.println(id + ": malformed request: " + problem);
+        byte[] message = ("Malformed request to the PL0 daemon: " + problem
+                + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        frames.writeByte(DaemonChannel.ERROR);
+        frames.writeInt(message.length);
+        frames.write(message);
+        frames.writeByte(DaemonChannel.EXIT);
+        frames.writeInt(1);
+        frames.flush();
+        return 1;
+    }
+
+    /**
+     * Output stream that writes each block of bytes written to it as a
+     * frame of the given kind
+     */
+    private static class FrameStream extends OutputStream {
+        private final DataOutputStream frames;
+        private final byte kind;
+
+        FrameStream(DataOutputStream frames, byte kind) {
+            this.frames = frames;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (frames) {
+                frames.writeByte(kind);
+                frames.writeInt(len);
+                frames.write(b, off, len);
+                frames.flush();
+            }
+        }
+    }
+}
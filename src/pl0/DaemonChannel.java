@@ -0,0 +1,119 @@
+package pl0;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+
+/**
+ * class DaemonChannel - the protocol between the compile daemon and its
+ * client over a Unix domain socket.
+ * <p>
+ * A request consists of the protocol version, the working directory of the
+ * client, the number of its command line arguments and the arguments, and
+ * the length and bytes of the text of the source file, or NO_SOURCE_TEXT
+ * for the daemon to read the source file itself. It is followed by the
+ * standard input of the program until the client shuts down its side of
+ * the connection. A request that is malformed, or exceeds the limits
+ * below, is answered with an ERROR frame describing it and an EXIT frame.
+ * The response is a sequence of frames, each a frame kind followed by an
+ * int: for OUTPUT and ERROR frames the int is the length of the bytes
+ * written to standard output or standard error that follow it, and the
+ * final EXIT frame gives the exit status of the command.
+ * <p>
+ * The streams over a channel read and write it directly, rather than
+ * through Channels.newInputStream and newOutputStream, which would block
+ * writing while another thread is waiting to read.
+ */
+final class DaemonChannel {
+
+    /**
+     * Version of the protocol, sent at the start of each request
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Most command line arguments a request may have
+     */
+    static final int MAX_ARGUMENTS = 1 << 10;
+    /**
+     * Length of the source text of a request that has none
+     */
+    static final int NO_SOURCE_TEXT = -1;
+    /**
+     * Longest source text a request may have, in bytes
+     */
+    static final int MAX_SOURCE_TEXT = 1 << 26;
+
+    /**
+     * Kinds of response frames
+     */
+    static final byte EXIT = 0;
+    static final byte OUTPUT = 1;
+    static final byte ERROR = 2;
+
+    /**
+     * Environment variable giving the path of the socket
+     */
+    static final String SOCKET_VARIABLE = "PL0_SOCKET";
+
+    private DaemonChannel() {
+    }
+
+    /**
+     * @return the address of the socket: the path given by the environment
+     * variable PL0_SOCKET, or else pl0-daemon.sock in the temporary directory
+     */
+    static UnixDomainSocketAddress address() {
+        String path = System.getenv(SOCKET_VARIABLE);
+        if (path == null || path.isEmpty()) {
+            return UnixDomainSocketAddress.of(Paths.get(
+                    System.getProperty("java.io.tmpdir"), "pl0-daemon.sock"));
+        }
+        return UnixDomainSocketAddress.of(path);
+    }
+
+    /**
+     * @return a stream reading from a blocking channel
+     */
+    static InputStream input(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * @return a stream writing to a blocking channel
+     */
+    static OutputStream output(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package pl0;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * class DaemonClient - runs PL0_RD in the compile daemon rather than in a
+ * new JVM. The arguments are those of PL0_RD; they, the working directory
+ * and standard input are sent to the daemon, and the output of the run is
+ * copied to standard output and standard error as it arrives. The client
+ * exits with the exit status of the run.
+ * <p>
+ * With --source-text the client reads the source file, the last of the
+ * arguments, and sends its text, for a daemon that cannot read the files
+ * of the client. Otherwise the daemon reads the source file itself.
+ * Usage: java pl0.DaemonClient [--source-text] [PL0_RD arguments]
+ */
+public class DaemonClient {
+
+    /**
+     * Option to send the text of the source file with the request
+     */
+    private static final String SOURCE_TEXT_OPTION = "--source-text";
+
+    public static void main(String[] args) throws InterruptedException {
+        UnixDomainSocketAddress address = DaemonChannel.address();
+        File directory = new File("").getAbsoluteFile();
+        byte[] sourceText = null;
+        if (args.length > 0 && args[0].equals(SOURCE_TEXT_OPTION)) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+            if (args.length > 0) {
+                try {
+                    sourceText = Files.readAllBytes(
+                            new File(args[args.length - 1]).toPath());
+                } catch (IOException e) {
+                    System.err.println("Unable to open source file "
+                            + args[args.length - 1]);
+                    System.exit(1);
+                }
+            }
+        }
+        int status;
+        try {
+            status = run(address, args, directory, sourceText, System.in,
+                    System.out, System.err);
+        } catch (IOException e) {
+            System.err.println("Unable to run in the PL0 daemon at "
+                    + address.getPath() + ": " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Run a command in the daemon
+     *
+     * @param address   address of the daemon
+     * @param args      arguments of PL0_RD
+     * @param directory working directory of the command
+     * @param sourceText text of the source file named by the arguments, or
+     *                  null for the daemon to read the source file
+     * @param input     standard input of the command
+     * @param out       stream to copy the standard output to
+     * @param err       stream to copy the standard error to
+     * @return the exit status of the command
+     * @throws IOException if the daemon cannot be reached or the connection
+     *                     fails before the command finishes
+     */
+    static int run(UnixDomainSocketAddress address, String[] args,
+                   File directory, byte[] sourceText, InputStream input,
+                   PrintStream out, PrintStream err) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            OutputStream toDaemon = DaemonChannel.output(channel);
+            DataOutputStream request = new DataOutputStream(toDaemon);
+            request.writeInt(DaemonChannel.VERSION);
+            request.writeUTF(directory.getPath());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            if (sourceText == null) {
+                request.writeInt(DaemonChannel.NO_SOURCE_TEXT);
+            } else {
+                request.writeInt(sourceText.length);
+                request.write(sourceText);
+            }
+            request.flush();
+            /* Standard input is copied to the daemon for as long as the
+             * command runs; the command may finish without reading it */
+            Thread copier = new Thread(() -> copyInput(input, toDaemon,
+                    channel), "pl0-daemon-input");
+            copier.setDaemon(true);
+            copier.start();
+            DataInputStream response = new DataInputStream(
+                    DaemonChannel.input(channel));
+            byte[] buffer = new byte[0];
+            while (true) {
+                byte kind;
+                try {
+                    kind = response.readByte();
+                } catch (EOFException e) {
+                    throw new IOException("connection closed by the daemon");
+                }
+                int length = response.readInt();
+                if (kind == DaemonChannel.EXIT) {
+                    return length;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                response.readFully(buffer, 0, length);
+                PrintStream stream = kind == DaemonChannel.ERROR ? err : out;
+                stream.write(buffer, 0, length);
+                stream.flush();
+            }
+        }
+    }
+
+    /**
+     * Copy standard input to the daemon, shutting down the output of the
+     * channel at the end of the input
+     */
+    private static void copyInput(InputStream input, OutputStream toDaemon,
+                                  SocketChannel channel) {
+        byte[] buffer = new byte[1 << 16];
+        try {
+            int n;
+            while ((n = input.read(buffer)) >= 0) {
+                toDaemon.write(buffer, 0, n);
+            }
+            channel.shutdownOutput();
+        } catch (IOException e) {
+            /* The command has finished and the connection is closed */
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package pl0;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * class DaemonTest - JUnit test that running a command in the compile
+ * daemon gives exactly the output and exit status of running it directly.
+ */
+public class DaemonTest extends TestCase {
+
+    /**
+     * Input given to every program
+     */
+    private static final String INPUT = "5\n-3\n12\n7\n";
+
+    private File directory;
+    private UnixDomainSocketAddress address;
+    private Daemon daemon;
+    private Thread server;
+
+    public DaemonTest(String testName) {
+        super(testName);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("daemon").toFile();
+        address = UnixDomainSocketAddress.of(
+                new File(directory, "pl0.sock").toPath());
+        daemon = new Daemon(address, 4,
+                new PrintStream(new ByteArrayOutputStream(), true));
+        server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        server.start();
+    }
+
+    protected void tearDown() throws Exception {
+        daemon.close();
+        server.join();
+        assertTrue(directory.delete());
+        super.tearDown();
+    }
+
+    public void testSameOutputAsCommandLine() throws IOException {
+        for (File program : TestRunner.testPrograms()) {
+            for (String flag : new String[]{"-r", "-d"}) {
+                String[] args = {flag, program.getPath()};
+                assertEquals(program + " " + flag, direct(args), daemon(args));
+            }
+        }
+    }
+
+    public void testUsageAndExitStatus() throws IOException {
+        assertEquals(direct(new String[]{"-h"}), daemon(new String[]{"-h"}));
+        assertEquals(direct(new String[]{}), daemon(new String[]{}));
+        String missing = daemon(new String[]{"missing.pl0"});
+        assertEquals(direct(new String[]{"missing.pl0"}), missing);
+        assertTrue(missing, missing.contains("Unable to open source file"));
+    }
+
+    public void testSourceText() throws IOException {
+        for (File program : TestRunner.testPrograms()) {
+            byte[] text = Files.readAllBytes(program.toPath());
+            /* The daemon compiles the text rather than reading the file */
+            File elsewhere = new File(directory, program.getName());
+            assertEquals(program.toString(),
+                    direct(new String[]{program.getPath()}),
+                    daemon(new String[]{elsewhere.getPath()}, text));
+        }
+    }
+
+    public void testMalformedRequests() throws IOException {
+        for (int count : new int[]{-1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                DataOutputStream request = new DataOutputStream(
+                        DaemonChannel.output(channel));
+                request.writeInt(DaemonChannel.VERSION);
+                request.writeUTF(directory.getPath());
+                request.writeInt(count);
+                request.flush();
+                DataInputStream response = new DataInputStream(
+                        DaemonChannel.input(channel));
+                assertEquals(DaemonChannel.ERROR, response.readByte());
+                byte[] message = new byte[response.readInt()];
+                response.readFully(message);
+                assertTrue(new String(message), new String(message)
+                        .contains("Malformed request"));
+                assertEquals(DaemonChannel.EXIT, response.readByte());
+                assertEquals(1, response.readInt());
+            }
+        }
+        /* The daemon is still serving */
+        assertEquals(direct(new String[]{"-h"}), daemon(new String[]{"-h"}));
+    }
+
+    public void testConcurrentRequests() throws Exception {
+        List<File> programs = TestRunner.testPrograms();
+        List<String> expected = new ArrayList<>();
+        for (File program : programs) {
+            expected.add(direct(new String[]{program.getPath()}));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (File program : programs) {
+                    results.add(pool.submit(() ->
+                            daemon(new String[]{program.getPath()})));
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i % programs.size()),
+                        results.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testSourceRemovedBeforeRuntimeError() throws IOException {
+        File source = new File(directory, "divide.pl0");
+        Files.write(source.toPath(),
+                "var x: int;\nbegin read x; write 10 / x end\n".getBytes());
+        /* The source is removed as the program reads its input, before
+         * the division by zero is listed */
+        InputStream input = new ByteArrayInputStream("0\n".getBytes()) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                source.delete();
+                return super.read(b, off, len);
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = PL0_RD.runCommand(new String[]{source.getPath()},
+                null, input, new PrintStream(out, true),
+                new PrintStream(err, true));
+        assertFalse(source.exists());
+        String result = result(out, err, status);
+        assertTrue(result, result.contains("begin read x; write 10 / x end"));
+        assertTrue(result, result.contains("Division by zero"));
+        /* The daemon is still serving */
+        assertEquals(direct(new String[]{"-h"}), daemon(new String[]{"-h"}));
+    }
+
+    /**
+     * @return the standard output, standard error and exit status of
+     * running a command directly
+     */
+    private static String direct(String[] args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = PL0_RD.runCommand(args, null,
+                new ByteArrayInputStream(INPUT.getBytes()),
+                new PrintStream(out, true), new PrintStream(err, true));
+        return result(out, err, status);
+    }
+
+    /**
+     * @return the standard output, standard error and exit status of
+     * running a command in the daemon
+     */
+    private String daemon(String[] args) throws IOException {
+        return daemon(args, null);
+    }
+
+    /**
+     * @return the standard output, standard error and exit status of
+     * running a command in the daemon, with the text of its source
+     */
+    private String daemon(String[] args, byte[] sourceText)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = DaemonClient.run(address, args,
+                new File("").getAbsoluteFile(), sourceText,
+                new ByteArrayInputStream(INPUT.getBytes()),
+                new PrintStream(out, true), new PrintStream(err, true));
+        return result(out, err, status);
+    }
+
+    private static String result(ByteArrayOutputStream out,
+                                 ByteArrayOutputStream err, int status) {
+        return out + "\n--- stderr\n" + err + "\n--- exit " + status;
+    }
+}
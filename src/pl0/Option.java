@@ -0,0 +1,107 @@
+package pl0;
+
+/**
+ * Command line option for PL0 execution
+ */
+class Option {
+    /**
+     * Description of what effect the option has on the program
+     */
+    private final String description;
+    /**
+     * Whether or not the option has been set
+     */
+    private boolean set;
+    /**
+     * Value of an option that takes a value, null for a flag
+     */
+    private String value;
+    /**
+     * Name of the value of an option that takes a value, for usage
+     */
+    private String argument;
+
+    /**
+     * Construct a new option.
+     *
+     * @param description of what effect the option has on the program.
+     * @param set         Whether or not the option has been set.
+     */
+    Option(String description, boolean set) {
+        this.description = description;
+        this.set = set;
+    }
+
+    /**
+     * Construct a new option that takes a value.
+     *
+     * @param description of what effect the option has on the program.
+     * @param value       Default value of the option.
+     */
+    Option(String description, String value) {
+        this(description, value, "n");
+    }
+
+    /**
+     * Construct a new option that takes a named value.
+     *
+     * @param description of what effect the option has on the program.
+     * @param value       Default value of the option, empty for none.
+     * @param argument    Name of the value for usage instructions.
+     */
+    Option(String description, String value, String argument) {
+        this(description, false);
+        this.value = value;
+        this.argument = argument;
+    }
+
+    /**
+     * @return The description of what the option does
+     */
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return Whether the option is currently set
+     */
+    public boolean isSet() {
+        return set;
+    }
+
+    /**
+     * Set whether or not the option is set
+     */
+    public void set(boolean set) {
+        this.set = set;
+    }
+
+    /**
+     * @return Whether the option takes a value
+     */
+    boolean hasValue() {
+        return value != null;
+    }
+
+    /**
+     * @return The value of the option, null for a flag
+     */
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * @return The name of the value of the option, for usage instructions
+     */
+    String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Set the value of the option, which also marks it as set
+     */
+    void setValue(String value) {
+        this.value = value;
+        this.set = true;
+    }
+}
@@ -1,16 +1,30 @@
 package pl0;
 
+import interpreter.ClosureInterpreter;
+import interpreter.Engine;
+import interpreter.ExplicitStackInterpreter;
+import interpreter.IntReader;
 import interpreter.Interpreter;
+import parse.LexicalToken;
+import parse.ParallelScanner;
 import parse.Parser;
+import parse.PipelinedScanner;
 import parse.Scanner;
 import parse.TokenStream;
 import source.Errors;
-import source.Source;
+import syms.CompilerContext;
 import tree.DeclNode;
+import vm.JvmMachine;
+import vm.RegisterMachine;
+import vm.StackMachine;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * class PL0_RD - PL0 Compiler with recursive descent parser.
@@ -24,36 +38,104 @@ public class PL0_RD extends Runner {
      **/
     private static final String PROGRAM_NAME = "pl0.PL0_RD";
 
+    /**
+     * Name of the class file written by the 'w' option
+     */
+    private static final String CLASS_FILE = "PL0Program.class";
+
     public PL0_RD() {
         configurations.put('i', new Option("turn off interpreting", false));
+        configurations.put('c', new Option("compile to closures before running", false));
+        configurations.put('v', new Option("compile to stack machine code before running", false));
+        configurations.put('r', new Option("compile to register machine code before running", false));
+        configurations.put('j', new Option("compile to JVM bytecode before running", false));
+        configurations.put('w', new Option("write the JVM class compiled with -j to " + CLASS_FILE, false));
+        configurations.put('e', new Option("execute with an explicit stack rather than Java recursion", false));
+        configurations.put('b', new Option("megabytes of heap available to the stack with -e",
+                Long.toString(ExplicitStackInterpreter.DEFAULT_BUDGET >> 20)));
+        configurations.put('p', new Option("scan the source in parallel on all available cores into packed tokens", false));
+        configurations.put('a', new Option("scan the source on a separate thread, pipelined with parsing", false));
+        configurations.put('m', new Option("compile once then run in parallel for each input file in a directory or "
+                + "listed in a manifest, writing the output for each file f to f" + Batch.OUTPUT_SUFFIX, "", "inputs"));
     }
 
     @Override
-    public DeclNode.ProcedureNode parse(Source src) {
+    public DeclNode.ProcedureNode parse(CompilerContext context) {
         DeclNode.ProcedureNode result;
-        /* Set up the lexical analyzer using the source program stream */
-        Scanner lex = new Scanner(src);
+        /* Set up the lexical analyzer using the source program stream,
+         * or scan the whole source up front in parallel into a buffer of
+         * packed tokens, or scan it on another thread as it is parsed */
+        TokenStream tokens;
+        PipelinedScanner pipeline = null;
+        if (isFlagSet('p')) {
+            tokens = new TokenStream(
+                    ParallelScanner.scan(context, ForkJoinPool.commonPool()),
+                    context);
+        } else {
+            Iterator<LexicalToken> lex;
+            if (isFlagSet('a')) {
+                lex = pipeline = PipelinedScanner.start(context);
+            } else {
+                lex = new Scanner(context);
+            }
+            tokens = new TokenStream(lex, context);
+        }
         /* Recursive descent parser.
          * Set up the parser with the lexical analyzer. */
-        TokenStream tokens = new TokenStream(lex);
-        Parser parser = new Parser(tokens);
-        result = parser.parseMain();
+        Parser parser = new Parser(tokens, context);
+        try {
+            result = parser.parseMain();
+        } finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
+        }
         return result;
     }
 
     @Override
-    public boolean execute(DeclNode.ProcedureNode tree, InputStream input,
+    public boolean execute(DeclNode.ProcedureNode tree, IntReader input,
                            PrintStream output, Errors errors) {
         if (isFlagSet('i')) {
             return false;
         }
 
         output.println("Running ...");
-        Interpreter interpreter = new Interpreter(errors, input, output);
+        Engine engine;
+        if (isFlagSet('c')) {
+            engine = new ClosureInterpreter(errors, input, output);
+        } else if (isFlagSet('v')) {
+            engine = new StackMachine(errors, input, output);
+        } else if (isFlagSet('r')) {
+            engine = new RegisterMachine(errors, input, output,
+                    isFlagSet('d'));
+        } else if (isFlagSet('j')) {
+            engine = new JvmMachine(errors, input, output,
+                    isFlagSet('w') ? resolve(CLASS_FILE) : null);
+        } else if (isFlagSet('e')) {
+            long budget;
+            try {
+                budget = Long.parseLong(getValue('b')) << 20;
+            } catch (NumberFormatException e) {
+                output.println("Invalid stack budget: " + getValue('b'));
+                return false;
+            }
+            engine = new ExplicitStackInterpreter(errors, input, output,
+                    budget);
+        } else {
+            engine = new Interpreter(errors, input, output);
+        }
         try {
-            interpreter.executeCode(tree);
+            engine.executeCode(tree);
         } catch (Error error) {
             return false;
+        } finally {
+            if (engine instanceof ExplicitStackInterpreter) {
+                /* Reported separately so that the output of the program
+                 * is the same as for the other engines */
+                standardError.println("Maximum call depth "
+                        + ((ExplicitStackInterpreter) engine).getMaxDepth());
+            }
         }
         return true;
     }
@@ -62,12 +144,94 @@ public class PL0_RD extends Runner {
      * PL0 Recursive Decent main procedure
      */
     public static void main(String[] args) {
+        int status = runCommand(args, null, System.in, System.out,
+                System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Run the compiler as for a command line, but in a given environment
+     * rather than that of the process. Used by main and by the compile
+     * daemon for each of its requests.
+     *
+     * @param args      command line arguments
+     * @param directory directory relative file names are resolved against,
+     *                  or null for the working directory
+     * @param input     standard input of the program
+     * @param outStream standard output
+     * @param errStream standard error
+     * @return the exit status of the command
+     */
+    static int runCommand(String[] args, File directory, InputStream input,
+                          PrintStream outStream, PrintStream errStream) {
+        return runCommand(args, directory, null, input, outStream, errStream);
+    }
+
+    /**
+     * Run the compiler as for a command line, in a given environment, with
+     * the contents of the source file given rather than read from the file.
+     *
+     * @param args       command line arguments
+     * @param directory  directory relative file names are resolved against,
+     *                   or null for the working directory
+     * @param sourceText contents of the source file named by the arguments,
+     *                   or null to read the file
+     * @param input      standard input of the program
+     * @param outStream  standard output
+     * @param errStream  standard error
+     * @return the exit status of the command
+     */
+    static int runCommand(String[] args, File directory, byte[] sourceText,
+                          InputStream input, PrintStream outStream,
+                          PrintStream errStream) {
         Runner runner = new PL0_RD();
+        runner.setEnvironment(directory, input, errStream);
+        runner.setSourceText(sourceText);
 
         /* Parse the command line arguments to set flags and find the source file parameter */
-        String srcFile = runner.parseArguments(args, PROGRAM_NAME, System.out);
+        String srcFile = runner.readArguments(args, PROGRAM_NAME, outStream);
+        if (srcFile == null) {
+            return runner.isFlagSet('h') ? 0 : 1;
+        }
+
+        if (runner.isFlagSet('m')) {
+            /* Run the program for each of a batch of input files */
+            boolean succeeded = runBatch(runner, runner.resolve(srcFile),
+                    runner.resolve(runner.getValue('m')), outStream);
+            return succeeded ? 0 : 1;
+        }
 
         /* Run an input file and output to the output stream */
-        runner.run(new File(srcFile), System.out);
+        runner.run(new File(srcFile), outStream);
+        return 0;
+    }
+
+    /**
+     * Compile a program once and then run it for each of a batch of input
+     * files on a pool with a thread per processor.
+     *
+     * @return true iff the program compiled and every run terminated
+     */
+    private static boolean runBatch(Runner runner, File srcFile, File inputs,
+                                    PrintStream outStream) {
+        outStream.println("Compiling " + srcFile.getName());
+        CompiledProgram program;
+        List<File> inputFiles;
+        try {
+            program = runner.getSourceText() == null
+                    ? CompiledProgram.compile(srcFile)
+                    : CompiledProgram.compile(srcFile, runner.getSourceText());
+            inputFiles = Batch.inputFiles(inputs);
+        } catch (IllegalArgumentException e) {
+            outStream.print(e.getMessage());
+            return false;
+        } catch (IOException e) {
+            outStream.println("Unable to read " + e.getMessage());
+            return false;
+        }
+        return new Batch(program, runner.isFlagSet('t')).run(inputFiles,
+                Runtime.getRuntime().availableProcessors(), outStream);
     }
 }
@@ -0,0 +1,149 @@
+package pl0;
+
+import image.ImageReader;
+import junit.framework.TestCase;
+import source.ErrorHandler;
+import syms.CompilerContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * class ProgramImageTest - JUnit test that a program written to a program
+ * image with -o and run from it with -x behaves exactly as when it is
+ * run from its source, for every engine.
+ */
+public class ProgramImageTest extends TestCase {
+
+    /**
+     * Input given to every program
+     */
+    private static final String INPUT = "5\n-3\n12\n7\n";
+
+    /**
+     * Lines of source listed with an error, which are only listed when
+     * running from the source, and the error messages themselves
+     */
+    private static final Pattern LISTING =
+            Pattern.compile("(?m)^( +\\d+ |\\*{6} ).*\\R");
+
+    private File image;
+
+    public ProgramImageTest(String testName) {
+        super(testName);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        image = File.createTempFile("program", ".pl0c");
+        assertTrue(image.delete());
+    }
+
+    protected void tearDown() throws Exception {
+        image.delete();
+        super.tearDown();
+    }
+
+    public void testImagesRunTheSame() throws IOException {
+        int images = 0;
+        for (File program : TestRunner.testPrograms()) {
+            image.delete();
+            String compiled = run("-o", image.getPath(), program.getPath());
+            if (!compiled.contains("Running ...")) {
+                /* A program with compile errors has no image */
+                assertFalse(program.getName(), image.exists());
+                continue;
+            }
+            images++;
+            for (String engine : new String[]{"", "-c", "-v", "-r", "-j", "-e"}) {
+                String expected = run(engine, program.getPath());
+                String loaded = run(engine, "-x", image.getPath());
+                assertTrue(loaded, loaded.startsWith("Loading "));
+                assertEquals(program + " " + engine,
+                        withoutListing(expected.substring(
+                                expected.indexOf("Running ..."))),
+                        withoutListing(loaded.substring(
+                                loaded.indexOf("Running ..."))));
+            }
+        }
+        assertTrue(images > 0);
+    }
+
+    public void testRuntimeErrorReportsLocation() {
+        File program = TestRunner.testPrograms().stream()
+                .filter(p -> p.getName().equals("test-base3-bounds.pl0"))
+                .findFirst().orElseThrow(AssertionError::new);
+        String expected = run("-o", image.getPath(), program.getPath());
+        String loaded = run("-x", image.getPath());
+        assertTrue(expected, expected.contains("bounds check failed"));
+        assertTrue(loaded, Pattern.compile(
+                "\\*{6} line 11 column \\d+: .*bounds check failed")
+                .matcher(loaded).find());
+    }
+
+    public void testRejectsInvalidImage() throws IOException {
+        Files.write(image.toPath(), new byte[]{'P', 'L', '0', 'C', 0, 0, 0, 99});
+        String loaded = run("-x", image.getPath());
+        assertTrue(loaded, loaded.contains("Unable to load program image"));
+        assertFalse(loaded, loaded.contains("Running ..."));
+    }
+
+    /**
+     * Every word of a valid image replaced by values out of any range, with
+     * the checksum made to match, is either read or rejected as malformed
+     */
+    public void testRejectsMalformedImage() throws IOException {
+        File program = TestRunner.testPrograms().stream()
+                .filter(p -> p.getName().equals("test-basei-nested-procs.pl0"))
+                .findFirst().orElseThrow(AssertionError::new);
+        run("-o", image.getPath(), program.getPath());
+        byte[] valid = Files.readAllBytes(image.toPath());
+        int rejected = 0;
+        /* After the magic number, version and checksum */
+        for (int i = 12; i + 4 <= valid.length; i += 4) {
+            for (int word : new int[]{-1, -2, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE, Integer.MAX_VALUE / 4}) {
+                ByteBuffer malformed = ByteBuffer.wrap(valid.clone());
+                malformed.putInt(i, word);
+                CRC32 checksum = new CRC32();
+                checksum.update(malformed.array(), 12, valid.length - 12);
+                malformed.putInt(8, (int) checksum.getValue());
+                try {
+                    ImageReader.read(malformed, new CompilerContext(
+                            new ErrorHandler(new PrintStream(
+                                    new ByteArrayOutputStream()), null, false),
+                            null));
+                } catch (IOException e) {
+                    rejected++;
+                }
+            }
+        }
+        assertTrue(rejected > 0);
+    }
+
+    private static String withoutListing(String output) {
+        return LISTING.matcher(output).replaceAll("");
+    }
+
+    /**
+     * @return the output of running a command
+     */
+    private static String run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        args = Arrays.stream(args).filter(a -> !a.isEmpty())
+                .toArray(String[]::new);
+        int status = PL0_RD.runCommand(args, null,
+                new ByteArrayInputStream(INPUT.getBytes()),
+                new PrintStream(out, true), new PrintStream(err, true));
+        return out + "\n--- stderr\n" + err + "\n--- exit " + status;
+    }
+}
@@ -1,16 +1,23 @@
 package pl0;
 
+import image.ImageReader;
+import image.ImageWriter;
+import image.ProgramCache;
+import interpreter.IntReader;
 import source.ErrorHandler;
 import source.Errors;
+import source.MappedSource;
 import source.Source;
+import syms.CompilerContext;
 import tree.DeclNode;
 import tree.StaticChecker;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -21,6 +28,26 @@ public abstract class Runner {
 
     final Map<Character, Option> configurations = new LinkedHashMap<>();
 
+    /**
+     * Directory against which relative file names are resolved, or null
+     * for the working directory of the process
+     */
+    private File directory = null;
+    /**
+     * Standard input of the program being run
+     */
+    private InputStream standardInput = System.in;
+    /**
+     * Stream for reporting problems that are not part of the output of
+     * the compiler, such as a missing file
+     */
+    PrintStream standardError = System.err;
+    /**
+     * Contents of the source file given with the request to run it, e.g.
+     * by a client of the compile daemon, or null to read the source file
+     */
+    private byte[] sourceText = null;
+
     /**
      * Construct a Runner with default configuration.
      */
@@ -28,6 +55,63 @@ public abstract class Runner {
         configurations.put('d', new Option("turn debug messages on", false));
         configurations.put('s', new Option("turn off static checking", false));
         configurations.put('h', new Option("output this usage information", false));
+        configurations.put('f', new Option("read the program's input from a file rather than standard input",
+                "", "file"));
+        configurations.put('t', new Option("read input values separated by any white space rather than one per line", false));
+        configurations.put('k', new Option("cache checked programs in a directory, keyed by their source",
+                "", "directory"));
+        configurations.put('l', new Option("megabytes the cache directory of -k may use", "64"));
+        configurations.put('o', new Option("write the checked program to a program image file",
+                "", "image"));
+        configurations.put('x', new Option("run a program image written with -o rather than compiling a source file",
+                false));
+    }
+
+    /**
+     * Set the environment in which a program is compiled and run, in place
+     * of that of the process, e.g. for a request to the compile daemon.
+     *
+     * @param directory     directory relative file names are resolved
+     *                      against, or null for the working directory
+     * @param standardInput standard input of the program
+     * @param standardError stream to report problems with files to
+     */
+    void setEnvironment(File directory, InputStream standardInput,
+                        PrintStream standardError) {
+        this.directory = directory;
+        this.standardInput = standardInput;
+        this.standardError = standardError;
+    }
+
+    /**
+     * Compile the given text as the contents of the source file, rather
+     * than reading the file, e.g. for a request to the compile daemon from
+     * a client whose files the daemon cannot read.
+     *
+     * @param sourceText contents of the source file, or null to read it
+     */
+    void setSourceText(byte[] sourceText) {
+        this.sourceText = sourceText;
+    }
+
+    /**
+     * @return the contents of the source file given with the request to
+     * run it, or null if the source file is to be read
+     */
+    byte[] getSourceText() {
+        return sourceText;
+    }
+
+    /**
+     * @param name name of a file, possibly relative
+     * @return the file, resolved against the directory of the environment
+     */
+    File resolve(String name) {
+        File file = new File(name);
+        if (directory == null || file.isAbsolute()) {
+            return file;
+        }
+        return new File(directory, name);
     }
 
     /**
@@ -58,18 +142,75 @@ public abstract class Runner {
         return option.isSet();
     }
 
+    /**
+     * Query the value of a configuration option that takes a value.
+     *
+     * @param flagCode Character representing the configuration.
+     * @return The value given for the option, or its default value.
+     * Null if the option does not exist.
+     */
+    String getValue(Character flagCode) {
+        Option option = configurations.get(flagCode);
+        if (option == null) {
+            return null;
+        }
+        return option.getValue();
+    }
+
     /**
      * Open and return a Source file.
      *
-     * @param srcFile The file to load as a Source file.
+     * @param srcFile  The file to load as a Source file.
+     * @param contents The contents of the file if they have already been
+     *                 read, otherwise null.
      * @return The Source file.
      */
-    private Source openSource(File srcFile) {
+    private Source openSource(File srcFile, byte[] contents) {
+        try {
+            File file = resolve(srcFile.getPath());
+            return contents == null
+                    ? MappedSource.map(file, file.getCanonicalPath())
+                    : new MappedSource(ByteBuffer.wrap(contents),
+                    file.getCanonicalPath());
+        } catch (IOException io) {
+            standardError.println("Unable to open source file " + srcFile);
+            return null;
+        }
+    }
+
+    /**
+     * Read the whole of a source file, from which its key in the compile
+     * cache is computed.
+     *
+     * @param srcFile The source file.
+     * @return The contents of the file, or null if it could not be read.
+     */
+    private byte[] readSource(File srcFile) {
         try {
-            return new Source(new FileInputStream(srcFile),
-                    srcFile.getCanonicalPath());
+            return Files.readAllBytes(resolve(srcFile.getPath()).toPath());
         } catch (IOException io) {
-            System.err.println("Unable to open source file " + srcFile);
+            standardError.println("Unable to open source file " + srcFile);
+            return null;
+        }
+    }
+
+    /**
+     * Open the input to the program, either the file given by the 'f'
+     * option or standard input.
+     *
+     * @return The input, or null if the file could not be opened.
+     */
+    private IntReader openInput() {
+        boolean whitespaceSeparated = isFlagSet('t');
+        if (!isFlagSet('f')) {
+            return new IntReader(standardInput, whitespaceSeparated);
+        }
+        File inputFile = new File(getValue('f'));
+        try {
+            return new IntReader(resolve(inputFile.getPath()),
+                    whitespaceSeparated);
+        } catch (IOException io) {
+            standardError.println("Unable to open input file " + inputFile);
             return null;
         }
     }
@@ -77,38 +218,38 @@ public abstract class Runner {
     /**
      * Parse a source file and generate an abstract syntax tree
      *
-     * @param src The source file to parse
+     * @param context The compilation of the source file to parse
      * @return An abstract syntax tree
      */
-    public abstract DeclNode.ProcedureNode parse(Source src);
+    public abstract DeclNode.ProcedureNode parse(CompilerContext context);
 
     /**
      * Perform the static semantics analysis
      *
-     * @param tree the abstract syntax tree to analyse
+     * @param tree    the abstract syntax tree to analyse
+     * @param context the compilation the tree belongs to
      * @return true iff the static check had no errors
      */
-    private boolean staticCheck(DeclNode.ProcedureNode tree) {
-        Errors errors = ErrorHandler.getErrorHandler();
-
+    private boolean staticCheck(DeclNode.ProcedureNode tree,
+                                CompilerContext context) {
         /* Perform static analysis on the abstract syntax tree */
-        StaticChecker staticSemantics = new StaticChecker(errors);
+        StaticChecker staticSemantics = new StaticChecker(context);
         staticSemantics.visitProgramNode(tree);
 
-        return !errors.hadErrors();
+        return !context.getErrors().hadErrors();
     }
 
     /**
      * Execute the abstract syntax tree.
      *
      * @param tree   The abstract syntax tree to execute.
-     * @param input  The input stream to the program.
+     * @param input  The input to the program.
      * @param output The output stream from the program.
      * @param errors Error handler for the program.
      * @return Whether the program terminated successfully.
      */
     public abstract boolean execute(DeclNode.ProcedureNode tree,
-                                    InputStream input, PrintStream output,
+                                    IntReader input, PrintStream output,
                                     Errors errors);
 
     /**
@@ -117,8 +258,10 @@ public abstract class Runner {
     private String usage(String programName) {
         /* Convert flags with descriptions to a single string */
         StringBuilder flags = new StringBuilder();
-        for (char character : configurations.keySet()) {
-            flags.append(character);
+        for (Map.Entry<Character, Option> flag : configurations.entrySet()) {
+            if (!flag.getValue().hasValue()) {
+                flags.append(flag.getKey());
+            }
         }
 
         StringBuilder builder = new StringBuilder();
@@ -126,14 +269,25 @@ public abstract class Runner {
         builder.append("PL0 Compiler").append(System.lineSeparator());
 
         builder.append("Usage: java ").append(programName)
-                .append(" [-").append(flags).append("] <filename>")
-                .append(System.lineSeparator());
+                .append(" [-").append(flags).append("]");
+        for (Map.Entry<Character, Option> flag : configurations.entrySet()) {
+            if (flag.getValue().hasValue()) {
+                builder.append(" [-").append(flag.getKey()).append(" ")
+                        .append(flag.getValue().getArgument()).append("]");
+            }
+        }
+        builder.append(" <filename>").append(System.lineSeparator());
 
         /* Provide a description for each of the flags */
         for (Map.Entry<Character, Option> flag : configurations.entrySet()) {
             builder.append("  -").append(flag.getKey()).append("  =  ")
-                    .append(flag.getValue().getDescription())
-                    .append(System.lineSeparator());
+                    .append(flag.getValue().getDescription());
+            if (flag.getValue().hasValue()
+                    && !flag.getValue().getValue().isEmpty()) {
+                builder.append(" (default ")
+                        .append(flag.getValue().getValue()).append(")");
+            }
+            builder.append(System.lineSeparator());
         }
 
         return builder.toString();
@@ -146,20 +300,154 @@ public abstract class Runner {
      * @param outStream stream to output the result of running the program to
      */
     public void run(File srcFile, PrintStream outStream) {
-        Source source = openSource(srcFile);
+        if (isFlagSet('x')) {
+            runImage(srcFile, outStream);
+            return;
+        }
+        /* With a compile cache the key of the program is computed from
+         * exactly the contents that are compiled */
+        ProgramCache cache = null;
+        byte[] contents = sourceText;
+        if (isFlagSet('k') && !isFlagSet('s')) {
+            long megabytes;
+            try {
+                megabytes = Long.parseLong(getValue('l'));
+            } catch (NumberFormatException e) {
+                outStream.println("Invalid cache size: " + getValue('l'));
+                return;
+            }
+            cache = new ProgramCache(resolve(getValue('k')), megabytes << 20);
+            if (contents == null) {
+                contents = readSource(srcFile);
+                if (contents == null) {
+                    return;
+                }
+            }
+        }
+        Source source = openSource(srcFile, contents);
 
         /* Failed to open source file, stop running */
         if (source == null) {
             return;
         }
 
-        ErrorHandler errors = (ErrorHandler) ErrorHandler.getErrorHandler();
-        errors.resetErrorHandler(outStream, source, isFlagSet('d'));
+        Errors errors = new ErrorHandler(outStream, source, isFlagSet('d'));
+        CompilerContext context = new CompilerContext(errors, source);
 
         outStream.println("Compiling " + new File(source.getFileName()).getName());
 
+        String key = cache == null ? null : ProgramCache.key(contents);
+        DeclNode.ProcedureNode tree =
+                key == null ? null : cache.load(key, context);
+        if (tree != null) {
+            /* The checked program was loaded from the cache */
+            errors.debugMessage("Compile cache hit: loaded "
+                    + cache.entry(key));
+            errors.flush();
+            outStream.println("Parsing complete");
+            outStream.println("Static semantic analysis complete");
+        } else {
+            tree = compile(context, outStream);
+            if (tree != null && key != null) {
+                try {
+                    cache.store(key, tree);
+                    errors.debugMessage("Compile cache miss: stored "
+                            + cache.entry(key));
+                } catch (IOException e) {
+                    standardError.println("Unable to write to the compile cache: "
+                            + e.getMessage());
+                }
+            }
+        }
+        if (tree != null && isFlagSet('o')) {
+            writeImage(tree, resolve(getValue('o')), errors);
+        }
+        runProgram(tree, errors, outStream);
+    }
+
+    /**
+     * Load a checked program from an image file and run it. The program is
+     * run without its source, so errors are reported with their line and
+     * column rather than the line of source.
+     *
+     * @param imageFile the image file
+     * @param outStream stream to output the result of running the program to
+     */
+    private void runImage(File imageFile, PrintStream outStream) {
+        Errors errors = new ErrorHandler(outStream, null, isFlagSet('d'));
+        CompilerContext context = new CompilerContext(errors, null);
+        outStream.println("Loading " + imageFile.getName());
+        DeclNode.ProcedureNode tree;
+        try {
+            tree = ImageReader.load(resolve(imageFile.getPath()), context);
+        } catch (IOException e) {
+            standardError.println("Unable to load program image " + imageFile
+                    + ": " + e.getMessage());
+            return;
+        }
+        runProgram(tree, errors, outStream);
+    }
+
+    /**
+     * Write a checked program to an image file
+     */
+    private void writeImage(DeclNode.ProcedureNode tree, File imageFile,
+                            Errors errors) {
+        try {
+            Files.write(imageFile.toPath(), ImageWriter.write(tree));
+            errors.debugMessage("Wrote program image " + imageFile);
+        } catch (IOException e) {
+            standardError.println("Unable to write program image "
+                    + getValue('o') + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run a checked program, if it has no errors, and report its errors
+     *
+     * @param tree      the program, or null if it had errors
+     * @param errors    error handler of the program
+     * @param outStream stream to output the result of running the program to
+     */
+    private void runProgram(DeclNode.ProcedureNode tree, Errors errors,
+                            PrintStream outStream) {
+        if (tree != null) {
+            /* Execute the abstract syntax tree */
+            IntReader input = openInput();
+            if (input == null) {
+                return;
+            }
+            boolean terminated;
+            try {
+                terminated = execute(tree, input, outStream, errors);
+            } finally {
+                try {
+                    input.close();
+                } catch (IOException io) {
+                    standardError.println("Unable to close input file");
+                }
+            }
+            if (!terminated) {
+                return;
+            }
+            outStream.println("\nTerminated");
+        }
+        errors.flush();
+        errors.errorSummary();
+    }
+
+    /**
+     * Parse and statically check a program
+     *
+     * @param context   the compilation of the program
+     * @param outStream stream to output the progress of compiling to
+     * @return the checked program, or null if it had errors
+     */
+    private DeclNode.ProcedureNode compile(CompilerContext context,
+                                           PrintStream outStream) {
+        Errors errors = context.getErrors();
         /* Parse the source file to build a syntax tree */
-        DeclNode.ProcedureNode tree = parse(source);
+        DeclNode.ProcedureNode tree = parse(context);
 
         errors.flush();
         outStream.println("Parsing complete");
@@ -167,7 +455,7 @@ public abstract class Runner {
         if (tree != null && !isFlagSet('s')) {
             /* if parsing was successful */
             /* Perform static semantic analysis on syntax tree */
-            if (!staticCheck(tree)) { /* skip further steps if there were errors */
+            if (!staticCheck(tree, context)) { /* skip further steps if there were errors */
                 tree = null;
             }
             errors.flush();
@@ -175,16 +463,7 @@ public abstract class Runner {
         } else {
             tree = null;
         }
-
-        if (tree != null) {
-            /* Execute the abstract syntax tree */
-            if (!execute(tree, System.in, outStream, errors)) {
-                return;
-            }
-            outStream.println("\nTerminated");
-        }
-        errors.flush();
-        errors.errorSummary();
+        return tree;
     }
 
     /**
@@ -197,14 +476,46 @@ public abstract class Runner {
      */
     String parseArguments(String[] args, String programName,
                           PrintStream outStream) {
+        String srcFile = readArguments(args, programName, outStream);
+        if (srcFile == null) {
+            System.exit(isFlagSet('h') ? 0 : 1);
+        }
+        return srcFile;
+    }
+
+    /**
+     * Parse arguments and set run configuration flags accordingly, without
+     * exiting if there is no program to run.
+     *
+     * @param args        list of arguments to a program
+     * @param programName Name of the program - used for usage instructions
+     * @param outStream   stream to output errors to
+     * @return Name of the file passed as an argument, or null if the usage
+     * information was requested or no file was given
+     */
+    String readArguments(String[] args, String programName,
+                         PrintStream outStream) {
         /* Name of the input source program file. */
         String srcFile = null;
 
         /* Parse command line */
-        for (String arg : args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
             if (arg.charAt(0) == '-') { /* Option */
                 char flag = arg.charAt(1);
-                if (configurations.containsKey(flag)) {
+                Option option = configurations.get(flag);
+                if (option != null && option.hasValue()) {
+                    /* The value either follows the flag or is the next argument */
+                    if (arg.length() > 2) {
+                        option.setValue(arg.substring(2));
+                    } else if (i + 1 < args.length) {
+                        option.setValue(args[++i]);
+                    } else {
+                        outStream.println("No value given for flag: " + flag);
+                        setFlag('h', true);
+                        break;
+                    }
+                } else if (option != null) {
                     /* Set the flag to the opposite of flag default */
                     setFlag(flag, true);
                 } else {
@@ -227,61 +538,13 @@ public abstract class Runner {
         if (isFlagSet('h')) {
             /* Output help message */
             outStream.println(usage(programName));
-            System.exit(0);
+            return null;
         }
 
         if (srcFile == null) {
             outStream.println("No source file specified.");
-            System.exit(1);
         }
 
         return srcFile;
     }
 }
-
-
-/**
- * Command line option for PL0 execution
- */
-class Option {
-    /**
-     * Description of what effect the option has on the program
-     */
-    private final String description;
-    /**
-     * Whether or not the option has been set
-     */
-    private boolean set;
-
-    /**
-     * Construct a new option.
-     *
-     * @param description of what effect the option has on the program.
-     * @param set         Whether or not the option has been set.
-     */
-    Option(String description, boolean set) {
-        this.description = description;
-        this.set = set;
-    }
-
-    /**
-     * @return The description of what the option does
-     */
-    String getDescription() {
-        return description;
-    }
-
-    /**
-     * @return Whether the option is currently set
-     */
-    public boolean isSet() {
-        return set;
-    }
-
-    /**
-     * Set whether or not the option is set
-     */
-    public void set(boolean set) {
-        this.set = set;
-    }
-}
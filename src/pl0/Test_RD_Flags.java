@@ -0,0 +1,69 @@
+package pl0;
+
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test that each alternative way of scanning, parsing and executing a
+ * program, selected by a command line flag, produces the same output
+ * as the expected results for each program in test-pgm.
+ */
+public class Test_RD_Flags extends TestRunner {
+
+    /**
+     * Flags selecting each alternative to test
+     **/
+    private static final String[] FLAGS = {
+            "-c", /* closure compiling interpreter */
+            "-v", /* stack machine */
+            "-r", /* register machine */
+            "-j", /* JVM bytecode compiler */
+            "-e", /* explicit stack interpreter */
+            "-a", /* scanner pipelined with the parser on a separate thread */
+            "-p", /* parser reading packed tokens scanned up front */
+    };
+
+    /**
+     * Flag selecting the alternative currently being tested
+     **/
+    private final String flag;
+
+    /**
+     * Construct a new parameterized test instance
+     *
+     * @param flag    flag selecting the alternative being tested
+     * @param program PL0 source code currently being tested
+     */
+    public Test_RD_Flags(String flag, File program) {
+        super(program);
+        this.flag = flag;
+    }
+
+    @Override
+    public void run(PrintStream outputStream) throws IOException {
+        Runner runner = new PL0_RD();
+        String srcFile = runner.parseArguments(
+                new String[]{flag, program.getCanonicalPath()},
+                "pl0.PL0_RD", outputStream);
+        runner.run(new File(srcFile), outputStream);
+    }
+
+    /**
+     * @return Each flag paired with each of the test programs
+     */
+    @Parameterized.Parameters(name = "{0} {1}")
+    public static List<Object[]> flaggedPrograms() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (String flag : FLAGS) {
+            for (File program : testPrograms()) {
+                parameters.add(new Object[]{flag, program});
+            }
+        }
+        return parameters;
+    }
+}
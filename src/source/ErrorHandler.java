@@ -20,11 +20,6 @@ public class ErrorHandler implements Errors {
     public static final Location NO_LOCATION =
             new Location(Integer.MAX_VALUE, Integer.MAX_VALUE);
 
-    /**
-     * global handle on the singleton error handler.
-     */
-    private static ErrorHandler handler = null;
-
     /**
      * Accumulated error messages.
      */
@@ -38,11 +33,13 @@ public class ErrorHandler implements Errors {
      */
     private PrintStream output;
     /**
-     * Input source file to print lines of source with error message.
+     * Input source file to print lines of source with error message, or
+     * null for a program run without its source.
      */
     private Source source;
     /**
-     * Used for accessing source file.
+     * Used for accessing a source file whose contents are not held in
+     * memory, else null.
      */
     private BufferedReader inputStream;
     /**
@@ -58,22 +55,16 @@ public class ErrorHandler implements Errors {
      */
     private int debugLevel;
 
-    private ErrorHandler(PrintStream output, Source source, boolean debug) {
-        assert handler == null; // only one instance allowed
-        this.errors = new ArrayList<>(MAX_ERRORS);
-        this.numberOfErrors = 0;
-        this.output = output;
-        this.source = source;
-        this.debug = debug;
-        this.debugLevel = 0;
-        handler = this;
-    }
-
-    /*
-     * Reset the error handler with a new output stream and source
+    /**
+     * Construct an error handler for a single compilation or run of a
+     * program. Each has its own handler, so that several programs may be
+     * compiled and run at the same time.
+     *
+     * @param output stream to report errors to
+     * @param source program whose lines are listed with errors
+     * @param debug  whether debugging messages are printed
      */
-    public void resetErrorHandler(PrintStream output, Source source, boolean debug) {
-        assert handler == this;
+    public ErrorHandler(PrintStream output, Source source, boolean debug) {
         this.errors = new ArrayList<>(MAX_ERRORS);
         this.numberOfErrors = 0;
         this.output = output;
@@ -81,21 +72,6 @@ public class ErrorHandler implements Errors {
         this.debug = debug;
         this.debugLevel = 0;
     }
-    /* count errors of each severity for the program.
-    private Map<Severity, Integer> errorCounts = 
-        new EnumMap<Severity, Integer>( Severity.class ); 
-    */
-
-    /**
-     * @return the singleton error handler.
-     */
-    public static Errors getErrorHandler() {
-        if (handler == null) {
-            // Default error handler for tests
-            handler = new ErrorHandler(System.out, null, false);
-        }
-        return handler;
-    }
 
     /**
      * Signal an error at the given location
@@ -133,6 +109,13 @@ public class ErrorHandler implements Errors {
         }
     }
 
+    /**
+     * Return whether debugging messages are turned on
+     */
+    public boolean isDebugging() {
+        return debug;
+    }
+
     /**
      * Increment debug level
      */
@@ -225,15 +208,22 @@ public class ErrorHandler implements Errors {
      * relates a source line the location is indicated by an arrow.
      */
     private void listMessages() {
-        try {
-            inputStream = new BufferedReader(
-                    new FileReader(source.getFileName()));
-        } catch (FileNotFoundException e1) {
-            System.err.println("ErrorHandler.listMessages: " +
-                    source.getFileName() + " not found");
-            System.exit(1);
+        if (source == null) {
+            listMessagesWithoutSource();
+            return;
+        }
+        if (!(source instanceof MappedSource)) {
+            /* The lines must be read from the source file */
+            try {
+                inputStream = new BufferedReader(
+                        new FileReader(source.getFileName()));
+            } catch (FileNotFoundException e1) {
+                /* The file has gone since it was compiled */
+                listMessagesWithoutSource();
+                return;
+            }
+            inputIndex = 0;
         }
-        inputIndex = 0;
         int previousLineNumber = -1;
         Collections.sort(errors);
         for (CompileError e : errors) {
@@ -258,6 +248,26 @@ public class ErrorHandler implements Errors {
             output.println(e.toString());
             previousLineNumber = lineNumber;
         }
+        closeInput();
+    }
+
+    /**
+     * List the messages of a program run without its source, e.g. one
+     * loaded from a program image, or whose source file has gone, giving
+     * the line and column of each.
+     */
+    private void listMessagesWithoutSource() {
+        Collections.sort(errors);
+        for (CompileError e : errors) {
+            errorPad(output);
+            output.print(' ');
+            if (!e.getLocation().equals(ErrorHandler.NO_LOCATION)) {
+                output.print("line " + (e.getLocation().getLine() + 1)
+                        + " column " + (e.getLocation().getColumn() + 1)
+                        + ": ");
+            }
+            output.println(e.toString());
+        }
     }
 
     /**
@@ -269,6 +279,16 @@ public class ErrorHandler implements Errors {
      *                 within the input stream of the source file.
      */
     private void printLine(Location location) {
+        if (source instanceof MappedSource) {
+            String line = ((MappedSource) source).getLine(location);
+            output.print(line);
+            if (!line.endsWith("\n")) {
+                // If end-of-file reached before end-of-line
+                // output a new line
+                output.write('\n');
+            }
+            return;
+        }
         try {
             int ch;
             int startOfLine = source.getLineStart(location);
@@ -290,6 +310,20 @@ public class ErrorHandler implements Errors {
         }
     }
 
+    /**
+     * Closes the source file once its lines have been listed
+     */
+    private void closeInput() {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                System.err.println("IOException closing source file");
+            }
+            inputStream = null;
+        }
+    }
+
     /**
      * Print value in the number of columns given.
      */
@@ -0,0 +1,56 @@
+package source;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * class ErrorHandlerTest - JUnit test that the messages given as suppliers
+ * are only constructed when they are output or an assertion fails.
+ */
+public class ErrorHandlerTest extends TestCase {
+
+    private ByteArrayOutputStream output;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        output = new ByteArrayOutputStream();
+    }
+
+    private Errors errors(boolean debug) {
+        return new ErrorHandler(new PrintStream(output, true), null, debug);
+    }
+
+    public void testDebugMessageNotConstructed() {
+        errors(false).debugMessage(() -> {
+            fail("message constructed when not debugging");
+            return null;
+        });
+        assertEquals("", output.toString());
+    }
+
+    public void testDebugMessage() {
+        errors(true).debugMessage(() -> "Matched " + 42);
+        assertTrue(output.toString(),
+                output.toString().contains("Matched 42"));
+    }
+
+    public void testCheckAssert() {
+        Errors errors = errors(false);
+        errors.checkAssert(true, () -> {
+            fail("message constructed when the assertion holds");
+            return null;
+        }, new Location(0, 0));
+        assertFalse(errors.hadErrors());
+        try {
+            errors.checkAssert(false, () -> "on " + 1, new Location(0, 0));
+            fail("failed assertion did not stop");
+        } catch (Error e) {
+            errors.flush();
+            assertTrue(output.toString(),
+                    output.toString().contains("Assertion failed! on 1"));
+        }
+    }
+}
@@ -2,6 +2,8 @@ package source;
 
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
+import java.util.function.Supplier;
+
 /**
  * interface Errors - interface to allow reporting of compilation
  * errors and other messages. Use flush() to cause output.
@@ -28,6 +30,22 @@ public interface Errors {
      */
     void debugMessage(String msg);
 
+    /**
+     * Output debugging message if debug turned on, constructing the
+     * message only if it is
+     */
+    default void debugMessage(Supplier<String> msg) {
+        if (isDebugging()) {
+            debugMessage(msg.get());
+        }
+    }
+
+    /**
+     * Return whether debugging messages are turned on, so that callers
+     * can avoid constructing messages that would not be output
+     */
+    boolean isDebugging();
+
     /**
      * Increment debug level for indenting messages
      */
@@ -43,6 +61,17 @@ public interface Errors {
      */
     void checkAssert(boolean condition, String m, Location loc);
 
+    /**
+     * Report error if assert condition fails, constructing the message
+     * only if it does
+     */
+    default void checkAssert(boolean condition, Supplier<String> m,
+                             Location loc) {
+        if (!condition) {
+            checkAssert(false, m.get(), loc);
+        }
+    }
+
     /**
      * Print immediately a summary of all errors reported
      */
@@ -2,8 +2,7 @@ package source;
 
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * class LineLocations - tracks the locations of lines within text file.
@@ -11,11 +10,17 @@ import java.util.List;
 
 class LineLocations {
 
-    private final List<Integer> lineEnds;
+    /**
+     * Location of the end of each line, after -1 for the end of the
+     * line before the first; held unboxed as a source may have millions
+     */
+    private int[] lineEnds;
+    private int size;
 
     LineLocations() {
-        this.lineEnds = new ArrayList<>();
-        this.lineEnds.add(-1);
+        this.lineEnds = new int[64];
+        this.lineEnds[0] = -1;
+        this.size = 1;
     }
 
     /**
@@ -23,10 +28,13 @@ class LineLocations {
      * requires the new location greater than or equal to previous last location.
      */
     void add(int p) {
-        assert endLast().compareTo(p) <= 0;
+        assert endLast() <= p;
         // Add line only if nonempty
-        if (endLast().compareTo(p) != 0) {
-            lineEnds.add(p);
+        if (endLast() != p) {
+            if (size == lineEnds.length) {
+                lineEnds = Arrays.copyOf(lineEnds, 2 * size);
+            }
+            lineEnds[size++] = p;
         }
     }
 
@@ -35,10 +43,10 @@ class LineLocations {
      * requires the location is not greater than the end of the last line.
      */
     int getLineNumber(Location loc) {
-        if (lineEnds.size() == 1) {
-            assert lineEnds.get(0) == -1 || loc.getColumn() <= lineEnds.get(loc.getLine());
+        if (size == 1) {
+            assert lineEnds[0] == -1 || loc.getColumn() <= lineEnds[loc.getLine()];
         } else {
-            assert loc.getColumn() <= (lineEnds.get(loc.getLine()) - lineEnds.get(loc.getLine() - 1));
+            assert loc.getColumn() <= (lineEnds[loc.getLine()] - lineEnds[loc.getLine() - 1]);
         }
         return loc.getLine();
     }
@@ -46,8 +54,8 @@ class LineLocations {
     /**
      * Get the location of the start of the line that contains location p.
      */
-    Integer getLineStart(Location p) {
-        int endPrevious = lineEnds.get(p.getLine());
+    int getLineStart(Location p) {
+        int endPrevious = lineEnds[p.getLine()];
         return endPrevious + 1;
     }
 
@@ -62,7 +70,7 @@ class LineLocations {
     /**
      * Get the location of the end of the last line.
      */
-    Integer endLast() {
-        return lineEnds.get(lineEnds.size() - 1);
+    int endLast() {
+        return lineEnds[size - 1];
     }
 }
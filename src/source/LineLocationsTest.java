@@ -71,19 +71,19 @@ public class LineLocationsTest extends TestCase {
      */
     public void testGetLineStart() {
         lp.add(3);
-        assertEquals(0, (int) lp.getLineStart(new Location(0, 0)));
-        assertEquals(0, (int) lp.getLineStart(new Location(0, 1)));
-        assertEquals(0, (int) lp.getLineStart(new Location(0, 1)));
-        assertEquals(0, (int) lp.getLineStart(new Location(0, 2)));
+        assertEquals(0, lp.getLineStart(new Location(0, 0)));
+        assertEquals(0, lp.getLineStart(new Location(0, 1)));
+        assertEquals(0, lp.getLineStart(new Location(0, 1)));
+        assertEquals(0, lp.getLineStart(new Location(0, 2)));
         lp.add(5);
-        assertEquals(0, (int) lp.getLineStart(new Location(0, 1)));
-        assertEquals(4, (int) lp.getLineStart(new Location(1, 0)));
-        assertEquals(4, (int) lp.getLineStart(new Location(1, 1)));
+        assertEquals(0, lp.getLineStart(new Location(0, 1)));
+        assertEquals(4, lp.getLineStart(new Location(1, 0)));
+        assertEquals(4, lp.getLineStart(new Location(1, 1)));
         lp.add(7);
-        assertEquals(0, (int) lp.getLineStart(new Location(0, 2)));
-        assertEquals(4, (int) lp.getLineStart(new Location(1, 2)));
-        assertEquals(6, (int) lp.getLineStart(new Location(2, 1)));
-        assertEquals(6, (int) lp.getLineStart(new Location(2, 2)));
+        assertEquals(0, lp.getLineStart(new Location(0, 2)));
+        assertEquals(4, lp.getLineStart(new Location(1, 2)));
+        assertEquals(6, lp.getLineStart(new Location(2, 1)));
+        assertEquals(6, lp.getLineStart(new Location(2, 2)));
     }
 
     /*
@@ -110,13 +110,13 @@ public class LineLocationsTest extends TestCase {
      * Test method for 'pl0.source.LineLocations.endLast()'
      */
     public void testEndLast() {
-        assertEquals(-1, (int) lp.endLast());
+        assertEquals(-1, lp.endLast());
         lp.add(3);
-        assertEquals(3, (int) lp.endLast());
+        assertEquals(3, lp.endLast());
         lp.add(5);
-        assertEquals(5, (int) lp.endLast());
+        assertEquals(5, lp.endLast());
         lp.add(7);
-        assertEquals(7, (int) lp.endLast());
+        assertEquals(7, lp.endLast());
     }
 
 }
@@ -0,0 +1,216 @@
+package source;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * class MappedSource - a source whose whole contents are in memory as bytes,
+ * usually by memory-mapping its file, rather than read through a decoding
+ * reader.
+ * <p>
+ * The locations of the lines are found up front, by a single scan of the
+ * bytes a word of eight at a time, which also checks that the source is
+ * ASCII. An ASCII source needs no decoding: each byte is a character, and
+ * the Scanner reads the bytes in place through asciiView. Any other source
+ * is decoded once, with the default charset as for Source, and its lines
+ * found in the decoded characters.
+ */
+public class MappedSource extends Source {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+
+    /**
+     * Contents of an ASCII source, else null
+     */
+    private final ByteBuffer ascii;
+    /**
+     * Decoded contents of a source that is not ASCII, else null
+     */
+    private final CharBuffer chars;
+    /**
+     * Number of characters read through read
+     */
+    private int position = 0;
+
+    /**
+     * Source with the given contents
+     *
+     * @param contents the contents from their position to their limit
+     * @param fileName name of the file the contents are from
+     */
+    public MappedSource(ByteBuffer contents, String fileName) {
+        this(fileName, contents.slice(), asciiLines(contents.slice()));
+    }
+
+    private MappedSource(String fileName, ByteBuffer contents,
+                         LineLocations asciiLines) {
+        this(fileName, asciiLines != null ? contents : null,
+                asciiLines != null ? null : decode(contents), asciiLines);
+    }
+
+    private MappedSource(String fileName, ByteBuffer ascii, CharBuffer chars,
+                         LineLocations asciiLines) {
+        super(fileName, asciiLines != null ? asciiLines : lines(chars));
+        this.ascii = ascii;
+        this.chars = chars;
+    }
+
+    /**
+     * Memory-map a source file
+     *
+     * @param file     the file to map
+     * @param fileName name of the file to report
+     * @return the source
+     * @throws IOException if the file cannot be mapped
+     */
+    public static MappedSource map(File file, String fileName)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size()), fileName);
+        }
+    }
+
+    /**
+     * Read a source file into memory, so that the source is unaffected by
+     * the file being changed or removed later
+     *
+     * @param file     the file to read
+     * @param fileName name of the file to report
+     * @return the source
+     * @throws IOException if the file cannot be read
+     */
+    public static MappedSource read(File file, String fileName)
+            throws IOException {
+        return new MappedSource(ByteBuffer.wrap(
+                Files.readAllBytes(file.toPath())), fileName);
+    }
+
+    @Override
+    public ByteBuffer asciiView() {
+        return ascii == null ? null : ascii.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int read(char[] buffer, int off, int len) {
+        int length = ascii != null ? ascii.limit() : chars.limit();
+        if (position == length) {
+            return -1;
+        }
+        int n = Math.min(len, length - position);
+        if (ascii != null) {
+            for (int i = 0; i < n; i++) {
+                buffer[off + i] = (char) ascii.get(position + i);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                buffer[off + i] = chars.get(position + i);
+            }
+        }
+        position += n;
+        return n;
+    }
+
+    /**
+     * Get the line containing loc, including its newline, from the
+     * contents held in memory rather than from the source file
+     */
+    String getLine(Location loc) {
+        int length = ascii != null ? ascii.limit() : chars.limit();
+        StringBuilder line = new StringBuilder();
+        for (int i = getLineStart(loc); i < length; i++) {
+            char ch = ascii != null ? (char) ascii.get(i) : chars.get(i);
+            line.append(ch);
+            if (ch == '\n') {
+                break;
+            }
+        }
+        return line.toString();
+    }
+
+    @Override
+    public void close() {
+        /* A mapping is released when it is no longer referenced */
+    }
+
+    /**
+     * Find the line ends of ASCII contents, eight bytes at a time: the
+     * bytes are checked for any with the high bit set, and each newline
+     * becomes a high bit of its byte in a word that is zero elsewhere.
+     *
+     * @return the line ends, or null if the contents are not ASCII
+     */
+    private static LineLocations asciiLines(ByteBuffer contents) {
+        ByteBuffer words = contents.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int length = contents.limit();
+        LineLocations lines = new LineLocations();
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            long word = words.getLong(i);
+            if ((word & HIGH_BITS) != 0) {
+                return null;
+            }
+            long x = word ^ NEWLINES;
+            long newlines = ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+            while (newlines != 0) {
+                lines.add(i + (Long.numberOfTrailingZeros(newlines) >>> 3));
+                newlines &= newlines - 1;
+            }
+        }
+        for (; i < length; i++) {
+            byte b = contents.get(i);
+            if (b < 0) {
+                return null;
+            }
+            if (b == '\n') {
+                lines.add(i);
+            }
+        }
+        lines.add(length);
+        return lines;
+    }
+
+    /**
+     * Decode contents that are not ASCII, replacing malformed input as
+     * the reader of Source does
+     */
+    private static CharBuffer decode(ByteBuffer contents) {
+        try {
+            return Charset.defaultCharset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(contents.duplicate());
+        } catch (CharacterCodingException e) {
+            /* Not thrown when errors are replaced */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the line ends of decoded contents
+     */
+    private static LineLocations lines(CharBuffer chars) {
+        LineLocations lines = new LineLocations();
+        for (int i = 0; i < chars.limit(); i++) {
+            if (chars.get(i) == '\n') {
+                lines.add(i);
+            }
+        }
+        lines.add(chars.limit());
+        return lines;
+    }
+}
@@ -0,0 +1,94 @@
+package source;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * class MappedSourceTest - Junit test that a MappedSource reads the same
+ * characters and finds the same lines as a Source read from a stream.
+ */
+public class MappedSourceTest extends TestCase {
+
+    public MappedSourceTest(String testName) {
+        super(testName);
+    }
+
+    public void testAsciiLines() throws IOException {
+        assertSameAsSource("");
+        assertSameAsSource("\n");
+        assertSameAsSource("x");
+        assertSameAsSource("begin\n  write 1\nend\n");
+        assertSameAsSource("begin\n  write 1\nend");
+        assertSameAsSource("begin\r\n  write 1\r\nend\r\n");
+        assertSameAsSource("\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\nx\n");
+        /* Newlines at every position within a word and in the tail */
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i < 40; i++) {
+            for (int j = 0; j < i; j++) {
+                text.append((char) ('a' + j % 26));
+            }
+            text.append('\n');
+            assertSameAsSource(text.toString());
+        }
+    }
+
+    public void testAsciiView() {
+        MappedSource source = mapped("var x;\n");
+        ByteBuffer view = source.asciiView();
+        assertEquals(7, view.remaining());
+        assertEquals('v', view.get());
+        /* Each view starts afresh */
+        assertEquals('v', source.asciiView().get());
+    }
+
+    public void testNonAscii() throws IOException {
+        /* Decoded as by Source, whatever the default charset */
+        byte[] bytes = "// caf\u00e9\nwrite 1\n// \u00fcber\n"
+                .getBytes(StandardCharsets.UTF_8);
+        assertNull(mapped(bytes).asciiView());
+        assertSameAsSource(bytes);
+        bytes[3] = (byte) 0xFF;
+        assertSameAsSource(bytes);
+    }
+
+    private static MappedSource mapped(String text) {
+        return mapped(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static MappedSource mapped(byte[] bytes) {
+        return new MappedSource(ByteBuffer.wrap(bytes), "test.pl0");
+    }
+
+    private static void assertSameAsSource(String text) throws IOException {
+        assertSameAsSource(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void assertSameAsSource(byte[] bytes) throws IOException {
+        Source expected = new Source(new ByteArrayInputStream(bytes),
+                "test.pl0");
+        MappedSource actual = mapped(bytes);
+        String text = readAll(expected);
+        assertEquals(text, readAll(actual));
+        String[] lines = text.split("\n", -1);
+        for (int line = 0; line < lines.length; line++) {
+            Location loc = new Location(line, 0);
+            assertEquals(text + " line " + line,
+                    expected.getLineStart(loc), actual.getLineStart(loc));
+        }
+    }
+
+    private static String readAll(Source source) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[5];
+        int n;
+        while ((n = source.read(buffer, 0, buffer.length)) >= 0) {
+            text.append(buffer, 0, n);
+        }
+        return text.toString();
+    }
+}
@@ -7,10 +7,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 
 /**
  * class Source - Handles the input character-by-character.
  * To interface with JFlex this class has to extend java.io.Reader.
+ * It decodes its input as it is read, e.g. from standard input; a source
+ * file is held in memory by MappedSource instead.
  */
 public class Source extends java.io.Reader {
 
@@ -19,7 +22,8 @@ public class Source extends java.io.Reader {
      */
     private final String fileName;
     /**
-     * Buffered reader for input source file
+     * Buffered reader for input source file, null for a subclass that
+     * reads its own input
      */
     private final BufferedReader input;
     /**
@@ -43,19 +47,41 @@ public class Source extends java.io.Reader {
         lineLocations = new LineLocations();
     }
 
+    /**
+     * Constructor for a subclass that reads its own input, and has already
+     * found the locations of its lines.
+     */
+    Source(String fileName, LineLocations lineLocations) {
+        this.input = null;
+        this.fileName = fileName;
+        this.currentLoc = 0;
+        this.lineLocations = lineLocations;
+    }
+
     public String getFileName() {
         return fileName;
     }
 
     /* Close input stream any flush out any error messages */
     public void close() throws IOException {
-        input.close();
+        if (input != null) {
+            input.close();
+        }
+    }
+
+    /**
+     * @return a view of the whole source as ASCII bytes, one per character,
+     * positioned at its start, or null if the source must be read as
+     * characters through read
+     */
+    public ByteBuffer asciiView() {
+        return null;
     }
 
     /**
      * Get the location of the start of the line containing loc.
      */
-    Integer getLineStart(Location loc) {
+    int getLineStart(Location loc) {
         return lineLocations.getLineStart(loc);
     }
 
@@ -1,6 +1,7 @@
 package source;
 
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Handles logging the indented debug messages for each node visited
@@ -19,7 +20,7 @@ public class VisitorDebugger {
     /**
      * Track the node currently being executed
      */
-    private final Stack<String> nodeStack = new Stack<>();
+    private final Deque<String> nodeStack = new ArrayDeque<>();
 
     /**
      * Contract a new debugging stack
@@ -37,7 +38,9 @@ public class VisitorDebugger {
      */
     public void beginDebug(String node) {
         nodeStack.push(node);
-        errors.debugMessage("Begin " + action + " of " + node);
+        if (errors.isDebugging()) {
+            errors.debugMessage("Begin " + action + " of " + node);
+        }
         errors.incDebug();
     }
 
@@ -46,7 +49,9 @@ public class VisitorDebugger {
      */
     public void endDebug(String node) {
         errors.decDebug();
-        errors.debugMessage("End " + action + " of " + node);
+        if (errors.isDebugging()) {
+            errors.debugMessage("End " + action + " of " + node);
+        }
 
         if (nodeStack.isEmpty()) {
             /* This indicates an error in the code interpreter - always prints */
@@ -0,0 +1,72 @@
+package syms;
+
+import source.Errors;
+import source.Source;
+import syms.Type.ScalarType;
+
+/**
+ * class CompilerContext - the state of a single compilation: the source
+ * being compiled, the error handler its errors and debugging messages are
+ * reported to, and its own instances of the predefined types.
+ * Each compilation has its own context, which the scanner, parser, symbol
+ * table, types and static checker are given rather than sharing global
+ * state, so that several programs may be compiled at the same time on
+ * different threads.
+ */
+public class CompilerContext {
+    /**
+     * Error handler of the compilation
+     */
+    private final Errors errors;
+    /**
+     * Source program being compiled, null if not read from a source
+     */
+    private final Source source;
+    /**
+     * Predefined types of the compilation
+     */
+    private final Predefined predefined;
+
+    /**
+     * @param errors error handler to report to
+     * @param source source program being compiled
+     */
+    public CompilerContext(Errors errors, Source source) {
+        this.errors = errors;
+        this.source = source;
+        this.predefined = new Predefined();
+    }
+
+    public Errors getErrors() {
+        return errors;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * @return whether debugging messages are turned on
+     */
+    public boolean isDebugging() {
+        return errors.isDebugging();
+    }
+
+    public Predefined getPredefined() {
+        return predefined;
+    }
+
+    /**
+     * @return the predefined integer type of the compilation
+     */
+    public ScalarType getIntegerType() {
+        return predefined.getIntegerType();
+    }
+
+    /**
+     * @return the predefined boolean type of the compilation
+     */
+    public ScalarType getBooleanType() {
+        return predefined.getBooleanType();
+    }
+}
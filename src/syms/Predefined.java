@@ -13,40 +13,52 @@ public class Predefined {
     /**
      * Predefined integer type.
      */
-    public static ScalarType INTEGER_TYPE;
+    private final ScalarType integerType;
     /**
      * Predefined boolean type.
      */
-    public static ScalarType BOOLEAN_TYPE;
+    private final ScalarType booleanType;
 
     /**
-     * Add the predefined constants, types and operators
-     *
-     * @param predefined scope to which entries are added
+     * Construct the predefined types. The types are named when they are
+     * added to a scope, so each compilation has its own instances.
      */
-    static void addPredefinedEntries(Scope predefined) {
-        // Define types needed for predefined entries
-        /* Predefined integer type. */
-        INTEGER_TYPE = new ScalarType("int", Type.SIZE_OF_INT,
+    public Predefined() {
+        integerType = new ScalarType("int", Type.SIZE_OF_INT,
                 Integer.MIN_VALUE, Integer.MAX_VALUE) {
         };
-        /* Predefined boolean type. */
-        BOOLEAN_TYPE = new ScalarType("boolean", Type.SIZE_OF_BOOLEAN,
+        booleanType = new ScalarType("boolean", Type.SIZE_OF_BOOLEAN,
                 Type.FALSE_VALUE, Type.TRUE_VALUE);
+    }
+
+    public ScalarType getIntegerType() {
+        return integerType;
+    }
 
-        ProductType PAIR_INTEGER_TYPE = new ProductType(INTEGER_TYPE, INTEGER_TYPE);
-        ProductType PAIR_BOOLEAN_TYPE = new ProductType(BOOLEAN_TYPE, BOOLEAN_TYPE);
-        FunctionType ARITHMETIC_BINARY = new FunctionType(PAIR_INTEGER_TYPE, INTEGER_TYPE);
-        FunctionType INT_RELATIONAL_TYPE = new FunctionType(PAIR_INTEGER_TYPE, BOOLEAN_TYPE);
-        FunctionType LOGICAL_BINARY = new FunctionType(PAIR_BOOLEAN_TYPE, BOOLEAN_TYPE);
-        FunctionType ARITHMETIC_UNARY = new FunctionType(INTEGER_TYPE, INTEGER_TYPE);
-        FunctionType LOGICAL_UNARY = new FunctionType(BOOLEAN_TYPE, BOOLEAN_TYPE);
+    public ScalarType getBooleanType() {
+        return booleanType;
+    }
+
+    /**
+     * Add the predefined constants, types and operators
+     *
+     * @param predefined scope to which entries are added
+     */
+    void addPredefinedEntries(Scope predefined) {
+        // Define types needed for predefined entries
+        ProductType PAIR_INTEGER_TYPE = new ProductType(integerType, integerType);
+        ProductType PAIR_BOOLEAN_TYPE = new ProductType(booleanType, booleanType);
+        FunctionType ARITHMETIC_BINARY = new FunctionType(PAIR_INTEGER_TYPE, integerType);
+        FunctionType INT_RELATIONAL_TYPE = new FunctionType(PAIR_INTEGER_TYPE, booleanType);
+        FunctionType LOGICAL_BINARY = new FunctionType(PAIR_BOOLEAN_TYPE, booleanType);
+        FunctionType ARITHMETIC_UNARY = new FunctionType(integerType, integerType);
+        FunctionType LOGICAL_UNARY = new FunctionType(booleanType, booleanType);
         // Add predefined symbols to predefined scope
-        predefined.addType("int", ErrorHandler.NO_LOCATION, INTEGER_TYPE);
-        predefined.addType("boolean", ErrorHandler.NO_LOCATION, BOOLEAN_TYPE);
-        predefined.addConstant("false", ErrorHandler.NO_LOCATION, BOOLEAN_TYPE,
+        predefined.addType("int", ErrorHandler.NO_LOCATION, integerType);
+        predefined.addType("boolean", ErrorHandler.NO_LOCATION, booleanType);
+        predefined.addConstant("false", ErrorHandler.NO_LOCATION, booleanType,
                 Type.FALSE_VALUE);
-        predefined.addConstant("true", ErrorHandler.NO_LOCATION, BOOLEAN_TYPE,
+        predefined.addConstant("true", ErrorHandler.NO_LOCATION, booleanType,
                 Type.TRUE_VALUE);
         predefined.addOperator("_=_", ErrorHandler.NO_LOCATION, LOGICAL_BINARY);
         predefined.addOperator("_!=_", ErrorHandler.NO_LOCATION, LOGICAL_BINARY);
@@ -1,6 +1,9 @@
 package syms;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.TreeMap;
 import java.util.SortedMap;
 
@@ -22,6 +25,10 @@ public class Scope {
      * Offset of start of local variables from frame pointer
      */
     final static int LOCALS_BASE = 0;
+    /**
+     * Compilation the scope belongs to
+     */
+    private final CompilerContext context;
     /**
      * Parent Scope
      */
@@ -40,8 +47,15 @@ public class Scope {
      * This only affects minor things like the order of dumping symbol
      * tables in trace backs. A Map/HashMap would still give a valid
      * implementation.
+     * Null for a scope loaded from a program image until an entry is
+     * added to it.
+     */
+    private SortedMap<String, SymEntry> entries;
+    /**
+     * Entries of a scope loaded from a program image, sorted by name,
+     * which are only copied into a map if an entry is added; otherwise null
      */
-    private final SortedMap<String, SymEntry> entries;
+    private List<SymEntry> loadedEntries;
     /**
      * space allocated for local variables within this scope
      */
@@ -52,11 +66,14 @@ public class Scope {
      * that is linked to the parent scope, which may be null to
      * indicate that there is no parent.
      *
+     * @param context    compilation the scope belongs to
      * @param parent     scope
      * @param level      of nesting of scope
      * @param ownerEntry the corresponding owner's symbol table entry
      */
-    public Scope(Scope parent, int level, SymEntry.ProcedureEntry ownerEntry) {
+    public Scope(CompilerContext context, Scope parent, int level,
+                 SymEntry.ProcedureEntry ownerEntry) {
+        this.context = context;
         this.parent = parent;
         this.level = level;
         this.ownerEntry = ownerEntry;
@@ -65,15 +82,46 @@ public class Scope {
         variableSpace = 0;
     }
 
+    /**
+     * Construct a scope whose entries have already been resolved, for a
+     * program loaded from an image. The entries are kept in an array
+     * rather than added one by one to a map.
+     *
+     * @param context       compilation the scope belongs to
+     * @param parent        scope
+     * @param level         of nesting of scope
+     * @param ownerEntry    the corresponding owner's symbol table entry
+     * @param entries       the entries of the scope, sorted by name
+     * @param variableSpace space allocated to the variables of the scope
+     */
+    public Scope(CompilerContext context, Scope parent, int level,
+                 SymEntry.ProcedureEntry ownerEntry, SymEntry[] entries,
+                 int variableSpace) {
+        this.context = context;
+        this.parent = parent;
+        this.level = level;
+        this.ownerEntry = ownerEntry;
+        this.loadedEntries = Collections.unmodifiableList(Arrays.asList(entries));
+        this.variableSpace = variableSpace;
+        for (SymEntry entry : entries) {
+            entry.setScope(this);
+        }
+        ownerEntry.setLocalScope(this);
+    }
+
     /**
      * Enter a new scope with this as the parent
      */
     public Scope newScope(SymEntry.ProcedureEntry procEntry) {
-        Scope newScope = new Scope(this, level + 1, procEntry);
+        Scope newScope = new Scope(context, this, level + 1, procEntry);
         procEntry.setLocalScope(newScope);
         return newScope;
     }
 
+    public CompilerContext getContext() {
+        return context;
+    }
+
     public Scope getParent() {
         return parent;
     }
@@ -87,7 +135,7 @@ public class Scope {
      * @return the set of entries in this scope
      */
     public Collection<SymEntry> getEntries() {
-        return entries.values();
+        return loadedEntries != null ? loadedEntries : entries.values();
     }
 
     /**
@@ -99,7 +147,8 @@ public class Scope {
      */
     public SymEntry lookup(String id) {
         /* Lookup the entry in the current scope */
-        SymEntry entry = entries.get(id);
+        SymEntry entry = loadedEntries != null ? lookupLoaded(id)
+                : entries.get(id);
         if (entry == null && parent != null) {
             /* If the entry is not in the current scope
              * look it up in the parent scope, if there is one.
@@ -109,6 +158,29 @@ public class Scope {
         return entry;
     }
 
+    /**
+     * Binary search of the entries of a loaded scope
+     *
+     * @return the entry for id in this scope, or null if there is none
+     */
+    private SymEntry lookupLoaded(String id) {
+        int low = 0;
+        int high = loadedEntries.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            SymEntry entry = loadedEntries.get(middle);
+            int order = entry.getIdent().compareTo(id);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     /**
      * Add an entry to the scope unless an entry for the same name exists.
      *
@@ -116,6 +188,13 @@ public class Scope {
      * @return the entry added or null is it already exited in this scope.
      */
     public SymEntry addEntry(SymEntry entry) {
+        if (loadedEntries != null) {
+            entries = new TreeMap<>();
+            for (SymEntry loaded : loadedEntries) {
+                entries.put(loaded.getIdent(), loaded);
+            }
+            loadedEntries = null;
+        }
         if (entries.containsKey(entry.getIdent())) {
             return null;
         } else {
@@ -130,7 +209,7 @@ public class Scope {
      * for variables and check for circularly defined types and constants.
      */
     public void resolveScope() {
-        for (SymEntry entry : entries.values()) {
+        for (SymEntry entry : getEntries()) {
             //System.out.println("Symbol table resolving " + entry.ident);
             entry.resolve();
             //System.out.println("Resolved entry " + entry);
@@ -333,7 +412,7 @@ public class Scope {
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder("Level " + level + " " + ownerEntry.getIdent());
-        for (SymEntry entry : entries.values()) {
+        for (SymEntry entry : getEntries()) {
             s.append(StatementNode.newLine(level)).append(entry);
         }
         return s.toString();
@@ -1,6 +1,6 @@
 package syms;
 
-import source.ErrorHandler;
+import source.Errors;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 import syms.Type.ReferenceType;
 import tree.ConstExp;
@@ -85,7 +85,7 @@ public abstract class SymEntry {
      */
     public void resolve() {
         if (!resolved) {
-            type = type.resolveType();
+            type = type.resolveType(getErrors());
             resolved = true;
         }
     }
@@ -204,6 +204,15 @@ public abstract class SymEntry {
             super(id, loc, t, false);
         }
 
+        /**
+         * Constructor for a variable that has already been allocated space,
+         * e.g. in a program loaded from an image; t must be resolved
+         */
+        public VarEntry(String id, Location loc, ReferenceType t, int offset) {
+            super(id, loc, t, true);
+            this.offset = offset;
+        }
+
         public ReferenceType getType() {
             return (ReferenceType) super.getType();
         }
@@ -324,7 +333,14 @@ public abstract class SymEntry {
         }
     }
 
-    private static void error(String message, Location loc) {
-        ErrorHandler.getErrorHandler().error(message, loc);
+    /**
+     * @return the error handler of the compilation the entry belongs to
+     */
+    Errors getErrors() {
+        return scope.getContext().getErrors();
+    }
+
+    void error(String message, Location loc) {
+        getErrors().error(message, loc);
     }
 }
@@ -16,15 +16,18 @@ public class SymbolTable {
     /**
      * Construct a symbol table and build the predefined scope
      * as its initial scope.
+     *
+     * @param context of the compilation the symbol table is for,
+     *                which provides its predefined types
      */
-    public SymbolTable() {
+    public SymbolTable(CompilerContext context) {
         super();
         SymEntry.ProcedureEntry predefined =
                 new SymEntry.ProcedureEntry("<predefined>",
                         ErrorHandler.NO_LOCATION, null);
-        predefinedScope = new Scope(null, 0, predefined);
+        predefinedScope = new Scope(context, null, 0, predefined);
         predefined.setLocalScope(predefinedScope);
-        Predefined.addPredefinedEntries(predefinedScope);
+        context.getPredefined().addPredefinedEntries(predefinedScope);
     }
 
     /**
@@ -17,11 +17,17 @@ public class SymbolTableTest extends TestCase {
     private SymbolTable symbolTable;
     private Scope currentScope;
     private ProcedureEntry two;
+    private Type integerType;
+    private Type booleanType;
 
     @Override
     protected void setUp() throws Exception {
         super.setUp();
-        symbolTable = new SymbolTable();
+        CompilerContext context = new CompilerContext(
+                new ErrorHandler(System.out, null, false), null);
+        symbolTable = new SymbolTable(context);
+        integerType = context.getIntegerType();
+        booleanType = context.getBooleanType();
         currentScope = symbolTable.getPredefinedScope();
         ProcedureEntry test =
                 new ProcedureEntry("test", ErrorHandler.NO_LOCATION);
@@ -39,13 +45,13 @@ public class SymbolTableTest extends TestCase {
      */
     public void testSymbolTable() {
         assertEquals(1, currentScope.getLevel());
-        assertEquals(Predefined.INTEGER_TYPE,
+        assertEquals(integerType,
                 currentScope.lookupType("int").getType());
-        assertEquals(Predefined.BOOLEAN_TYPE,
+        assertEquals(booleanType,
                 currentScope.lookupType("boolean").getType());
-        assertEquals(Predefined.BOOLEAN_TYPE,
+        assertEquals(booleanType,
                 currentScope.lookupConstant("true").getType());
-        assertEquals(Predefined.BOOLEAN_TYPE,
+        assertEquals(booleanType,
                 currentScope.lookupConstant("false").getType());
         assertEquals(1, currentScope.lookupConstant("true").getValue());
         assertEquals(0, currentScope.lookupConstant("false").getValue());
@@ -96,21 +102,21 @@ public class SymbolTableTest extends TestCase {
      */
     public void testGet() {
         assertNull(currentScope.lookupConstant("e"));
-        currentScope.addConstant("e", new Location(0, 0), Predefined.INTEGER_TYPE, 42);
+        currentScope.addConstant("e", new Location(0, 0), integerType, 42);
         SymEntry.ConstantEntry e1 = currentScope.lookupConstant("e");
-        checkConstant(e1, "e", 1, Predefined.INTEGER_TYPE, 42);
+        checkConstant(e1, "e", 1, integerType, 42);
 
         ProcedureEntry one = new ProcedureEntry("one", ErrorHandler.NO_LOCATION);
         currentScope = currentScope.newScope(one);
-        currentScope.addConstant("e", new Location(0, 0), Predefined.BOOLEAN_TYPE, 0);
+        currentScope.addConstant("e", new Location(0, 0), booleanType, 0);
         SymEntry.ConstantEntry e2 = currentScope.lookupConstant("e");
-        checkConstant(e2, "e", 2, Predefined.BOOLEAN_TYPE, 0);
+        checkConstant(e2, "e", 2, booleanType, 0);
 
         two = new ProcedureEntry("two", ErrorHandler.NO_LOCATION);
         currentScope = currentScope.newScope(two);
-        currentScope.addConstant("e", new Location(0, 0), Predefined.INTEGER_TYPE, 27);
+        currentScope.addConstant("e", new Location(0, 0), integerType, 27);
         SymEntry.ConstantEntry e3 = currentScope.lookupConstant("e");
-        checkConstant(e3, "e", 3, Predefined.INTEGER_TYPE, 27);
+        checkConstant(e3, "e", 3, integerType, 27);
 
         currentScope = currentScope.getParent();
         SymEntry.ConstantEntry e4 = currentScope.lookupConstant("e");
@@ -162,9 +168,9 @@ public class SymbolTableTest extends TestCase {
      */
     public void testAddConstant() {
         assertNull(currentScope.lookupConstant("e"));
-        currentScope.addConstant("e", new Location(0, 0), Predefined.INTEGER_TYPE, 42);
+        currentScope.addConstant("e", new Location(0, 0), integerType, 42);
         SymEntry.ConstantEntry e = currentScope.lookupConstant("e");
-        checkConstant(e, "e", 1, Predefined.INTEGER_TYPE, 42);
+        checkConstant(e, "e", 1, integerType, 42);
     }
 
     /*
@@ -172,9 +178,9 @@ public class SymbolTableTest extends TestCase {
      */
     public void testAddType() {
         assertNull(currentScope.lookupType("e"));
-        currentScope.addType("e", new Location(0, 0), Predefined.INTEGER_TYPE);
+        currentScope.addType("e", new Location(0, 0), integerType);
         SymEntry.TypeEntry e = currentScope.lookupType("e");
-        checkType(e, "e", 1, Predefined.INTEGER_TYPE);
+        checkType(e, "e", 1, integerType);
     }
 
     /*
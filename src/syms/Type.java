@@ -26,11 +26,11 @@ public abstract class Type {
     /**
      * Value used for false
      */
-    public static int FALSE_VALUE = 0;
+    public static final int FALSE_VALUE = 0;
     /**
      * Value used for true
      */
-    public static int TRUE_VALUE = 1;
+    public static final int TRUE_VALUE = 1;
     /**
      * Size of an integer variable
      */
@@ -38,7 +38,7 @@ public abstract class Type {
     /**
      * Size of a boolean variable
      */
-    public static int SIZE_OF_BOOLEAN = 1;
+    public static final int SIZE_OF_BOOLEAN = 1;
     /**
      * Size of an address (reference)
      */
@@ -64,11 +64,6 @@ public abstract class Type {
      */
     final Location loc;
 
-    /**
-     * Error handler
-     */
-    private static final Errors errors = ErrorHandler.getErrorHandler();
-
     /**
      * Basic constructor for Type.
      * Only subclasses provide public constructors.
@@ -129,8 +124,10 @@ public abstract class Type {
      * Resolve identifier references anywhere within type.
      * Default just sets resolved true; it needs to be overridden
      * when appropriate within subclasses of Type.
+     *
+     * @param errors error handler to report unresolvable types to
      */
-    public Type resolveType() {
+    public Type resolveType(Errors errors) {
         resolved = true;
         return this;
     }
@@ -178,16 +175,17 @@ public abstract class Type {
     /**
      * Coerce an expression to 'this' type and report error if incompatible
      *
-     * @param exp is the expression to be coerced
+     * @param exp    is the expression to be coerced
+     * @param errors error handler to report an incompatible type to
      * @return the coerced expression or ErrorNode on failure
      */
-    public ExpNode coerceExp(ExpNode exp) {
+    public ExpNode coerceExp(ExpNode exp, Errors errors) {
         /* Try coercing the expression. */
         try {
-            return this.coerceToType(exp);
+            return this.coerceToType(exp, errors);
         } catch (IncompatibleTypes e) {
             /* At this point the coercion has failed. */
-            errors.debugMessage("******" + e.getMessage());
+            errors.debugMessage(() -> "******" + e.getMessage());
             errors.error(e.getMessage(), e.getLocation());
             return new ExpNode.ErrorNode(e.getLocation());
         }
@@ -198,20 +196,24 @@ public abstract class Type {
      * This method handles the general case and calls the method coerce on
      * 'this' type to handle each subtype's particular coercion rules.
      *
-     * @param exp expression to be coerced
+     * @param exp    expression to be coerced
+     * @param errors error handler for debugging messages
      * @return coerced expression
      * @throws IncompatibleTypes if cannot coerce to 'this' type
      */
-    public ExpNode coerceToType(ExpNode exp) throws IncompatibleTypes {
-        errors.debugMessage("Coercing " + exp + ":" + exp.getType().getName() +
-                " to " + this.getName());
+    public ExpNode coerceToType(ExpNode exp, Errors errors)
+            throws IncompatibleTypes {
+        /* The message is only constructed when debugging, as formatting
+         * the expression takes time proportional to its size */
+        errors.debugMessage(() -> "Coercing " + exp + ":" +
+                exp.getType().getName() + " to " + this.getName());
         errors.incDebug();
         ExpNode newExp = exp;
         /* Unless this type is a reference type, optionally dereference
          * the expression to get its base type.
          */
         if (!(this instanceof ReferenceType)) {
-            newExp = optDereferenceExp(newExp);
+            newExp = optDereferenceExp(newExp, errors);
         }
         Type fromType = newExp.getType();
         /* No need to coerce if already the same type or
@@ -222,10 +224,11 @@ public abstract class Type {
              * type is used to control the coercion process.
              */
             try {
-                newExp = this.coerce(newExp);
+                newExp = this.coerce(newExp, errors);
             } catch (IncompatibleTypes e) {
-                errors.debugMessage("Failed to coerce " + newExp + " to " +
-                        this.getName());
+                ExpNode failedExp = newExp;
+                errors.debugMessage(() -> "Failed to coerce " + failedExp +
+                        " to " + this.getName());
                 errors.decDebug();
                 /* Throw an error to allow the caller to decide whether an error
                  * message needs to be generated.
@@ -243,11 +246,12 @@ public abstract class Type {
      * This default version just throws an exception.
      * Subclasses of Type override this method.
      *
-     * @param exp expression to be coerced
+     * @param exp    expression to be coerced
+     * @param errors error handler for debugging messages
      * @return resulting coerced expression node.
      * @throws IncompatibleTypes exception if it can't coerce.
      */
-    ExpNode coerce(ExpNode exp) throws IncompatibleTypes {
+    ExpNode coerce(ExpNode exp, Errors errors) throws IncompatibleTypes {
         throw new IncompatibleTypes(
                 "cannot treat " + exp.getType().getName() + " as " + this.getName(),
                 exp.getLocation());
@@ -272,9 +276,14 @@ public abstract class Type {
             new Type(ErrorHandler.NO_LOCATION, 0, true, "error_type") {
 
                 @Override
-                protected ExpNode coerce(ExpNode exp) {
+                protected ExpNode coerce(ExpNode exp, Errors errors) {
                     return exp;
                 }
+
+                /* Shared by all compilations, so it is never renamed */
+                @Override
+                public void setName(String name) {
+                }
             };
 
     //********************* SCALAR TYPES
@@ -372,13 +381,15 @@ public abstract class Type {
          * handles optional dereference of a type and the simple cases when
          * the two types are equal or one is error type.
          *
-         * @param exp expression to be coerced
+         * @param exp    expression to be coerced
+         * @param errors error handler for debugging messages
          * @return the coerced expression
          * @throws IncompatibleTypes exception if it is not possible to coerce
          *                           exp to 'this' scalar type
          */
         @Override
-        protected ExpNode coerce(ExpNode exp) throws IncompatibleTypes {
+        protected ExpNode coerce(ExpNode exp, Errors errors)
+                throws IncompatibleTypes {
             Type fromType = exp.getType();
             if (fromType instanceof SubrangeType) {
                 /* This code implements Rule Widen subrange.
@@ -390,7 +401,7 @@ public abstract class Type {
                  */
                 Type baseType = ((SubrangeType) fromType).getBaseType();
                 if (this.equals(baseType)) {
-                    errors.debugMessage("Widened " + fromType.getName() +
+                    errors.debugMessage(() -> "Widened " + fromType.getName() +
                             " to " + baseType.getName());
                     return new ExpNode.WidenSubrangeNode(exp);
                 }
@@ -482,25 +493,27 @@ public abstract class Type {
          * handles optional dereference of a type and the simple cases when
          * the two types are equal or one is error type.
          *
-         * @param exp expression to be coerced
+         * @param exp    expression to be coerced
+         * @param errors error handler for debugging messages
          * @return the coerced expression
          * @throws IncompatibleTypes exception if it is not possible to coerce
          *                           exp to 'this' subrange type
          */
         @Override
-        protected ExpNode coerce(ExpNode exp) throws IncompatibleTypes {
+        protected ExpNode coerce(ExpNode exp, Errors errors)
+                throws IncompatibleTypes {
             /* This implements Rule Narrow subrange in the static semantics.
              * If the types do not match, we can try coercing the expression
              * to the base type of 'this' subrange, and then narrow that
              * to 'this' type. If the coercion to the base type fails it will
              * generate an exception, which is allowed to pass up to the caller.
              */
-            ExpNode coerceExp = baseType.coerceToType(exp);
+            ExpNode coerceExp = baseType.coerceToType(exp, errors);
             /* If we get here, coerceExp is of the same type as the base
              * type of 'this' subrange type. We just need to narrow it
              * down to 'this' subrange.
              */
-            errors.debugMessage("Narrowed " + exp.getType().getName() +
+            errors.debugMessage(() -> "Narrowed " + exp.getType().getName() +
                     " to " + this.getName());
             return new ExpNode.NarrowSubrangeNode(this, coerceExp);
         }
@@ -510,7 +523,7 @@ public abstract class Type {
          * expressions to be evaluated.
          */
         @Override
-        public Type resolveType() {
+        public Type resolveType(Errors errors) {
             if (!resolved) {
                 lower = lowerExp.getValue();
                 upper = upperExp.getValue();
@@ -609,12 +622,12 @@ public abstract class Type {
          * Resolve identifier references anywhere within type
          */
         @Override
-        public ProductType resolveType() {
+        public ProductType resolveType(Errors errors) {
             if (!resolved) {
                 /* Build a list of resolved types */
                 List<Type> resolvedTypes = new LinkedList<>();
                 for (Type t : types) {
-                    resolvedTypes.add(t.resolveType());
+                    resolvedTypes.add(t.resolveType(errors));
                 }
                 types = resolvedTypes;
                 space = calcSpace(types);
@@ -706,10 +719,10 @@ public abstract class Type {
          * Resolve identifier references anywhere within type
          */
         @Override
-        public FunctionType resolveType() {
+        public FunctionType resolveType(Errors errors) {
             if (!resolved) {
-                argType = argType.resolveType();
-                resultType = resultType.resolveType();
+                argType = argType.resolveType(errors);
+                resultType = resultType.resolveType(errors);
                 resolved = true;
             }
             return this;
@@ -787,12 +800,12 @@ public abstract class Type {
          * Resolve identifier references anywhere within type
          */
         @Override
-        public IntersectionType resolveType() {
+        public IntersectionType resolveType(Errors errors) {
             if (!resolved) {
                 /* Build a list of resolved types */
                 List<Type> resolvedTypes = new ArrayList<>();
                 for (Type t : types) {
-                    resolvedTypes.add(t.resolveType());
+                    resolvedTypes.add(t.resolveType(errors));
                 }
                 types = resolvedTypes;
                 resolved = true;
@@ -836,7 +849,8 @@ public abstract class Type {
          *                           coerce exp to any type within the intersection
          */
         @Override
-        protected ExpNode coerce(ExpNode exp) throws IncompatibleTypes {
+        protected ExpNode coerce(ExpNode exp, Errors errors)
+                throws IncompatibleTypes {
             /* We iterate through all the types in the intersection, trying
              * to coerce the exp to each, until one succeeds and we return
              * that coerced expression. If a coercion to a type in the
@@ -847,13 +861,13 @@ public abstract class Type {
             errors.incDebug();
             for (Type toType : this.getTypes()) {
                 try {
-                    ExpNode newExp = toType.coerceToType(exp);
-                    errors.debugMessage("Coerced " + exp + " to " +
+                    ExpNode newExp = toType.coerceToType(exp, errors);
+                    errors.debugMessage(() -> "Coerced " + exp + " to " +
                             toType.getName());
                     errors.decDebug();
                     return newExp;
                 } catch (IncompatibleTypes ex) {
-                    errors.debugMessage("Can't coerce " + exp + " to " +
+                    errors.debugMessage(() -> "Can't coerce " + exp + " to " +
                             toType.getName());
                     // allow "for" loop to try the next alternative
                 }
@@ -900,7 +914,7 @@ public abstract class Type {
          * @return resolved type
          */
         @Override
-        public ProcedureType resolveType() {
+        public ProcedureType resolveType(Errors errors) {
             resolved = true;
             return this;
         }
@@ -955,7 +969,7 @@ public abstract class Type {
          * Resolve the type identifier and return the real type.
          */
         @Override
-        public Type resolveType() {
+        public Type resolveType(Errors errors) {
             // System.out.println("Resolving " + id);
             switch (status) {
                 case Unresolved:
@@ -1026,9 +1040,9 @@ public abstract class Type {
         }
 
         @Override
-        public AddressType resolveType() {
+        public AddressType resolveType(Errors errors) {
             if (!resolved) {
-                baseType = baseType.resolveType();
+                baseType = baseType.resolveType(errors);
                 resolved = true;
             }
             return this;
@@ -1045,10 +1059,11 @@ public abstract class Type {
      * a new DereferenceNode of type T is created with exp as a subtree
      * and returned, otherwise exp is returned unchanged.
      */
-    public static ExpNode optDereferenceExp(ExpNode exp) {
+    public static ExpNode optDereferenceExp(ExpNode exp, Errors errors) {
         Type fromType = exp.getType();
         if (fromType instanceof ReferenceType) {
-            errors.debugMessage("Coerce dereference " + fromType.getName());
+            errors.debugMessage(() -> "Coerce dereference " +
+                    fromType.getName());
             return new ExpNode.DereferenceNode(exp);
         } else {
             return exp;
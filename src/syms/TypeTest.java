@@ -1,6 +1,7 @@
 package syms;
 
 import source.ErrorHandler;
+import source.Errors;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 import tree.ConstExp;
 import tree.ExpNode;
@@ -31,36 +32,38 @@ public class TypeTest extends TestCase {
     private ExpNode.ConstNode ix;
     private ExpNode.VariableNode ivx;
     private ExpNode.NarrowSubrangeNode isx;
+    private Errors errors;
 
     @Override
     protected void setUp() throws Exception {
         super.setUp();
         Location noLoc = ErrorHandler.NO_LOCATION;
-        ErrorHandler.getErrorHandler();
-        SymbolTable symbolTable = new SymbolTable();
+        errors = new ErrorHandler(System.out, null, false);
+        CompilerContext context = new CompilerContext(errors, null);
+        SymbolTable symbolTable = new SymbolTable(context);
         Scope currentScope = symbolTable.getPredefinedScope();
         et = Type.ERROR_TYPE;
-        it = Predefined.INTEGER_TYPE;
-        bt = Predefined.BOOLEAN_TYPE;
-        pt = new Type.ProcedureType().resolveType();
+        it = context.getIntegerType();
+        bt = context.getBooleanType();
+        pt = new Type.ProcedureType().resolveType(errors);
         ist = new Type.SubrangeType(
                 new ConstExp.NumberNode(noLoc, it, 3),
                 new ConstExp.NumberNode(noLoc, it, 7));
-        ist.resolveType();
+        ist.resolveType(errors);
         bst = new Type.SubrangeType(
                 new ConstExp.NumberNode(noLoc, bt, 0),
                 new ConstExp.NumberNode(noLoc, bt, 1));
-        bst.resolveType();
+        bst.resolveType(errors);
         Type.SubrangeType isst = new Type.SubrangeType(
                 new ConstExp.NumberNode(noLoc, ist, 5),
                 new ConstExp.NumberNode(noLoc, ist, 7));
-        isst.resolveType();
+        isst.resolveType(errors);
 
         rit = new Type.ReferenceType(it);
         iit = new Type.ProductType(it, it);
-        iit.resolveType();
+        iit.resolveType(errors);
         bbt = new Type.ProductType(bt, bt);
-        bbt.resolveType();
+        bbt.resolveType(errors);
         iiit = new Type.FunctionType(iit, it);
         iibt = new Type.FunctionType(iit, bt);
         bbbt = new Type.FunctionType(bbt, bt);
@@ -98,17 +101,17 @@ public class TypeTest extends TestCase {
      * Test method for 'pl0.symbol_table.Type.coerce()'
      */
     public void testCoerce() throws IncompatibleTypes {
-        ExpNode result = it.coerceToType(ix);
+        ExpNode result = it.coerceToType(ix, errors);
         assertSame("int compatible with int", result, ix);
-        result = it.coerceToType(ivx);
+        result = it.coerceToType(ivx, errors);
         assertTrue("int variable coerces to dereference",
                 result instanceof ExpNode.DereferenceNode &&
                         ((ExpNode.DereferenceNode) result).getLeftValue() == ivx);
-        result = ist.coerceToType(ix);
+        result = ist.coerceToType(ix, errors);
         assertTrue("int coerces to subrange of int",
                 result instanceof ExpNode.NarrowSubrangeNode &&
                         ((ExpNode.NarrowSubrangeNode) result).getExp() == ix);
-        result = it.coerceToType(isx);
+        result = it.coerceToType(isx, errors);
         assertTrue("int subrange coerces to int" + result,
                 result instanceof ExpNode.WidenSubrangeNode &&
                         ((ExpNode.WidenSubrangeNode) result).getExp() == isx);
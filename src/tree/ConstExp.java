@@ -1,9 +1,7 @@
 package tree;
 
-import source.ErrorHandler;
-import source.Errors;
 import java_cup.runtime.ComplexSymbolFactory.Location;
-import syms.Predefined;
+import syms.CompilerContext;
 import syms.SymEntry;
 import syms.Scope;
 import syms.Type;
@@ -35,10 +33,6 @@ public abstract class ConstExp {
      * Value of the expression
      */
     int value;
-    /**
-     * Error handler
-     */
-    final Errors errors = ErrorHandler.getErrorHandler();
 
     /**
      * Constructor used by subclass constructors only
@@ -105,17 +99,23 @@ public abstract class ConstExp {
      */
     public static class NegateNode extends ConstExp {
         private final ConstExp subExp;
+        /**
+         * Compilation in which expression should be evaluated
+         */
+        private final CompilerContext context;
 
-        public NegateNode(Location loc, ConstExp subExp) {
+        public NegateNode(Location loc, ConstExp subExp,
+                          CompilerContext context) {
             super(loc, Status.Unresolved);
             this.subExp = subExp;
+            this.context = context;
         }
 
         @Override
         protected void evaluate() {
             type = subExp.getType();
-            if (type != Predefined.INTEGER_TYPE) {
-                errors.error("can only negate an integer", loc);
+            if (type != context.getIntegerType()) {
+                context.getErrors().error("can only negate an integer", loc);
             } else {
                 value = -subExp.getValue();
             }
@@ -161,11 +161,13 @@ public abstract class ConstExp {
                         value = constEntry.getValue();
                         status = Status.Resolved;
                     } else {
-                        errors.error("Constant identifier expected", loc);
+                        scope.getContext().getErrors().error(
+                                "Constant identifier expected", loc);
                     }
                     break;
                 case Resolving:
-                    errors.error(id + " is circularly defined", loc);
+                    scope.getContext().getErrors().error(
+                            id + " is circularly defined", loc);
                     /* Will resolve to error type and silly value.
                      * Set to Resolved to avoid repeated attempts to
                      * resolve the unresolvable, and hence avoid
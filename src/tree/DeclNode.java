@@ -48,7 +48,7 @@ public abstract class DeclNode {
             declarations = new LinkedList<>();
         }
 
-        List<DeclNode> getDeclarations() {
+        public List<DeclNode> getDeclarations() {
             return declarations;
         }
 
@@ -0,0 +1,26 @@
+package tree;
+
+/**
+ * interface ExpEvaluator - Handles visitor pattern for evaluating expressions
+ * to primitive int values, without allocating a result object per node.
+ */
+public interface ExpEvaluator {
+    int visitErrorExpNode(ExpNode.ErrorNode node);
+
+    int visitConstNode(ExpNode.ConstNode node);
+
+    int visitIdentifierNode(ExpNode.IdentifierNode node);
+
+    int visitVariableNode(ExpNode.VariableNode node);
+
+    int visitBinaryNode(ExpNode.BinaryNode node);
+
+    int visitUnaryNode(ExpNode.UnaryNode node);
+
+    int visitDereferenceNode(ExpNode.DereferenceNode node);
+
+    int visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node);
+
+    int visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node);
+
+}
@@ -1,7 +1,6 @@
 package tree;
 
 
-import interpreter.Value;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 import syms.Predefined;
 import syms.SymEntry;
@@ -68,7 +67,17 @@ public abstract class ExpNode {
      * @param evaluator object that implements a traversal.
      * @return the value of the node
      */
-    public abstract Value evaluate(ExpTransform<Value> evaluator);
+    public abstract int evaluate(ExpEvaluator evaluator);
+
+    /**
+     * Each subclass of ExpNode must provide an accept method so that
+     * traversals with other result types (e.g. code generation)
+     * can dispatch on the kind of node.
+     *
+     * @param visitor object that implements a traversal.
+     * @return the result of the traversal for the node
+     */
+    public abstract <ResultType> ResultType accept(ExpTransform<ResultType> visitor);
 
     /**
      * Tree node representing an erroneous expression.
@@ -85,10 +94,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitErrorExpNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitErrorExpNode(this);
+        }
+
         @Override
         public String toString() {
             return "ErrorNode";
@@ -119,10 +133,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitConstNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitConstNode(this);
+        }
+
         @Override
         public String toString() {
             return Integer.toString(value);
@@ -155,10 +174,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitIdentifierNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitIdentifierNode(this);
+        }
+
         @Override
         public String toString() {
             return "IdentifierNode(" + id + ")";
@@ -189,10 +213,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitVariableNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitVariableNode(this);
+        }
+
         @Override
         public String toString() {
             return variable.getIdent();
@@ -245,10 +274,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitBinaryNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitBinaryNode(this);
+        }
+
         @Override
         public String toString() {
             return "(" + left + op + right + ")";
@@ -292,10 +326,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitUnaryNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitUnaryNode(this);
+        }
+
         @Override
         public String toString() {
             return op + "(" + arg + ")";
@@ -336,10 +375,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitDereferenceNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitDereferenceNode(this);
+        }
+
         @Override
         public String toString() {
             return "Dereference(" + leftValue + ")";
@@ -377,10 +421,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitNarrowSubrangeNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitNarrowSubrangeNode(this);
+        }
+
         @Override
         public String toString() {
             return "NarrowSubrange(" + exp + ":" + type + ")";
@@ -412,10 +461,15 @@ public abstract class ExpNode {
         }
 
         @Override
-        public Value evaluate(ExpTransform<Value> evaluator) {
+        public int evaluate(ExpEvaluator evaluator) {
             return evaluator.visitWidenSubrangeNode(this);
         }
 
+        @Override
+        public <ResultType> ResultType accept(ExpTransform<ResultType> visitor) {
+            return visitor.visitWidenSubrangeNode(this);
+        }
+
         @Override
         public String toString() {
             return "WidenSubrange(" + exp + ":" + getType() + ")";
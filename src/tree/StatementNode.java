@@ -475,6 +475,10 @@ public abstract class StatementNode {
             return this.condition;
         }
 
+        public void setCondition(ExpNode condition) {
+            this.condition = condition;
+        }
+
         public StatementNode statements() {
             return this.statements;
         }
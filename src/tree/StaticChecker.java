@@ -1,11 +1,12 @@
 package tree;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 import source.VisitorDebugger;
 import source.Errors;
 import java_cup.runtime.ComplexSymbolFactory.Location;
-import syms.Predefined;
+import syms.CompilerContext;
 import syms.SymEntry;
 import syms.Scope;
 import syms.Type;
@@ -31,6 +32,10 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
      * Errors are reported through the error handler.
      */
     private final Errors errors;
+    /**
+     * The compilation being checked, which provides the predefined types.
+     */
+    private final CompilerContext context;
     /**
      * Debug messages are reported through the visitor debugger.
      */
@@ -39,11 +44,13 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
     /**
      * Construct a static checker for PL0.
      *
-     * @param errors is the error message handler.
+     * @param context is the compilation being checked, including its
+     *                error message handler.
      */
-    public StaticChecker(Errors errors) {
+    public StaticChecker(CompilerContext context) {
         super();
-        this.errors = errors;
+        this.context = context;
+        this.errors = context.getErrors();
         debug = new VisitorDebugger("checking", errors);
     }
 
@@ -143,7 +150,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
                  * right side expression is coerced to the base type of
                  * type of the left side LValue. */
                 Type baseType = ((Type.ReferenceType) left.getType()).getBaseType();
-                node.setRight(i, baseType.coerceExp(right));
+                node.setRight(i, baseType.coerceExp(right, errors));
             } else if (left.getType() != Type.ERROR_TYPE) {
                 staticError("variable expected", left.getLocation());
             }
@@ -162,7 +169,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
         // Validate that it is a true left value of type ref(int)
         if (lValue.getType() instanceof Type.ReferenceType) {
             Type.ReferenceType refType = (Type.ReferenceType)lValue.getType();
-            if (!Predefined.INTEGER_TYPE.equals(refType.getBaseType())) {
+            if (!context.getIntegerType().equals(refType.getBaseType())) {
                 staticError("integer variable expected", lValue.getLocation());
             }
         } else {
@@ -180,7 +187,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
         ExpNode exp = node.getExp().transform(this);
         // coerce expression to be of type integer,
         // or complain if not possible.
-        node.setExp(Predefined.INTEGER_TYPE.coerceExp(exp));
+        node.setExp(context.getIntegerType().coerceExp(exp, errors));
         endCheck("Write");
     }
 
@@ -220,7 +227,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
         cond = cond.transform(this);
         /* Validate that the condition is boolean, which may require
          * coercing the condition to be of type boolean. */
-        return Predefined.BOOLEAN_TYPE.coerceExp(cond);
+        return context.getBooleanType().coerceExp(cond, errors);
     }
 
     /**
@@ -253,22 +260,27 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
         endCheck("Skip");
     }
 
+    /**
+     * Do statement node
+     */
     @Override
     public void visitDoNode(StatementNode.DoNode doNode) {
         beginCheck("Do");
-        List<StatementNode.DoBranchNode> branches = doNode.branches();
-        for (int i = 0; i < branches.size(); i++) {
-            // check if condition is boolean or variable ref(boolean) or ...
-            // branches.get(i).condition();
+        for (StatementNode.DoBranchNode branch : doNode.branches()) {
+            branch.accept(this);
         }
-        System.out.println("CHECKING doNode");
         endCheck("Do");
     }
 
+    /**
+     * Do branch node
+     */
     @Override
     public void visitDoBranchNode(StatementNode.DoBranchNode doBranchNode) {
         beginCheck("Do Node");
-        System.out.println("CHECKING doBranchNode");
+        // Check the guard and replace with (possibly) transformed node
+        doBranchNode.setCondition(checkCondition(doBranchNode.condition()));
+        doBranchNode.statements().accept(this);  // Check the branch body
         endCheck("Do Node");
     }
 
@@ -316,8 +328,8 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
              */
             Type.FunctionType fType = (Type.FunctionType) opType;
             List<Type> argTypes = ((Type.ProductType)fType.getArgType()).getTypes();
-            node.setLeft(argTypes.get(0).coerceExp(left));
-            node.setRight(argTypes.get(1).coerceExp(right));
+            node.setLeft(argTypes.get(0).coerceExp(left, errors));
+            node.setRight(argTypes.get(1).coerceExp(right, errors));
             node.setType(fType.getResultType());
         } else if (opType instanceof Type.IntersectionType) {
             /* The operator is overloaded. Its type is represented
@@ -325,7 +337,8 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
              * types for the operator, each of which is a FunctionType.
              * Each possible type is tried until one succeeds.
              */
-            errors.debugMessage("Coercing " + left + " and " + right + " to " + opType);
+            errors.debugMessage(() -> "Coercing " + left + " and " + right +
+                    " to " + opType);
             errors.incDebug();
             for (Type t : ((Type.IntersectionType) opType).getTypes()) {
                 Type.FunctionType fType = (Type.FunctionType) t;
@@ -336,8 +349,8 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
                      * exception will be trapped and an alternative
                      * function type within the intersection tried.
                      */
-                    ExpNode newLeft = argTypes.get(0).coerceToType(left);
-                    ExpNode newRight = argTypes.get(1).coerceToType(right);
+                    ExpNode newLeft = argTypes.get(0).coerceToType(left, errors);
+                    ExpNode newRight = argTypes.get(1).coerceToType(right, errors);
                     /* Both coercions succeeded if we get here */
                     node.setLeft(newLeft);
                     node.setRight(newRight);
@@ -350,8 +363,8 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
                 }
             }
             errors.decDebug();
-            errors.debugMessage("Failed to coerce " + left + " and " + right +
-                    " to " + opType);
+            errors.debugMessage(() -> "Failed to coerce " + left + " and " +
+                    right + " to " + opType);
             // no match in intersection type
             staticError("Type of argument (" + left.getType().getName() + "*" +
                     right.getType().getName() +
@@ -381,7 +394,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
              */
             Type.FunctionType fType = (Type.FunctionType) opType;
             Type argType = fType.getArgType();
-            node.setArg(argType.coerceExp(arg));
+            node.setArg(argType.coerceExp(arg, errors));
             node.setType(fType.getResultType());
         } else if (opType instanceof Type.IntersectionType) {
             /* The operator is overloaded. Its type is represented
@@ -389,7 +402,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
              * types for the operator, each of which is a FunctionType.
              * Each possible type is tried until one succeeds.
              */
-            errors.debugMessage("Coercing " + arg + " to " + opType);
+            errors.debugMessage(() -> "Coercing " + arg + " to " + opType);
             errors.incDebug();
             for (Type t : ((Type.IntersectionType) opType).getTypes()) {
                 Type.FunctionType fType = (Type.FunctionType) t;
@@ -400,7 +413,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
                      * exception will be trapped and an alternative
                      * function type within the intersection tried.
                      */
-                    ExpNode newArg = argType.coerceToType(arg);
+                    ExpNode newArg = argType.coerceToType(arg, errors);
                     /* The coercion succeeded if we get here */
                     node.setArg(newArg);
                     node.setType(fType.getResultType());
@@ -412,7 +425,8 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
                 }
             }
             errors.decDebug();
-            errors.debugMessage("Failed to coerce " + arg + " to " + opType);
+            errors.debugMessage(() -> "Failed to coerce " + arg + " to " +
+                    opType);
             // no match in intersection type
             staticError("Type of argument " + arg.getType().getName() +
                     " does not match " + opType.getName(), node.getLocation());
@@ -460,13 +474,15 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
         SymEntry entry = currentScope.lookup(node.getId());
         if (entry instanceof SymEntry.ConstantEntry) {
             // Set up a new node which is a constant.
-            debugMessage("Transformed " + node.getId() + " to Constant");
+            debugMessage(() -> "Transformed " + node.getId() +
+                    " to Constant");
             SymEntry.ConstantEntry constEntry =
                     (SymEntry.ConstantEntry) entry;
             newNode = new ExpNode.ConstNode(node.getLocation(),
                     constEntry.getType(), constEntry.getValue());
         } else if (entry instanceof SymEntry.VarEntry) {
-            debugMessage("Transformed " + node.getId() + " to Variable");
+            debugMessage(() -> "Transformed " + node.getId() +
+                    " to Variable");
             // Set up a new node which is a variable.
             SymEntry.VarEntry varEntry = (SymEntry.VarEntry) entry;
             newNode = new ExpNode.VariableNode(node.getLocation(), varEntry);
@@ -530,7 +546,7 @@ public class StaticChecker implements DeclVisitor, StatementVisitor,
     /**
      * Debugging message output
      */
-    private void debugMessage(String msg) {
+    private void debugMessage(Supplier<String> msg) {
         errors.debugMessage(msg);
     }
 
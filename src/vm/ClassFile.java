@@ -0,0 +1,390 @@
+package vm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * class ClassFile - writes a JVM class file containing static methods.
+ * Only the parts of the class file format needed by JvmCompiler are
+ * supported. Class files are written as version 49 (Java 5), which is
+ * verified by type inference and so does not need stack map frames.
+ */
+final class ClassFile {
+    /* Operation codes of the JVM instructions used */
+    static final int ICONST_0 = 3;
+    static final int BIPUSH = 16;
+    static final int SIPUSH = 17;
+    static final int LDC = 18;
+    static final int LDC_W = 19;
+    static final int ILOAD = 21;
+    static final int ALOAD = 25;
+    static final int ISTORE = 54;
+    static final int ASTORE = 58;
+    static final int IASTORE = 79;
+    static final int BASTORE = 84;
+    static final int DUP = 89;
+    static final int SWAP = 95;
+    static final int IADD = 96;
+    static final int ISUB = 100;
+    static final int IMUL = 104;
+    static final int IDIV = 108;
+    static final int INEG = 116;
+    static final int IFEQ = 153;
+    static final int IFNE = 154;
+    static final int IF_ICMPEQ = 159;
+    static final int IF_ICMPNE = 160;
+    static final int IF_ICMPLT = 161;
+    static final int IF_ICMPGE = 162;
+    static final int IF_ICMPGT = 163;
+    static final int IF_ICMPLE = 164;
+    static final int GOTO = 167;
+    static final int RETURN = 177;
+    static final int GETFIELD = 180;
+    static final int INVOKEVIRTUAL = 182;
+    static final int INVOKESPECIAL = 183;
+    static final int INVOKESTATIC = 184;
+    static final int NEW = 187;
+    static final int NEWARRAY = 188;
+    static final int ATHROW = 191;
+    static final int WIDE = 196;
+
+    /* Array types for NEWARRAY */
+    static final int T_BOOLEAN = 4;
+    static final int T_INT = 10;
+
+    /* Access flags */
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    /* Constant pool tags */
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * Internal name of the class being written
+     */
+    final String className;
+
+    /**
+     * Encoded constant pool entries
+     */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolData = new DataOutputStream(pool);
+
+    /**
+     * Index of each constant already in the pool, keyed by its encoding
+     */
+    private final Map<String, Integer> constants = new HashMap<>();
+
+    /**
+     * Number of constant pool entries plus one
+     */
+    private int poolCount = 1;
+
+    /**
+     * Encoded methods
+     */
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFile(String className) {
+        this.className = className;
+    }
+
+    /**
+     * Encoded class file
+     */
+    byte[] toByteArray() {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Add a public static method
+     *
+     * @param name       of the method
+     * @param descriptor of the method's type
+     * @param code       body of the method
+     */
+    void addMethod(String name, String descriptor, Code code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1); // attributes
+            out.writeShort(codeIndex);
+            out.writeInt(2 + 2 + 4 + code.length + 2
+                    + 8 * code.handlers.size() + 2);
+            out.writeShort(code.maxStack);
+            out.writeShort(code.maxLocals);
+            out.writeInt(code.length);
+            out.write(code.bytes, 0, code.length);
+            out.writeShort(code.handlers.size());
+            for (int[] handler : code.handlers) {
+                for (int field : handler) {
+                    out.writeShort(field);
+                }
+            }
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /* Constant pool */
+
+    int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index == null) {
+            try {
+                poolData.writeByte(CONSTANT_UTF8);
+                poolData.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = poolCount++;
+            constants.put("U" + value, index);
+        }
+        return index;
+    }
+
+    int integer(int value) {
+        return constant("I" + value, CONSTANT_INTEGER, value >>> 16,
+                value & 0xFFFF);
+    }
+
+    int classRef(String internalName) {
+        return constant("C" + internalName, CONSTANT_CLASS,
+                utf8(internalName));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return constant("F" + owner + "." + name + ":" + descriptor,
+                CONSTANT_FIELDREF, classRef(owner),
+                nameAndType(name, descriptor));
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return constant("M" + owner + "." + name + descriptor,
+                CONSTANT_METHODREF, classRef(owner),
+                nameAndType(name, descriptor));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return constant("N" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE,
+                utf8(name), utf8(descriptor));
+    }
+
+    /**
+     * Add a constant consisting of a tag followed by 16 bit fields
+     */
+    private int constant(String key, int tag, int... fields) {
+        Integer index = constants.get(key);
+        if (index == null) {
+            try {
+                poolData.writeByte(tag);
+                for (int field : fields) {
+                    poolData.writeShort(field);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = poolCount++;
+            constants.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * A position within the code of a method that may be jumped to
+     */
+    static class Label {
+        private int address = -1;
+        /** Addresses of the jump instructions referring to the label */
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    /**
+     * The code of a method under construction
+     */
+    static class Code {
+        private final ClassFile classFile;
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+        /** Exception handlers: start, end, handler and catch type */
+        private final List<int[]> handlers = new ArrayList<>();
+        int maxStack;
+        int maxLocals;
+
+        Code(ClassFile classFile) {
+            this.classFile = classFile;
+        }
+
+        /**
+         * Address of the next instruction
+         */
+        int address() {
+            return length;
+        }
+
+        void op(int opcode) {
+            u1(opcode);
+        }
+
+        /**
+         * Generate an instruction with a local variable index operand
+         */
+        void local(int opcode, int index) {
+            if (index > 0xFF) {
+                u1(WIDE);
+                u1(opcode);
+                u2(index);
+            } else {
+                u1(opcode);
+                u1(index);
+            }
+        }
+
+        /**
+         * Generate the shortest instruction pushing an int constant
+         */
+        void pushInt(int value) {
+            if (-1 <= value && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (Byte.MIN_VALUE <= value && value <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (Short.MIN_VALUE <= value && value <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                int index = classFile.integer(value);
+                if (index <= 0xFF) {
+                    u1(LDC);
+                    u1(index);
+                } else {
+                    u1(LDC_W);
+                    u2(index);
+                }
+            }
+        }
+
+        void newArray(int type) {
+            u1(NEWARRAY);
+            u1(type);
+        }
+
+        void newObject(String className) {
+            u1(NEW);
+            u2(classFile.classRef(className));
+        }
+
+        void getField(String owner, String name, String descriptor) {
+            u1(GETFIELD);
+            u2(classFile.fieldRef(owner, name, descriptor));
+        }
+
+        void invoke(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(classFile.methodRef(owner, name, descriptor));
+        }
+
+        /**
+         * Generate a jump to a label, which may not yet be placed
+         */
+        void jump(int opcode, Label label) {
+            label.jumps.add(length);
+            u1(opcode);
+            u2(0);
+            if (label.address >= 0) {
+                patch(label.jumps.size() - 1, label);
+            }
+        }
+
+        /**
+         * Place a label at the next instruction
+         */
+        void place(Label label) {
+            label.address = length;
+            for (int i = 0; i < label.jumps.size(); i++) {
+                patch(i, label);
+            }
+        }
+
+        private void patch(int jump, Label label) {
+            int from = label.jumps.get(jump);
+            int offset = label.address - from;
+            if (offset != (short) offset) {
+                throw new IllegalStateException("jump out of range");
+            }
+            bytes[from + 1] = (byte) (offset >> 8);
+            bytes[from + 2] = (byte) offset;
+        }
+
+        /**
+         * Add an exception handler
+         */
+        void handler(int start, int end, int handler, String catchType) {
+            handlers.add(new int[]{start, end, handler,
+                    classFile.classRef(catchType)});
+        }
+
+        /**
+         * Size of the code in bytes
+         */
+        int length() {
+            return length;
+        }
+
+        private void u1(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+    }
+}
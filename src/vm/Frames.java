@@ -0,0 +1,80 @@
+package vm;
+
+import syms.SymEntry;
+
+/**
+ * class Frames - layout of the procedure activation frames of the virtual
+ * machines. Frames are allocated contiguously within an int array of memory.
+ * Each frame consists of a header of links followed by the procedure's
+ * variables, indexed by their offsets. Whether a variable has been assigned
+ * is tracked in a parallel boolean array.
+ */
+final class Frames {
+    /** Offset of the static link (frame pointer of the enclosing procedure) */
+    static final int STATIC_LINK = 0;
+    /** Offset of the dynamic link (frame pointer of the caller) */
+    static final int DYNAMIC_LINK = 1;
+    /** Offset of the address to continue at on return */
+    static final int RETURN_ADDRESS = 2;
+    /** Offset of the index of the frame's procedure */
+    static final int PROCEDURE = 3;
+    /** Size of the frame header, the offset of the first variable */
+    static final int HEADER = 4;
+    /** Link value used for the frame of the main program */
+    static final int NO_FRAME = -1;
+
+    private Frames() {
+    }
+
+    /**
+     * Dump the contents of a frame and its callers' frames in the same
+     * format as interpreter.RuntimeStack.
+     *
+     * @param memory     containing the frames
+     * @param assigned   whether each memory location has been assigned
+     * @param fp         frame pointer of the frame to dump
+     * @param procedures table of procedures indexed by frames
+     */
+    static String dump(int[] memory, boolean[] assigned, int fp,
+                       SymEntry.ProcedureEntry[] procedures) {
+        StringBuilder result = new StringBuilder();
+        for (; fp != NO_FRAME; fp = memory[fp + DYNAMIC_LINK]) {
+            appendFrame(result, procedures[memory[fp + PROCEDURE]],
+                    memory, assigned, fp + HEADER);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Append the dump of a single frame in the same format as
+     * interpreter.RuntimeStack.
+     *
+     * @param result    to append the dump to
+     * @param procedure of the frame
+     * @param values    containing the frame's variables
+     * @param assigned  whether each value has been assigned
+     * @param base      index of the variable at offset 0 within values
+     */
+    static void appendFrame(StringBuilder result,
+                            SymEntry.ProcedureEntry procedure,
+                            int[] values, boolean[] assigned, int base) {
+        result.append("PROC ").append(procedure.getIdent())
+                .append(" : level ")
+                .append(procedure.getLocalScope().getLevel())
+                .append(System.lineSeparator());
+        for (SymEntry entry : procedure.getLocalScope().getEntries()) {
+            if (!(entry instanceof SymEntry.VarEntry)) {
+                continue;
+            }
+            SymEntry.VarEntry variable = (SymEntry.VarEntry) entry;
+            int index = base + variable.getOffset();
+            result.append("\t").append(variable.getIdent());
+            if (!assigned[index]) {
+                result.append(" = unassigned").append(System.lineSeparator());
+                continue;
+            }
+            result.append(" = ").append(values[index]);
+            result.append(System.lineSeparator());
+        }
+    }
+}
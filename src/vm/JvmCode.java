@@ -0,0 +1,68 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import syms.SymEntry;
+import syms.Type;
+
+/**
+ * class JvmCode - a program compiled to a JVM class by JvmCompiler.
+ * Procedure number n is compiled to the static method "p" + n; the main
+ * program is procedure 0. Each point in the code that may report a runtime
+ * error is numbered as a site, which identifies the error message and
+ * source location.
+ */
+public class JvmCode {
+    /**
+     * Internal name of the generated class
+     */
+    static final String CLASS_NAME = "vm/PL0Program";
+
+    /**
+     * Descriptor of the method of each procedure
+     */
+    static final String PROCEDURE_DESCRIPTOR = "(Lvm/JvmMachine;Lvm/JvmFrame;)V";
+
+    /**
+     * Encoded class file
+     */
+    final byte[] classBytes;
+    /**
+     * Procedures indexed by procedure number
+     */
+    final SymEntry.ProcedureEntry[] procedures;
+    /**
+     * Error message of each site
+     */
+    final String[] siteMessages;
+    /**
+     * Source location of each site
+     */
+    final Location[] siteLocations;
+    /**
+     * Subrange type of each site that is a bounds check, otherwise null
+     */
+    final Type.SubrangeType[] siteSubranges;
+
+    JvmCode(byte[] classBytes, SymEntry.ProcedureEntry[] procedures,
+            String[] siteMessages, Location[] siteLocations,
+            Type.SubrangeType[] siteSubranges) {
+        this.classBytes = classBytes;
+        this.procedures = procedures;
+        this.siteMessages = siteMessages;
+        this.siteLocations = siteLocations;
+        this.siteSubranges = siteSubranges;
+    }
+
+    /**
+     * The message of a runtime error
+     */
+    String message(JvmRuntimeError error) {
+        Type.SubrangeType subrange = siteSubranges[error.site];
+        if (subrange == null) {
+            return siteMessages[error.site];
+        }
+        return "bounds check failed at line "
+                + siteLocations[error.site].getLine() + ": " + error.value
+                + " not in " + subrange;
+    }
+}
@@ -0,0 +1,652 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.Errors;
+import syms.SymEntry;
+import syms.Type;
+import tree.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static vm.ClassFile.*;
+
+/**
+ * class JvmCompiler - generates a JVM class from the statically checked
+ * abstract syntax tree, with a static method for each procedure.
+ * Each method takes the machine, used for input and output, and the frame
+ * of the enclosing procedure as its static link. The variables of a
+ * procedure that declares no nested procedures cannot be accessed by any
+ * other procedure, so they are held in JVM local variables, each with a
+ * second local recording whether it has been assigned. The variables of
+ * other procedures are held in a JvmFrame allocated on entry.
+ * Runtime errors are thrown as a JvmRuntimeError, and an exception handler
+ * in each method adds the activation's variables as the error propagates.
+ */
+public class JvmCompiler implements StatementVisitor, ExpTransform<Void> {
+
+    /* Local variables of every method */
+    private static final int MACHINE_SLOT = 0;
+    private static final int LINK_SLOT = 1;
+    private static final int FRAME_SLOT = 2;
+    private static final int FIRST_VARIABLE_SLOT = 3;
+
+    /* Internal names of the runtime support classes */
+    private static final String MACHINE = "vm/JvmMachine";
+    private static final String FRAME = "vm/JvmFrame";
+    private static final String ERROR = "vm/JvmRuntimeError";
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Class being generated
+     */
+    private final ClassFile classFile =
+            new ClassFile(JvmCode.CLASS_NAME);
+
+    /**
+     * Procedures in order of their procedure number
+     */
+    private final List<SymEntry.ProcedureEntry> procedures = new ArrayList<>();
+
+    /**
+     * Procedure numbers of the procedures encountered so far
+     */
+    private final Map<SymEntry.ProcedureEntry, Integer> procedureNumbers =
+            new HashMap<>();
+
+    /* Runtime error sites */
+    private final List<String> siteMessages = new ArrayList<>();
+    private final List<Location> siteLocations = new ArrayList<>();
+    private final List<Type.SubrangeType> siteSubranges = new ArrayList<>();
+
+    /**
+     * Code of the method being generated
+     */
+    private Code code;
+
+    /**
+     * Static level of the procedure being compiled
+     */
+    private int level;
+
+    /**
+     * Whether the variables of the procedure being compiled are held in
+     * a JvmFrame rather than in local variables
+     */
+    private boolean hasFrame;
+
+    /**
+     * Next free local variable slot, and the maximum used
+     */
+    private int nextSlot;
+    private int maxSlot;
+
+    /**
+     * Depth of expression nesting, and the maximum reached
+     */
+    private int depth;
+    private int maxDepth;
+
+    public JvmCompiler(Errors errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Compile a main program and all the procedures it may call
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public JvmCode compile(DeclNode.ProcedureNode node) {
+        procedureNumber(node.getProcEntry());
+        /* Calls add further procedures as they are compiled */
+        for (int i = 0; i < procedures.size(); i++) {
+            compileProcedure(i, procedures.get(i));
+        }
+        return new JvmCode(classFile.toByteArray(),
+                procedures.toArray(new SymEntry.ProcedureEntry[0]),
+                siteMessages.toArray(new String[0]),
+                siteLocations.toArray(new Location[0]),
+                siteSubranges.toArray(new Type.SubrangeType[0]));
+    }
+
+    /**
+     * Generate the method of a procedure
+     */
+    private void compileProcedure(int number, SymEntry.ProcedureEntry entry) {
+        code = new Code(classFile);
+        level = entry.getLocalScope().getLevel();
+        int variables = entry.getLocalScope().getVariableSpace();
+        hasFrame = declaresProcedures(entry);
+        nextSlot = hasFrame ? FIRST_VARIABLE_SLOT
+                : FIRST_VARIABLE_SLOT + 2 * variables;
+        maxSlot = nextSlot;
+        depth = maxDepth = 0;
+        /* Allocate the frame or initialise the local variables */
+        if (hasFrame) {
+            code.newObject(FRAME);
+            code.op(DUP);
+            code.local(ALOAD, LINK_SLOT);
+            code.pushInt(variables);
+            code.invoke(INVOKESPECIAL, FRAME, "<init>", "(Lvm/JvmFrame;I)V");
+            code.local(ASTORE, FRAME_SLOT);
+        } else {
+            for (int offset = 0; offset < variables; offset++) {
+                code.op(ICONST_0);
+                code.local(ISTORE, valueSlot(offset));
+                code.op(ICONST_0);
+                code.local(ISTORE, assignedSlot(offset));
+            }
+        }
+        int start = code.address();
+        compile(entry.getBlock());
+        int end = code.address();
+        code.op(RETURN);
+        if (start < end) {
+            /* Add this activation's variables to a runtime error */
+            int errorSlot = maxSlot;
+            code.handler(start, end, code.address(), ERROR);
+            code.local(ASTORE, errorSlot);
+            code.local(ALOAD, errorSlot);
+            code.pushInt(number);
+            if (hasFrame) {
+                code.local(ALOAD, FRAME_SLOT);
+                code.getField(FRAME, "values", "[I");
+                code.local(ALOAD, FRAME_SLOT);
+                code.getField(FRAME, "assigned", "[Z");
+            } else {
+                code.pushInt(variables);
+                code.newArray(T_INT);
+                for (int offset = 0; offset < variables; offset++) {
+                    code.op(DUP);
+                    code.pushInt(offset);
+                    code.local(ILOAD, valueSlot(offset));
+                    code.op(IASTORE);
+                }
+                code.pushInt(variables);
+                code.newArray(T_BOOLEAN);
+                for (int offset = 0; offset < variables; offset++) {
+                    code.op(DUP);
+                    code.pushInt(offset);
+                    code.local(ILOAD, assignedSlot(offset));
+                    code.op(BASTORE);
+                }
+            }
+            code.invoke(INVOKEVIRTUAL, ERROR, "addFrame", "(I[I[Z)V");
+            code.local(ALOAD, errorSlot);
+            code.op(ATHROW);
+            maxSlot++;
+        }
+        if (code.length() > 0xFFFF) {
+            errors.fatal("PL0 Internal error: procedure " + entry.getIdent()
+                    + " is too large for a JVM method", entry.getLocation());
+        }
+        /* Each nesting level holds at most one pending operand, plus those
+         * of the deepest instruction sequence generated */
+        code.maxStack = maxDepth + 8;
+        code.maxLocals = maxSlot;
+        classFile.addMethod("p" + number, JvmCode.PROCEDURE_DESCRIPTOR, code);
+    }
+
+    /**
+     * Compile a statement
+     */
+    private void compile(StatementNode node) {
+        node.accept(this);
+    }
+
+    /**
+     * Compile an expression leaving its value on the top of the stack
+     */
+    private void compile(ExpNode node) {
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+        node.accept(this);
+        depth--;
+    }
+
+    /* Statement Compilation */
+
+    /**
+     * Generate code for a block statement
+     */
+    public void visitBlockNode(StatementNode.BlockNode node) {
+        compile(node.getBody());
+    }
+
+    /**
+     * An error statement cannot be compiled
+     */
+    public void visitStatementErrorNode(StatementNode.ErrorNode node) {
+        errors.fatal("PL0 Internal error: compiling Statement Error Node",
+                node.getLocation());
+    }
+
+    /**
+     * Generate code for each statement in the list sequentially
+     */
+    public void visitStatementListNode(StatementNode.ListNode node) {
+        for (StatementNode statement : node.getStatements()) {
+            compile(statement);
+        }
+    }
+
+    /**
+     * Generate code for an assignment statement. For a multiple assignment
+     * all the expressions are evaluated into temporary local variables
+     * before any of the variables are assigned.
+     */
+    public void visitAssignmentNode(StatementNode.AssignmentNode node) {
+        if (node.size() == 1) {
+            compile(node.right(0));
+            store(lValue(node.left(0)));
+            return;
+        }
+        int temps = nextSlot;
+        for (int i = 0; i < node.size(); i++) {
+            compile(node.right(i));
+            code.local(ISTORE, temps + i);
+        }
+        maxSlot = Math.max(maxSlot, temps + node.size());
+        for (int i = 0; i < node.size(); i++) {
+            code.local(ILOAD, temps + i);
+            store(lValue(node.left(i)));
+        }
+    }
+
+    /**
+     * Generate code for a read statement - read an int from stdin
+     */
+    public void visitReadNode(StatementNode.ReadNode node) {
+        code.local(ALOAD, MACHINE_SLOT);
+        code.pushInt(site("invalid value read - must be an integer",
+                node.getLocation()));
+        code.invoke(INVOKEVIRTUAL, MACHINE, "read", "(I)I");
+        store(lValue(node.getLValue()));
+    }
+
+    /**
+     * Generate code for a write statement
+     */
+    public void visitWriteNode(StatementNode.WriteNode node) {
+        code.local(ALOAD, MACHINE_SLOT);
+        compile(node.getExp());
+        code.invoke(INVOKEVIRTUAL, MACHINE, "write", "(I)V");
+    }
+
+    /**
+     * Generate code for a call statement
+     */
+    public void visitCallNode(StatementNode.CallNode node) {
+        SymEntry.ProcedureEntry entry = node.getEntry();
+        code.local(ALOAD, MACHINE_SLOT);
+        frame(entry.getLevel());
+        code.invoke(INVOKESTATIC, JvmCode.CLASS_NAME,
+                "p" + procedureNumber(entry), JvmCode.PROCEDURE_DESCRIPTOR);
+    }
+
+    /**
+     * Generate code for an if statement
+     */
+    public void visitIfNode(StatementNode.IfNode node) {
+        Label elseLabel = new Label();
+        Label endLabel = new Label();
+        compile(node.getCondition());
+        code.pushInt(Type.TRUE_VALUE);
+        code.jump(IF_ICMPNE, elseLabel);
+        compile(node.getThenStmt());
+        code.jump(GOTO, endLabel);
+        code.place(elseLabel);
+        compile(node.getElseStmt());
+        code.place(endLabel);
+    }
+
+    /**
+     * Generate code for a while statement. The condition is tested at the
+     * end of the loop so that each iteration executes a single jump.
+     */
+    public void visitWhileNode(StatementNode.WhileNode node) {
+        Label startLabel = new Label();
+        Label conditionLabel = new Label();
+        code.jump(GOTO, conditionLabel);
+        code.place(startLabel);
+        compile(node.getLoopStmt());
+        code.place(conditionLabel);
+        compile(node.getCondition());
+        code.pushInt(Type.TRUE_VALUE);
+        code.jump(IF_ICMPEQ, startLabel);
+    }
+
+    @Override
+    public void visitSkipNode(StatementNode.SkipNode skipNode) {
+        // Nothing to generate...
+    }
+
+    /**
+     * Generate code for a do statement. The guards are tested in order,
+     * each jumping to the next guard if false. Each branch ends with a
+     * jump back to the first guard, or out of the loop if it exits.
+     * Falling through all of the guards is a runtime error.
+     */
+    @Override
+    public void visitDoNode(StatementNode.DoNode doNode) {
+        Label startLabel = new Label();
+        Label endLabel = new Label();
+        code.place(startLabel);
+        for (StatementNode.DoBranchNode branch : doNode.branches()) {
+            Label nextLabel = new Label();
+            compile(branch.condition());
+            code.pushInt(Type.TRUE_VALUE);
+            code.jump(IF_ICMPNE, nextLabel);
+            compile(branch.statements());
+            code.jump(GOTO, branch.exit() ? endLabel : startLabel);
+            code.place(nextLabel);
+        }
+        throwError(site("No branch of do loop has a true guard",
+                doNode.getLocation()));
+        code.place(endLabel);
+    }
+
+    @Override
+    public void visitDoBranchNode(StatementNode.DoBranchNode doBranchNode) {
+        /* Do branches are only generated as part of their do loop */
+    }
+
+    /* Expression Compilation */
+
+    /**
+     * An error expression cannot be compiled
+     */
+    public Void visitErrorExpNode(ExpNode.ErrorNode node) {
+        errors.fatal("PL0 Internal error: compiling ErrorExpNode",
+                node.getLocation());
+        return null;
+    }
+
+    /**
+     * Generate code to push a constant
+     */
+    public Void visitConstNode(ExpNode.ConstNode node) {
+        code.pushInt(node.getValue());
+        return null;
+    }
+
+    /**
+     * An identifier should have been resolved by the static checker
+     */
+    public Void visitIdentifierNode(ExpNode.IdentifierNode node) {
+        errors.fatal("PL0 Internal error: compiling IdentifierNode",
+                node.getLocation());
+        return null;
+    }
+
+    /**
+     * The address of a variable is only used by loads and stores
+     */
+    public Void visitVariableNode(ExpNode.VariableNode node) {
+        errors.fatal("PL0 Internal error: compiling address of "
+                + node.getVariable().getIdent(), node.getLocation());
+        return null;
+    }
+
+    /**
+     * Generate code for a binary operator expression
+     **/
+    public Void visitBinaryNode(ExpNode.BinaryNode node) {
+        compile(node.getLeft());
+        compile(node.getRight());
+        switch (node.getOp()) {
+            case ADD_OP:
+                code.op(IADD);
+                break;
+            case SUB_OP:
+                code.op(ISUB);
+                break;
+            case MUL_OP:
+                code.op(IMUL);
+                break;
+            case DIV_OP:
+                Label nonZero = new Label();
+                code.op(DUP);
+                code.jump(IFNE, nonZero);
+                /* Division by zero is reported at the divisor */
+                throwError(site("Division by zero",
+                        node.getRight().getLocation()));
+                code.place(nonZero);
+                code.op(IDIV);
+                break;
+            case EQUALS_OP:
+                compare(IF_ICMPEQ);
+                break;
+            case NEQUALS_OP:
+                compare(IF_ICMPNE);
+                break;
+            case GREATER_OP:
+                compare(IF_ICMPGT);
+                break;
+            case LESS_OP:
+                compare(IF_ICMPLT);
+                break;
+            case LEQUALS_OP:
+                compare(IF_ICMPLE);
+                break;
+            case GEQUALS_OP:
+                compare(IF_ICMPGE);
+                break;
+            case INVALID_OP:
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+        }
+        return null;
+    }
+
+    /**
+     * Generate code for a unary operator expression
+     **/
+    public Void visitUnaryNode(ExpNode.UnaryNode node) {
+        compile(node.getArg());
+        //noinspection SwitchStatementWithTooFewBranches
+        switch (node.getOp()) {
+            case NEG_OP:
+                code.op(INEG);
+                break;
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+        }
+        return null;
+    }
+
+    /**
+     * Generate a load of a variable, checking it has been assigned
+     */
+    public Void visitDereferenceNode(ExpNode.DereferenceNode node) {
+        SymEntry.VarEntry variable = lValue(node.getLeftValue());
+        int site = site("variable accessed before assignment",
+                node.getLocation());
+        if (isLocalSlot(variable)) {
+            Label assigned = new Label();
+            code.local(ILOAD, assignedSlot(variable.getOffset()));
+            code.jump(IFNE, assigned);
+            throwError(site);
+            code.place(assigned);
+            code.local(ILOAD, valueSlot(variable.getOffset()));
+        } else {
+            frame(variable.getLevel());
+            code.pushInt(variable.getOffset());
+            code.pushInt(site);
+            code.invoke(INVOKEVIRTUAL, FRAME, "load", "(II)I");
+        }
+        return null;
+    }
+
+    /**
+     * Generate a subrange bounds check
+     */
+    public Void visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
+        compile(node.getExp());
+        Type.SubrangeType subrange = node.getSubrangeType();
+        Label fail = new Label();
+        Label inRange = new Label();
+        code.op(DUP);
+        code.pushInt(subrange.getLower());
+        code.jump(IF_ICMPLT, fail);
+        code.op(DUP);
+        code.pushInt(subrange.getUpper());
+        code.jump(IF_ICMPLE, inRange);
+        code.place(fail);
+        code.pushInt(site(null, node.getLocation(), subrange));
+        code.invoke(INVOKESTATIC, ERROR, "bounds",
+                "(II)Lvm/JvmRuntimeError;");
+        code.op(ATHROW);
+        code.place(inRange);
+        return null;
+    }
+
+    /**
+     * A widen subrange needs no code
+     */
+    public Void visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
+        compile(node.getExp());
+        return null;
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Generate a comparison of the top two values, leaving the true or
+     * false value on the stack
+     */
+    private void compare(int jumpIfTrue) {
+        Label isTrue = new Label();
+        Label end = new Label();
+        code.jump(jumpIfTrue, isTrue);
+        code.pushInt(Type.FALSE_VALUE);
+        code.jump(GOTO, end);
+        code.place(isTrue);
+        code.pushInt(Type.TRUE_VALUE);
+        code.place(end);
+    }
+
+    /**
+     * Generate a store of the value on top of the stack to a variable
+     */
+    private void store(SymEntry.VarEntry variable) {
+        if (isLocalSlot(variable)) {
+            code.local(ISTORE, valueSlot(variable.getOffset()));
+            code.pushInt(1);
+            code.local(ISTORE, assignedSlot(variable.getOffset()));
+        } else {
+            frame(variable.getLevel());
+            code.op(SWAP);
+            code.pushInt(variable.getOffset());
+            code.invoke(INVOKEVIRTUAL, FRAME, "store", "(II)V");
+        }
+    }
+
+    /**
+     * Generate code to push the frame of the procedure at a static level,
+     * following static links from the frame of the current procedure
+     */
+    private void frame(int targetLevel) {
+        int hops = level - targetLevel;
+        if (hops == 0) {
+            code.local(ALOAD, FRAME_SLOT);
+            return;
+        }
+        code.local(ALOAD, LINK_SLOT);
+        for (; hops > 1; hops--) {
+            code.getField(FRAME, "staticLink", "Lvm/JvmFrame;");
+        }
+    }
+
+    /**
+     * Generate code to throw the runtime error of a site
+     */
+    private void throwError(int site) {
+        code.pushInt(site);
+        code.invoke(INVOKESTATIC, ERROR, "at", "(I)Lvm/JvmRuntimeError;");
+        code.op(ATHROW);
+    }
+
+    /**
+     * Add a runtime error site
+     *
+     * @return the site number
+     */
+    private int site(String message, Location loc) {
+        return site(message, loc, null);
+    }
+
+    /**
+     * Add a runtime error site, which is a bounds check if subrange is
+     * not null
+     *
+     * @return the site number
+     */
+    private int site(String message, Location loc,
+                     Type.SubrangeType subrange) {
+        siteMessages.add(message);
+        siteLocations.add(loc);
+        siteSubranges.add(subrange);
+        return siteMessages.size() - 1;
+    }
+
+    /**
+     * @return true iff a variable is held in local variable slots
+     */
+    private boolean isLocalSlot(SymEntry.VarEntry variable) {
+        return !hasFrame && variable.getLevel() == level;
+    }
+
+    private static int valueSlot(int offset) {
+        return FIRST_VARIABLE_SLOT + 2 * offset;
+    }
+
+    private static int assignedSlot(int offset) {
+        return FIRST_VARIABLE_SLOT + 2 * offset + 1;
+    }
+
+    /**
+     * @return true iff a procedure declares nested procedures
+     */
+    private static boolean declaresProcedures(SymEntry.ProcedureEntry entry) {
+        for (SymEntry local : entry.getLocalScope().getEntries()) {
+            if (local instanceof SymEntry.ProcedureEntry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Procedure number of a procedure, allocating a new number if the
+     * procedure has not been encountered before.
+     */
+    private int procedureNumber(SymEntry.ProcedureEntry entry) {
+        Integer number = procedureNumbers.get(entry);
+        if (number == null) {
+            number = procedures.size();
+            procedures.add(entry);
+            procedureNumbers.put(entry, number);
+        }
+        return number;
+    }
+
+    /**
+     * Resolve the variable referred to by a left value
+     */
+    private SymEntry.VarEntry lValue(ExpNode node) {
+        if (!(node instanceof ExpNode.VariableNode)) {
+            errors.fatal("PL0 Internal error: variable expected",
+                    node.getLocation());
+        }
+        return ((ExpNode.VariableNode) node).getVariable();
+    }
+}
@@ -0,0 +1,48 @@
+package vm;
+
+/**
+ * class JvmFrame - the variables of a procedure activation compiled by
+ * JvmCompiler that are kept on the heap so that they can be accessed by
+ * nested procedures through static links.
+ */
+final class JvmFrame {
+    /**
+     * Frame of the enclosing procedure, null for the main program
+     */
+    final JvmFrame staticLink;
+    /**
+     * Values of the variables indexed by their offsets
+     */
+    final int[] values;
+    /**
+     * Whether each variable has been assigned
+     */
+    final boolean[] assigned;
+
+    JvmFrame(JvmFrame staticLink, int size) {
+        this.staticLink = staticLink;
+        this.values = new int[size];
+        this.assigned = new boolean[size];
+    }
+
+    /**
+     * Load a variable
+     *
+     * @param offset of the variable
+     * @param site   at which to report the variable is unassigned
+     */
+    int load(int offset, int site) {
+        if (!assigned[offset]) {
+            throw JvmRuntimeError.at(site);
+        }
+        return values[offset];
+    }
+
+    /**
+     * Assign a variable
+     */
+    void store(int value, int offset) {
+        values[offset] = value;
+        assigned[offset] = true;
+    }
+}
@@ -0,0 +1,149 @@
+package vm;
+
+import interpreter.Engine;
+import interpreter.IntReader;
+import interpreter.OutputSink;
+import source.Errors;
+import tree.DeclNode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * class JvmMachine - executes a program by compiling it to JVM bytecode,
+ * defining the result as a hidden class and calling the main program's
+ * method, so that the program is optimised by the JVM's own compilers.
+ * The output and runtime errors are the same as for interpreter.Interpreter.
+ */
+public class JvmMachine implements Engine {
+
+    /**
+     * Program input
+     */
+    private final IntReader in;
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Program output
+     */
+    private final OutputSink output;
+
+    /**
+     * File to write the generated class to, or null
+     */
+    private final File classFile;
+
+    /**
+     * Construct a new JVM machine
+     *
+     * @param errors      Error message handler
+     * @param inputStream Program input stream
+     * @param outStream   Program output stream
+     */
+    public JvmMachine(Errors errors, InputStream inputStream,
+                      PrintStream outStream) {
+        this(errors, new IntReader(inputStream), outStream, null);
+    }
+
+    /**
+     * Construct a new JVM machine
+     *
+     * @param errors      Error message handler
+     * @param in          Program input
+     * @param outStream   Program output stream
+     * @param classFile   file to write the generated class to, or null
+     */
+    public JvmMachine(Errors errors, IntReader in,
+                      PrintStream outStream, File classFile) {
+        this.errors = errors;
+        this.in = in;
+        this.output = new OutputSink(outStream, errors);
+        in.flushBeforeWaiting(output);
+        this.classFile = classFile;
+    }
+
+    /**
+     * Compile and then run the main procedure
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public void executeCode(DeclNode.ProcedureNode node) {
+        JvmCode program = new JvmCompiler(errors).compile(node);
+        if (classFile != null) {
+            try (OutputStream out = new FileOutputStream(classFile)) {
+                out.write(program.classBytes);
+            } catch (IOException e) {
+                errors.println("Unable to write class file " + classFile);
+            }
+        }
+        try {
+            run(program);
+        } finally {
+            output.flush();
+        }
+    }
+
+    /**
+     * Load a compiled program and run its main procedure
+     */
+    public void run(JvmCode program) {
+        MethodHandle main;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(program.classBytes, true);
+            main = lookup.findStatic(lookup.lookupClass(), "p0",
+                    MethodType.methodType(void.class, JvmMachine.class,
+                            JvmFrame.class));
+        } catch (IllegalAccessException | NoSuchMethodException
+                | LinkageError e) {
+            errors.fatal("PL0 Internal error: invalid generated class: "
+                    + e, null);
+            return;
+        }
+        try {
+            main.invokeExact(this, (JvmFrame) null);
+        } catch (JvmRuntimeError e) {
+            String error = program.message(e) + System.lineSeparator()
+                    + e.dump(program.procedures);
+            output.flush();
+            errors.fatal(error, program.siteLocations[e.site]);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* Runtime support for generated code */
+
+    /**
+     * Write a value to the output
+     */
+    void write(int value) {
+        output.writeLine(value);
+    }
+
+    /**
+     * Read an integer from the input
+     *
+     * @param site at which to report an invalid value
+     */
+    int read(int site) {
+        try {
+            return in.read();
+        } catch (NumberFormatException e) {
+            throw JvmRuntimeError.at(site);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package vm;
+
+import syms.SymEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * class JvmRuntimeError - thrown by code compiled by JvmCompiler when a
+ * runtime error occurs. As it propagates, the exception handler of each
+ * procedure activation adds the activation's variables, so that the frames
+ * can be dumped in the same order as interpreter.RuntimeStack does.
+ */
+final class JvmRuntimeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Site of the error within JvmCode
+     */
+    final int site;
+    /**
+     * Value that failed a bounds check
+     */
+    final int value;
+    /**
+     * Procedure numbers of the frames added
+     */
+    private final List<Integer> procedures = new ArrayList<>();
+    /**
+     * Variables of the frames added
+     */
+    private final List<int[]> values = new ArrayList<>();
+    /**
+     * Whether the variables of the frames added are assigned
+     */
+    private final List<boolean[]> assigned = new ArrayList<>();
+
+    private JvmRuntimeError(int site, int value) {
+        super(null, null, false, false);
+        this.site = site;
+        this.value = value;
+    }
+
+    /**
+     * @return a runtime error at a site
+     */
+    static JvmRuntimeError at(int site) {
+        return new JvmRuntimeError(site, 0);
+    }
+
+    /**
+     * @return a bounds check failure of a value at a site
+     */
+    static JvmRuntimeError bounds(int value, int site) {
+        return new JvmRuntimeError(site, value);
+    }
+
+    /**
+     * Add the frame of a procedure activation the error propagated through
+     */
+    void addFrame(int procedure, int[] frameValues, boolean[] frameAssigned) {
+        procedures.add(procedure);
+        values.add(frameValues);
+        assigned.add(frameAssigned);
+    }
+
+    /**
+     * Dump of the frames added in the same format as interpreter.RuntimeStack
+     */
+    String dump(SymEntry.ProcedureEntry[] procedureTable) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < procedures.size(); i++) {
+            Frames.appendFrame(result, procedureTable[procedures.get(i)],
+                    values.get(i), assigned.get(i), 0);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import syms.SymEntry;
+import syms.Type;
+
+/**
+ * class RegisterCode - a program compiled for the register machine.
+ * The instructions of all procedures are held in a single int array.
+ * Procedures are referred to by their index in the procedure table;
+ * the main program is procedure 0.
+ */
+public class RegisterCode {
+    /**
+     * Instructions, each an operation code followed by its operands
+     */
+    final int[] code;
+    /**
+     * Source locations used to report runtime errors. The location of an
+     * instruction's own error is held at the address of its operation code,
+     * and that of an unassigned register operand at the operand's address.
+     */
+    final Location[] locations;
+    /**
+     * Procedures indexed by procedure number
+     */
+    final SymEntry.ProcedureEntry[] procedures;
+    /**
+     * Address of the first instruction of each procedure
+     */
+    final int[] entryPoints;
+    /**
+     * Number of registers (variables plus temporaries) of each procedure
+     */
+    final int[] registers;
+    /**
+     * Subrange types referred to by bounds checks
+     */
+    final Type.SubrangeType[] subranges;
+
+    RegisterCode(int[] code, Location[] locations,
+                 SymEntry.ProcedureEntry[] procedures, int[] entryPoints,
+                 int[] registers, Type.SubrangeType[] subranges) {
+        this.code = code;
+        this.locations = locations;
+        this.procedures = procedures;
+        this.entryPoints = entryPoints;
+        this.registers = registers;
+        this.subranges = subranges;
+    }
+
+    /**
+     * Disassembled listing of the code. Registers holding variables are
+     * shown by the variable's name and temporaries as t0, t1, ...
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String[] names = new String[0];
+        int proc = 0;
+        for (int pc = 0; pc < code.length; ) {
+            while (proc < entryPoints.length && entryPoints[proc] == pc) {
+                names = registerNames(proc);
+                result.append("PROC ").append(procedures[proc].getIdent())
+                        .append(" : ").append(registers[proc])
+                        .append(" registers").append(System.lineSeparator());
+                proc++;
+            }
+            int op = code[pc];
+            String kinds = RegisterOp.OPERANDS[op];
+            result.append(String.format("%6d  %-10s", pc, RegisterOp.NAMES[op]));
+            for (int i = 0; i < kinds.length(); i++) {
+                int operand = code[pc + 1 + i];
+                result.append(i == 0 ? " " : ", ");
+                switch (kinds.charAt(i)) {
+                    case 'r':
+                    case 'w':
+                        result.append(names[operand]);
+                        break;
+                    case 'k':
+                        result.append("#").append(operand);
+                        break;
+                    case 'p':
+                        result.append(procedures[operand].getIdent());
+                        break;
+                    case 's':
+                        result.append(subranges[operand]);
+                        break;
+                    default:
+                        result.append(operand);
+                }
+            }
+            result.append(System.lineSeparator());
+            pc += 1 + kinds.length();
+        }
+        return result.toString();
+    }
+
+    /**
+     * Names of the registers of a procedure for the disassembler
+     */
+    private String[] registerNames(int proc) {
+        String[] names = new String[registers[proc]];
+        int variables = procedures[proc].getLocalScope().getVariableSpace();
+        for (int r = variables; r < names.length; r++) {
+            names[r] = "t" + (r - variables);
+        }
+        for (SymEntry entry : procedures[proc].getLocalScope().getEntries()) {
+            if (entry instanceof SymEntry.VarEntry) {
+                SymEntry.VarEntry variable = (SymEntry.VarEntry) entry;
+                names[variable.getOffset()] = variable.getIdent();
+            }
+        }
+        return names;
+    }
+}
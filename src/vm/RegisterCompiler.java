@@ -0,0 +1,655 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.Errors;
+import syms.SymEntry;
+import syms.Type;
+import tree.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * class RegisterCompiler - generates three-address code for the register
+ * machine from the statically checked abstract syntax tree.
+ * Local variables are used directly as instruction operands, and the final
+ * instruction of an expression assigned to a local variable writes the
+ * variable directly. Expression temporaries are allocated in a single
+ * linear pass over each expression: a temporary is released as soon as the
+ * instruction consuming it has been generated, and the lowest free
+ * temporary is allocated next, so the number of temporaries of a procedure
+ * is the maximum number live at any point.
+ */
+public class RegisterCompiler implements StatementVisitor,
+        ExpTransform<RegisterCompiler.Operand> {
+
+    /**
+     * Register holding the value of a compiled expression
+     */
+    static class Operand {
+        final int register;
+        /**
+         * Location of the variable held in the register if it has not yet
+         * been checked to be assigned, otherwise null.
+         */
+        final Location unchecked;
+
+        Operand(int register, Location unchecked) {
+            this.register = register;
+            this.unchecked = unchecked;
+        }
+    }
+
+    /**
+     * Value of target when an expression may be compiled into any register
+     */
+    private static final int ANY_REGISTER = -1;
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Code generated so far
+     */
+    private int[] code = new int[256];
+
+    /**
+     * Source locations of generated instructions and their operands
+     */
+    private Location[] locations = new Location[256];
+
+    /**
+     * Address of the next instruction to be generated
+     */
+    private int pc = 0;
+
+    /**
+     * Procedures in order of their procedure number
+     */
+    private final List<SymEntry.ProcedureEntry> procedures = new ArrayList<>();
+
+    /**
+     * Procedure numbers of the procedures encountered so far
+     */
+    private final Map<SymEntry.ProcedureEntry, Integer> procedureNumbers =
+            new HashMap<>();
+
+    /**
+     * Subrange types referred to by bounds checks
+     */
+    private final List<Type.SubrangeType> subranges = new ArrayList<>();
+
+    /**
+     * Static level of the procedure being compiled
+     */
+    private int level;
+
+    /**
+     * Number of variables of the procedure being compiled, which is also
+     * the register number of its first temporary
+     */
+    private int variables;
+
+    /**
+     * Temporaries currently in use, numbered from 0
+     */
+    private final BitSet liveTemps = new BitSet();
+
+    /**
+     * Number of temporaries used by the procedure being compiled
+     */
+    private int temps;
+
+    /**
+     * Register the expression being compiled should be placed in
+     */
+    private int target = ANY_REGISTER;
+
+    public RegisterCompiler(Errors errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Compile a main program and all the procedures it may call
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public RegisterCode compile(DeclNode.ProcedureNode node) {
+        procedureNumber(node.getProcEntry());
+        List<Integer> entryPoints = new ArrayList<>();
+        List<Integer> registers = new ArrayList<>();
+        /* Calls add further procedures as they are compiled */
+        for (int i = 0; i < procedures.size(); i++) {
+            SymEntry.ProcedureEntry entry = procedures.get(i);
+            entryPoints.add(pc);
+            level = entry.getLocalScope().getLevel();
+            variables = entry.getLocalScope().getVariableSpace();
+            temps = 0;
+            compile(entry.getBlock());
+            emit(RegisterOp.RETURN);
+            registers.add(variables + temps);
+        }
+        int count = procedures.size();
+        return new RegisterCode(Arrays.copyOf(code, pc),
+                Arrays.copyOf(locations, pc),
+                procedures.toArray(new SymEntry.ProcedureEntry[count]),
+                entryPoints.stream().mapToInt(Integer::intValue).toArray(),
+                registers.stream().mapToInt(Integer::intValue).toArray(),
+                subranges.toArray(new Type.SubrangeType[0]));
+    }
+
+    /**
+     * Compile a statement
+     */
+    private void compile(StatementNode node) {
+        node.accept(this);
+    }
+
+    /**
+     * Compile an expression into the target register, or any register
+     * if target is ANY_REGISTER.
+     */
+    private Operand compile(ExpNode node, int target) {
+        int saved = this.target;
+        this.target = target;
+        Operand result = node.accept(this);
+        this.target = saved;
+        return result;
+    }
+
+    /* Statement Compilation */
+
+    /**
+     * Generate code for a block statement
+     */
+    public void visitBlockNode(StatementNode.BlockNode node) {
+        compile(node.getBody());
+    }
+
+    /**
+     * An error statement cannot be compiled
+     */
+    public void visitStatementErrorNode(StatementNode.ErrorNode node) {
+        errors.fatal("PL0 Internal error: compiling Statement Error Node",
+                node.getLocation());
+    }
+
+    /**
+     * Generate code for each statement in the list sequentially
+     */
+    public void visitStatementListNode(StatementNode.ListNode node) {
+        for (StatementNode statement : node.getStatements()) {
+            compile(statement);
+        }
+    }
+
+    /**
+     * Generate code for an assignment statement. A single expression
+     * assigned to a local variable is computed directly into the variable.
+     * Otherwise all the expressions are computed into temporaries before
+     * any of the variables are assigned.
+     */
+    public void visitAssignmentNode(StatementNode.AssignmentNode node) {
+        if (node.size() == 1) {
+            SymEntry.VarEntry variable = lValue(node.left(0));
+            if (isLocal(variable)) {
+                compile(node.right(0), variable.getOffset());
+            } else {
+                Operand value = compile(node.right(0), ANY_REGISTER);
+                emit(RegisterOp.STORE, hops(variable.getLevel()),
+                        variable.getOffset());
+                emitOperand(value);
+                release(value);
+            }
+            return;
+        }
+        Operand[] values = new Operand[node.size()];
+        for (int i = 0; i < node.size(); i++) {
+            values[i] = compile(node.right(i), allocate());
+        }
+        for (int i = 0; i < node.size(); i++) {
+            SymEntry.VarEntry variable = lValue(node.left(i));
+            if (isLocal(variable)) {
+                emit(RegisterOp.MOVE, variable.getOffset());
+            } else {
+                emit(RegisterOp.STORE, hops(variable.getLevel()),
+                        variable.getOffset());
+            }
+            emitOperand(values[i]);
+            release(values[i]);
+        }
+    }
+
+    /**
+     * Generate code for a read statement - read an int from stdin
+     */
+    public void visitReadNode(StatementNode.ReadNode node) {
+        SymEntry.VarEntry variable = lValue(node.getLValue());
+        if (isLocal(variable)) {
+            emit(node.getLocation(), RegisterOp.READ, variable.getOffset());
+            return;
+        }
+        int temp = allocate();
+        emit(node.getLocation(), RegisterOp.READ, temp);
+        emit(RegisterOp.STORE, hops(variable.getLevel()), variable.getOffset(),
+                temp);
+        release(temp);
+    }
+
+    /**
+     * Generate code for a write statement
+     */
+    public void visitWriteNode(StatementNode.WriteNode node) {
+        Operand value = compile(node.getExp(), ANY_REGISTER);
+        emit(RegisterOp.WRITE);
+        emitOperand(value);
+        release(value);
+    }
+
+    /**
+     * Generate code for a call statement
+     */
+    public void visitCallNode(StatementNode.CallNode node) {
+        SymEntry.ProcedureEntry entry = node.getEntry();
+        emit(RegisterOp.CALL, procedureNumber(entry), hops(entry.getLevel()));
+    }
+
+    /**
+     * Generate code for an if statement
+     */
+    public void visitIfNode(StatementNode.IfNode node) {
+        int toElse = emitJump(RegisterOp.JUMP_FALSE, node.getCondition());
+        compile(node.getThenStmt());
+        emit(RegisterOp.JUMP, -1);
+        int toEnd = pc - 1;
+        patch(toElse);
+        compile(node.getElseStmt());
+        patch(toEnd);
+    }
+
+    /**
+     * Generate code for a while statement. The condition is tested at the
+     * end of the loop so that each iteration executes a single jump.
+     */
+    public void visitWhileNode(StatementNode.WhileNode node) {
+        emit(RegisterOp.JUMP, -1);
+        int toCondition = pc - 1;
+        int start = pc;
+        compile(node.getLoopStmt());
+        patch(toCondition);
+        int toStart = emitJump(RegisterOp.JUMP_TRUE, node.getCondition());
+        code[toStart] = start;
+    }
+
+    @Override
+    public void visitSkipNode(StatementNode.SkipNode skipNode) {
+        // Nothing to generate...
+    }
+
+    /**
+     * Generate code for a do statement. The guards are tested in order,
+     * each jumping to the next guard if false. Each branch ends with a
+     * jump back to the first guard, or out of the loop if it exits.
+     * Falling through all of the guards is a runtime error.
+     */
+    @Override
+    public void visitDoNode(StatementNode.DoNode doNode) {
+        int start = pc;
+        List<Integer> toEnd = new ArrayList<>();
+        for (StatementNode.DoBranchNode branch : doNode.branches()) {
+            int toNext = emitJump(RegisterOp.JUMP_FALSE, branch.condition());
+            compile(branch.statements());
+            if (branch.exit()) {
+                emit(RegisterOp.JUMP, -1);
+                toEnd.add(pc - 1);
+            } else {
+                emit(RegisterOp.JUMP, start);
+            }
+            patch(toNext);
+        }
+        emit(doNode.getLocation(), RegisterOp.NO_GUARD);
+        for (int jump : toEnd) {
+            patch(jump);
+        }
+    }
+
+    @Override
+    public void visitDoBranchNode(StatementNode.DoBranchNode doBranchNode) {
+        /* Do branches are only generated as part of their do loop */
+    }
+
+    /* Expression Compilation */
+
+    /**
+     * An error expression cannot be compiled
+     */
+    public Operand visitErrorExpNode(ExpNode.ErrorNode node) {
+        errors.fatal("PL0 Internal error: compiling ErrorExpNode",
+                node.getLocation());
+        return null;
+    }
+
+    /**
+     * Generate code to load a constant
+     */
+    public Operand visitConstNode(ExpNode.ConstNode node) {
+        int dest = destination();
+        emit(RegisterOp.LOADK, dest, node.getValue());
+        return new Operand(dest, null);
+    }
+
+    /**
+     * An identifier should have been resolved by the static checker
+     */
+    public Operand visitIdentifierNode(ExpNode.IdentifierNode node) {
+        errors.fatal("PL0 Internal error: compiling IdentifierNode",
+                node.getLocation());
+        return null;
+    }
+
+    /**
+     * The address of a variable is only used by loads and stores
+     */
+    public Operand visitVariableNode(ExpNode.VariableNode node) {
+        errors.fatal("PL0 Internal error: compiling address of "
+                + node.getVariable().getIdent(), node.getLocation());
+        return null;
+    }
+
+    /**
+     * Generate code for a binary operator expression. Because operands are
+     * only checked to be assigned when they are used, an unassigned left
+     * operand is checked before generating any code for the right operand,
+     * so that errors are reported in evaluation order.
+     **/
+    public Operand visitBinaryNode(ExpNode.BinaryNode node) {
+        Operand left = compile(node.getLeft(), ANY_REGISTER);
+        if (left.unchecked != null && mayFail(node.getRight())) {
+            emit(RegisterOp.CHECK);
+            emitOperand(left);
+            left = new Operand(left.register, null);
+        }
+        Operand right = compile(node.getRight(), ANY_REGISTER);
+        int op;
+        switch (node.getOp()) {
+            case ADD_OP:
+                op = RegisterOp.ADD;
+                break;
+            case SUB_OP:
+                op = RegisterOp.SUB;
+                break;
+            case MUL_OP:
+                op = RegisterOp.MUL;
+                break;
+            case DIV_OP:
+                op = RegisterOp.DIV;
+                break;
+            case EQUALS_OP:
+                op = RegisterOp.EQ;
+                break;
+            case NEQUALS_OP:
+                op = RegisterOp.NE;
+                break;
+            case GREATER_OP:
+                op = RegisterOp.GT;
+                break;
+            case LESS_OP:
+                op = RegisterOp.LT;
+                break;
+            case LEQUALS_OP:
+                op = RegisterOp.LE;
+                break;
+            case GEQUALS_OP:
+                op = RegisterOp.GE;
+                break;
+            case INVALID_OP:
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+                return null;
+        }
+        release(right);
+        release(left);
+        int dest = destination();
+        /* Division by zero is reported at the divisor */
+        emit(op == RegisterOp.DIV ? node.getRight().getLocation() : null,
+                op, dest);
+        emitOperand(left);
+        emitOperand(right);
+        return new Operand(dest, null);
+    }
+
+    /**
+     * Generate code for a unary operator expression
+     **/
+    public Operand visitUnaryNode(ExpNode.UnaryNode node) {
+        Operand arg = compile(node.getArg(), ANY_REGISTER);
+        //noinspection SwitchStatementWithTooFewBranches
+        switch (node.getOp()) {
+            case NEG_OP:
+                release(arg);
+                int dest = destination();
+                emit(RegisterOp.NEG, dest);
+                emitOperand(arg);
+                return new Operand(dest, null);
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+                return null;
+        }
+    }
+
+    /**
+     * A local variable is used directly as an operand, while variables of
+     * enclosing procedures are loaded into a register.
+     */
+    public Operand visitDereferenceNode(ExpNode.DereferenceNode node) {
+        SymEntry.VarEntry variable = lValue(node.getLeftValue());
+        if (isLocal(variable)) {
+            Operand local = new Operand(variable.getOffset(), node.getLocation());
+            if (target == ANY_REGISTER) {
+                return local;
+            }
+            emit(RegisterOp.MOVE, target);
+            emitOperand(local);
+            return new Operand(target, null);
+        }
+        int dest = destination();
+        emit(node.getLocation(), RegisterOp.LOAD, dest,
+                hops(variable.getLevel()), variable.getOffset());
+        return new Operand(dest, null);
+    }
+
+    /**
+     * Generate a subrange bounds check, which only writes its destination
+     * if the check succeeds.
+     */
+    public Operand visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
+        Operand value = compile(node.getExp(), ANY_REGISTER);
+        Type.SubrangeType subrange = node.getSubrangeType();
+        subranges.add(subrange);
+        release(value);
+        int dest = destination();
+        emit(node.getLocation(), RegisterOp.BOUNDS, dest);
+        emitOperand(value);
+        emitOperands(subrange.getLower(), subrange.getUpper(),
+                subranges.size() - 1);
+        return new Operand(dest, null);
+    }
+
+    /**
+     * A widen subrange needs no code
+     */
+    public Operand visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
+        return compile(node.getExp(), target);
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * @return true iff the code for an expression may report a runtime
+     * error, that is unless it is a constant or a local variable, which
+     * needs no code when compiled into any register
+     */
+    private boolean mayFail(ExpNode node) {
+        while (node instanceof ExpNode.WidenSubrangeNode) {
+            node = ((ExpNode.WidenSubrangeNode) node).getExp();
+        }
+        if (node instanceof ExpNode.ConstNode) {
+            return false;
+        }
+        return !(node instanceof ExpNode.DereferenceNode) ||
+                !isLocal(lValue(((ExpNode.DereferenceNode) node).getLeftValue()));
+    }
+
+    /**
+     * @return true iff a variable is local to the procedure being compiled
+     */
+    private boolean isLocal(SymEntry.VarEntry variable) {
+        return variable.getLevel() == level;
+    }
+
+    /**
+     * Register to hold the result of the expression being compiled
+     */
+    private int destination() {
+        return target == ANY_REGISTER ? allocate() : target;
+    }
+
+    /**
+     * Allocate the lowest numbered free temporary
+     */
+    private int allocate() {
+        int temp = liveTemps.nextClearBit(0);
+        liveTemps.set(temp);
+        temps = Math.max(temps, temp + 1);
+        return variables + temp;
+    }
+
+    /**
+     * Release the register of an operand if it is a temporary
+     */
+    private void release(Operand operand) {
+        release(operand.register);
+    }
+
+    /**
+     * Release a register if it is a temporary
+     */
+    private void release(int register) {
+        if (register >= variables) {
+            liveTemps.clear(register - variables);
+        }
+    }
+
+    /**
+     * Generate a conditional jump on a condition
+     *
+     * @return address of the jump's target operand, to be patched
+     */
+    private int emitJump(int op, ExpNode condition) {
+        Operand value = compile(condition, ANY_REGISTER);
+        release(value);
+        emit(op);
+        emitOperand(value);
+        emitOperands(-1);
+        return pc - 1;
+    }
+
+    /**
+     * Set the target of a jump to the next instruction generated
+     */
+    private void patch(int operand) {
+        code[operand] = pc;
+    }
+
+    /**
+     * Generate an instruction that cannot fail other than through its
+     * register operands
+     */
+    private void emit(int op, int... operands) {
+        emit(null, op, operands);
+    }
+
+    /**
+     * Generate an instruction, recording the location at which it reports
+     * runtime errors. Register operands that may be unassigned are added
+     * by emitOperand.
+     */
+    private void emit(Location loc, int op, int... operands) {
+        ensureSpace();
+        locations[pc] = loc;
+        code[pc++] = op;
+        emitOperands(operands);
+    }
+
+    /**
+     * Generate operands of the current instruction
+     */
+    private void emitOperands(int... operands) {
+        for (int operand : operands) {
+            ensureSpace();
+            locations[pc] = null;
+            code[pc++] = operand;
+        }
+    }
+
+    /**
+     * Generate a register operand of the current instruction, recording
+     * the location to report if it is unassigned
+     */
+    private void emitOperand(Operand operand) {
+        ensureSpace();
+        locations[pc] = operand.unchecked;
+        code[pc++] = operand.register;
+    }
+
+    /**
+     * Ensure there is space for another word of code
+     */
+    private void ensureSpace() {
+        if (pc == code.length) {
+            code = Arrays.copyOf(code, 2 * code.length);
+            locations = Arrays.copyOf(locations, code.length);
+        }
+    }
+
+    /**
+     * Number of static links to follow from the procedure being compiled
+     * to get to the frame of the given static level
+     */
+    private int hops(int targetLevel) {
+        return level - targetLevel;
+    }
+
+    /**
+     * Procedure number of a procedure, allocating a new number if the
+     * procedure has not been encountered before.
+     */
+    private int procedureNumber(SymEntry.ProcedureEntry entry) {
+        Integer number = procedureNumbers.get(entry);
+        if (number == null) {
+            number = procedures.size();
+            procedures.add(entry);
+            procedureNumbers.put(entry, number);
+        }
+        return number;
+    }
+
+    /**
+     * Resolve the variable referred to by a left value
+     */
+    private SymEntry.VarEntry lValue(ExpNode node) {
+        if (!(node instanceof ExpNode.VariableNode)) {
+            errors.fatal("PL0 Internal error: variable expected",
+                    node.getLocation());
+        }
+        return ((ExpNode.VariableNode) node).getVariable();
+    }
+}
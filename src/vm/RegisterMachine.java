@@ -0,0 +1,398 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import interpreter.Engine;
+import interpreter.IntReader;
+import interpreter.OutputSink;
+import source.Errors;
+import syms.Type;
+import tree.DeclNode;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * class RegisterMachine - executes a program by compiling it to three-address
+ * code for a register machine and then interpreting that code in a single
+ * dispatch loop. The registers of each procedure activation are the slots of
+ * its frame, allocated contiguously within one int array of memory.
+ * The output and runtime errors are the same as for interpreter.Interpreter.
+ */
+public class RegisterMachine implements Engine {
+
+    /**
+     * Program input
+     */
+    private final IntReader in;
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Program output
+     */
+    private final OutputSink output;
+
+    /**
+     * Whether to list the disassembled code before running it
+     */
+    private final boolean listCode;
+
+    /**
+     * Memory holding the frames
+     */
+    private int[] memory = new int[1024];
+
+    /**
+     * Whether each memory location holds an assigned register
+     */
+    private boolean[] assigned = new boolean[1024];
+
+    /**
+     * Construct a new register machine
+     *
+     * @param errors      Error message handler
+     * @param inputStream Program input stream
+     * @param outStream   Program output stream
+     */
+    public RegisterMachine(Errors errors, InputStream inputStream,
+                           PrintStream outStream) {
+        this(errors, new IntReader(inputStream), outStream, false);
+    }
+
+    /**
+     * Construct a new register machine
+     *
+     * @param errors      Error message handler
+     * @param in          Program input
+     * @param outStream   Program output stream
+     * @param listCode    list the disassembled code as a debug message
+     */
+    public RegisterMachine(Errors errors, IntReader in,
+                           PrintStream outStream, boolean listCode) {
+        this.errors = errors;
+        this.in = in;
+        this.output = new OutputSink(outStream, errors);
+        in.flushBeforeWaiting(output);
+        this.listCode = listCode;
+    }
+
+    /**
+     * Compile and then run the main procedure
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public void executeCode(DeclNode.ProcedureNode node) {
+        RegisterCode program = new RegisterCompiler(errors).compile(node);
+        if (listCode) {
+            errors.debugMessage("Register machine code:"
+                    + System.lineSeparator() + program);
+        }
+        run(program);
+    }
+
+    /**
+     * Run a compiled program starting with its main procedure, writing out
+     * all of its output before returning
+     */
+    public void run(RegisterCode program) {
+        try {
+            execute(program);
+        } finally {
+            output.flush();
+        }
+    }
+
+    /**
+     * Execute the instructions of a compiled program
+     */
+    private void execute(RegisterCode program) {
+        final int[] code = program.code;
+        final int trueValue = Type.TRUE_VALUE;
+        final int falseValue = Type.FALSE_VALUE;
+        /* Frame of the main program */
+        int fp = 0;
+        int base = Frames.HEADER;
+        int top = base + program.registers[0];
+        ensureCapacity(top);
+        int[] mem = memory;
+        boolean[] defined = assigned;
+        mem[Frames.STATIC_LINK] = Frames.NO_FRAME;
+        mem[Frames.DYNAMIC_LINK] = Frames.NO_FRAME;
+        mem[Frames.RETURN_ADDRESS] = -1;
+        mem[Frames.PROCEDURE] = 0;
+        Arrays.fill(defined, base, top, false);
+        int pc = 0;
+        while (true) {
+            int op = code[pc];
+            switch (op) {
+                case RegisterOp.LOADK: {
+                    int dest = base + code[pc + 1];
+                    mem[dest] = code[pc + 2];
+                    defined[dest] = true;
+                    pc += 3;
+                    break;
+                }
+                case RegisterOp.MOVE: {
+                    int dest = base + code[pc + 1];
+                    int src = base + code[pc + 2];
+                    if (!defined[src]) {
+                        unassigned(program, pc, fp);
+                    }
+                    mem[dest] = mem[src];
+                    defined[dest] = true;
+                    pc += 3;
+                    break;
+                }
+                case RegisterOp.CHECK:
+                    if (!defined[base + code[pc + 1]]) {
+                        unassigned(program, pc, fp);
+                    }
+                    pc += 2;
+                    break;
+                case RegisterOp.LOAD: {
+                    int frame = fp;
+                    for (int hops = code[pc + 2]; hops > 0; hops--) {
+                        frame = mem[frame + Frames.STATIC_LINK];
+                    }
+                    int address = frame + Frames.HEADER + code[pc + 3];
+                    if (!defined[address]) {
+                        runtime(program, "variable accessed before assignment",
+                                program.locations[pc], fp);
+                    }
+                    int dest = base + code[pc + 1];
+                    mem[dest] = mem[address];
+                    defined[dest] = true;
+                    pc += 4;
+                    break;
+                }
+                case RegisterOp.STORE: {
+                    int src = base + code[pc + 3];
+                    if (!defined[src]) {
+                        unassigned(program, pc, fp);
+                    }
+                    int frame = fp;
+                    for (int hops = code[pc + 1]; hops > 0; hops--) {
+                        frame = mem[frame + Frames.STATIC_LINK];
+                    }
+                    int address = frame + Frames.HEADER + code[pc + 2];
+                    mem[address] = mem[src];
+                    defined[address] = true;
+                    pc += 4;
+                    break;
+                }
+                case RegisterOp.ADD:
+                case RegisterOp.SUB:
+                case RegisterOp.MUL:
+                case RegisterOp.DIV:
+                case RegisterOp.EQ:
+                case RegisterOp.NE:
+                case RegisterOp.LT:
+                case RegisterOp.LE:
+                case RegisterOp.GT:
+                case RegisterOp.GE: {
+                    int left = base + code[pc + 2];
+                    int right = base + code[pc + 3];
+                    if (!(defined[left] & defined[right])) {
+                        unassigned(program, pc, fp);
+                    }
+                    int a = mem[left];
+                    int b = mem[right];
+                    int result;
+                    switch (op) {
+                        case RegisterOp.ADD:
+                            result = a + b;
+                            break;
+                        case RegisterOp.SUB:
+                            result = a - b;
+                            break;
+                        case RegisterOp.MUL:
+                            result = a * b;
+                            break;
+                        case RegisterOp.DIV:
+                            if (b == 0) {
+                                runtime(program, "Division by zero",
+                                        program.locations[pc], fp);
+                            }
+                            result = a / b;
+                            break;
+                        case RegisterOp.EQ:
+                            result = a == b ? trueValue : falseValue;
+                            break;
+                        case RegisterOp.NE:
+                            result = a != b ? trueValue : falseValue;
+                            break;
+                        case RegisterOp.LT:
+                            result = a < b ? trueValue : falseValue;
+                            break;
+                        case RegisterOp.LE:
+                            result = a <= b ? trueValue : falseValue;
+                            break;
+                        case RegisterOp.GT:
+                            result = a > b ? trueValue : falseValue;
+                            break;
+                        default:
+                            result = a >= b ? trueValue : falseValue;
+                    }
+                    int dest = base + code[pc + 1];
+                    mem[dest] = result;
+                    defined[dest] = true;
+                    pc += 4;
+                    break;
+                }
+                case RegisterOp.NEG: {
+                    int src = base + code[pc + 2];
+                    if (!defined[src]) {
+                        unassigned(program, pc, fp);
+                    }
+                    int dest = base + code[pc + 1];
+                    mem[dest] = -mem[src];
+                    defined[dest] = true;
+                    pc += 3;
+                    break;
+                }
+                case RegisterOp.BOUNDS: {
+                    int src = base + code[pc + 2];
+                    if (!defined[src]) {
+                        unassigned(program, pc, fp);
+                    }
+                    int value = mem[src];
+                    if (value < code[pc + 3] || code[pc + 4] < value) {
+                        Location loc = program.locations[pc];
+                        runtime(program, "bounds check failed at line "
+                                + loc.getLine() + ": " + value + " not in "
+                                + program.subranges[code[pc + 5]], loc, fp);
+                    }
+                    int dest = base + code[pc + 1];
+                    mem[dest] = value;
+                    defined[dest] = true;
+                    pc += 6;
+                    break;
+                }
+                case RegisterOp.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case RegisterOp.JUMP_FALSE:
+                case RegisterOp.JUMP_TRUE: {
+                    int src = base + code[pc + 1];
+                    if (!defined[src]) {
+                        unassigned(program, pc, fp);
+                    }
+                    boolean jump = (mem[src] == trueValue)
+                            == (op == RegisterOp.JUMP_TRUE);
+                    pc = jump ? code[pc + 2] : pc + 3;
+                    break;
+                }
+                case RegisterOp.CALL: {
+                    int procedure = code[pc + 1];
+                    int staticLink = fp;
+                    for (int hops = code[pc + 2]; hops > 0; hops--) {
+                        staticLink = mem[staticLink + Frames.STATIC_LINK];
+                    }
+                    /* The new frame starts at the end of the current frame */
+                    int newFp = top;
+                    base = newFp + Frames.HEADER;
+                    top = base + program.registers[procedure];
+                    if (top > mem.length) {
+                        ensureCapacity(top);
+                        mem = memory;
+                        defined = assigned;
+                    }
+                    mem[newFp + Frames.STATIC_LINK] = staticLink;
+                    mem[newFp + Frames.DYNAMIC_LINK] = fp;
+                    mem[newFp + Frames.RETURN_ADDRESS] = pc + 3;
+                    mem[newFp + Frames.PROCEDURE] = procedure;
+                    Arrays.fill(defined, base, top, false);
+                    fp = newFp;
+                    pc = program.entryPoints[procedure];
+                    break;
+                }
+                case RegisterOp.RETURN: {
+                    int caller = mem[fp + Frames.DYNAMIC_LINK];
+                    if (caller == Frames.NO_FRAME) {
+                        return;
+                    }
+                    pc = mem[fp + Frames.RETURN_ADDRESS];
+                    top = fp;
+                    fp = caller;
+                    base = fp + Frames.HEADER;
+                    break;
+                }
+                case RegisterOp.READ: {
+                    int value = 0;
+                    try {
+                        value = in.read();
+                    } catch (NumberFormatException e) {
+                        runtime(program,
+                                "invalid value read - must be an integer",
+                                program.locations[pc], fp);
+                    }
+                    int dest = base + code[pc + 1];
+                    mem[dest] = value;
+                    defined[dest] = true;
+                    pc += 2;
+                    break;
+                }
+                case RegisterOp.WRITE: {
+                    int src = base + code[pc + 1];
+                    if (!defined[src]) {
+                        unassigned(program, pc, fp);
+                    }
+                    output.writeLine(mem[src]);
+                    pc += 2;
+                    break;
+                }
+                case RegisterOp.NO_GUARD:
+                    runtime(program, "No branch of do loop has a true guard",
+                            program.locations[pc], fp);
+                    break;
+                default:
+                    errors.fatal("PL0 Internal error: invalid operation "
+                            + op + " at " + pc, null);
+            }
+        }
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Grow memory to at least the given size
+     */
+    private void ensureCapacity(int size) {
+        if (size > memory.length) {
+            int newSize = Math.max(size, 2 * memory.length);
+            memory = Arrays.copyOf(memory, newSize);
+            assigned = Arrays.copyOf(assigned, newSize);
+        }
+    }
+
+    /**
+     * Signal that the first unassigned register read by the instruction
+     * at pc was accessed before assignment
+     */
+    private void unassigned(RegisterCode program, int pc, int fp) {
+        String kinds = RegisterOp.OPERANDS[program.code[pc]];
+        for (int i = 0; i < kinds.length(); i++) {
+            int address = pc + 1 + i;
+            if (kinds.charAt(i) == 'r' &&
+                    !assigned[fp + Frames.HEADER + program.code[address]]) {
+                runtime(program, "variable accessed before assignment",
+                        program.locations[address], fp);
+            }
+        }
+    }
+
+    /**
+     * Signal a runtime error has occurred at a given location
+     */
+    private void runtime(RegisterCode program, String m, Location loc,
+                         int fp) {
+        String error = m + System.lineSeparator() + Frames.dump(memory,
+                assigned, fp, program.procedures);
+        output.flush();
+        errors.fatal(error, loc);
+    }
+}
@@ -0,0 +1,91 @@
+package vm;
+
+/**
+ * class RegisterOp - operation codes of the register machine.
+ * Each instruction is an operation code followed by its operands, all
+ * stored within the int array of code. Registers are numbered within the
+ * frame of the current procedure: the procedure's variables occupy the
+ * registers numbered by their offsets, followed by the registers holding
+ * expression temporaries. Every instruction that reads a register checks
+ * that it has been assigned. Variables of enclosing procedures are
+ * accessed by explicit loads and stores that follow static links.
+ */
+final class RegisterOp {
+    /** LOADK dest value: set dest to a constant */
+    static final int LOADK = 0;
+    /** MOVE dest src: copy src to dest */
+    static final int MOVE = 1;
+    /** CHECK src: check src has been assigned */
+    static final int CHECK = 2;
+    /** LOAD dest hops offset: load a variable of an enclosing procedure */
+    static final int LOAD = 3;
+    /** STORE hops offset src: store to a variable of an enclosing procedure */
+    static final int STORE = 4;
+    /** ADD dest left right */
+    static final int ADD = 5;
+    /** SUB dest left right */
+    static final int SUB = 6;
+    /** MUL dest left right */
+    static final int MUL = 7;
+    /** DIV dest left right */
+    static final int DIV = 8;
+    /** NEG dest src */
+    static final int NEG = 9;
+    /** EQ dest left right */
+    static final int EQ = 10;
+    /** NE dest left right */
+    static final int NE = 11;
+    /** LT dest left right */
+    static final int LT = 12;
+    /** LE dest left right */
+    static final int LE = 13;
+    /** GT dest left right */
+    static final int GT = 14;
+    /** GE dest left right */
+    static final int GE = 15;
+    /** BOUNDS dest src lower upper subrange: check src is within a
+     *  subrange and copy it to dest */
+    static final int BOUNDS = 16;
+    /** JUMP target: continue at target */
+    static final int JUMP = 17;
+    /** JUMP_FALSE src target: continue at target if src is false */
+    static final int JUMP_FALSE = 18;
+    /** JUMP_TRUE src target: continue at target if src is true */
+    static final int JUMP_TRUE = 19;
+    /** CALL procedure hops: call a procedure with the given static link */
+    static final int CALL = 20;
+    /** RETURN: return from the current procedure */
+    static final int RETURN = 21;
+    /** READ dest: read an integer from the input into dest */
+    static final int READ = 22;
+    /** WRITE src: write src to the output */
+    static final int WRITE = 23;
+    /** NO_GUARD: report that no guard of a do loop is true */
+    static final int NO_GUARD = 24;
+
+    /**
+     * Names of the operations for the disassembler
+     */
+    static final String[] NAMES = {
+            "LOADK", "MOVE", "CHECK", "LOAD", "STORE", "ADD", "SUB", "MUL",
+            "DIV", "NEG", "EQ", "NE", "LT", "LE", "GT", "GE",
+            "BOUNDS", "JUMP", "JUMP_FALSE", "JUMP_TRUE", "CALL", "RETURN",
+            "READ", "WRITE", "NO_GUARD"
+    };
+
+    /**
+     * Kinds of the operands of each operation, one character per operand:
+     * 'r' register read, 'w' register written, 'k' constant, 'j' jump
+     * target, 'p' procedure number, 'h' number of static links, 'o' variable
+     * offset, 's' subrange number.
+     */
+    static final String[] OPERANDS = {
+            "wk", "wr", "r", "who", "hor", "wrr", "wrr", "wrr",
+            "wrr", "wr", "wrr", "wrr", "wrr", "wrr", "wrr", "wrr",
+            "wrkks", "j", "rj", "rj", "ph", "",
+            "w", "r", ""
+    };
+
+    private RegisterOp() {
+    }
+}
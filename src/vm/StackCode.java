@@ -0,0 +1,80 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import syms.SymEntry;
+import syms.Type;
+
+/**
+ * class StackCode - a program compiled for the stack machine.
+ * The instructions of all procedures are held in a single int array.
+ * Procedures are referred to by their index in the procedure table;
+ * the main program is procedure 0.
+ */
+public class StackCode {
+    /**
+     * Instructions, each an operation code followed by its operands
+     */
+    final int[] code;
+    /**
+     * Source location of the instruction at each program counter value,
+     * used to report runtime errors. Only set for instructions that may fail.
+     */
+    final Location[] locations;
+    /**
+     * Procedures indexed by procedure number
+     */
+    final SymEntry.ProcedureEntry[] procedures;
+    /**
+     * Address of the first instruction of each procedure
+     */
+    final int[] entryPoints;
+    /**
+     * Number of variables in the frame of each procedure
+     */
+    final int[] variableSpace;
+    /**
+     * Subrange types referred to by bounds checks
+     */
+    final Type.SubrangeType[] subranges;
+    /**
+     * Maximum depth of the operand stack within any procedure
+     */
+    final int maxStack;
+
+    StackCode(int[] code, Location[] locations,
+              SymEntry.ProcedureEntry[] procedures, int[] entryPoints,
+              int[] variableSpace, Type.SubrangeType[] subranges,
+              int maxStack) {
+        this.code = code;
+        this.locations = locations;
+        this.procedures = procedures;
+        this.entryPoints = entryPoints;
+        this.variableSpace = variableSpace;
+        this.subranges = subranges;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Disassembled listing of the code
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        int proc = 0;
+        for (int pc = 0; pc < code.length; ) {
+            while (proc < entryPoints.length && entryPoints[proc] == pc) {
+                result.append("PROC ").append(procedures[proc].getIdent())
+                        .append(":").append(System.lineSeparator());
+                proc++;
+            }
+            int op = code[pc];
+            result.append(String.format("%6d  %-10s", pc, StackOp.NAMES[op]));
+            for (int i = 1; i <= StackOp.OPERANDS[op]; i++) {
+                result.append(" ").append(code[pc + i]);
+            }
+            result.append(System.lineSeparator());
+            pc += 1 + StackOp.OPERANDS[op];
+        }
+        return result.toString();
+    }
+}
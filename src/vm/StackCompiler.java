@@ -0,0 +1,460 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import source.Errors;
+import syms.SymEntry;
+import syms.Type;
+import tree.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * class StackCompiler - generates code for the stack machine from the
+ * statically checked abstract syntax tree.
+ * The main program is compiled first, followed by each procedure reachable
+ * from it in the order in which calls to them are encountered.
+ */
+public class StackCompiler implements StatementVisitor, ExpTransform<Void> {
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Code generated so far
+     */
+    private int[] code = new int[256];
+
+    /**
+     * Source locations of generated instructions
+     */
+    private Location[] locations = new Location[256];
+
+    /**
+     * Address of the next instruction to be generated
+     */
+    private int pc = 0;
+
+    /**
+     * Procedures in order of their procedure number
+     */
+    private final List<SymEntry.ProcedureEntry> procedures = new ArrayList<>();
+
+    /**
+     * Procedure numbers of the procedures encountered so far
+     */
+    private final Map<SymEntry.ProcedureEntry, Integer> procedureNumbers =
+            new HashMap<>();
+
+    /**
+     * Subrange types referred to by bounds checks
+     */
+    private final List<Type.SubrangeType> subranges = new ArrayList<>();
+
+    /**
+     * Static level of the procedure being compiled
+     */
+    private int level;
+
+    /**
+     * Depth of the operand stack after the last generated instruction
+     */
+    private int depth = 0;
+
+    /**
+     * Maximum depth of the operand stack
+     */
+    private int maxStack = 0;
+
+    public StackCompiler(Errors errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Compile a main program and all the procedures it may call
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public StackCode compile(DeclNode.ProcedureNode node) {
+        procedureNumber(node.getProcEntry());
+        int[] entryPoints = new int[1];
+        int[] variableSpace = new int[1];
+        /* Calls add further procedures as they are compiled */
+        for (int i = 0; i < procedures.size(); i++) {
+            SymEntry.ProcedureEntry entry = procedures.get(i);
+            if (i == entryPoints.length) {
+                entryPoints = Arrays.copyOf(entryPoints, 2 * i);
+                variableSpace = Arrays.copyOf(variableSpace, 2 * i);
+            }
+            entryPoints[i] = pc;
+            variableSpace[i] = entry.getLocalScope().getVariableSpace();
+            level = entry.getLocalScope().getLevel();
+            compile(entry.getBlock());
+            emit(StackOp.RETURN);
+        }
+        int count = procedures.size();
+        return new StackCode(Arrays.copyOf(code, pc),
+                Arrays.copyOf(locations, pc),
+                procedures.toArray(new SymEntry.ProcedureEntry[count]),
+                Arrays.copyOf(entryPoints, count),
+                Arrays.copyOf(variableSpace, count),
+                subranges.toArray(new Type.SubrangeType[0]),
+                maxStack);
+    }
+
+    /**
+     * Compile a statement
+     */
+    private void compile(StatementNode node) {
+        node.accept(this);
+    }
+
+    /**
+     * Compile an expression leaving its value on the top of the stack
+     */
+    private void compile(ExpNode node) {
+        node.accept(this);
+    }
+
+    /* Statement Compilation */
+
+    /**
+     * Generate code for a block statement
+     */
+    public void visitBlockNode(StatementNode.BlockNode node) {
+        compile(node.getBody());
+    }
+
+    /**
+     * An error statement cannot be compiled
+     */
+    public void visitStatementErrorNode(StatementNode.ErrorNode node) {
+        errors.fatal("PL0 Internal error: compiling Statement Error Node",
+                node.getLocation());
+    }
+
+    /**
+     * Generate code for each statement in the list sequentially
+     */
+    public void visitStatementListNode(StatementNode.ListNode node) {
+        for (StatementNode statement : node.getStatements()) {
+            compile(statement);
+        }
+    }
+
+    /**
+     * Generate code for an assignment statement. All the expressions are
+     * evaluated onto the stack before any of the variables are assigned,
+     * and then the variables are assigned in reverse order.
+     */
+    public void visitAssignmentNode(StatementNode.AssignmentNode node) {
+        for (int i = 0; i < node.size(); i++) {
+            compile(node.right(i));
+        }
+        for (int i = node.size() - 1; i >= 0; i--) {
+            SymEntry.VarEntry variable = lValue(node.left(i));
+            emit(StackOp.STORE, hops(variable.getLevel()),
+                    variable.getOffset());
+        }
+    }
+
+    /**
+     * Generate code for a read statement - read an int from stdin
+     */
+    public void visitReadNode(StatementNode.ReadNode node) {
+        SymEntry.VarEntry variable = lValue(node.getLValue());
+        emit(node.getLocation(), StackOp.READ);
+        emit(StackOp.STORE, hops(variable.getLevel()), variable.getOffset());
+    }
+
+    /**
+     * Generate code for a write statement
+     */
+    public void visitWriteNode(StatementNode.WriteNode node) {
+        compile(node.getExp());
+        emit(StackOp.WRITE);
+    }
+
+    /**
+     * Generate code for a call statement
+     */
+    public void visitCallNode(StatementNode.CallNode node) {
+        SymEntry.ProcedureEntry entry = node.getEntry();
+        emit(StackOp.CALL, procedureNumber(entry), hops(entry.getLevel()));
+    }
+
+    /**
+     * Generate code for an if statement
+     */
+    public void visitIfNode(StatementNode.IfNode node) {
+        compile(node.getCondition());
+        int toElse = emitJump(StackOp.JUMP_FALSE);
+        compile(node.getThenStmt());
+        int toEnd = emitJump(StackOp.JUMP);
+        patch(toElse);
+        compile(node.getElseStmt());
+        patch(toEnd);
+    }
+
+    /**
+     * Generate code for a while statement. The condition is tested at the
+     * end of the loop so that each iteration executes a single jump.
+     */
+    public void visitWhileNode(StatementNode.WhileNode node) {
+        int toCondition = emitJump(StackOp.JUMP);
+        int start = pc;
+        compile(node.getLoopStmt());
+        patch(toCondition);
+        compile(node.getCondition());
+        emit(StackOp.JUMP_TRUE, start);
+    }
+
+    @Override
+    public void visitSkipNode(StatementNode.SkipNode skipNode) {
+        // Nothing to generate...
+    }
+
+    /**
+     * Generate code for a do statement. The guards are tested in order,
+     * each jumping to the next guard if false. Each branch ends with a
+     * jump back to the first guard, or out of the loop if it exits.
+     * Falling through all of the guards is a runtime error.
+     */
+    @Override
+    public void visitDoNode(StatementNode.DoNode doNode) {
+        int start = pc;
+        List<Integer> toEnd = new ArrayList<>();
+        for (StatementNode.DoBranchNode branch : doNode.branches()) {
+            compile(branch.condition());
+            int toNext = emitJump(StackOp.JUMP_FALSE);
+            compile(branch.statements());
+            if (branch.exit()) {
+                toEnd.add(emitJump(StackOp.JUMP));
+            } else {
+                emit(StackOp.JUMP, start);
+            }
+            patch(toNext);
+        }
+        emit(doNode.getLocation(), StackOp.NO_GUARD);
+        for (int jump : toEnd) {
+            patch(jump);
+        }
+    }
+
+    @Override
+    public void visitDoBranchNode(StatementNode.DoBranchNode doBranchNode) {
+        /* Do branches are only generated as part of their do loop */
+    }
+
+    /* Expression Compilation */
+
+    /**
+     * An error expression cannot be compiled
+     */
+    public Void visitErrorExpNode(ExpNode.ErrorNode node) {
+        errors.fatal("PL0 Internal error: compiling ErrorExpNode",
+                node.getLocation());
+        return null;
+    }
+
+    /**
+     * Generate code to push a constant
+     */
+    public Void visitConstNode(ExpNode.ConstNode node) {
+        emit(StackOp.CONST, node.getValue());
+        return null;
+    }
+
+    /**
+     * An identifier should have been resolved by the static checker
+     */
+    public Void visitIdentifierNode(ExpNode.IdentifierNode node) {
+        errors.fatal("PL0 Internal error: compiling IdentifierNode",
+                node.getLocation());
+        return null;
+    }
+
+    /**
+     * The address of a variable is only used by loads and stores
+     */
+    public Void visitVariableNode(ExpNode.VariableNode node) {
+        errors.fatal("PL0 Internal error: compiling address of "
+                + node.getVariable().getIdent(), node.getLocation());
+        return null;
+    }
+
+    /**
+     * Generate code for a binary operator expression
+     **/
+    public Void visitBinaryNode(ExpNode.BinaryNode node) {
+        compile(node.getLeft());
+        compile(node.getRight());
+        switch (node.getOp()) {
+            case ADD_OP:
+                emit(StackOp.ADD);
+                break;
+            case SUB_OP:
+                emit(StackOp.SUB);
+                break;
+            case MUL_OP:
+                emit(StackOp.MUL);
+                break;
+            case DIV_OP:
+                /* Division by zero is reported at the divisor */
+                emit(node.getRight().getLocation(), StackOp.DIV);
+                break;
+            case EQUALS_OP:
+                emit(StackOp.EQ);
+                break;
+            case NEQUALS_OP:
+                emit(StackOp.NE);
+                break;
+            case GREATER_OP:
+                emit(StackOp.GT);
+                break;
+            case LESS_OP:
+                emit(StackOp.LT);
+                break;
+            case LEQUALS_OP:
+                emit(StackOp.LE);
+                break;
+            case GEQUALS_OP:
+                emit(StackOp.GE);
+                break;
+            case INVALID_OP:
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+        }
+        return null;
+    }
+
+    /**
+     * Generate code for a unary operator expression
+     **/
+    public Void visitUnaryNode(ExpNode.UnaryNode node) {
+        compile(node.getArg());
+        //noinspection SwitchStatementWithTooFewBranches
+        switch (node.getOp()) {
+            case NEG_OP:
+                emit(StackOp.NEG);
+                break;
+            default:
+                errors.fatal("PL0 Internal error: Unknown operator",
+                        node.getLocation());
+        }
+        return null;
+    }
+
+    /**
+     * Generate a load of a variable
+     */
+    public Void visitDereferenceNode(ExpNode.DereferenceNode node) {
+        SymEntry.VarEntry variable = lValue(node.getLeftValue());
+        emit(node.getLocation(), StackOp.LOAD, hops(variable.getLevel()),
+                variable.getOffset());
+        return null;
+    }
+
+    /**
+     * Generate a subrange bounds check
+     */
+    public Void visitNarrowSubrangeNode(ExpNode.NarrowSubrangeNode node) {
+        compile(node.getExp());
+        Type.SubrangeType subrange = node.getSubrangeType();
+        subranges.add(subrange);
+        emit(node.getLocation(), StackOp.BOUNDS, subrange.getLower(),
+                subrange.getUpper(), subranges.size() - 1);
+        return null;
+    }
+
+    /**
+     * A widen subrange needs no code
+     */
+    public Void visitWidenSubrangeNode(ExpNode.WidenSubrangeNode node) {
+        compile(node.getExp());
+        return null;
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Generate an instruction that cannot fail
+     */
+    private void emit(int op, int... operands) {
+        emit(null, op, operands);
+    }
+
+    /**
+     * Generate an instruction, recording the location at which it reports
+     * runtime errors.
+     */
+    private void emit(Location loc, int op, int... operands) {
+        if (pc + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, 2 * code.length);
+            locations = Arrays.copyOf(locations, code.length);
+        }
+        locations[pc] = loc;
+        code[pc++] = op;
+        for (int operand : operands) {
+            code[pc++] = operand;
+        }
+        depth += StackOp.STACK_EFFECT[op];
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    /**
+     * Generate a jump with a target to be patched later
+     *
+     * @return address of the target operand
+     */
+    private int emitJump(int op) {
+        emit(op, -1);
+        return pc - 1;
+    }
+
+    /**
+     * Set the target of a jump to the next instruction generated
+     */
+    private void patch(int operand) {
+        code[operand] = pc;
+    }
+
+    /**
+     * Number of static links to follow from the procedure being compiled
+     * to get to the frame of the given static level
+     */
+    private int hops(int targetLevel) {
+        return level - targetLevel;
+    }
+
+    /**
+     * Procedure number of a procedure, allocating a new number if the
+     * procedure has not been encountered before.
+     */
+    private int procedureNumber(SymEntry.ProcedureEntry entry) {
+        Integer number = procedureNumbers.get(entry);
+        if (number == null) {
+            number = procedures.size();
+            procedures.add(entry);
+            procedureNumbers.put(entry, number);
+        }
+        return number;
+    }
+
+    /**
+     * Resolve the variable referred to by a left value
+     */
+    private SymEntry.VarEntry lValue(ExpNode node) {
+        if (!(node instanceof ExpNode.VariableNode)) {
+            errors.fatal("PL0 Internal error: variable expected",
+                    node.getLocation());
+        }
+        return ((ExpNode.VariableNode) node).getVariable();
+    }
+}
@@ -0,0 +1,301 @@
+package vm;
+
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import interpreter.Engine;
+import interpreter.IntReader;
+import interpreter.OutputSink;
+import source.Errors;
+import syms.Type;
+import tree.DeclNode;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * class StackMachine - executes a program by compiling it to code for a
+ * stack machine and then interpreting that code in a single dispatch loop.
+ * Frames and the operand stack share one int array of memory: the operand
+ * stack of a procedure sits directly above its variables, and the frame of
+ * a called procedure starts at the top of the caller's (empty) operand stack.
+ * The output and runtime errors are the same as for interpreter.Interpreter.
+ */
+public class StackMachine implements Engine {
+
+    /**
+     * Program input
+     */
+    private final IntReader in;
+
+    /**
+     * Errors are reported through the error handler.
+     */
+    private final Errors errors;
+
+    /**
+     * Program output
+     */
+    private final OutputSink output;
+
+    /**
+     * Memory holding the frames and operand stacks
+     */
+    private int[] memory = new int[1024];
+
+    /**
+     * Whether each memory location holds an assigned variable
+     */
+    private boolean[] assigned = new boolean[1024];
+
+    /**
+     * Construct a new stack machine
+     *
+     * @param errors      Error message handler
+     * @param inputStream Program input stream
+     * @param outStream   Program output stream
+     */
+    public StackMachine(Errors errors, InputStream inputStream,
+                        PrintStream outStream) {
+        this(errors, new IntReader(inputStream), outStream);
+    }
+
+    /**
+     * Construct a new stack machine
+     *
+     * @param errors    Error message handler
+     * @param in        Program input
+     * @param outStream Program output stream
+     */
+    public StackMachine(Errors errors, IntReader in, PrintStream outStream) {
+        this.errors = errors;
+        this.in = in;
+        this.output = new OutputSink(outStream, errors);
+        in.flushBeforeWaiting(output);
+    }
+
+    /**
+     * Compile and then run the main procedure
+     *
+     * @param node Abstract syntax tree for the main program.
+     */
+    public void executeCode(DeclNode.ProcedureNode node) {
+        try {
+            run(new StackCompiler(errors).compile(node));
+        } finally {
+            output.flush();
+        }
+    }
+
+    /**
+     * Run a compiled program starting with its main procedure
+     */
+    public void run(StackCode program) {
+        final int[] code = program.code;
+        final int trueValue = Type.TRUE_VALUE;
+        final int falseValue = Type.FALSE_VALUE;
+        /* Frame of the main program */
+        int fp = 0;
+        int sp = Frames.HEADER + program.variableSpace[0];
+        ensureCapacity(sp + program.maxStack);
+        int[] mem = memory;
+        boolean[] defined = assigned;
+        mem[Frames.STATIC_LINK] = Frames.NO_FRAME;
+        mem[Frames.DYNAMIC_LINK] = Frames.NO_FRAME;
+        mem[Frames.RETURN_ADDRESS] = -1;
+        mem[Frames.PROCEDURE] = 0;
+        Arrays.fill(defined, Frames.HEADER, sp, false);
+        int pc = 0;
+        while (true) {
+            int op = code[pc];
+            switch (op) {
+                case StackOp.CONST:
+                    mem[sp++] = code[pc + 1];
+                    pc += 2;
+                    break;
+                case StackOp.LOAD: {
+                    int base = fp;
+                    for (int hops = code[pc + 1]; hops > 0; hops--) {
+                        base = mem[base + Frames.STATIC_LINK];
+                    }
+                    int address = base + Frames.HEADER + code[pc + 2];
+                    if (!defined[address]) {
+                        runtime(program, "variable accessed before assignment",
+                                pc, fp);
+                    }
+                    mem[sp++] = mem[address];
+                    pc += 3;
+                    break;
+                }
+                case StackOp.STORE: {
+                    int base = fp;
+                    for (int hops = code[pc + 1]; hops > 0; hops--) {
+                        base = mem[base + Frames.STATIC_LINK];
+                    }
+                    int address = base + Frames.HEADER + code[pc + 2];
+                    mem[address] = mem[--sp];
+                    defined[address] = true;
+                    pc += 3;
+                    break;
+                }
+                case StackOp.ADD:
+                    sp--;
+                    mem[sp - 1] += mem[sp];
+                    pc++;
+                    break;
+                case StackOp.SUB:
+                    sp--;
+                    mem[sp - 1] -= mem[sp];
+                    pc++;
+                    break;
+                case StackOp.MUL:
+                    sp--;
+                    mem[sp - 1] *= mem[sp];
+                    pc++;
+                    break;
+                case StackOp.DIV:
+                    sp--;
+                    if (mem[sp] == 0) {
+                        runtime(program, "Division by zero", pc, fp);
+                    }
+                    mem[sp - 1] /= mem[sp];
+                    pc++;
+                    break;
+                case StackOp.NEG:
+                    mem[sp - 1] = -mem[sp - 1];
+                    pc++;
+                    break;
+                case StackOp.EQ:
+                    sp--;
+                    mem[sp - 1] = mem[sp - 1] == mem[sp] ? trueValue : falseValue;
+                    pc++;
+                    break;
+                case StackOp.NE:
+                    sp--;
+                    mem[sp - 1] = mem[sp - 1] != mem[sp] ? trueValue : falseValue;
+                    pc++;
+                    break;
+                case StackOp.LT:
+                    sp--;
+                    mem[sp - 1] = mem[sp - 1] < mem[sp] ? trueValue : falseValue;
+                    pc++;
+                    break;
+                case StackOp.LE:
+                    sp--;
+                    mem[sp - 1] = mem[sp - 1] <= mem[sp] ? trueValue : falseValue;
+                    pc++;
+                    break;
+                case StackOp.GT:
+                    sp--;
+                    mem[sp - 1] = mem[sp - 1] > mem[sp] ? trueValue : falseValue;
+                    pc++;
+                    break;
+                case StackOp.GE:
+                    sp--;
+                    mem[sp - 1] = mem[sp - 1] >= mem[sp] ? trueValue : falseValue;
+                    pc++;
+                    break;
+                case StackOp.BOUNDS: {
+                    int value = mem[sp - 1];
+                    if (value < code[pc + 1] || code[pc + 2] < value) {
+                        Location loc = program.locations[pc];
+                        runtime(program, "bounds check failed at line "
+                                + loc.getLine() + ": " + value + " not in "
+                                + program.subranges[code[pc + 3]], pc, fp);
+                    }
+                    pc += 4;
+                    break;
+                }
+                case StackOp.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case StackOp.JUMP_FALSE:
+                    pc = mem[--sp] == trueValue ? pc + 2 : code[pc + 1];
+                    break;
+                case StackOp.JUMP_TRUE:
+                    pc = mem[--sp] == trueValue ? code[pc + 1] : pc + 2;
+                    break;
+                case StackOp.NO_GUARD:
+                    runtime(program, "No branch of do loop has a true guard",
+                            pc, fp);
+                    break;
+                case StackOp.CALL: {
+                    int procedure = code[pc + 1];
+                    int staticLink = fp;
+                    for (int hops = code[pc + 2]; hops > 0; hops--) {
+                        staticLink = mem[staticLink + Frames.STATIC_LINK];
+                    }
+                    /* The new frame starts at the top of the operand stack */
+                    int newFp = sp;
+                    sp = newFp + Frames.HEADER
+                            + program.variableSpace[procedure];
+                    if (sp + program.maxStack > mem.length) {
+                        ensureCapacity(sp + program.maxStack);
+                        mem = memory;
+                        defined = assigned;
+                    }
+                    mem[newFp + Frames.STATIC_LINK] = staticLink;
+                    mem[newFp + Frames.DYNAMIC_LINK] = fp;
+                    mem[newFp + Frames.RETURN_ADDRESS] = pc + 3;
+                    mem[newFp + Frames.PROCEDURE] = procedure;
+                    Arrays.fill(defined, newFp + Frames.HEADER, sp, false);
+                    fp = newFp;
+                    pc = program.entryPoints[procedure];
+                    break;
+                }
+                case StackOp.RETURN: {
+                    int caller = mem[fp + Frames.DYNAMIC_LINK];
+                    if (caller == Frames.NO_FRAME) {
+                        return;
+                    }
+                    pc = mem[fp + Frames.RETURN_ADDRESS];
+                    sp = fp;
+                    fp = caller;
+                    break;
+                }
+                case StackOp.READ: {
+                    int value = 0;
+                    try {
+                        value = in.read();
+                    } catch (NumberFormatException e) {
+                        runtime(program,
+                                "invalid value read - must be an integer",
+                                pc, fp);
+                    }
+                    mem[sp++] = value;
+                    pc++;
+                    break;
+                }
+                case StackOp.WRITE:
+                    output.writeLine(mem[--sp]);
+                    pc++;
+                    break;
+                default:
+                    errors.fatal("PL0 Internal error: invalid operation "
+                            + op + " at " + pc, null);
+            }
+        }
+    }
+
+    /* Supporting Methods */
+
+    /**
+     * Grow memory to at least the given size
+     */
+    private void ensureCapacity(int size) {
+        if (size > memory.length) {
+            int newSize = Math.max(size, 2 * memory.length);
+            memory = Arrays.copyOf(memory, newSize);
+            assigned = Arrays.copyOf(assigned, newSize);
+        }
+    }
+
+    /**
+     * Signal a runtime error has occurred at the instruction at pc
+     */
+    private void runtime(StackCode program, String m, int pc, int fp) {
+        String error = m + System.lineSeparator() + Frames.dump(memory,
+                assigned, fp, program.procedures);
+        output.flush();
+        errors.fatal(error, program.locations[pc]);
+    }
+}
@@ -0,0 +1,90 @@
+package vm;
+
+/**
+ * class StackOp - operation codes of the stack machine.
+ * Each instruction is an operation code followed by its operands, if any,
+ * all stored within the int array of code. Instructions that operate on
+ * values pop their arguments off the operand stack and push their result.
+ * Variables are addressed by the number of static links to follow to get
+ * to the frame containing the variable, and the variable's offset within
+ * that frame.
+ */
+final class StackOp {
+    /** CONST value: push value */
+    static final int CONST = 0;
+    /** LOAD hops offset: push the value of a variable */
+    static final int LOAD = 1;
+    /** STORE hops offset: pop a value and assign it to a variable */
+    static final int STORE = 2;
+    /** ADD: push the sum of the top two values */
+    static final int ADD = 3;
+    /** SUB: push the difference of the top two values */
+    static final int SUB = 4;
+    /** MUL: push the product of the top two values */
+    static final int MUL = 5;
+    /** DIV: push the quotient of the top two values */
+    static final int DIV = 6;
+    /** NEG: negate the top value */
+    static final int NEG = 7;
+    /** EQ: push whether the top two values are equal */
+    static final int EQ = 8;
+    /** NE: push whether the top two values are not equal */
+    static final int NE = 9;
+    /** LT: push whether the second value is less than the top value */
+    static final int LT = 10;
+    /** LE: push whether the second value is at most the top value */
+    static final int LE = 11;
+    /** GT: push whether the second value is greater than the top value */
+    static final int GT = 12;
+    /** GE: push whether the second value is at least the top value */
+    static final int GE = 13;
+    /** BOUNDS lower upper subrange: check the top value is within a subrange */
+    static final int BOUNDS = 14;
+    /** JUMP target: continue at target */
+    static final int JUMP = 15;
+    /** JUMP_FALSE target: pop a condition and continue at target if false */
+    static final int JUMP_FALSE = 16;
+    /** CALL procedure hops: call a procedure with the given static link */
+    static final int CALL = 17;
+    /** RETURN: return from the current procedure */
+    static final int RETURN = 18;
+    /** READ: push an integer read from the input */
+    static final int READ = 19;
+    /** WRITE: pop a value and write it to the output */
+    static final int WRITE = 20;
+    /** JUMP_TRUE target: pop a condition and continue at target if true */
+    static final int JUMP_TRUE = 21;
+    /** NO_GUARD: report that no guard of a do loop is true */
+    static final int NO_GUARD = 22;
+
+    /**
+     * Names of the operations for the disassembler
+     */
+    static final String[] NAMES = {
+            "CONST", "LOAD", "STORE", "ADD", "SUB", "MUL", "DIV", "NEG",
+            "EQ", "NE", "LT", "LE", "GT", "GE", "BOUNDS", "JUMP",
+            "JUMP_FALSE", "CALL", "RETURN", "READ", "WRITE", "JUMP_TRUE",
+            "NO_GUARD"
+    };
+
+    /**
+     * Number of operands following each operation code
+     */
+    static final int[] OPERANDS = {
+            1, 2, 2, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 3, 1,
+            1, 2, 0, 0, 0, 1, 0
+    };
+
+    /**
+     * Change in the depth of the operand stack for each operation
+     */
+    static final int[] STACK_EFFECT = {
+            1, 1, -1, -1, -1, -1, -1, 0,
+            -1, -1, -1, -1, -1, -1, 0, 0,
+            -1, 0, 0, 1, -1, -1, 0
+    };
+
+    private StackOp() {
+    }
+}